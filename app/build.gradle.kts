@@ -77,5 +77,11 @@ dependencies {
     // recyclerview
     implementation("androidx.recyclerview:recyclerview:1.2.1")
 
+    // WorkManager for background jobs
+    implementation("androidx.work:work-runtime:2.9.1")
+
+    // Embedded PDF viewer (libs/library/pdfviewer)
+    implementation(project(":pdfviewer"))
+
 
 }
\ No newline at end of file
@@ -10,7 +10,6 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.messaging.FirebaseMessaging;
 
 import java.util.HashMap;
@@ -44,7 +43,7 @@ public class AddContractActivity extends AppCompatActivity {
      */
     private EditText nameEditText, addressEditText, emailEditText, contactEditText, visitsEditText;
     private Button addButton, backButton;
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName;
 
     @SuppressLint("MissingInflatedId")
@@ -54,7 +53,7 @@ public class AddContractActivity extends AppCompatActivity {
         setContentView(R.layout.activity_add_contract);
 
         // Initialize Firestore
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
 
         // Retrieve the user's name passed from ContractsActivity
         userName = getIntent().getStringExtra("USER_NAME");
@@ -171,7 +170,7 @@ public class AddContractActivity extends AppCompatActivity {
         CollectionReference contractsCollection = db.collection(tableName);
         Map<String, Object> contract = createContractObject(name, address, email, contact, visits, owner);
 
-        contractsCollection.add(contract)
+        db.add(contractsCollection, contract)
                 .addOnSuccessListener(documentReference -> {
                     Toast.makeText(AddContractActivity.this, "Contract added successfully to " + tableName, Toast.LENGTH_SHORT).show();
                     clearFields();
@@ -31,7 +31,7 @@ import java.util.Map;
 public class AddJobsActivity extends AppCompatActivity {
     private EditText techName,  customerName, customerEmail, customerContact, issueDetails;
     private Button submitButton;
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName,  custName, custEmail, custContact, issueDetailsText; // Stores values for WhatsApp
 
     /**
@@ -55,7 +55,7 @@ public class AddJobsActivity extends AppCompatActivity {
         issueDetails = findViewById(R.id.issueDetails);
         submitButton = findViewById(R.id.submitButton);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
 
         // Retrieve username from intent
         userName = getIntent().getStringExtra("USER_NAME");
@@ -110,7 +110,7 @@ public class AddJobsActivity extends AppCompatActivity {
         job.put("CustomerContact", custContact);
         job.put("IssueDetails", issue);
 
-        db.collection("JobWork").add(job)
+        db.add(db.collection("JobWork"), job)
                 .addOnSuccessListener(documentReference -> {
                     Toast.makeText(this, "Job Added Successfully", Toast.LENGTH_SHORT).show();
                     clearInputFields();
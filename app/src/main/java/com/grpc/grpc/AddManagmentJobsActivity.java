@@ -32,7 +32,7 @@ import java.util.Map;
 public class AddManagmentJobsActivity extends AppCompatActivity {
     private EditText techName,  customerName,  customerContact, issueDetails;
     private Button submitButton;
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName,  custName,  custContact, issueDetailsText; // Stores values for WhatsApp
 
     /**
@@ -58,7 +58,7 @@ public class AddManagmentJobsActivity extends AppCompatActivity {
         issueDetails = findViewById(R.id.issueDetails);
         submitButton = findViewById(R.id.submitButton);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
 
         // Retrieve username from intent
         userName = getIntent().getStringExtra("USER_NAME");
@@ -109,7 +109,7 @@ public class AddManagmentJobsActivity extends AppCompatActivity {
         job.put("CustomerContact", custContact);
         job.put("IssueDetails", issue);
 
-        db.collection("ManagmentJobs").add(job)
+        db.add(db.collection("ManagmentJobs"), job)
                 .addOnSuccessListener(documentReference -> {
                     Toast.makeText(this, "Job Added Successfully", Toast.LENGTH_SHORT).show();
                     clearInputFields();
@@ -0,0 +1,199 @@
+package com.grpc.grpc;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BackupActivity.java
+ *
+ * This screen shows the last backup of the report database and document folders, starts a backup
+ * on demand, and restores a chosen snapshot. Backups themselves run in BackupWorker; restores run
+ * here, with a progress dialog, and restart the app when the database was replaced.
+ *
+ * Features:
+ * - Shows when the last backup ran and what it uploaded
+ * - "Back Up Now"
+ * - Lists the snapshots stored for the signed-in user, newest first
+ * - Restores a snapshot after confirmation, skipping files that are already up to date
+ *
+ * Author: James Scott
+ */
+
+public class BackupActivity extends AppCompatActivity {
+
+    private TextView backupStatus;
+    private LinearLayout snapshotContainer;
+    private ReportBackup backup;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_backup);
+
+        backupStatus = findViewById(R.id.backupStatus);
+        snapshotContainer = findViewById(R.id.snapshotContainer);
+        Button backupNowButton = findViewById(R.id.backupNowButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        backup = ReportBackup.forCurrentUser(this);
+        if (backup == null) {
+            Toast.makeText(this, "Please sign in to use backups.", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        backupNowButton.setOnClickListener(view -> {
+            BackupWorker.backupNow(this);
+            Toast.makeText(this, "Backup started.", Toast.LENGTH_SHORT).show();
+        });
+        backButton.setOnClickListener(view -> finish());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showLastBackup();
+        loadSnapshots();
+    }
+
+    private void showLastBackup() {
+        long lastBackupAt = getSharedPreferences(BackupWorker.PREFS_NAME, MODE_PRIVATE)
+                .getLong(BackupWorker.KEY_LAST_BACKUP_AT, 0);
+        String lastResult = getSharedPreferences(BackupWorker.PREFS_NAME, MODE_PRIVATE)
+                .getString(BackupWorker.KEY_LAST_RESULT, null);
+        if (lastBackupAt == 0) {
+            backupStatus.setText("No backup yet.");
+            return;
+        }
+        String when = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault()).format(new Date(lastBackupAt));
+        backupStatus.setText("Last backup: " + when + "\n" + lastResult);
+    }
+
+    private void loadSnapshots() {
+        executor.execute(() -> {
+            try {
+                List<String> snapshots = backup.listSnapshots();
+                runOnUiThread(() -> {
+                    if (!isFinishing()) {
+                        displaySnapshots(snapshots);
+                    }
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> Toast.makeText(this, "Failed to load backups: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    private void displaySnapshots(List<String> snapshots) {
+        snapshotContainer.removeAllViews();
+        if (snapshots.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No backups stored.");
+            snapshotContainer.addView(emptyView);
+            return;
+        }
+
+        for (String snapshot : snapshots) {
+            TextView row = new TextView(this);
+            row.setText(describeSnapshot(snapshot));
+            row.setTextSize(16);
+            row.setPadding(16, 24, 16, 24);
+            row.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+            row.setOnClickListener(view -> confirmRestore(snapshot));
+            snapshotContainer.addView(row);
+        }
+    }
+
+    private static String describeSnapshot(String snapshot) {
+        try {
+            Date date = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).parse(snapshot);
+            return new SimpleDateFormat("EEE dd/MM/yyyy HH:mm", Locale.getDefault()).format(date);
+        } catch (ParseException e) {
+            return snapshot;
+        }
+    }
+
+    private void confirmRestore(String snapshot) {
+        new AlertDialog.Builder(this)
+                .setTitle("Restore Backup")
+                .setMessage("Restore the reports, quotes and report database from " + describeSnapshot(snapshot)
+                        + "?\n\nLocal changes made since then will be replaced. The app restarts when the restore finishes.")
+                .setPositiveButton("Restore", (dialog, which) -> restore(snapshot))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void restore(String snapshot) {
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(50, 20, 50, 0);
+
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        layout.addView(progressBar);
+        TextView status = new TextView(this);
+        status.setText("Reading snapshot...");
+        layout.addView(status);
+
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Restoring")
+                .setView(layout)
+                .setCancelable(false)
+                .show();
+
+        executor.execute(() -> {
+            try {
+                int written = backup.restore(snapshot, (filesDone, fileCount, currentFile) -> runOnUiThread(() -> {
+                    progressBar.setMax(fileCount);
+                    progressBar.setProgress(filesDone);
+                    status.setText(filesDone + " / " + fileCount + (currentFile != null ? "\n" + currentFile : ""));
+                }));
+                runOnUiThread(() -> {
+                    progressDialog.dismiss();
+                    Toast.makeText(this, "Restored " + written + " file(s).", Toast.LENGTH_LONG).show();
+                    if (written > 0) {
+                        restartApp();
+                    }
+                });
+            } catch (Exception e) {
+                runOnUiThread(() -> {
+                    progressDialog.dismiss();
+                    Toast.makeText(this, "Restore failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Open database connections still point at the replaced file, so start again from the login screen.
+     */
+    private void restartApp() {
+        Intent intent = new Intent(this, LoginActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        Runtime.getRuntime().exit(0);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executor.shutdownNow();
+    }
+}
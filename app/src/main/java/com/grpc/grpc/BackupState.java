@@ -0,0 +1,182 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BackupState.java
+ *
+ * This class remembers what the incremental backup has already stored: every chunk that is in
+ * the backup folder in Firebase Storage, and the chunk list of every file as it was at the last
+ * backup. A chunk listed here is never uploaded again, and a file whose size and modified time
+ * are unchanged is not even re-read. Each account has its own database, because chunks are stored
+ * under the account's own backup folder: a chunk another technician stored on this phone is not
+ * in this account's folder and must be uploaded again.
+ *
+ * Features:
+ * - One database per Firebase user id
+ * - One row per stored chunk, keyed by its SHA-256
+ * - One row per backed-up file with its size, modified time and chunk list
+ * - Seeded from the latest snapshot after a reinstall or a first sign-in on this phone, so nothing
+ *   is uploaded twice
+ *
+ * Author: James Scott
+ */
+
+public class BackupState extends SQLiteOpenHelper {
+
+    // Database Configuration
+    private static final String DATABASE_NAME_PREFIX = "grpest_backup_";
+    private static final int DATABASE_VERSION = 1;
+
+    // Shared by every account before the state was split per user; dropped and reseeded instead
+    private static final String LEGACY_DATABASE_NAME = "grpest_backup.db";
+
+    // Stored Chunks Table
+    private static final String TABLE_CHUNKS = "chunks";
+    private static final String COLUMN_HASH = "hash";
+    private static final String COLUMN_CHUNK_SIZE = "size";
+    private static final String COLUMN_STORED_AT = "stored_at";
+
+    // Backed-up Files Table
+    private static final String TABLE_FILES = "files";
+    private static final String COLUMN_PATH = "path";
+    private static final String COLUMN_FILE_SIZE = "size";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+    private static final String COLUMN_CHUNKS = "chunks";
+
+    private static final Map<String, BackupState> instances = new HashMap<>();
+
+    private final Context appContext;
+
+    /**
+     * Returns the backup state of one account.
+     *
+     * @param uid The Firebase user id whose backup folder the state describes.
+     */
+    public static synchronized BackupState getInstance(Context context, String uid) {
+        BackupState state = instances.get(uid);
+        if (state == null) {
+            state = new BackupState(context.getApplicationContext(), uid);
+            instances.put(uid, state);
+        }
+        return state;
+    }
+
+    private BackupState(Context context, String uid) {
+        super(context, DATABASE_NAME_PREFIX + uid + ".db", null, DATABASE_VERSION);
+        appContext = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        appContext.deleteDatabase(LEGACY_DATABASE_NAME);
+
+        db.execSQL("CREATE TABLE " + TABLE_CHUNKS + " (" +
+                COLUMN_HASH + " TEXT PRIMARY KEY, " +
+                COLUMN_CHUNK_SIZE + " INTEGER NOT NULL, " +
+                COLUMN_STORED_AT + " INTEGER NOT NULL)");
+
+        db.execSQL("CREATE TABLE " + TABLE_FILES + " (" +
+                COLUMN_PATH + " TEXT PRIMARY KEY, " +
+                COLUMN_FILE_SIZE + " INTEGER NOT NULL, " +
+                COLUMN_LAST_MODIFIED + " INTEGER NOT NULL, " +
+                COLUMN_CHUNKS + " TEXT NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CHUNKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FILES);
+        onCreate(db);
+    }
+
+    boolean hasChunk(String hash) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CHUNKS, new String[]{COLUMN_HASH},
+                COLUMN_HASH + "=?", new String[]{hash}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    void recordChunk(String hash, long size) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_HASH, hash);
+        values.put(COLUMN_CHUNK_SIZE, size);
+        values.put(COLUMN_STORED_AT, System.currentTimeMillis());
+        getWritableDatabase().insertWithOnConflict(TABLE_CHUNKS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * Records chunks that are already in Storage (from a snapshot manifest) in one transaction.
+     */
+    void recordChunks(Set<String> hashes) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String hash : hashes) {
+                recordChunk(hash, 0);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    void deleteChunk(String hash) {
+        getWritableDatabase().delete(TABLE_CHUNKS, COLUMN_HASH + "=?", new String[]{hash});
+    }
+
+    long getChunkCount() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_CHUNKS, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    Set<String> getChunkHashes() {
+        Set<String> hashes = new HashSet<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CHUNKS, new String[]{COLUMN_HASH},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                hashes.add(cursor.getString(0));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the chunk list recorded for a file if its size and modified time are unchanged,
+     * otherwise null.
+     */
+    List<String> getUnchangedFileChunks(String path, long size, long lastModified) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_FILES, new String[]{COLUMN_CHUNKS},
+                COLUMN_PATH + "=? AND " + COLUMN_FILE_SIZE + "=? AND " + COLUMN_LAST_MODIFIED + "=?",
+                new String[]{path, String.valueOf(size), String.valueOf(lastModified)}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            String chunks = cursor.getString(0);
+            return chunks.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(chunks.split(",")));
+        }
+    }
+
+    void recordFile(String path, long size, long lastModified, List<String> chunks) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PATH, path);
+        values.put(COLUMN_FILE_SIZE, size);
+        values.put(COLUMN_LAST_MODIFIED, lastModified);
+        values.put(COLUMN_CHUNKS, TextUtils.join(",", chunks));
+        getWritableDatabase().insertWithOnConflict(TABLE_FILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,129 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BackupWorker.java
+ *
+ * This background job runs the incremental ReportBackup every night, while the phone is charging
+ * on an unmetered network, and on demand from the Backups screen. The outcome of the last run is
+ * kept in preferences for the Backups screen to show.
+ *
+ * Features:
+ * - Nightly around BACKUP_HOUR, charging and unmetered only
+ * - "Back up now" on any connection
+ * - Retries with WorkManager's backoff when Storage cannot be reached
+ * - Does nothing until a user is signed in
+ *
+ * Author: James Scott
+ */
+
+public class BackupWorker extends Worker {
+
+    private static final String TAG = "BackupWorker";
+    private static final String PERIODIC_WORK_NAME = "nightly_backup";
+    private static final String ONE_TIME_WORK_NAME = "backup_now";
+
+    static final String PREFS_NAME = "Backup";
+    static final String KEY_LAST_BACKUP_AT = "last_backup_at";
+    static final String KEY_LAST_RESULT = "last_result";
+
+    // Hour of the day (local time) the nightly backup aims for
+    private static final int BACKUP_HOUR = 2;
+
+    private volatile Thread workThread;
+
+    public BackupWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the nightly backup (keeps an existing schedule).
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(BackupWorker.class, 24, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .setInitialDelay(CalendarDays.millisUntil(BACKUP_HOUR, 0), TimeUnit.MILLISECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Runs a backup as soon as there is a connection, unless one is already waiting to run.
+     */
+    public static void backupNow(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.KEEP,
+                new OneTimeWorkRequest.Builder(BackupWorker.class).setConstraints(constraints).build());
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        ReportBackup backup = ReportBackup.forCurrentUser(getApplicationContext());
+        if (backup == null) {
+            return Result.success();
+        }
+
+        workThread = Thread.currentThread();
+        try {
+            ReportBackup.Summary summary = backup.backUp();
+            saveResult(String.format(Locale.getDefault(),
+                    "%d files, %.1f MB; uploaded %d new chunks (%.1f MB)",
+                    summary.fileCount, summary.totalBytes / 1048576.0,
+                    summary.chunksUploaded, summary.bytesUploaded / 1048576.0));
+            return Result.success();
+        } catch (InterruptedException e) {
+            return Result.retry();
+        } catch (IOException e) {
+            Log.w(TAG, "Backup failed", e);
+            saveResult("Failed: " + e.getMessage());
+            return Result.retry();
+        } finally {
+            workThread = null;
+            Thread.interrupted(); // Clear an interrupt from onStopped before the thread is reused
+        }
+    }
+
+    private void saveResult(String result) {
+        getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(KEY_LAST_BACKUP_AT, System.currentTimeMillis())
+                .putString(KEY_LAST_RESULT, result)
+                .apply();
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        // Wakes the thread out of any Storage request it is waiting on
+        Thread thread = workThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
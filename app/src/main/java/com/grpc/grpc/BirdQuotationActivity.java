@@ -77,7 +77,7 @@ public class BirdQuotationActivity extends AppCompatActivity {
         addItemButton.setOnClickListener(v -> addItem());
 
         // Generate PDF Button Listener
-        generatePdfButton.setOnClickListener(v -> generatePdf());
+        generatePdfButton.setOnClickListener(v -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePdf));
     }
 
     /**
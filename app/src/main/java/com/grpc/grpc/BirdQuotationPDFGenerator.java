@@ -151,15 +151,16 @@ public class BirdQuotationPDFGenerator {
             document.close();
 
             // Save to database
-            ReportDatabaseHelper dbHelper = new ReportDatabaseHelper(context);
-            dbHelper.insertBirdQuote(
+            ReportDatabaseHelper dbHelper = ReportDatabaseHelper.getInstance(context);
+            dbHelper.insertBirdQuoteAsync(
                     quoteNumber,
                     currentDate,
                     address,
                     quoteDescription,
                     grandTotal,
                     userEmail,
-                    mobileNumber
+                    mobileNumber,
+                    ReportDatabaseHelper.toastOnError(context, "Error inserting bird quote.")
             );
 
             Toast.makeText(context, "Bird Quotation PDF Generated and Saved Successfully!", Toast.LENGTH_SHORT).show();
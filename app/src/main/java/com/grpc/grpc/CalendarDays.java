@@ -0,0 +1,107 @@
+package com.grpc.grpc;
+
+import android.app.DatePickerDialog;
+import android.content.Context;
+
+import java.util.Calendar;
+
+/**
+ * CalendarDays.java
+ *
+ * This class holds the day arithmetic and the date picker shared by the report screens and the
+ * scheduled workers, so a day or a time of day means the same thing everywhere it is used. Days are
+ * local calendar days, worked out with Calendar so days that are 23 or 25 hours long around a clock
+ * change are handled.
+ *
+ * Features:
+ * - Start and end of the day containing a time, or a number of days from today
+ * - Start of the month containing a time
+ * - Delay until the next time the clock shows a given hour and minute
+ * - Shows a date picker that starts on today
+ *
+ * Author: James Scott
+ */
+
+public final class CalendarDays {
+
+    private CalendarDays() {
+    }
+
+    /**
+     * Receives the date chosen in pickDate.
+     */
+    public interface DateCallback {
+        void onDate(Calendar calendar);
+    }
+
+    /**
+     * Shows a date picker that starts on today and passes the chosen date to the callback.
+     */
+    public static void pickDate(Context context, DateCallback callback) {
+        Calendar now = Calendar.getInstance();
+        new DatePickerDialog(context, (picker, year, month, day) -> {
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(year, month, day);
+            callback.onDate(calendar);
+        }, now.get(Calendar.YEAR), now.get(Calendar.MONTH), now.get(Calendar.DAY_OF_MONTH)).show();
+    }
+
+    /**
+     * Returns local midnight at the start of the day containing millis.
+     */
+    public static long startOfDay(long millis) {
+        Calendar day = Calendar.getInstance();
+        day.setTimeInMillis(millis);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day.getTimeInMillis();
+    }
+
+    /**
+     * Returns the last millisecond of the day containing millis.
+     */
+    public static long endOfDay(long millis) {
+        Calendar day = Calendar.getInstance();
+        day.setTimeInMillis(startOfDay(millis));
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        return day.getTimeInMillis() - 1;
+    }
+
+    /**
+     * Returns local midnight at the start of the month containing millis.
+     */
+    public static long startOfMonth(long millis) {
+        Calendar month = Calendar.getInstance();
+        month.setTimeInMillis(startOfDay(millis));
+        month.set(Calendar.DAY_OF_MONTH, 1);
+        return month.getTimeInMillis();
+    }
+
+    /**
+     * Returns local midnight at the start of the day the given number of days from today.
+     */
+    public static long startOfDayFromToday(int days) {
+        Calendar day = Calendar.getInstance();
+        day.setTimeInMillis(startOfDay(System.currentTimeMillis()));
+        day.add(Calendar.DAY_OF_MONTH, days);
+        return day.getTimeInMillis();
+    }
+
+    /**
+     * Returns the milliseconds until the clock next shows hour:minute, today or tomorrow.
+     */
+    public static long millisUntil(int hour, int minute) {
+        Calendar now = Calendar.getInstance();
+        Calendar next = (Calendar) now.clone();
+        next.set(Calendar.HOUR_OF_DAY, hour);
+        next.set(Calendar.MINUTE, minute);
+        next.set(Calendar.SECOND, 0);
+        next.set(Calendar.MILLISECOND, 0);
+        if (!next.after(now)) {
+            next.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return next.getTimeInMillis() - now.getTimeInMillis();
+    }
+}
@@ -0,0 +1,43 @@
+package com.grpc.grpc;
+
+/**
+ * CommissionCalculator.java
+ *
+ * This class holds the commission rules shared by lead generation, lead editing and the
+ * commission rollups, so every screen calculates commission the same way.
+ *
+ * Features:
+ * - Contracts earn 10% of the quoted price
+ * - Jobs earn 10% of the quoted price after materials/contractor costs, never below zero
+ *
+ * Author: James Scott
+ */
+
+public final class CommissionCalculator {
+
+    public static final double COMMISSION_RATE = 0.10;
+
+    private CommissionCalculator() {
+    }
+
+    /**
+     * Commission for a contract lead.
+     */
+    public static double forContract(double priceQuoted) {
+        return priceQuoted * COMMISSION_RATE;
+    }
+
+    /**
+     * Commission for a job lead once materials are known.
+     */
+    public static double forJob(double priceQuoted, double materialsCost) {
+        return Math.max(0, (priceQuoted - materialsCost) * COMMISSION_RATE);
+    }
+
+    /**
+     * Commission for a newly generated lead; jobs stay at zero until materials are entered.
+     */
+    public static double forNewLead(String reason, double priceQuoted) {
+        return "Contract".equalsIgnoreCase(reason) ? forContract(priceQuoted) : 0.0;
+    }
+}
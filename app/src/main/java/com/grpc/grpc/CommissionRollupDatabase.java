@@ -0,0 +1,375 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CommissionRollupDatabase.java
+ *
+ * This class keeps an on-device materialized rollup of lead commission figures, grouped by
+ * technician ("Added By") and month. Instead of scanning every lead to answer
+ * "what did each tech earn in March", the rollup rows are maintained incrementally from the
+ * document changes delivered by the Firestore "Leads" snapshot listeners.
+ *
+ * Features:
+ * - Stores the last applied contribution of every lead so edits and deletes can be reversed exactly
+ * - Maintains per technician/month totals of commission, price quoted, materials cost and paid/unpaid amounts
+ * - Applies snapshot deltas inside a single transaction on a background writer thread
+ * - Provides fast reads for the commission summary screen
+ *
+ * Author: James Scott
+ */
+
+public class CommissionRollupDatabase extends SQLiteOpenHelper {
+
+    private static final String TAG = "CommissionRollup";
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_commission.db";
+    private static final int DATABASE_VERSION = 2; // 2: technician compared case-insensitively
+
+    // Per-lead contribution table (the last values folded into the rollups)
+    private static final String TABLE_CONTRIBUTIONS = "lead_contributions";
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_TECHNICIAN = "technician";
+    private static final String COLUMN_MONTH = "month";
+    private static final String COLUMN_PRICE_QUOTED = "price_quoted";
+    private static final String COLUMN_COMMISSION = "commission";
+    private static final String COLUMN_MATERIALS_COST = "materials_cost";
+    private static final String COLUMN_PAID = "paid";
+
+    // Rollup table keyed by technician and month
+    private static final String TABLE_ROLLUPS = "commission_rollups";
+    private static final String COLUMN_LEAD_COUNT = "lead_count";
+    private static final String COLUMN_PAID_AMOUNT = "paid_amount";
+    private static final String COLUMN_UNPAID_AMOUNT = "unpaid_amount";
+
+    private static final String UNKNOWN_MONTH = "Unknown";
+
+    private static CommissionRollupDatabase instance;
+
+    // Single writer so deltas are always applied in the order the listener delivered them
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the shared rollup database for the application.
+     */
+    public static synchronized CommissionRollupDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new CommissionRollupDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CommissionRollupDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Creates the contribution and rollup tables.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CONTRIBUTIONS + " (" +
+                COLUMN_DOCUMENT_ID + " TEXT PRIMARY KEY, " +
+                COLUMN_TECHNICIAN + " TEXT NOT NULL COLLATE NOCASE, " +
+                COLUMN_MONTH + " TEXT NOT NULL, " +
+                COLUMN_PRICE_QUOTED + " REAL NOT NULL, " +
+                COLUMN_COMMISSION + " REAL NOT NULL, " +
+                COLUMN_MATERIALS_COST + " REAL NOT NULL, " +
+                COLUMN_PAID + " INTEGER NOT NULL)");
+
+        // "John" and "john" are the same technician, in the key as well as in getRollups' filter
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUPS + " (" +
+                COLUMN_TECHNICIAN + " TEXT NOT NULL COLLATE NOCASE, " +
+                COLUMN_MONTH + " TEXT NOT NULL, " +
+                COLUMN_LEAD_COUNT + " INTEGER NOT NULL, " +
+                COLUMN_PRICE_QUOTED + " REAL NOT NULL, " +
+                COLUMN_COMMISSION + " REAL NOT NULL, " +
+                COLUMN_MATERIALS_COST + " REAL NOT NULL, " +
+                COLUMN_PAID_AMOUNT + " REAL NOT NULL, " +
+                COLUMN_UNPAID_AMOUNT + " REAL NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_TECHNICIAN + ", " + COLUMN_MONTH + "))");
+    }
+
+    /**
+     * The rollups are derived data, so an upgrade simply rebuilds them from the next snapshot.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONTRIBUTIONS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ROLLUPS);
+        onCreate(db);
+    }
+
+    /**
+     * Queues a batch of Leads document changes to be folded into the rollups.
+     *
+     * @param changes         The document changes from a Leads snapshot.
+     * @param liveDocumentIds Every document id in the snapshot when it is the listener's first one,
+     *                        so leads deleted while the app was closed can be dropped; otherwise null.
+     * @param onApplied       Optional callback run on the writer thread once the batch is committed.
+     */
+    public void applyLeadChangesAsync(List<DocumentChange> changes, Set<String> liveDocumentIds, Runnable onApplied) {
+        if ((changes == null || changes.isEmpty()) && liveDocumentIds == null) {
+            return;
+        }
+        // Copy the data out now; snapshot objects should not be held across threads longer than needed
+        List<LeadDelta> deltas = new ArrayList<>();
+        for (DocumentChange change : changes != null ? changes : new ArrayList<DocumentChange>()) {
+            DocumentSnapshot document = change.getDocument();
+            boolean removed = change.getType() == DocumentChange.Type.REMOVED;
+            deltas.add(new LeadDelta(document.getId(), removed ? null : document.getData()));
+        }
+
+        writeExecutor.execute(() -> {
+            if (liveDocumentIds != null) {
+                for (String staleId : findStaleDocumentIds(liveDocumentIds)) {
+                    deltas.add(new LeadDelta(staleId, null));
+                }
+            }
+            applyLeadDeltas(deltas);
+            if (onApplied != null) {
+                onApplied.run();
+            }
+        });
+    }
+
+    /**
+     * Applies lead deltas in a single transaction. Each lead's previous contribution is
+     * subtracted before its new one is added, so replaying the same document is idempotent.
+     */
+    private void applyLeadDeltas(List<LeadDelta> deltas) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (LeadDelta delta : deltas) {
+                Contribution previous = findContribution(db, delta.documentId);
+                if (previous != null) {
+                    addToRollup(db, previous, -1);
+                    db.delete(TABLE_CONTRIBUTIONS, COLUMN_DOCUMENT_ID + "=?", new String[]{delta.documentId});
+                }
+
+                if (delta.lead != null) {
+                    Contribution current = Contribution.fromLead(delta.documentId, delta.lead);
+                    insertContribution(db, current);
+                    addToRollup(db, current, 1);
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to apply lead changes", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the ids of stored contributions whose lead no longer exists.
+     */
+    private List<String> findStaleDocumentIds(Set<String> liveDocumentIds) {
+        List<String> staleIds = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CONTRIBUTIONS, new String[]{COLUMN_DOCUMENT_ID},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String documentId = cursor.getString(0);
+                if (!liveDocumentIds.contains(documentId)) {
+                    staleIds.add(documentId);
+                }
+            }
+        }
+        return staleIds;
+    }
+
+    private Contribution findContribution(SQLiteDatabase db, String documentId) {
+        try (Cursor cursor = db.query(TABLE_CONTRIBUTIONS,
+                new String[]{COLUMN_TECHNICIAN, COLUMN_MONTH, COLUMN_PRICE_QUOTED, COLUMN_COMMISSION,
+                        COLUMN_MATERIALS_COST, COLUMN_PAID},
+                COLUMN_DOCUMENT_ID + "=?", new String[]{documentId}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return new Contribution(documentId,
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getDouble(2),
+                        cursor.getDouble(3),
+                        cursor.getDouble(4),
+                        cursor.getInt(5) == 1);
+            }
+        }
+        return null;
+    }
+
+    private void insertContribution(SQLiteDatabase db, Contribution contribution) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_DOCUMENT_ID, contribution.documentId);
+        values.put(COLUMN_TECHNICIAN, contribution.technician);
+        values.put(COLUMN_MONTH, contribution.month);
+        values.put(COLUMN_PRICE_QUOTED, contribution.priceQuoted);
+        values.put(COLUMN_COMMISSION, contribution.commission);
+        values.put(COLUMN_MATERIALS_COST, contribution.materialsCost);
+        values.put(COLUMN_PAID, contribution.paid ? 1 : 0);
+        db.insertWithOnConflict(TABLE_CONTRIBUTIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) a contribution from its technician/month rollup row.
+     */
+    private void addToRollup(SQLiteDatabase db, Contribution c, int sign) {
+        double paidAmount = c.paid ? c.priceQuoted : 0.0;
+        double unpaidAmount = c.paid ? 0.0 : c.priceQuoted;
+
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ROLLUPS + " VALUES (?, ?, 0, 0, 0, 0, 0, 0)",
+                new Object[]{c.technician, c.month});
+        db.execSQL("UPDATE " + TABLE_ROLLUPS + " SET " +
+                        COLUMN_LEAD_COUNT + " = " + COLUMN_LEAD_COUNT + " + ?, " +
+                        COLUMN_PRICE_QUOTED + " = " + COLUMN_PRICE_QUOTED + " + ?, " +
+                        COLUMN_COMMISSION + " = " + COLUMN_COMMISSION + " + ?, " +
+                        COLUMN_MATERIALS_COST + " = " + COLUMN_MATERIALS_COST + " + ?, " +
+                        COLUMN_PAID_AMOUNT + " = " + COLUMN_PAID_AMOUNT + " + ?, " +
+                        COLUMN_UNPAID_AMOUNT + " = " + COLUMN_UNPAID_AMOUNT + " + ? " +
+                        "WHERE " + COLUMN_TECHNICIAN + " = ? AND " + COLUMN_MONTH + " = ?",
+                new Object[]{sign, sign * c.priceQuoted, sign * c.commission, sign * c.materialsCost,
+                        sign * paidAmount, sign * unpaidAmount, c.technician, c.month});
+        db.delete(TABLE_ROLLUPS, COLUMN_TECHNICIAN + " = ? AND " + COLUMN_MONTH + " = ? AND " + COLUMN_LEAD_COUNT + " <= 0",
+                new String[]{c.technician, c.month});
+    }
+
+    /**
+     * Fetches the rollup rows, newest month first.
+     *
+     * @param technician The technician to filter by, or null for every technician.
+     */
+    public List<CommissionRollup> getRollups(String technician) {
+        List<CommissionRollup> rollups = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        String selection = technician != null ? COLUMN_TECHNICIAN + " = ?" : null;
+        String[] selectionArgs = technician != null ? new String[]{technician} : null;
+
+        try (Cursor cursor = db.query(TABLE_ROLLUPS,
+                new String[]{COLUMN_TECHNICIAN, COLUMN_MONTH, COLUMN_LEAD_COUNT, COLUMN_PRICE_QUOTED,
+                        COLUMN_COMMISSION, COLUMN_MATERIALS_COST, COLUMN_PAID_AMOUNT, COLUMN_UNPAID_AMOUNT},
+                selection, selectionArgs, null, null,
+                COLUMN_MONTH + " DESC, " + COLUMN_TECHNICIAN + " COLLATE NOCASE ASC")) {
+            while (cursor.moveToNext()) {
+                rollups.add(new CommissionRollup(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getInt(2),
+                        cursor.getDouble(3),
+                        cursor.getDouble(4),
+                        cursor.getDouble(5),
+                        cursor.getDouble(6),
+                        cursor.getDouble(7)));
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Converts a Leads "Date" value (dd-MM-yyyy) into a sortable yyyy-MM month key.
+     */
+    static String toMonthKey(String date) {
+        if (date == null) {
+            return UNKNOWN_MONTH;
+        }
+        String trimmed = date.trim();
+        if (trimmed.length() >= 10 && trimmed.charAt(2) == '-' && trimmed.charAt(5) == '-') {
+            return trimmed.substring(6, 10) + "-" + trimmed.substring(3, 5);
+        }
+        return UNKNOWN_MONTH;
+    }
+
+    private static double asDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    /**
+     * A single technician/month rollup row.
+     */
+    public static class CommissionRollup {
+        public final String technician;
+        public final String month;
+        public final int leadCount;
+        public final double priceQuoted;
+        public final double commission;
+        public final double materialsCost;
+        public final double paidAmount;
+        public final double unpaidAmount;
+
+        CommissionRollup(String technician, String month, int leadCount, double priceQuoted,
+                         double commission, double materialsCost, double paidAmount, double unpaidAmount) {
+            this.technician = technician;
+            this.month = month;
+            this.leadCount = leadCount;
+            this.priceQuoted = priceQuoted;
+            this.commission = commission;
+            this.materialsCost = materialsCost;
+            this.paidAmount = paidAmount;
+            this.unpaidAmount = unpaidAmount;
+        }
+    }
+
+    /**
+     * The values one lead contributes to its rollup row.
+     */
+    private static class Contribution {
+        final String documentId;
+        final String technician;
+        final String month;
+        final double priceQuoted;
+        final double commission;
+        final double materialsCost;
+        final boolean paid;
+
+        Contribution(String documentId, String technician, String month, double priceQuoted,
+                     double commission, double materialsCost, boolean paid) {
+            this.documentId = documentId;
+            this.technician = technician;
+            this.month = month;
+            this.priceQuoted = priceQuoted;
+            this.commission = commission;
+            this.materialsCost = materialsCost;
+            this.paid = paid;
+        }
+
+        static Contribution fromLead(String documentId, Map<String, Object> lead) {
+            Object addedBy = lead.get("Added By");
+            Object date = lead.get("Date");
+            return new Contribution(
+                    documentId,
+                    addedBy != null && !addedBy.toString().trim().isEmpty() ? addedBy.toString().trim() : "Unknown",
+                    toMonthKey(date != null ? date.toString() : null),
+                    asDouble(lead.get("Price Quoted")),
+                    asDouble(lead.get("Commission")),
+                    asDouble(lead.get("Materials Cost")),
+                    "Paid".equalsIgnoreCase(String.valueOf(lead.get("Invoice Status"))));
+        }
+    }
+
+    /**
+     * A document change copied out of a snapshot; lead is null when the document was removed.
+     */
+    private static class LeadDelta {
+        final String documentId;
+        final Map<String, Object> lead;
+
+        LeadDelta(String documentId, Map<String, Object> lead) {
+            this.documentId = documentId;
+            this.lead = lead;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.grpc.grpc;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CommissionSummaryActivity.java
+ *
+ * This activity shows commission earned per technician and month. The figures come straight from
+ * the on-device CommissionRollupDatabase, so the summary opens instantly without downloading the
+ * Leads collection. A Leads snapshot listener keeps the rollups and the screen current as leads
+ * are added, edited, paid or deleted.
+ *
+ * Features:
+ * - Displays commission, price quoted, materials cost and paid/unpaid amounts per technician and month
+ * - Admin users (user) see every technician; other users see only their own rollups
+ * - Refreshes automatically whenever a lead changes
+ *
+ * Author: James Scott
+ */
+
+public class CommissionSummaryActivity extends AppCompatActivity {
+
+    private LinearLayout summaryContainer;
+    private TextView commissionTotals;
+    private Button backButton;
+
+    private String userName;
+    private CommissionRollupDatabase rollupDatabase;
+    private ListenerRegistration leadsListener;
+    private boolean rollupsReconciled = false;
+
+    private final ExecutorService readExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_commission_summary);
+
+        userName = getIntent().getStringExtra("USER_NAME");
+        if (userName == null || userName.isEmpty()) {
+            Toast.makeText(this, "Error: User name not found!", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        summaryContainer = findViewById(R.id.summaryContainer);
+        commissionTotals = findViewById(R.id.commissionTotals);
+        backButton = findViewById(R.id.backButton);
+        backButton.setOnClickListener(view -> finish());
+
+        rollupDatabase = CommissionRollupDatabase.getInstance(this);
+
+        // Show what is already materialized, then keep it current from Leads deltas
+        loadSummary();
+        listenForLeadChanges();
+    }
+
+    private void listenForLeadChanges() {
+        MeteredFirebase firebase = MeteredFirebase.forScreen(this);
+        leadsListener = firebase.listen(firebase.collection("Leads"), (snapshots, error) -> {
+            if (error != null || snapshots == null) {
+                return;
+            }
+
+            Set<String> liveDocumentIds = null;
+            if (!rollupsReconciled && !snapshots.getMetadata().isFromCache()) {
+                liveDocumentIds = SnapshotDocuments.documentIds(snapshots);
+                rollupsReconciled = true;
+            }
+            rollupDatabase.applyLeadChangesAsync(snapshots.getDocumentChanges(), liveDocumentIds,
+                    () -> runOnUiThread(this::loadSummary));
+        });
+    }
+
+    /**
+     * Reads the rollups off the UI thread and renders them.
+     */
+    private void loadSummary() {
+        if (readExecutor.isShutdown()) {
+            return;
+        }
+        String technician = "user".equalsIgnoreCase(userName) ? null : userName;
+        readExecutor.execute(() -> {
+            List<CommissionRollupDatabase.CommissionRollup> rollups = rollupDatabase.getRollups(technician);
+            runOnUiThread(() -> displaySummary(rollups));
+        });
+    }
+
+    private void displaySummary(List<CommissionRollupDatabase.CommissionRollup> rollups) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        summaryContainer.removeAllViews();
+
+        double totalCommission = 0, totalPaid = 0, totalUnpaid = 0;
+        for (CommissionRollupDatabase.CommissionRollup rollup : rollups) {
+            totalCommission += rollup.commission;
+            totalPaid += rollup.paidAmount;
+            totalUnpaid += rollup.unpaidAmount;
+            addRollupToView(rollup);
+        }
+
+        commissionTotals.setText("Total Commission: " + formatEuro(totalCommission) + "\n" +
+                "Paid: " + formatEuro(totalPaid) + "   Unpaid: " + formatEuro(totalUnpaid));
+
+        if (rollups.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No commission recorded yet.");
+            summaryContainer.addView(emptyView);
+        }
+    }
+
+    private void addRollupToView(CommissionRollupDatabase.CommissionRollup rollup) {
+        LinearLayout rollupBox = new LinearLayout(this);
+        rollupBox.setOrientation(LinearLayout.VERTICAL);
+        rollupBox.setPadding(16, 16, 16, 16);
+        rollupBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        TextView rollupDetails = new TextView(this);
+        rollupDetails.setText("Technician: " + rollup.technician + "\n" +
+                "Month: " + rollup.month + "\n" +
+                "Leads: " + rollup.leadCount + "\n" +
+                "Price Quoted: " + formatEuro(rollup.priceQuoted) + "\n" +
+                "Materials/Contractors Cost: " + formatEuro(rollup.materialsCost) + "\n" +
+                "Commission: " + formatEuro(rollup.commission) + "\n" +
+                "Paid: " + formatEuro(rollup.paidAmount) + "\n" +
+                "Unpaid: " + formatEuro(rollup.unpaidAmount));
+
+        rollupBox.addView(rollupDetails);
+        summaryContainer.addView(rollupBox);
+    }
+
+    private String formatEuro(double amount) {
+        return "€" + String.format(Locale.getDefault(), "%.2f", amount);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (leadsListener != null) {
+            leadsListener.remove();
+        }
+        readExecutor.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package com.grpc.grpc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * ContentChunker.java
+ *
+ * This class splits a stream into content-defined chunks for the incremental backup. Chunk
+ * boundaries are chosen by a rolling (gear) hash of the bytes themselves rather than by fixed
+ * offsets, so inserting or removing data in the middle of a file only changes the chunks around
+ * the edit; every other chunk keeps the same content and the same SHA-256 name, and is not
+ * uploaded again.
+ *
+ * Features:
+ * - Gear rolling hash with normalised chunking (FastCDC style)
+ * - Chunks between MIN_CHUNK_SIZE and MAX_CHUNK_SIZE, about AVERAGE_CHUNK_SIZE on average
+ * - Deterministic on every device, so chunk names match across phones and reinstalls
+ * - Streams the input; memory is one MAX_CHUNK_SIZE buffer
+ *
+ * Author: James Scott
+ */
+
+public final class ContentChunker {
+
+    public static final int MIN_CHUNK_SIZE = 256 * 1024;
+    public static final int AVERAGE_CHUNK_SIZE = 1024 * 1024;
+    public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // Below the average size a cut needs more zero bits (less likely), above it fewer
+    private static final long MASK_BEFORE_AVERAGE = ((1L << 22) - 1) << 42;
+    private static final long MASK_AFTER_AVERAGE = ((1L << 18) - 1) << 46;
+
+    // Fixed seed: changing it would give every chunk a new name and re-upload everything
+    private static final long GEAR_SEED = 0x475250455354L;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(GEAR_SEED);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Receives each chunk in order. The array is reused for the next chunk once this returns.
+     */
+    public interface ChunkConsumer {
+        void onChunk(byte[] data, int length, String sha256) throws IOException;
+    }
+
+    private ContentChunker() {
+    }
+
+    /**
+     * Reads the stream to the end and hands every chunk to the consumer. The stream is not closed.
+     */
+    public static void split(InputStream in, ChunkConsumer consumer) throws IOException {
+        byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        byte[] buffer = new byte[64 * 1024];
+        int length = 0;
+        long hash = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                chunk[length++] = b;
+                if (length < MIN_CHUNK_SIZE) {
+                    continue; // No cut can happen yet, so the hash does not need updating
+                }
+                hash = (hash << 1) + GEAR[b & 0xff];
+                long mask = length < AVERAGE_CHUNK_SIZE ? MASK_BEFORE_AVERAGE : MASK_AFTER_AVERAGE;
+                if ((hash & mask) == 0 || length == MAX_CHUNK_SIZE) {
+                    consumer.onChunk(chunk, length, ContentHash.sha256Hex(chunk, 0, length));
+                    length = 0;
+                    hash = 0;
+                }
+            }
+        }
+        if (length > 0) {
+            consumer.onChunk(chunk, length, ContentHash.sha256Hex(chunk, 0, length));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.grpc.grpc;
+
+import android.util.Base64;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * ContentHash.java
+ *
+ * This class hashes local files in the same form Firebase Storage reports for its objects
+ * (Base64-encoded MD5), so a local report can be compared with the copy on the server
+ * without downloading it or uploading it again.
+ *
+ * Features:
+ * - Streams the file through the digest, never loading it into memory
+ * - Output matches StorageMetadata.getMd5Hash()
+ * - Hex SHA-256 of in-memory blocks, used to name backup chunks
+ *
+ * Author: James Scott
+ */
+
+public final class ContentHash {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Returns the Base64-encoded MD5 of a file's contents.
+     */
+    public static String md5Base64(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return md5Base64(inputStream);
+        }
+    }
+
+    /**
+     * Returns the Base64-encoded MD5 of everything left in the stream. The stream is not closed.
+     */
+    public static String md5Base64(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest("MD5");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return Base64.encodeToString(digest.digest(), Base64.NO_WRAP);
+    }
+
+    /**
+     * Returns the lower-case hex SHA-256 of part of a byte array.
+     */
+    public static String sha256Hex(byte[] data, int offset, int length) {
+        MessageDigest digest = newDigest("SHA-256");
+        digest.update(data, offset, length);
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 and SHA-256 are guaranteed on every Android version
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+}
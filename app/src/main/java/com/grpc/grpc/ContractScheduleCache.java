@@ -0,0 +1,289 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ContractScheduleCache.java
+ *
+ * This class keeps a local copy of every contract's visit schedule, written whenever the contract
+ * collections are loaded. The next visit date is calculated once when a contract is cached and
+ * stored as an epoch value, so background jobs such as the daily overdue digest can find overdue
+ * contracts with a single indexed query instead of downloading and re-calculating every contract.
+ *
+ * Features:
+ * - Shared next-visit calculation used by the contracts screen and background jobs
+ * - Replaces an owner's cached contracts in one transaction on a background thread
+ * - Returns overdue contracts grouped by technician
+ * - Returns the visits due by a given time, for the offline report prefetch
+ * - Mirrors each contract's next visit into the calendar events of the report database
+ *
+ * Author: James Scott
+ */
+
+public class ContractScheduleCache extends SQLiteOpenHelper {
+
+    private static final String TAG = "ContractScheduleCache";
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_contract_schedule.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Contract Schedule Table
+    private static final String TABLE_SCHEDULE = "contract_schedule";
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_OWNER = "owner";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_ADDRESS = "address";
+    private static final String COLUMN_LAST_VISIT = "last_visit";
+    private static final String COLUMN_VISITS = "visits";
+    private static final String COLUMN_NEXT_VISIT = "next_visit";
+    private static final String COLUMN_NEXT_VISIT_AT = "next_visit_at"; // 0 when there is no valid next visit
+
+    private static ContractScheduleCache instance;
+
+    private final Context context;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the shared contract schedule cache.
+     */
+    public static synchronized ContractScheduleCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContractScheduleCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ContractScheduleCache(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SCHEDULE + " (" +
+                COLUMN_DOCUMENT_ID + " TEXT NOT NULL, " +
+                COLUMN_OWNER + " TEXT NOT NULL, " +
+                COLUMN_NAME + " TEXT, " +
+                COLUMN_ADDRESS + " TEXT, " +
+                COLUMN_LAST_VISIT + " TEXT, " +
+                COLUMN_VISITS + " INTEGER, " +
+                COLUMN_NEXT_VISIT + " TEXT, " +
+                COLUMN_NEXT_VISIT_AT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_OWNER + ", " + COLUMN_DOCUMENT_ID + "))");
+        db.execSQL("CREATE INDEX idx_schedule_next_visit ON " + TABLE_SCHEDULE + " (" + COLUMN_NEXT_VISIT_AT + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SCHEDULE);
+        onCreate(db);
+    }
+
+    /**
+     * Replaces every cached contract for an owner with a freshly loaded list.
+     *
+     * @param owner     The technician whose "<owner> Contracts" collection was loaded.
+     * @param contracts The contracts as loaded from Firestore.
+     */
+    public void replaceContractsAsync(String owner, List<Map<String, Object>> contracts) {
+        // Only copy the maps here, so the caller's maps can keep changing on the UI thread; the date
+        // arithmetic runs on the writer
+        List<Map<String, Object>> copies = new ArrayList<>(contracts.size());
+        for (Map<String, Object> contract : contracts) {
+            copies.add(new HashMap<>(contract));
+        }
+
+        writeExecutor.execute(() -> {
+            List<ContentValues> rows = new ArrayList<>(copies.size());
+            List<ReportDatabaseHelper.CalendarEvent> visitEvents = new ArrayList<>();
+            for (Map<String, Object> contract : copies) {
+                Object documentId = contract.get("documentId");
+                if (documentId == null) {
+                    continue;
+                }
+                String nextVisit = calculateNextVisit(contract);
+                long nextVisitAt = nextVisitMillis(nextVisit);
+                if (nextVisitAt > 0) {
+                    visitEvents.add(new ReportDatabaseHelper.CalendarEvent(0, nextVisitAt,
+                            "Visit: " + stringOrDefault(contract, "name") + " (" + owner + ")",
+                            ReportDatabaseHelper.EVENT_SOURCE_CONTRACT_VISIT, owner + "/" + documentId));
+                }
+
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_DOCUMENT_ID, documentId.toString());
+                values.put(COLUMN_OWNER, owner);
+                values.put(COLUMN_NAME, stringOrDefault(contract, "name"));
+                values.put(COLUMN_ADDRESS, stringOrDefault(contract, "address"));
+                values.put(COLUMN_LAST_VISIT, stringOrDefault(contract, "lastVisit"));
+                values.put(COLUMN_VISITS, parseVisits(contract));
+                values.put(COLUMN_NEXT_VISIT, nextVisit);
+                values.put(COLUMN_NEXT_VISIT_AT, nextVisitAt);
+                rows.add(values);
+            }
+            ReportDatabaseHelper.getInstance(context).replaceSourceEventsAsync(
+                    ReportDatabaseHelper.EVENT_SOURCE_CONTRACT_VISIT, owner + "/", visitEvents);
+
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_SCHEDULE, COLUMN_OWNER + "=?", new String[]{owner});
+                for (ContentValues values : rows) {
+                    db.insertWithOnConflict(TABLE_SCHEDULE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to cache contracts for " + owner, e);
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Returns the overdue contracts grouped by technician. Contracts without a valid next visit
+     * are treated as overdue, matching the contracts screen. Must not be called on the UI thread.
+     */
+    public Map<String, List<String>> getOverdueSummariesByTechnician(long now) {
+        Map<String, List<String>> summaries = new LinkedHashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SCHEDULE,
+                new String[]{COLUMN_OWNER, COLUMN_NAME, COLUMN_ADDRESS, COLUMN_NEXT_VISIT},
+                COLUMN_NEXT_VISIT_AT + " < ?", new String[]{String.valueOf(now)},
+                null, null, COLUMN_OWNER + " COLLATE NOCASE, " + COLUMN_NAME + " COLLATE NOCASE")) {
+            while (cursor.moveToNext()) {
+                String owner = cursor.getString(0);
+                List<String> ownerSummaries = summaries.get(owner);
+                if (ownerSummaries == null) {
+                    ownerSummaries = new ArrayList<>();
+                    summaries.put(owner, ownerSummaries);
+                }
+                ownerSummaries.add("🔹 " + cursor.getString(1) + " - 📍 " + cursor.getString(2) +
+                        " - 📅 Next Visit: " + cursor.getString(3));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns the contracts due by the given time (today's visits and every contract behind),
+     * the most imminent first and contracts without a valid next visit last. Must not be called
+     * on the UI thread.
+     */
+    public List<ScheduledVisit> getVisitsDueBy(long until) {
+        List<ScheduledVisit> visits = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SCHEDULE,
+                new String[]{COLUMN_OWNER, COLUMN_NAME, COLUMN_ADDRESS, COLUMN_NEXT_VISIT_AT},
+                COLUMN_NEXT_VISIT_AT + " < ?", new String[]{String.valueOf(until)},
+                null, null, COLUMN_NEXT_VISIT_AT + " DESC")) {
+            while (cursor.moveToNext()) {
+                visits.add(new ScheduledVisit(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3)));
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * Calculates the next visit date (dd/MM/yy) from the last visit and the number of visits per year.
+     */
+    public static String calculateNextVisit(Map<String, Object> contract) {
+        // Use dd/MM/yy for two-digit years
+        SimpleDateFormat shortYearFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+
+        String lastVisit = contract.get("lastVisit") != null ? contract.get("lastVisit").toString() : "N/A";
+        int visits = contract.get("visits") != null ? Integer.parseInt(contract.get("visits").toString()) : 0;
+
+        if ("N/A".equals(lastVisit) || visits == 0) {
+            return "N/A";
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        try {
+            calendar.setTime(dateFormat.parse(lastVisit)); // Parse using full date format
+        } catch (Exception e) {
+            return "Invalid Date";
+        }
+
+        // Adjust the next visit date based on the number of visits
+        switch (visits) {
+            case 8:
+                calendar.add(Calendar.WEEK_OF_YEAR, 6);
+                break;
+            case 12:
+                calendar.add(Calendar.WEEK_OF_YEAR, 4);
+                break;
+            case 6:
+                calendar.add(Calendar.WEEK_OF_YEAR, 8);
+                break;
+            case 4:
+                calendar.add(Calendar.WEEK_OF_YEAR, 12);
+                break;
+            default:
+                return "N/A";
+        }
+
+        // Return the next visit date in the short year format (dd/MM/yy)
+        return shortYearFormat.format(calendar.getTime());
+    }
+
+    /**
+     * Converts a dd/MM/yy next visit into epoch milliseconds, or 0 if it is missing or invalid.
+     */
+    static long nextVisitMillis(String nextVisit) {
+        if (nextVisit == null || nextVisit.trim().isEmpty() || "N/A".equalsIgnoreCase(nextVisit)) {
+            return 0;
+        }
+        try {
+            return new SimpleDateFormat("dd/MM/yy", Locale.getDefault()).parse(nextVisit).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static int parseVisits(Map<String, Object> contract) {
+        try {
+            return contract.get("visits") != null ? Integer.parseInt(contract.get("visits").toString()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String stringOrDefault(Map<String, Object> contract, String key) {
+        return contract.get(key) != null ? contract.get(key).toString() : "N/A";
+    }
+
+    /**
+     * One cached contract's upcoming (or missed) visit.
+     */
+    public static class ScheduledVisit {
+        public final String owner;
+        public final String name;
+        public final String address;
+        public final long nextVisitAt; // 0 when there is no valid next visit
+
+        ScheduledVisit(String owner, String name, String address, long nextVisitAt) {
+            this.owner = owner;
+            this.name = name;
+            this.address = address;
+            this.nextVisitAt = nextVisitAt;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.grpc.grpc;
 
+import android.app.TimePickerDialog;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.Locale;
+
 /**
  * ContractsActivity.java
  *
@@ -17,6 +21,8 @@ import androidx.appcompat.app.AppCompatActivity;
  * - Displays a welcome message to the user
  * - Provides navigation options for adding or viewing contracts
  * - Passes the username to subsequent activities for contract management
+ * - Lets the user set the delivery time of the daily overdue contracts digest
+ * - Opens the route planner for today's due and overdue contracts
  *
  * Author: James Scott
  */
@@ -29,7 +35,7 @@ public class ContractsActivity extends AppCompatActivity {
      * @param savedInstanceState If the activity is being re-initialized after previously being shut down,
      *                           this Bundle contains the most recent data.
      */
-    private Button addContractButton, viewContractButton;
+    private Button addContractButton, viewContractButton, routePlannerButton, digestTimeButton;
     private String userName;
 
     @Override
@@ -49,6 +55,8 @@ public class ContractsActivity extends AppCompatActivity {
         // Initialize buttons
         addContractButton = findViewById(R.id.AddContractButton);
         viewContractButton = findViewById(R.id.ViewContractButton);
+        routePlannerButton = findViewById(R.id.RoutePlannerButton);
+        digestTimeButton = findViewById(R.id.DigestTimeButton);
 
         // Add Contract Button Listener
         addContractButton.setOnClickListener(v -> {
@@ -63,5 +71,30 @@ public class ContractsActivity extends AppCompatActivity {
             intent.putExtra("USER_NAME", userName); // Pass the username to ViewContractActivity
             startActivity(intent);
         });
+
+        // Route Planner Button Listener
+        routePlannerButton.setOnClickListener(v -> {
+            Intent intent = new Intent(ContractsActivity.this, RoutePlannerActivity.class);
+            intent.putExtra("USER_NAME", userName); // Pass the username to RoutePlannerActivity
+            startActivity(intent);
+        });
+
+        // Overdue Digest Time Button Listener
+        digestTimeButton.setOnClickListener(v -> showDigestTimePicker());
+    }
+
+    /**
+     * Lets the user choose when the daily overdue contracts digest is delivered.
+     */
+    private void showDigestTimePicker() {
+        SharedPreferences prefs = getSharedPreferences(OverdueDigestWorker.PREFS_NAME, MODE_PRIVATE);
+        int hour = prefs.getInt(OverdueDigestWorker.KEY_DIGEST_HOUR, OverdueDigestWorker.DEFAULT_DIGEST_HOUR);
+        int minute = prefs.getInt(OverdueDigestWorker.KEY_DIGEST_MINUTE, OverdueDigestWorker.DEFAULT_DIGEST_MINUTE);
+
+        new TimePickerDialog(this, (view, selectedHour, selectedMinute) -> {
+            OverdueDigestWorker.setDigestTime(this, selectedHour, selectedMinute);
+            Toast.makeText(this, String.format(Locale.getDefault(),
+                    "Overdue digest will arrive daily at %02d:%02d", selectedHour, selectedMinute), Toast.LENGTH_SHORT).show();
+        }, hour, minute, true).show();
     }
 }
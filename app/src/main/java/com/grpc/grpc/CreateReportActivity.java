@@ -76,7 +76,7 @@ public class CreateReportActivity extends AppCompatActivity {
 
         // Button Click Listeners
         addLineItemButton.setOnClickListener(v -> addLineItem());
-        generateQuoteButton.setOnClickListener(v -> generatePDFReport());
+        generateQuoteButton.setOnClickListener(v -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePDFReport));
         backButton.setOnClickListener(v -> navigateBackToPreviousActivity());
 
         // Add the first line item field automatically
@@ -150,10 +150,11 @@ public class CreateReportActivity extends AppCompatActivity {
         double totalAmount = calculateTotal(lineTotals);
 
         // Save the report to the database
-        ReportDatabaseHelper dbHelper = new ReportDatabaseHelper(this);
-        dbHelper.insertQuote(
+        ReportDatabaseHelper dbHelper = ReportDatabaseHelper.getInstance(this);
+        dbHelper.insertQuoteAsync(
                 quoteNumber, date, address, quoteDescription,
-                totalAmount, userEmail, mobileNumber, true);
+                totalAmount, userEmail, mobileNumber,
+                ReportDatabaseHelper.toastOnError(this, "Error inserting quote."));
 
         // Generate the PDF
         PDFQuotationReportGenerator.generateQuotationReport(
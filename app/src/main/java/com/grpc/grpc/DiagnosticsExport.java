@@ -0,0 +1,92 @@
+package com.grpc.grpc;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.widget.Toast;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * DiagnosticsExport.java
+ *
+ * This class writes the diagnostics CSV exports (Firebase usage, frame metrics and pipeline
+ * traces) and hands them to the share sheet. Every export goes to the one diagnostics folder,
+ * which StorageBudget also measures and trims, and every CSV field is escaped the same way.
+ *
+ * Features:
+ * - The diagnostics folder under the app's external files
+ * - CSV field escaping for commas, quotes and line breaks
+ * - Timestamped export files
+ * - Share sheet, falling back to showing where the file was saved
+ *
+ * Author: James Scott
+ */
+
+public final class DiagnosticsExport {
+
+    private static final String FOLDER = "GRPEST DIAGNOSTICS";
+
+    private DiagnosticsExport() {
+    }
+
+    /**
+     * Returns the folder every diagnostics export is written to (it may not exist yet).
+     */
+    public static File getFolder(Context context) {
+        return new File(context.getExternalFilesDir(null), FOLDER);
+    }
+
+    /**
+     * Quotes a CSV field if it holds a comma, quote or line break.
+     */
+    public static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Writes a CSV export named filePrefix plus the current time. Must not be called on the UI thread.
+     */
+    public static File writeCsv(Context context, String filePrefix, String csv) throws IOException {
+        File exportDir = getFolder(context);
+        if (!exportDir.exists() && !exportDir.mkdirs()) {
+            throw new IOException("Could not create " + exportDir);
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        File csvFile = new File(exportDir, filePrefix + timestamp + ".csv");
+        try (FileOutputStream outputStream = new FileOutputStream(csvFile)) {
+            outputStream.write(csv.getBytes(StandardCharsets.UTF_8));
+        }
+        return csvFile;
+    }
+
+    /**
+     * Opens the share sheet for an export, or says where it was saved if it cannot be shared.
+     */
+    public static void share(Activity activity, File csvFile, String chooserTitle) {
+        try {
+            Uri fileUri = FileProvider.getUriForFile(activity, "com.grpc.grpc.fileprovider", csvFile);
+
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType("text/csv");
+            shareIntent.putExtra(Intent.EXTRA_STREAM, fileUri);
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+            activity.startActivity(Intent.createChooser(shareIntent, chooserTitle));
+        } catch (Exception e) {
+            Toast.makeText(activity, "Saved to " + csvFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        }
+    }
+}
@@ -43,6 +43,8 @@ import android.text.TextWatcher;
 import android.widget.Button;
 import android.widget.EditText;
 
+import com.grpc.pdfviewer.PdfViewerActivity;
+
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
@@ -67,7 +69,7 @@ import java.util.Arrays;
  * Features:
  * - Lists all stored ERA PDF reports
  * - Enables searching for reports by name using a search bar
- * - Supports viewing reports using a PDF viewer
+ * - Supports viewing reports in the embedded PDF viewer
  * - Allows sharing, renaming, and deleting reports
  * - Provides user-friendly alerts for report interactions
  *
@@ -274,26 +276,12 @@ public class ERAViewActivity extends AppCompatActivity {
 
 
     /**
-     * Launches an intent to view the selected PDF file using a PDF viewer app.
+     * Opens the selected PDF file in the app's embedded PDF viewer.
      *
      * @param file The report file to be viewed.
      */
     private void viewPDF(File file) {
-        try {
-            Uri fileUri = FileProvider.getUriForFile(
-                    this,
-                    "com.grpc.grpc.fileprovider",
-                    file
-            );
-
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(fileUri, "application/pdf");
-            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-            startActivity(viewIntent);
-        } catch (Exception e) {
-            Toast.makeText(this, "No application found to view this PDF.", Toast.LENGTH_SHORT).show();
-        }
+        PdfViewerActivity.start(this, file);
     }
     /**
      * Renames the selected report and refreshes the report list.
@@ -0,0 +1,266 @@
+package com.grpc.grpc;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.GridLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * EventCalendarActivity.java
+ *
+ * This screen shows the events table of the report database as a month calendar: hand-added
+ * events, contract visits and job follow-ups. Each month is read with a single range query over
+ * the event day index and kept in a small in-memory cache together with the months either side,
+ * so moving back and forth between months draws straight from memory.
+ *
+ * Features:
+ * - Month grid with the number of events on each day
+ * - One indexed query per month; the previous and next months are read ahead
+ * - Up to MAX_CACHED_MONTHS months kept, least recently shown dropped first
+ * - Lists the selected day's events and adds new ones
+ * - Refreshes when the events table changes
+ *
+ * Author: James Scott
+ */
+
+public class EventCalendarActivity extends AppCompatActivity implements ReportDatabaseHelper.TableObserver {
+
+    private static final int MAX_CACHED_MONTHS = 6;
+    private static final int GRID_CELLS = 42; // Six weeks always fit a month
+
+    private ReportDatabaseHelper database;
+    private GridLayout calendarGrid;
+    private TextView monthLabel;
+    private TextView selectedDayLabel;
+    private ArrayAdapter<String> dayEventsAdapter;
+
+    // Months are keyed as year * 12 + month
+    private int shownMonth;
+    private long selectedDay;
+
+    private final Map<Integer, List<ReportDatabaseHelper.CalendarEvent>> monthCache =
+            new LinkedHashMap<Integer, List<ReportDatabaseHelper.CalendarEvent>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<ReportDatabaseHelper.CalendarEvent>> eldest) {
+                    return size() > MAX_CACHED_MONTHS;
+                }
+            };
+    private final Set<Integer> loadingMonths = new HashSet<>();
+    // Bumped when the events change, so months read before the change are not cached
+    private int generation;
+
+    private final ExecutorService readExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_event_calendar);
+
+        database = ReportDatabaseHelper.getInstance(this);
+        calendarGrid = findViewById(R.id.calendarGrid);
+        monthLabel = findViewById(R.id.monthLabel);
+        selectedDayLabel = findViewById(R.id.selectedDayLabel);
+        ListView dayEventsList = findViewById(R.id.dayEventsList);
+        Button previousMonthButton = findViewById(R.id.previousMonthButton);
+        Button nextMonthButton = findViewById(R.id.nextMonthButton);
+        Button addEventButton = findViewById(R.id.addEventButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        dayEventsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, new ArrayList<>());
+        dayEventsList.setAdapter(dayEventsAdapter);
+
+        Calendar today = Calendar.getInstance();
+        shownMonth = today.get(Calendar.YEAR) * 12 + today.get(Calendar.MONTH);
+        selectedDay = CalendarDays.startOfDay(today.getTimeInMillis());
+
+        previousMonthButton.setOnClickListener(view -> showMonth(shownMonth - 1));
+        nextMonthButton.setOnClickListener(view -> showMonth(shownMonth + 1));
+        addEventButton.setOnClickListener(view -> showAddEventDialog());
+        backButton.setOnClickListener(view -> finish());
+
+        database.registerObserver(this);
+        showMonth(shownMonth);
+    }
+
+    @Override
+    public void onTableChanged(String table, boolean rowsAddedOnly) {
+        if (ReportDatabaseHelper.TABLE_EVENTS.equals(table)) {
+            generation++;
+            monthCache.clear();
+            loadingMonths.clear();
+            showMonth(shownMonth);
+        }
+    }
+
+    private static Calendar monthStart(int month) {
+        Calendar start = Calendar.getInstance();
+        start.clear();
+        start.set(month / 12, month % 12, 1);
+        return start;
+    }
+
+    private void showMonth(int month) {
+        shownMonth = month;
+        monthLabel.setText(new SimpleDateFormat("MMMM yyyy", Locale.getDefault()).format(monthStart(month).getTime()));
+
+        List<ReportDatabaseHelper.CalendarEvent> events = monthCache.get(month);
+        if (events != null) {
+            drawMonth(events);
+        } else {
+            drawMonth(new ArrayList<>());
+            loadMonth(month);
+        }
+        loadMonth(month - 1);
+        loadMonth(month + 1);
+    }
+
+    /**
+     * Reads a month into the cache in the background, unless it is cached or already being read.
+     */
+    private void loadMonth(int month) {
+        if (monthCache.containsKey(month) || loadingMonths.contains(month) || readExecutor.isShutdown()) {
+            return;
+        }
+        loadingMonths.add(month);
+        int requestGeneration = generation;
+        long from = monthStart(month).getTimeInMillis();
+        long to = monthStart(month + 1).getTimeInMillis();
+
+        readExecutor.execute(() -> {
+            List<ReportDatabaseHelper.CalendarEvent> events = database.getEventsBetween(from, to);
+            runOnUiThread(() -> {
+                if (requestGeneration != generation || isDestroyed()) {
+                    return;
+                }
+                loadingMonths.remove(month);
+                monthCache.put(month, events);
+                if (month == shownMonth) {
+                    drawMonth(events);
+                }
+            });
+        });
+    }
+
+    private void drawMonth(List<ReportDatabaseHelper.CalendarEvent> events) {
+        Map<Long, List<String>> eventsByDay = new LinkedHashMap<>();
+        for (ReportDatabaseHelper.CalendarEvent event : events) {
+            List<String> names = eventsByDay.get(event.dayMillis);
+            if (names == null) {
+                names = new ArrayList<>();
+                eventsByDay.put(event.dayMillis, names);
+            }
+            names.add(event.name);
+        }
+
+        calendarGrid.removeAllViews();
+        Calendar day = monthStart(shownMonth);
+        int firstDayOfWeek = day.getFirstDayOfWeek();
+        Calendar heading = (Calendar) day.clone();
+        heading.set(Calendar.DAY_OF_WEEK, firstDayOfWeek);
+        SimpleDateFormat weekdayFormat = new SimpleDateFormat("EEE", Locale.getDefault());
+        for (int i = 0; i < 7; i++) {
+            TextView label = newCell(weekdayFormat.format(heading.getTime()));
+            label.setTypeface(Typeface.DEFAULT_BOLD);
+            calendarGrid.addView(label);
+            heading.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        int leadingBlanks = (day.get(Calendar.DAY_OF_WEEK) - firstDayOfWeek + 7) % 7;
+        int daysInMonth = day.getActualMaximum(Calendar.DAY_OF_MONTH);
+        long today = CalendarDays.startOfDay(System.currentTimeMillis());
+        for (int cell = 0; cell < GRID_CELLS; cell++) {
+            int dayOfMonth = cell - leadingBlanks + 1;
+            if (dayOfMonth < 1 || dayOfMonth > daysInMonth) {
+                calendarGrid.addView(newCell(""));
+                continue;
+            }
+            day.set(Calendar.DAY_OF_MONTH, dayOfMonth);
+            long dayMillis = day.getTimeInMillis();
+            List<String> names = eventsByDay.get(dayMillis);
+
+            TextView dayCell = newCell(dayOfMonth + (names != null ? "\n• " + names.size() : "\n"));
+            if (dayMillis == today) {
+                dayCell.setTypeface(Typeface.DEFAULT_BOLD);
+            }
+            if (dayMillis == selectedDay) {
+                dayCell.setBackgroundColor(Color.parseColor("#FFBBDEFB"));
+            }
+            dayCell.setOnClickListener(view -> {
+                selectedDay = dayMillis;
+                drawMonth(events);
+            });
+            calendarGrid.addView(dayCell);
+        }
+
+        showDayEvents(eventsByDay.get(selectedDay));
+    }
+
+    private TextView newCell(String text) {
+        TextView cell = new TextView(this);
+        cell.setText(text);
+        cell.setGravity(Gravity.CENTER);
+        cell.setPadding(0, 12, 0, 12);
+        GridLayout.LayoutParams params = new GridLayout.LayoutParams(
+                GridLayout.spec(GridLayout.UNDEFINED), GridLayout.spec(GridLayout.UNDEFINED, 1f));
+        params.width = 0;
+        cell.setLayoutParams(params);
+        return cell;
+    }
+
+    private void showDayEvents(List<String> names) {
+        selectedDayLabel.setText(new SimpleDateFormat("EEEE dd/MM/yyyy", Locale.getDefault()).format(selectedDay));
+        dayEventsAdapter.clear();
+        if (names != null) {
+            dayEventsAdapter.addAll(names);
+        }
+    }
+
+    private void showAddEventDialog() {
+        EditText nameInput = new EditText(this);
+        nameInput.setHint("Event");
+
+        new AlertDialog.Builder(this)
+                .setTitle("Add Event on " + new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault()).format(selectedDay))
+                .setView(nameInput)
+                .setPositiveButton("Add", (dialog, which) -> {
+                    String name = nameInput.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        Toast.makeText(this, "Please enter an event name.", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    database.insertEventAsync(selectedDay, name,
+                            ReportDatabaseHelper.toastOnError(this, "Error saving event."));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        database.unregisterObserver(this);
+        readExecutor.shutdownNow();
+    }
+}
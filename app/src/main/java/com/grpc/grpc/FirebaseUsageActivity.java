@@ -0,0 +1,179 @@
+package com.grpc.grpc;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * FirebaseUsageActivity.java
+ *
+ * This debug screen shows the Firestore and Storage usage recorded by FirebaseUsageMeter, grouped by
+ * screen with the most expensive screens first, so cost and latency regressions can be spotted
+ * before they show up on the Firebase invoice.
+ *
+ * Features:
+ * - Reads, writes, deletes, listener events and bytes per screen and operation
+ * - Average, p50, p95 and maximum latency per operation
+ * - Exports the numbers as CSV and shares the file
+ * - Resets the counters to measure a single workflow
+ *
+ * Author: James Scott
+ */
+
+public class FirebaseUsageActivity extends AppCompatActivity {
+
+    private LinearLayout usageContainer;
+    private TextView usageTotals;
+
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_firebase_usage);
+
+        usageContainer = findViewById(R.id.usageContainer);
+        usageTotals = findViewById(R.id.usageTotals);
+
+        Button exportCsvButton = findViewById(R.id.exportCsvButton);
+        Button resetUsageButton = findViewById(R.id.resetUsageButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        exportCsvButton.setOnClickListener(view -> exportCsv());
+        resetUsageButton.setOnClickListener(view -> {
+            FirebaseUsageMeter.getInstance().reset();
+            displayUsage();
+        });
+        backButton.setOnClickListener(view -> finish());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        displayUsage();
+    }
+
+    private void displayUsage() {
+        FirebaseUsageMeter meter = FirebaseUsageMeter.getInstance();
+        List<FirebaseUsageMeter.OperationStats> stats = meter.getStats();
+        usageContainer.removeAllViews();
+
+        // Group by screen
+        Map<String, List<FirebaseUsageMeter.OperationStats>> byScreen = new LinkedHashMap<>();
+        long totalReads = 0, totalWrites = 0, totalDeletes = 0, totalBytes = 0;
+        for (FirebaseUsageMeter.OperationStats entry : stats) {
+            List<FirebaseUsageMeter.OperationStats> screenStats = byScreen.get(entry.screen);
+            if (screenStats == null) {
+                screenStats = new ArrayList<>();
+                byScreen.put(entry.screen, screenStats);
+            }
+            screenStats.add(entry);
+            totalReads += entry.reads;
+            totalWrites += entry.writes;
+            totalDeletes += entry.deletes;
+            totalBytes += entry.bytes;
+        }
+
+        String since = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault()).format(new Date(meter.getStartedAt()));
+        usageTotals.setText("Since " + since + "\n" +
+                "Reads: " + totalReads + "   Writes: " + totalWrites + "   Deletes: " + totalDeletes + "\n" +
+                "Transferred: " + formatBytes(totalBytes));
+
+        if (byScreen.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No Firebase calls recorded yet.");
+            usageContainer.addView(emptyView);
+            return;
+        }
+
+        // Most expensive screens first
+        List<Map.Entry<String, List<FirebaseUsageMeter.OperationStats>>> screens = new ArrayList<>(byScreen.entrySet());
+        screens.sort((a, b) -> Long.compare(billableOperations(b.getValue()), billableOperations(a.getValue())));
+        for (Map.Entry<String, List<FirebaseUsageMeter.OperationStats>> screen : screens) {
+            addScreenToView(screen.getKey(), screen.getValue());
+        }
+    }
+
+    private void addScreenToView(String screen, List<FirebaseUsageMeter.OperationStats> operations) {
+        LinearLayout screenBox = new LinearLayout(this);
+        screenBox.setOrientation(LinearLayout.VERTICAL);
+        screenBox.setPadding(16, 16, 16, 16);
+        screenBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        TextView screenTitle = new TextView(this);
+        screenTitle.setText(screen + " (" + billableOperations(operations) + " billable operations)");
+        screenTitle.setTextSize(16);
+        screenTitle.setTypeface(null, android.graphics.Typeface.BOLD);
+        screenBox.addView(screenTitle);
+
+        for (FirebaseUsageMeter.OperationStats entry : operations) {
+            TextView operationDetails = new TextView(this);
+            operationDetails.setPadding(0, 8, 0, 0);
+            operationDetails.setText(entry.operation + "\n" +
+                    "Calls: " + entry.calls + (entry.failures > 0 ? " (" + entry.failures + " failed)" : "") + "\n" +
+                    "Reads: " + entry.reads + "   Writes: " + entry.writes + "   Deletes: " + entry.deletes + "\n" +
+                    (entry.listenerEvents > 0 ? "Listener Events: " + entry.listenerEvents + "\n" : "") +
+                    "Transferred: " + formatBytes(entry.bytes) + "\n" +
+                    String.format(Locale.getDefault(), "Latency: avg %.0f ms, p50 %d ms, p95 %d ms, max %d ms",
+                            entry.getAverageLatencyMs(), entry.getPercentileMs(0.50),
+                            entry.getPercentileMs(0.95), entry.maxLatencyMs));
+            screenBox.addView(operationDetails);
+        }
+
+        usageContainer.addView(screenBox);
+    }
+
+    private long billableOperations(List<FirebaseUsageMeter.OperationStats> operations) {
+        long total = 0;
+        for (FirebaseUsageMeter.OperationStats entry : operations) {
+            total += entry.reads + entry.writes + entry.deletes;
+        }
+        return total;
+    }
+
+    private String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.getDefault(), "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.getDefault(), "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Writes the current numbers to a CSV file off the UI thread and opens the share sheet.
+     */
+    private void exportCsv() {
+        String csv = FirebaseUsageMeter.getInstance().toCsv();
+        exportExecutor.execute(() -> {
+            try {
+                File csvFile = DiagnosticsExport.writeCsv(this, "firebase_usage_", csv);
+                runOnUiThread(() -> DiagnosticsExport.share(this, csvFile, "Share Firebase Usage"));
+            } catch (Exception e) {
+                runOnUiThread(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        exportExecutor.shutdown();
+    }
+}
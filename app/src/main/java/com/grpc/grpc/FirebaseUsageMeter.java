@@ -0,0 +1,200 @@
+package com.grpc.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * FirebaseUsageMeter.java
+ *
+ * This class collects the Firestore and Storage usage recorded by MeteredFirebase. Every call is
+ * counted against the screen that made it and the operation it performed, so the screens that
+ * drive the Firebase bill (and the slow ones) show up as numbers on the Firebase Usage screen.
+ *
+ * Features:
+ * - Counts calls, failures, document reads, writes, deletes, listener events and bytes transferred
+ * - Keeps a latency histogram per screen and operation
+ * - Exports everything as CSV
+ * - Counts since the app process started, or since the last reset
+ *
+ * Author: James Scott
+ */
+
+public final class FirebaseUsageMeter {
+
+    // Upper bounds (ms) of the latency histogram buckets; the last bucket holds everything slower
+    static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000};
+
+    private static final FirebaseUsageMeter INSTANCE = new FirebaseUsageMeter();
+
+    // Keyed by "screen|operation", sorted so the screen and the export are stable
+    private final Map<String, OperationStats> stats = new TreeMap<>();
+    private long startedAt = System.currentTimeMillis();
+
+    private FirebaseUsageMeter() {
+    }
+
+    public static FirebaseUsageMeter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records one completed call or listener event.
+     *
+     * @param latencyMs Time the call took, or a negative value if it should not be timed
+     *                  (follow-up listener events).
+     */
+    public synchronized void record(String screen, String operation, long latencyMs, boolean failed,
+                                    long reads, long writes, long deletes, long listenerEvents, long bytes) {
+        String key = screen + "|" + operation;
+        OperationStats entry = stats.get(key);
+        if (entry == null) {
+            entry = new OperationStats(screen, operation);
+            stats.put(key, entry);
+        }
+
+        entry.calls++;
+        if (failed) {
+            entry.failures++;
+        }
+        entry.reads += reads;
+        entry.writes += writes;
+        entry.deletes += deletes;
+        entry.listenerEvents += listenerEvents;
+        entry.bytes += bytes;
+
+        if (latencyMs >= 0) {
+            entry.timedCalls++;
+            entry.totalLatencyMs += latencyMs;
+            entry.maxLatencyMs = Math.max(entry.maxLatencyMs, latencyMs);
+            entry.latencyHistogram[bucketFor(latencyMs)]++;
+        }
+    }
+
+    /**
+     * Returns a copy of the current numbers, safe to read on any thread.
+     */
+    public synchronized List<OperationStats> getStats() {
+        List<OperationStats> copy = new ArrayList<>(stats.size());
+        for (OperationStats entry : stats.values()) {
+            copy.add(entry.copy());
+        }
+        return copy;
+    }
+
+    public synchronized long getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized void reset() {
+        stats.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Renders the current numbers as CSV, one row per screen and operation.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder();
+        csv.append("screen,operation,calls,failures,reads,writes,deletes,listener_events,bytes,avg_ms,p50_ms,p95_ms,max_ms");
+        for (long bound : LATENCY_BUCKETS_MS) {
+            csv.append(",le_").append(bound).append("ms");
+        }
+        csv.append(",gt_").append(LATENCY_BUCKETS_MS[LATENCY_BUCKETS_MS.length - 1]).append("ms\n");
+
+        for (OperationStats entry : getStats()) {
+            csv.append(DiagnosticsExport.csvField(entry.screen)).append(',')
+                    .append(DiagnosticsExport.csvField(entry.operation)).append(',')
+                    .append(entry.calls).append(',')
+                    .append(entry.failures).append(',')
+                    .append(entry.reads).append(',')
+                    .append(entry.writes).append(',')
+                    .append(entry.deletes).append(',')
+                    .append(entry.listenerEvents).append(',')
+                    .append(entry.bytes).append(',')
+                    .append(String.format(Locale.US, "%.1f", entry.getAverageLatencyMs())).append(',')
+                    .append(entry.getPercentileMs(0.50)).append(',')
+                    .append(entry.getPercentileMs(0.95)).append(',')
+                    .append(entry.maxLatencyMs);
+            for (long count : entry.latencyHistogram) {
+                csv.append(',').append(count);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static int bucketFor(long latencyMs) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (latencyMs <= LATENCY_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    /**
+     * Usage of one operation on one screen.
+     */
+    public static class OperationStats {
+        public final String screen;
+        public final String operation;
+        public long calls;
+        public long failures;
+        public long reads;
+        public long writes;
+        public long deletes;
+        public long listenerEvents;
+        public long bytes;
+        public long timedCalls;
+        public long totalLatencyMs;
+        public long maxLatencyMs;
+        public final long[] latencyHistogram = new long[LATENCY_BUCKETS_MS.length + 1];
+
+        OperationStats(String screen, String operation) {
+            this.screen = screen;
+            this.operation = operation;
+        }
+
+        public double getAverageLatencyMs() {
+            return timedCalls == 0 ? 0 : (double) totalLatencyMs / timedCalls;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile (the slowest
+         * bucket reports the maximum seen), or 0 if nothing was timed.
+         */
+        public long getPercentileMs(double percentile) {
+            if (timedCalls == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(timedCalls * percentile);
+            long seen = 0;
+            for (int i = 0; i < latencyHistogram.length; i++) {
+                seen += latencyHistogram[i];
+                if (seen >= target) {
+                    return i < LATENCY_BUCKETS_MS.length ? Math.min(LATENCY_BUCKETS_MS[i], maxLatencyMs) : maxLatencyMs;
+                }
+            }
+            return maxLatencyMs;
+        }
+
+        OperationStats copy() {
+            OperationStats copy = new OperationStats(screen, operation);
+            copy.calls = calls;
+            copy.failures = failures;
+            copy.reads = reads;
+            copy.writes = writes;
+            copy.deletes = deletes;
+            copy.listenerEvents = listenerEvents;
+            copy.bytes = bytes;
+            copy.timedCalls = timedCalls;
+            copy.totalLatencyMs = totalLatencyMs;
+            copy.maxLatencyMs = maxLatencyMs;
+            System.arraycopy(latencyHistogram, 0, copy.latencyHistogram, 0, latencyHistogram.length);
+            return copy;
+        }
+    }
+}
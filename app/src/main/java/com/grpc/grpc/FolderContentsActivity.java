@@ -1,15 +1,18 @@
 package com.grpc.grpc;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,9 +24,9 @@ import java.util.List;
  * in a RecyclerView. Users can view and share files directly from this activity.
  *
  * Features:
- * - Retrieves folder contents from Firebase Storage
+ * - Retrieves folder contents from Firebase Storage one cached page at a time
  * - Displays files in a RecyclerView
- * - Allows users to share files via intent
+ * - Allows users to share files via intent, reusing the on-device copy while the server copy is unchanged
  *
  * Author: James Scott
  */
@@ -35,6 +38,11 @@ public class FolderContentsActivity extends AppCompatActivity {
     private FileAdapter adapter;
     private List<StorageReference> fileList = new ArrayList<>();
     private String folderName, userName;
+    private MeteredFirebase firebase;
+    private StorageListingCache listingCache;
+    private int nextPageIndex = 0;
+    private boolean loadingPage = false;
+    private boolean hasMorePages = true;
     /**
      * Initializes the activity, retrieves the folder name from intent,
      * and sets up UI elements for displaying files.
@@ -46,6 +54,8 @@ public class FolderContentsActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_folder_contents);
+        firebase = MeteredFirebase.forScreen(this);
+        listingCache = StorageListingCache.getInstance(this);
 
         folderName = getIntent().getStringExtra("FOLDER_NAME");
         userName = getIntent().getStringExtra("USER_NAME");
@@ -56,31 +66,80 @@ public class FolderContentsActivity extends AppCompatActivity {
         loadFilesFromFirebase();
     }
     /**
-     * Loads files from the selected folder in Firebase Storage and updates the RecyclerView.
+     * Loads the first page of the selected folder and loads further pages as the list is scrolled.
      */
     private void loadFilesFromFirebase() {
+        adapter = new FileAdapter(fileList, this::shareFile);
+        recyclerView.setAdapter(adapter);
 
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference folderRef = storage.getReference().child(folderName);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView view, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+                if (layoutManager != null && layoutManager.findLastVisibleItemPosition() >= fileList.size() - 10) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        loadNextPage();
+    }
+
+    /**
+     * Appends the next page of files from the listing cache, prefetching the page after it.
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMorePages) {
+            return;
+        }
+        loadingPage = true;
+        int pageIndex = nextPageIndex;
+
+        listingCache.loadPage(folderName, pageIndex, firebase, new StorageListingCache.PageCallback() {
+            @Override
+            public void onPage(StorageListingCache.FolderPage page) {
+                loadingPage = false;
+                nextPageIndex = pageIndex + 1;
+                hasMorePages = page.hasMore();
+
+                int start = fileList.size();
+                for (String name : page.files) {
+                    fileList.add(firebase.storageReference(folderName + "/" + name));
+                }
+                adapter.notifyItemRangeInserted(start, page.files.size());
 
-        folderRef.listAll().addOnSuccessListener(listResult -> {
-            fileList.clear();
-            fileList.addAll(listResult.getItems());
-            adapter = new FileAdapter(fileList, this::shareFile);
-            recyclerView.setAdapter(adapter);
+                if (hasMorePages) {
+                    listingCache.prefetchPage(folderName, pageIndex + 1, firebase);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                loadingPage = false;
+            }
         });
     }
     /**
-     * Retrieves the download URL of the selected file and shares it via an intent.
+     * Gets a local copy of the selected file (from the download cache when possible) and shares it via an intent.
      *
      * @param fileRef The reference to the file in Firebase Storage.
      */
     private void shareFile(StorageReference fileRef) {
-        fileRef.getDownloadUrl().addOnSuccessListener(uri -> {
-            Intent shareIntent = new Intent(Intent.ACTION_SEND);
-            shareIntent.setType("application/pdf");
-            shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
-            startActivity(Intent.createChooser(shareIntent, "Share PDF"));
+        ReportDownloadCache.getInstance(this).open(fileRef.getPath().substring(1), firebase, new ReportDownloadCache.FileCallback() {
+            @Override
+            public void onFile(File file, boolean fromCache) {
+                Uri fileUri = FileProvider.getUriForFile(FolderContentsActivity.this, "com.grpc.grpc.fileprovider", file);
+                Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                shareIntent.setType("application/pdf");
+                shareIntent.putExtra(Intent.EXTRA_STREAM, fileUri);
+                shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                startActivity(Intent.createChooser(shareIntent, "Share PDF"));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(FolderContentsActivity.this, "Failed to get file: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
         });
     }
 }
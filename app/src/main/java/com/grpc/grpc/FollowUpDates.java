@@ -0,0 +1,80 @@
+package com.grpc.grpc;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FollowUpDates.java
+ *
+ * This class parses the free-text job follow-up dates ("dd/MM/yyyy HH:mm", "dd/MM/yy HH:mm",
+ * "dd/MM/yyyy" or "dd/MM/yy") once and remembers the result, so the job board and the reminder
+ * scheduler no longer try every SimpleDateFormat pattern each time a job is looked at.
+ *
+ * Features:
+ * - Accepts every follow-up format the job screens allow
+ * - Memoizes parsed values in a small bounded cache
+ * - Returns null for "N/A", blank or unparseable values
+ *
+ * Author: James Scott
+ */
+
+public final class FollowUpDates {
+
+    private static final int MAX_CACHED = 512;
+    private static final Long UNPARSEABLE = Long.MIN_VALUE;
+
+    private static final SimpleDateFormat[] FORMATS = {
+            strictFormat("dd/MM/yyyy HH:mm"),
+            strictFormat("dd/MM/yy HH:mm"),
+            strictFormat("dd/MM/yyyy"),
+            strictFormat("dd/MM/yy")
+    };
+
+    // Access-ordered so the least recently used entries are evicted first
+    private static final Map<String, Long> CACHE = new LinkedHashMap<String, Long>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private FollowUpDates() {
+    }
+
+    /**
+     * Returns the follow-up time in epoch milliseconds, or null if there is no usable date.
+     */
+    public static synchronized Long parseMillis(String followUpDate) {
+        if (followUpDate == null) {
+            return null;
+        }
+        String trimmed = followUpDate.trim();
+        if (trimmed.isEmpty() || "N/A".equalsIgnoreCase(trimmed)) {
+            return null;
+        }
+
+        Long cached = CACHE.get(trimmed);
+        if (cached == null) {
+            cached = UNPARSEABLE;
+            for (SimpleDateFormat format : FORMATS) {
+                try {
+                    cached = format.parse(trimmed).getTime();
+                    break;
+                } catch (ParseException ignored) {
+                    // Try the next accepted format
+                }
+            }
+            CACHE.put(trimmed, cached);
+        }
+        return UNPARSEABLE.equals(cached) ? null : cached;
+    }
+
+    private static SimpleDateFormat strictFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.getDefault());
+        format.setLenient(false);
+        return format;
+    }
+}
@@ -0,0 +1,87 @@
+package com.grpc.grpc;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * FollowUpReminderReceiver.java
+ *
+ * This receiver is woken by the alarms set in FollowUpReminderScheduler. It claims the reminder
+ * from the persisted schedule (so each job and due time is only sent once) and posts a
+ * notification which opens WhatsApp with the pre-filled follow-up message when tapped.
+ * It also restores pending alarms after the device reboots.
+ *
+ * Features:
+ * - Fires reminders while the app is closed
+ * - Deduplicates by job id and due time
+ * - Re-arms pending reminders on boot
+ *
+ * Author: James Scott
+ */
+
+public class FollowUpReminderReceiver extends BroadcastReceiver {
+
+    static final String ACTION_FIRE_REMINDER = "com.grpc.grpc.action.FIRE_FOLLOW_UP_REMINDER";
+    static final String EXTRA_JOB_ID = "JOB_ID";
+    static final String EXTRA_DUE_AT = "DUE_AT";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        FollowUpReminderScheduler scheduler = FollowUpReminderScheduler.getInstance(context);
+
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            scheduler.rescheduleAllPending();
+            return;
+        }
+
+        if (!ACTION_FIRE_REMINDER.equals(intent.getAction())) {
+            return;
+        }
+
+        String jobId = intent.getStringExtra(EXTRA_JOB_ID);
+        long dueAt = intent.getLongExtra(EXTRA_DUE_AT, 0);
+        if (jobId == null) {
+            return;
+        }
+
+        PendingResult pendingResult = goAsync();
+        executor.execute(() -> {
+            try {
+                FollowUpReminderScheduler.Reminder reminder = scheduler.claimReminder(jobId, dueAt);
+                if (reminder != null) {
+                    showReminder(context, reminder);
+                }
+            } catch (Exception e) {
+                Log.e("FollowUpReminders", "Failed to send reminder for " + jobId, e);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    private void showReminder(Context context, FollowUpReminderScheduler.Reminder reminder) {
+        String formatted = ViewJobActivity.formatIrishMobile(reminder.phone);
+        String url = "https://wa.me/" + formatted + "?text=" + Uri.encode(reminder.message);
+        Intent whatsAppIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
+        whatsAppIntent.setPackage("com.whatsapp");
+        whatsAppIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        PendingIntent contentIntent = PendingIntent.getActivity(context, reminder.jobId.hashCode(), whatsAppIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationUtils.showNotification(context,
+                reminder.jobId.hashCode(),
+                "Follow-Up Reminder for " + reminder.technician,
+                reminder.message,
+                contentIntent);
+    }
+}
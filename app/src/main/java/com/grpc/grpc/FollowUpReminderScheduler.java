@@ -0,0 +1,305 @@
+package com.grpc.grpc;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FollowUpReminderScheduler.java
+ *
+ * This class turns job follow-up dates into a persisted reminder schedule. Each time a job in
+ * "JobWork" changes, its follow-up date is parsed once on a background thread and an exact alarm
+ * is set for 24 hours before the visit. The alarm is delivered to FollowUpReminderReceiver, which
+ * posts the reminder even when the app is closed.
+ *
+ * Features:
+ * - Stores one reminder per job in SQLite, keyed by job id and due time
+ * - Skips jobs whose follow-up has not changed, so snapshot replays never reschedule or re-send
+ * - Cancels reminders for deleted jobs or cleared follow-up dates
+ * - Uses exact alarms where permitted and falls back to inexact idle-safe alarms otherwise
+ * - Restores every pending alarm after a reboot
+ * - Mirrors each job's follow-up date into the calendar events of the report database
+ *
+ * Author: James Scott
+ */
+
+public class FollowUpReminderScheduler extends SQLiteOpenHelper {
+
+    private static final String TAG = "FollowUpReminders";
+
+    // How far ahead of the follow-up the technician is reminded
+    static final long REMINDER_LEAD_TIME_MS = TimeUnit.HOURS.toMillis(24);
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_reminders.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Reminders Table
+    private static final String TABLE_REMINDERS = "follow_up_reminders";
+    private static final String COLUMN_JOB_ID = "job_id";
+    private static final String COLUMN_DUE_AT = "due_at";
+    private static final String COLUMN_FIRE_AT = "fire_at";
+    private static final String COLUMN_FIRED = "fired";
+    private static final String COLUMN_TECHNICIAN = "technician";
+    private static final String COLUMN_PHONE = "phone";
+    private static final String COLUMN_MESSAGE = "message";
+
+    // Technicians who receive follow-up reminders, and the number they are sent to
+    private static final Map<String, String> REMINDER_RECIPIENTS = Map.of("user", "mobile");
+
+    private static FollowUpReminderScheduler instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the shared reminder scheduler.
+     */
+    public static synchronized FollowUpReminderScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new FollowUpReminderScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FollowUpReminderScheduler(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_REMINDERS + " (" +
+                COLUMN_JOB_ID + " TEXT PRIMARY KEY, " +
+                COLUMN_DUE_AT + " INTEGER NOT NULL, " +
+                COLUMN_FIRE_AT + " INTEGER NOT NULL, " +
+                COLUMN_FIRED + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_TECHNICIAN + " TEXT, " +
+                COLUMN_PHONE + " TEXT, " +
+                COLUMN_MESSAGE + " TEXT)");
+        db.execSQL("CREATE INDEX idx_reminders_pending ON " + TABLE_REMINDERS +
+                " (" + COLUMN_FIRED + ", " + COLUMN_FIRE_AT + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_REMINDERS);
+        onCreate(db);
+    }
+
+    /**
+     * Updates the schedule from the document changes of a "JobWork" snapshot.
+     * All parsing and alarm work happens on the scheduler's background thread.
+     */
+    public void onJobChanges(List<DocumentChange> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        List<String> removedIds = new ArrayList<>();
+        List<DocumentSnapshot> changedJobs = new ArrayList<>();
+        for (DocumentChange change : changes) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removedIds.add(change.getDocument().getId());
+            } else {
+                changedJobs.add(change.getDocument());
+            }
+        }
+
+        ReportDatabaseHelper calendar = ReportDatabaseHelper.getInstance(context);
+        executor.execute(() -> {
+            for (String jobId : removedIds) {
+                cancelReminder(jobId);
+                calendar.putSourceEventAsync(ReportDatabaseHelper.EVENT_SOURCE_FOLLOW_UP, jobId, 0, null);
+            }
+            for (DocumentSnapshot job : changedJobs) {
+                scheduleJob(job.getId(), job.getData());
+                writeCalendarEvent(calendar, job.getId(), job.getData());
+            }
+        });
+    }
+
+    /**
+     * Computes and stores the reminder for one job, rescheduling only if its due time changed.
+     */
+    private void scheduleJob(String jobId, Map<String, Object> job) {
+        if (job == null) {
+            cancelReminder(jobId);
+            return;
+        }
+
+        String technician = valueOrDefault(job, "AssignedTech");
+        String phone = REMINDER_RECIPIENTS.get(technician.toLowerCase());
+        Long dueAt = FollowUpDates.parseMillis(valueOrDefault(job, "FollowUpDate"));
+        long now = System.currentTimeMillis();
+
+        if (phone == null || dueAt == null || dueAt <= now) {
+            cancelReminder(jobId);
+            return;
+        }
+
+        // Dedupe: the same job and due time is only ever scheduled (and sent) once
+        Long existingDueAt = findDueAt(jobId);
+        if (existingDueAt != null && existingDueAt.longValue() == dueAt) {
+            return;
+        }
+
+        long fireAt = Math.max(now, dueAt - REMINDER_LEAD_TIME_MS);
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_JOB_ID, jobId);
+        values.put(COLUMN_DUE_AT, dueAt);
+        values.put(COLUMN_FIRE_AT, fireAt);
+        values.put(COLUMN_FIRED, 0);
+        values.put(COLUMN_TECHNICIAN, technician);
+        values.put(COLUMN_PHONE, phone);
+        values.put(COLUMN_MESSAGE, buildReminderMessage(job));
+        getWritableDatabase().insertWithOnConflict(TABLE_REMINDERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        setAlarm(jobId, dueAt, fireAt);
+    }
+
+    /**
+     * Puts the job's follow-up on the calendar, past ones included, or removes it when the date is gone.
+     */
+    private static void writeCalendarEvent(ReportDatabaseHelper calendar, String jobId, Map<String, Object> job) {
+        Long dueAt = job != null ? FollowUpDates.parseMillis(valueOrDefault(job, "FollowUpDate")) : null;
+        calendar.putSourceEventAsync(ReportDatabaseHelper.EVENT_SOURCE_FOLLOW_UP, jobId,
+                dueAt != null ? dueAt : 0,
+                job != null ? "Follow-up: " + valueOrDefault(job, "CustomerName") : null);
+    }
+
+    private Long findDueAt(String jobId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_REMINDERS, new String[]{COLUMN_DUE_AT},
+                COLUMN_JOB_ID + "=?", new String[]{jobId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        }
+    }
+
+    private void cancelReminder(String jobId) {
+        int deleted = getWritableDatabase().delete(TABLE_REMINDERS, COLUMN_JOB_ID + "=?", new String[]{jobId});
+        if (deleted > 0) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(buildAlarmIntent(jobId, 0));
+        }
+    }
+
+    private void setAlarm(String jobId, long dueAt, long fireAt) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = buildAlarmIntent(jobId, dueAt);
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, fireAt, pendingIntent);
+        } else {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, fireAt, pendingIntent);
+        }
+    }
+
+    private PendingIntent buildAlarmIntent(String jobId, long dueAt) {
+        Intent intent = new Intent(context, FollowUpReminderReceiver.class);
+        intent.setAction(FollowUpReminderReceiver.ACTION_FIRE_REMINDER);
+        intent.putExtra(FollowUpReminderReceiver.EXTRA_JOB_ID, jobId);
+        intent.putExtra(FollowUpReminderReceiver.EXTRA_DUE_AT, dueAt);
+        return PendingIntent.getBroadcast(context, jobId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * Atomically claims a due reminder for sending. Returns null if it was already sent,
+     * was rescheduled to a different due time, or no longer exists.
+     */
+    Reminder claimReminder(String jobId, long dueAt) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Reminder reminder = null;
+            try (Cursor cursor = db.query(TABLE_REMINDERS,
+                    new String[]{COLUMN_TECHNICIAN, COLUMN_PHONE, COLUMN_MESSAGE},
+                    COLUMN_JOB_ID + "=? AND " + COLUMN_DUE_AT + "=? AND " + COLUMN_FIRED + "=0",
+                    new String[]{jobId, String.valueOf(dueAt)}, null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    reminder = new Reminder(jobId, dueAt, cursor.getString(0), cursor.getString(1), cursor.getString(2));
+                }
+            }
+            if (reminder != null) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_FIRED, 1);
+                db.update(TABLE_REMINDERS, values, COLUMN_JOB_ID + "=?", new String[]{jobId});
+            }
+            db.setTransactionSuccessful();
+            return reminder;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Re-arms every reminder that has not been sent yet (alarms do not survive a reboot).
+     */
+    void rescheduleAllPending() {
+        executor.execute(() -> {
+            long now = System.currentTimeMillis();
+            try (Cursor cursor = getReadableDatabase().query(TABLE_REMINDERS,
+                    new String[]{COLUMN_JOB_ID, COLUMN_DUE_AT, COLUMN_FIRE_AT},
+                    COLUMN_FIRED + "=0 AND " + COLUMN_DUE_AT + ">?", new String[]{String.valueOf(now)},
+                    null, null, null)) {
+                while (cursor.moveToNext()) {
+                    setAlarm(cursor.getString(0), cursor.getLong(1), Math.max(now, cursor.getLong(2)));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to restore reminders", e);
+            }
+        });
+    }
+
+    private String buildReminderMessage(Map<String, Object> job) {
+        return "📢 Follow-Up Reminder\n\n" +
+                "🧑 Customer: " + valueOrDefault(job, "CustomerName") + "\n" +
+                "📞 Contact: " + valueOrDefault(job, "CustomerContact") + "\n" +
+                "📧 Email: " + valueOrDefault(job, "CustomerEmail") + "\n" +
+                "🏠 Address: " + valueOrDefault(job, "Address") + "\n" +
+                "📝 Issue: " + valueOrDefault(job, "IssueDetails") + "\n" +
+                "📅 Follow-Up: " + valueOrDefault(job, "FollowUpDate") + "\n\n" +
+                "⚠️ This visit is due in 24 hours.";
+    }
+
+    private static String valueOrDefault(Map<String, Object> job, String key) {
+        Object value = job.get(key);
+        return value != null ? value.toString() : "N/A";
+    }
+
+    /**
+     * A reminder claimed for sending.
+     */
+    static class Reminder {
+        final String jobId;
+        final long dueAt;
+        final String technician;
+        final String phone;
+        final String message;
+
+        Reminder(String jobId, long dueAt, String technician, String phone, String message) {
+            this.jobId = jobId;
+            this.dueAt = dueAt;
+            this.technician = technician;
+            this.phone = phone;
+            this.message = message;
+        }
+    }
+}
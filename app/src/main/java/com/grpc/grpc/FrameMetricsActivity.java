@@ -0,0 +1,235 @@
+package com.grpc.grpc;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FrameMetricsActivity.java
+ *
+ * This screen shows the frame timings recorded by FrameMetricsTracker, one box per screen with the
+ * worst screens first. Each screen is compared with the previous app version it was used in, so a
+ * release that made a screen stutter stands out, and each state the screen was in ("loading jobs",
+ * "filtering" ...) is listed with its own numbers.
+ *
+ * Features:
+ * - Janky ratio per screen for this version against the previous one
+ * - Frames, janky and frozen frames, p50, p90 and maximum frame time per state
+ * - Exports every version's numbers as CSV and shares the file
+ * - Exports the PipelineTrace log of recent report pipeline stages as CSV
+ * - Resets the numbers to measure a single workflow
+ * - Turns the live overlay on or off (debug builds only)
+ *
+ * Author: James Scott
+ */
+
+public class FrameMetricsActivity extends AppCompatActivity {
+
+    private LinearLayout frameContainer;
+    private TextView frameTotals;
+    private Button overlayToggleButton;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_frame_metrics);
+
+        frameContainer = findViewById(R.id.frameContainer);
+        frameTotals = findViewById(R.id.frameTotals);
+        overlayToggleButton = findViewById(R.id.overlayToggleButton);
+
+        Button exportCsvButton = findViewById(R.id.exportCsvButton);
+        Button resetFramesButton = findViewById(R.id.resetFramesButton);
+        Button exportTraceLogButton = findViewById(R.id.exportTraceLogButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        exportCsvButton.setOnClickListener(view -> FrameMetricsTracker.runAfterFlush(
+                () -> exportCsv("frame_metrics_", FrameMetricsStore.getInstance(this).toCsv())));
+        exportTraceLogButton.setOnClickListener(view -> FrameMetricsTracker.runAfterFlush(
+                () -> exportCsv("pipeline_trace_", PipelineTrace.toCsv())));
+        resetFramesButton.setOnClickListener(view -> FrameMetricsTracker.reset(this, () -> runOnUiThread(this::loadFrames)));
+        backButton.setOnClickListener(view -> finish());
+
+        // The overlay is only offered in debuggable builds
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            overlayToggleButton.setVisibility(View.VISIBLE);
+            overlayToggleButton.setOnClickListener(view -> {
+                FrameMetricsTracker.setOverlayEnabled(this, !FrameMetricsTracker.isOverlayEnabled(this));
+                updateOverlayButton();
+            });
+            updateOverlayButton();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadFrames();
+    }
+
+    private void updateOverlayButton() {
+        overlayToggleButton.setText(FrameMetricsTracker.isOverlayEnabled(this) ? "Hide Overlay" : "Show Overlay");
+    }
+
+    private void loadFrames() {
+        FrameMetricsTracker.runAfterFlush(() -> {
+            List<FrameMetricsStore.FrameStats> rows = FrameMetricsStore.getInstance(this).getAll();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    displayFrames(rows);
+                }
+            });
+        });
+    }
+
+    private void displayFrames(List<FrameMetricsStore.FrameStats> rows) {
+        String currentVersion = FrameMetricsTracker.getAppVersion();
+        frameContainer.removeAllViews();
+
+        // Group by screen, and total this version's frames
+        Map<String, List<FrameMetricsStore.FrameStats>> byScreen = new LinkedHashMap<>();
+        FrameMetricsStore.FrameStats versionTotals = new FrameMetricsStore.FrameStats(currentVersion, "", "");
+        for (FrameMetricsStore.FrameStats row : rows) {
+            List<FrameMetricsStore.FrameStats> screenRows = byScreen.get(row.screen);
+            if (screenRows == null) {
+                screenRows = new ArrayList<>();
+                byScreen.put(row.screen, screenRows);
+            }
+            screenRows.add(row);
+            if (row.appVersion.equals(currentVersion)) {
+                versionTotals.add(row);
+            }
+        }
+
+        frameTotals.setText(String.format(Locale.getDefault(), "Version %s\nFrames: %d   Janky: %.1f%%   Frozen: %d",
+                currentVersion, versionTotals.frames, versionTotals.getJankyPercent(), versionTotals.frozenFrames));
+
+        if (byScreen.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No frames recorded yet.");
+            frameContainer.addView(emptyView);
+            return;
+        }
+
+        // Worst screens in this version first
+        List<Map.Entry<String, List<FrameMetricsStore.FrameStats>>> screens = new ArrayList<>(byScreen.entrySet());
+        screens.sort((a, b) -> Double.compare(
+                totalFor(b.getValue(), currentVersion).getJankyPercent(),
+                totalFor(a.getValue(), currentVersion).getJankyPercent()));
+        for (Map.Entry<String, List<FrameMetricsStore.FrameStats>> screen : screens) {
+            addScreenToView(screen.getKey(), screen.getValue(), currentVersion);
+        }
+    }
+
+    private void addScreenToView(String screen, List<FrameMetricsStore.FrameStats> screenRows, String currentVersion) {
+        LinearLayout screenBox = new LinearLayout(this);
+        screenBox.setOrientation(LinearLayout.VERTICAL);
+        screenBox.setPadding(16, 16, 16, 16);
+        screenBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        // Show this version if the screen was used in it, otherwise the last version that used it
+        String shownVersion = screenRows.get(0).appVersion;
+        for (FrameMetricsStore.FrameStats row : screenRows) {
+            if (row.appVersion.equals(currentVersion)) {
+                shownVersion = row.appVersion;
+                break;
+            }
+        }
+        String previousVersion = previousVersion(screenRows, shownVersion);
+        FrameMetricsStore.FrameStats shown = totalFor(screenRows, shownVersion);
+
+        StringBuilder title = new StringBuilder(String.format(Locale.getDefault(), "%s: %.1f%% janky", screen, shown.getJankyPercent()));
+        if (!shownVersion.equals(currentVersion)) {
+            title.append(" in ").append(shownVersion);
+        }
+        if (previousVersion != null) {
+            FrameMetricsStore.FrameStats previous = totalFor(screenRows, previousVersion);
+            title.append(String.format(Locale.getDefault(), " (%s: %.1f%%, %+.1f)", previousVersion,
+                    previous.getJankyPercent(), shown.getJankyPercent() - previous.getJankyPercent()));
+        }
+
+        TextView screenTitle = new TextView(this);
+        screenTitle.setText(title.toString());
+        screenTitle.setTextSize(16);
+        screenTitle.setTypeface(null, android.graphics.Typeface.BOLD);
+        screenBox.addView(screenTitle);
+
+        for (FrameMetricsStore.FrameStats row : screenRows) {
+            if (!row.appVersion.equals(shownVersion)) {
+                continue;
+            }
+            FrameMetricsStore.FrameStats before = previousVersion != null ? find(screenRows, previousVersion, row.state) : null;
+
+            TextView stateDetails = new TextView(this);
+            stateDetails.setPadding(0, 8, 0, 0);
+            stateDetails.setText(String.format(Locale.getDefault(),
+                    "%s\nFrames: %d   Janky: %.1f%%%s   Frozen: %d\nFrame time: p50 %d ms, p90 %d ms, max %.0f ms",
+                    row.state, row.frames, row.getJankyPercent(),
+                    before != null ? String.format(Locale.getDefault(), " (was %.1f%%)", before.getJankyPercent()) : "",
+                    row.frozenFrames, row.getPercentileMs(0.50), row.getPercentileMs(0.90), row.maxMs));
+            screenBox.addView(stateDetails);
+        }
+
+        frameContainer.addView(screenBox);
+    }
+
+    /**
+     * Adds up a screen's states for one app version.
+     */
+    private FrameMetricsStore.FrameStats totalFor(List<FrameMetricsStore.FrameStats> screenRows, String appVersion) {
+        FrameMetricsStore.FrameStats total = new FrameMetricsStore.FrameStats(appVersion, "", "");
+        for (FrameMetricsStore.FrameStats row : screenRows) {
+            if (row.appVersion.equals(appVersion)) {
+                total.add(row);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the other app version the screen was used in most recently, or null if none.
+     */
+    private String previousVersion(List<FrameMetricsStore.FrameStats> screenRows, String appVersion) {
+        FrameMetricsStore.FrameStats latest = null;
+        for (FrameMetricsStore.FrameStats row : screenRows) {
+            if (!row.appVersion.equals(appVersion) && (latest == null || row.lastSeen > latest.lastSeen)) {
+                latest = row;
+            }
+        }
+        return latest != null ? latest.appVersion : null;
+    }
+
+    private FrameMetricsStore.FrameStats find(List<FrameMetricsStore.FrameStats> screenRows, String appVersion, String state) {
+        for (FrameMetricsStore.FrameStats row : screenRows) {
+            if (row.appVersion.equals(appVersion) && row.state.equals(state)) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the CSV to the diagnostics folder and opens the share sheet. Runs on the metrics thread.
+     */
+    private void exportCsv(String filePrefix, String csv) {
+        try {
+            File csvFile = DiagnosticsExport.writeCsv(this, filePrefix, csv);
+            runOnUiThread(() -> DiagnosticsExport.share(this, csvFile, "Share Diagnostics"));
+        } catch (Exception e) {
+            runOnUiThread(() -> Toast.makeText(this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+        }
+    }
+}
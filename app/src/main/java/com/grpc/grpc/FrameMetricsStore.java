@@ -0,0 +1,315 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * FrameMetricsStore.java
+ *
+ * This database keeps the frame timings FrameMetricsTracker collects, summed per app version, screen
+ * and screen state ("loading jobs", "filtering" ...). Keeping a row per app version means a release
+ * that makes a screen stutter shows up as a jump against the version before it, long after the
+ * session that recorded it has ended.
+ *
+ * Features:
+ * - Frames, janky frames, frozen frames and total frame time per version, screen and state
+ * - A frame duration histogram for the p50 / p90 / p99 estimates
+ * - Merges batches of new frames into the stored totals in one transaction
+ * - Exports everything as CSV
+ *
+ * Author: James Scott
+ */
+
+public class FrameMetricsStore extends SQLiteOpenHelper {
+
+    // Upper bounds (ms) of the frame duration histogram buckets; the last bucket holds everything slower
+    static final long[] FRAME_BUCKETS_MS = {8, 12, 16, 20, 25, 33, 50, 75, 100, 150, 250, 500, 700};
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_frame_metrics.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Frame Stats Table
+    private static final String TABLE_FRAME_STATS = "frame_stats";
+    private static final String COLUMN_APP_VERSION = "app_version";
+    private static final String COLUMN_SCREEN = "screen";
+    private static final String COLUMN_STATE = "state";
+    private static final String COLUMN_FRAMES = "frames";
+    private static final String COLUMN_JANKY_FRAMES = "janky_frames";
+    private static final String COLUMN_FROZEN_FRAMES = "frozen_frames";
+    private static final String COLUMN_TOTAL_MS = "total_ms";
+    private static final String COLUMN_MAX_MS = "max_ms";
+    private static final String COLUMN_HISTOGRAM = "histogram";
+    private static final String COLUMN_FIRST_SEEN = "first_seen";
+    private static final String COLUMN_LAST_SEEN = "last_seen";
+
+    private static FrameMetricsStore instance;
+
+    /**
+     * Returns the shared frame metrics store.
+     */
+    public static synchronized FrameMetricsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new FrameMetricsStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FrameMetricsStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_FRAME_STATS + " (" +
+                COLUMN_APP_VERSION + " TEXT NOT NULL, " +
+                COLUMN_SCREEN + " TEXT NOT NULL, " +
+                COLUMN_STATE + " TEXT NOT NULL, " +
+                COLUMN_FRAMES + " INTEGER NOT NULL, " +
+                COLUMN_JANKY_FRAMES + " INTEGER NOT NULL, " +
+                COLUMN_FROZEN_FRAMES + " INTEGER NOT NULL, " +
+                COLUMN_TOTAL_MS + " REAL NOT NULL, " +
+                COLUMN_MAX_MS + " REAL NOT NULL, " +
+                COLUMN_HISTOGRAM + " TEXT NOT NULL, " +
+                COLUMN_FIRST_SEEN + " INTEGER NOT NULL, " +
+                COLUMN_LAST_SEEN + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_APP_VERSION + ", " + COLUMN_SCREEN + ", " + COLUMN_STATE + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FRAME_STATS);
+        onCreate(db);
+    }
+
+    /**
+     * Adds a batch of collected frames to the stored totals. Call off the UI thread.
+     */
+    public void merge(List<FrameStats> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (FrameStats delta : batch) {
+                FrameStats stored = find(db, delta.appVersion, delta.screen, delta.state);
+                long firstSeen = now;
+                if (stored != null) {
+                    firstSeen = stored.firstSeen;
+                    delta.add(stored);
+                }
+
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_APP_VERSION, delta.appVersion);
+                values.put(COLUMN_SCREEN, delta.screen);
+                values.put(COLUMN_STATE, delta.state);
+                values.put(COLUMN_FRAMES, delta.frames);
+                values.put(COLUMN_JANKY_FRAMES, delta.jankyFrames);
+                values.put(COLUMN_FROZEN_FRAMES, delta.frozenFrames);
+                values.put(COLUMN_TOTAL_MS, delta.totalMs);
+                values.put(COLUMN_MAX_MS, delta.maxMs);
+                values.put(COLUMN_HISTOGRAM, joinHistogram(delta.histogram));
+                values.put(COLUMN_FIRST_SEEN, firstSeen);
+                values.put(COLUMN_LAST_SEEN, now);
+                db.insertWithOnConflict(TABLE_FRAME_STATS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns every stored row by screen and state, the most recently seen app version first.
+     */
+    public List<FrameStats> getAll() {
+        List<FrameStats> rows = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_FRAME_STATS, null, null, null, null, null,
+                COLUMN_SCREEN + ", " + COLUMN_STATE + ", " + COLUMN_LAST_SEEN + " DESC")) {
+            while (cursor.moveToNext()) {
+                rows.add(fromCursor(cursor));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Forgets every stored frame, e.g. before measuring a single workflow.
+     */
+    public void clear() {
+        getWritableDatabase().delete(TABLE_FRAME_STATS, null, null);
+    }
+
+    /**
+     * Renders the stored numbers as CSV, one row per app version, screen and state.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder();
+        csv.append("app_version,screen,state,frames,janky_frames,janky_pct,frozen_frames,avg_ms,p50_ms,p90_ms,p99_ms,max_ms,first_seen,last_seen");
+        for (long bound : FRAME_BUCKETS_MS) {
+            csv.append(",le_").append(bound).append("ms");
+        }
+        csv.append(",gt_").append(FRAME_BUCKETS_MS[FRAME_BUCKETS_MS.length - 1]).append("ms\n");
+
+        for (FrameStats row : getAll()) {
+            csv.append(DiagnosticsExport.csvField(row.appVersion)).append(',')
+                    .append(DiagnosticsExport.csvField(row.screen)).append(',')
+                    .append(DiagnosticsExport.csvField(row.state)).append(',')
+                    .append(row.frames).append(',')
+                    .append(row.jankyFrames).append(',')
+                    .append(String.format(Locale.US, "%.2f", row.getJankyPercent())).append(',')
+                    .append(row.frozenFrames).append(',')
+                    .append(String.format(Locale.US, "%.1f", row.getAverageMs())).append(',')
+                    .append(row.getPercentileMs(0.50)).append(',')
+                    .append(row.getPercentileMs(0.90)).append(',')
+                    .append(row.getPercentileMs(0.99)).append(',')
+                    .append(String.format(Locale.US, "%.1f", row.maxMs)).append(',')
+                    .append(row.firstSeen).append(',')
+                    .append(row.lastSeen);
+            for (long count : row.histogram) {
+                csv.append(',').append(count);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private FrameStats find(SQLiteDatabase db, String appVersion, String screen, String state) {
+        try (Cursor cursor = db.query(TABLE_FRAME_STATS, null,
+                COLUMN_APP_VERSION + " = ? AND " + COLUMN_SCREEN + " = ? AND " + COLUMN_STATE + " = ?",
+                new String[]{appVersion, screen, state}, null, null, null)) {
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        }
+    }
+
+    private static FrameStats fromCursor(Cursor cursor) {
+        FrameStats row = new FrameStats(
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_APP_VERSION)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SCREEN)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_STATE)));
+        row.frames = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FRAMES));
+        row.jankyFrames = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_JANKY_FRAMES));
+        row.frozenFrames = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FROZEN_FRAMES));
+        row.totalMs = cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_TOTAL_MS));
+        row.maxMs = cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_MAX_MS));
+        row.firstSeen = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FIRST_SEEN));
+        row.lastSeen = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LAST_SEEN));
+
+        String[] counts = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_HISTOGRAM)).split(",");
+        for (int i = 0; i < counts.length && i < row.histogram.length; i++) {
+            try {
+                row.histogram[i] = Long.parseLong(counts[i]);
+            } catch (NumberFormatException ignored) {
+                // A damaged bucket only costs that bucket
+            }
+        }
+        return row;
+    }
+
+    private static String joinHistogram(long[] histogram) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(histogram[i]);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Frame timings of one screen in one state, for one app version.
+     */
+    public static class FrameStats {
+        public final String appVersion;
+        public final String screen;
+        public final String state;
+        public long frames;
+        public long jankyFrames;
+        public long frozenFrames;
+        public double totalMs;
+        public double maxMs;
+        public long firstSeen;
+        public long lastSeen;
+        public final long[] histogram = new long[FRAME_BUCKETS_MS.length + 1];
+
+        FrameStats(String appVersion, String screen, String state) {
+            this.appVersion = appVersion;
+            this.screen = screen;
+            this.state = state;
+        }
+
+        /**
+         * Counts one rendered frame.
+         */
+        void record(double durationMs, boolean janky, boolean frozen) {
+            frames++;
+            if (janky) {
+                jankyFrames++;
+            }
+            if (frozen) {
+                frozenFrames++;
+            }
+            totalMs += durationMs;
+            maxMs = Math.max(maxMs, durationMs);
+            histogram[bucketFor(durationMs)]++;
+        }
+
+        void add(FrameStats other) {
+            frames += other.frames;
+            jankyFrames += other.jankyFrames;
+            frozenFrames += other.frozenFrames;
+            totalMs += other.totalMs;
+            maxMs = Math.max(maxMs, other.maxMs);
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+        }
+
+        public double getJankyPercent() {
+            return frames == 0 ? 0 : jankyFrames * 100.0 / frames;
+        }
+
+        public double getAverageMs() {
+            return frames == 0 ? 0 : totalMs / frames;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile (the slowest
+         * bucket reports the maximum seen), or 0 if no frames were recorded.
+         */
+        public long getPercentileMs(double percentile) {
+            if (frames == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(frames * percentile);
+            long seen = 0;
+            long max = (long) Math.ceil(maxMs);
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    return i < FRAME_BUCKETS_MS.length ? Math.min(FRAME_BUCKETS_MS[i], max) : max;
+                }
+            }
+            return max;
+        }
+
+        private static int bucketFor(double durationMs) {
+            for (int i = 0; i < FRAME_BUCKETS_MS.length; i++) {
+                if (durationMs <= FRAME_BUCKETS_MS[i]) {
+                    return i;
+                }
+            }
+            return FRAME_BUCKETS_MS.length;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.grpc.grpc;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.Window;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * FrameMetricsTracker.java
+ *
+ * This class times every frame every screen of the app draws, using the window's frame metrics, and
+ * counts the frames that took too long. Screens can tag what they are doing ("loading contracts",
+ * "filtering") so a stutter is recorded against the state that caused it rather than the screen as
+ * a whole. The numbers are kept per app version in FrameMetricsStore and shown on the Screen
+ * Performance screen; debug builds can also show the live numbers as an overlay on every screen.
+ *
+ * Features:
+ * - Installed once from the first screen, then follows every activity automatically
+ * - A frame is janky when it takes more than twice the display's frame budget, frozen over 700 ms
+ * - First frames of a screen are counted as their own "first draw" state
+ * - States set until cleared (loading) or held briefly after the last mark (typing in a filter)
+ * - Frames are timed and stored on a background thread, in batches
+ * - Optional overlay with the current screen, state and janky ratio (debug builds only)
+ *
+ * Author: James Scott
+ */
+
+public final class FrameMetricsTracker {
+
+    private static final String TAG = "FrameMetricsTracker";
+
+    static final String STATE_IDLE = "idle";
+    static final String STATE_FIRST_DRAW = "first draw";
+
+    static final String PREFS_NAME = "FrameMetrics";
+    static final String KEY_OVERLAY_ENABLED = "overlay_enabled";
+
+    // A frame is janky when it takes longer than this many frame budgets (the JankStats default)
+    private static final double JANK_BUDGET_MULTIPLIER = 2.0;
+    // Android vitals counts frames slower than this as frozen
+    private static final double FROZEN_FRAME_MS = 700;
+    // How long a state set with markState stays on after the last mark
+    private static final long MARK_HOLD_MS = 1000;
+    private static final long FLUSH_INTERVAL_MS = 30_000;
+    private static final long OVERLAY_REFRESH_MS = 500;
+
+    // Accessed on the UI thread only
+    private static final Map<Activity, Session> sessions = new WeakHashMap<>();
+    private static volatile Context appContext;
+
+    // Accessed on the metrics thread only, keyed by "screen|state"
+    private static final Map<String, FrameMetricsStore.FrameStats> pending = new HashMap<>();
+    private static boolean flushScheduled;
+
+    private static Handler metricsHandler;
+    private static volatile String appVersion = "unknown";
+
+    private FrameMetricsTracker() {
+    }
+
+    /**
+     * Starts tracking every activity of the app, beginning with the given one. Safe to call from
+     * each entry screen's onCreate; only the first call does anything.
+     */
+    public static void install(Activity activity) {
+        if (appContext != null) {
+            return;
+        }
+        Application application = activity.getApplication();
+        appContext = application;
+        appVersion = readAppVersion(application);
+        application.registerActivityLifecycleCallbacks(new LifecycleCallbacks());
+    }
+
+    /**
+     * Tags the screen's frames with a state until it is replaced or cleared. Call on the UI thread.
+     */
+    public static void setState(Activity activity, String state) {
+        sessionFor(activity).stateTag = new StateTag(state, 0);
+    }
+
+    /**
+     * Tags the screen's frames with a state for a moment; each call extends it. Suits states that
+     * follow user input, such as filtering while the user types. Call on the UI thread.
+     */
+    public static void markState(Activity activity, String state) {
+        sessionFor(activity).stateTag = new StateTag(state, System.nanoTime() + MARK_HOLD_MS * 1_000_000L);
+    }
+
+    /**
+     * Returns the screen to the idle state. Call on the UI thread.
+     */
+    public static void clearState(Activity activity) {
+        sessionFor(activity).stateTag = new StateTag(STATE_IDLE, 0);
+    }
+
+    public static String getAppVersion() {
+        return appVersion;
+    }
+
+    public static boolean isOverlayEnabled(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0
+                && context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_OVERLAY_ENABLED, false);
+    }
+
+    /**
+     * Turns the overlay on or off for every screen, starting with the given one (debug builds only).
+     */
+    public static void setOverlayEnabled(Activity activity, boolean enabled) {
+        activity.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_OVERLAY_ENABLED, enabled)
+                .apply();
+        Session session = sessionFor(activity);
+        if (enabled && isOverlayEnabled(activity)) {
+            showOverlay(activity, session);
+        } else {
+            hideOverlay(session);
+        }
+    }
+
+    /**
+     * Stores the frames collected so far, then runs the task on the metrics thread, so it reads
+     * FrameMetricsStore with everything recorded up to now.
+     */
+    public static void runAfterFlush(Runnable task) {
+        getMetricsHandler().post(() -> {
+            flush();
+            task.run();
+        });
+    }
+
+    /**
+     * Forgets the frames collected so far, stored or not, then runs the task on the metrics thread.
+     */
+    public static void reset(Context context, Runnable then) {
+        Context applicationContext = context.getApplicationContext();
+        getMetricsHandler().post(() -> {
+            pending.clear();
+            FrameMetricsStore.getInstance(applicationContext).clear();
+            then.run();
+        });
+    }
+
+    private static synchronized Handler getMetricsHandler() {
+        if (metricsHandler == null) {
+            HandlerThread thread = new HandlerThread("FrameMetrics");
+            thread.start();
+            metricsHandler = new Handler(thread.getLooper());
+        }
+        return metricsHandler;
+    }
+
+    private static Session sessionFor(Activity activity) {
+        Session session = sessions.get(activity);
+        if (session == null) {
+            session = new Session(activity);
+            sessions.put(activity, session);
+        }
+        return session;
+    }
+
+    /**
+     * Adds one frame to the pending batch. Metrics thread only.
+     */
+    private static void record(String screen, String state, double durationMs, boolean janky, boolean frozen) {
+        String key = screen + "|" + state;
+        FrameMetricsStore.FrameStats entry = pending.get(key);
+        if (entry == null) {
+            entry = new FrameMetricsStore.FrameStats(appVersion, screen, state);
+            pending.put(key, entry);
+        }
+        entry.record(durationMs, janky, frozen);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            getMetricsHandler().postDelayed(FrameMetricsTracker::flush, FLUSH_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Merges the pending batch into FrameMetricsStore. Metrics thread only.
+     */
+    private static void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty() || appContext == null) {
+            return;
+        }
+        List<FrameMetricsStore.FrameStats> batch = new ArrayList<>(pending.values());
+        pending.clear();
+        try {
+            FrameMetricsStore.getInstance(appContext).merge(batch);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not store frame metrics", e);
+        }
+    }
+
+    private static String readAppVersion(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.versionName + " (" + PackageInfoCompat.getLongVersionCode(info) + ")";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static void showOverlay(Activity activity, Session session) {
+        if (session.overlay != null) {
+            return;
+        }
+        View content = activity.findViewById(android.R.id.content);
+        if (!(content instanceof FrameLayout)) {
+            return;
+        }
+
+        TextView overlay = new TextView(activity);
+        overlay.setTextSize(11);
+        overlay.setTextColor(Color.WHITE);
+        overlay.setBackgroundColor(0x99000000);
+        overlay.setPadding(12, 8, 12, 8);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.END);
+        ((FrameLayout) content).addView(overlay, params);
+
+        session.overlay = overlay;
+        session.overlayUpdater = new Runnable() {
+            @Override
+            public void run() {
+                overlay.setText(session.describeLive());
+                overlay.postDelayed(this, OVERLAY_REFRESH_MS);
+            }
+        };
+        session.overlayUpdater.run();
+    }
+
+    private static void hideOverlay(Session session) {
+        if (session.overlay == null) {
+            return;
+        }
+        session.overlay.removeCallbacks(session.overlayUpdater);
+        if (session.overlay.getParent() instanceof ViewGroup) {
+            ((ViewGroup) session.overlay.getParent()).removeView(session.overlay);
+        }
+        session.overlay = null;
+        session.overlayUpdater = null;
+    }
+
+    /**
+     * A screen state and when it lapses back to idle (0 for never).
+     */
+    private static final class StateTag {
+        final String state;
+        final long expiresAtNanos;
+
+        StateTag(String state, long expiresAtNanos) {
+            this.state = state;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * Frame tracking of one activity instance.
+     */
+    private static final class Session implements Window.OnFrameMetricsAvailableListener {
+        final String screen;
+        final double jankThresholdMs;
+        volatile StateTag stateTag = new StateTag(STATE_IDLE, 0);
+
+        // UI thread only
+        boolean listening;
+        TextView overlay;
+        Runnable overlayUpdater;
+
+        // Written on the metrics thread, read by the overlay
+        volatile long liveFrames;
+        volatile long liveJankyFrames;
+        volatile double lastFrameMs;
+
+        Session(Activity activity) {
+            screen = activity.getClass().getSimpleName();
+            float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+            jankThresholdMs = 1000.0 / (refreshRate >= 1 ? refreshRate : 60) * JANK_BUDGET_MULTIPLIER;
+        }
+
+        String stateAt(long vsyncNanos) {
+            StateTag tag = stateTag;
+            return tag.expiresAtNanos != 0 && vsyncNanos > tag.expiresAtNanos ? STATE_IDLE : tag.state;
+        }
+
+        @Override
+        public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+            // Frames the platform dropped from reporting (dropCountSinceLastInvocation) are not timed
+            double durationMs = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION) / 1_000_000.0;
+            String state = frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1 ? STATE_FIRST_DRAW
+                    : stateAt(frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP));
+            boolean janky = durationMs > jankThresholdMs;
+            record(screen, state, durationMs, janky, durationMs > FROZEN_FRAME_MS);
+
+            liveFrames++;
+            if (janky) {
+                liveJankyFrames++;
+            }
+            lastFrameMs = durationMs;
+        }
+
+        String describeLive() {
+            long frames = liveFrames;
+            return String.format(Locale.getDefault(), "%s\nState: %s\n%d frames, %.1f%% janky\nLast frame %.1f ms",
+                    screen, stateAt(System.nanoTime()), frames,
+                    frames == 0 ? 0 : liveJankyFrames * 100.0 / frames, lastFrameMs);
+        }
+    }
+
+    private static final class LifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+            Session session = sessionFor(activity);
+            if (!session.listening) {
+                activity.getWindow().addOnFrameMetricsAvailableListener(session, getMetricsHandler());
+                session.listening = true;
+            }
+            if (isOverlayEnabled(activity)) {
+                showOverlay(activity, session);
+            }
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+            Session session = sessions.get(activity);
+            if (session == null) {
+                return;
+            }
+            if (session.listening) {
+                try {
+                    activity.getWindow().removeOnFrameMetricsAvailableListener(session);
+                } catch (IllegalArgumentException ignored) {
+                    // Already removed along with the window
+                }
+                session.listening = false;
+            }
+            hideOverlay(session);
+            getMetricsHandler().post(FrameMetricsTracker::flush);
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+            sessions.remove(activity);
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        }
+    }
+}
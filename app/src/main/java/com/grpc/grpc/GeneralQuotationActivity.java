@@ -68,7 +68,7 @@ public class GeneralQuotationActivity extends AppCompatActivity {
         addItemButton.setOnClickListener(v -> addItem());
 
         // Generate PDF Button Listener
-        generatePdfButton.setOnClickListener(v -> generatePdf());
+        generatePdfButton.setOnClickListener(v -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePdf));
     }
 
     /**
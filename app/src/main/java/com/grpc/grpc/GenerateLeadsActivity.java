@@ -18,7 +18,6 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -53,7 +52,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
     private Spinner reasonSpinner;
     private Button addLeadButton, backButton;
 
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName;
     private String selectedReason = "Job"; // Default reason
 
@@ -64,7 +63,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_add_leads);
 
         // Initialize Firestore
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
 
         // Retrieve the username from the intent
         userName = getIntent().getStringExtra("USER_NAME");
@@ -111,7 +110,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
                     if (!priceQuotedStr.isEmpty()) {
                         try {
                             double priceQuoted = Double.parseDouble(priceQuotedStr);
-                            double commission = priceQuoted * 0.10; // 10% for Contract
+                            double commission = CommissionCalculator.forContract(priceQuoted); // 10% for Contract
                             commissionTextView.setText("Commission: €" + String.format(Locale.getDefault(), "%.2f", commission));
                         } catch (NumberFormatException e) {
                             commissionTextView.setText("Commission: €0.00");
@@ -145,7 +144,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
                     if (!priceQuotedStr.isEmpty()) {
                         try {
                             double priceQuoted = Double.parseDouble(priceQuotedStr);
-                            double commission = priceQuoted * 0.10; // 10% for Contract
+                            double commission = CommissionCalculator.forContract(priceQuoted); // 10% for Contract
                             commissionTextView.setText("Commission: €" + String.format(Locale.getDefault(), "%.2f", commission));
                         } catch (NumberFormatException e) {
                             commissionTextView.setText("Commission: €0.00");
@@ -174,7 +173,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
     // Method to save the lead to Firestore
     private void saveLeadToFirestore(String premiseName, String premiseAddress, double priceQuoted, double commission, String date, String reason, String addedBy) {
         CollectionReference leadsCollection = db.collection("Leads");
-        leadsCollection.add(createLeadObject(premiseName, premiseAddress, priceQuoted, commission, date, reason, addedBy))
+        db.add(leadsCollection, createLeadObject(premiseName, premiseAddress, priceQuoted, commission, date, reason, addedBy))
                 .addOnSuccessListener(documentReference -> {
                     Toast.makeText(this, "Lead added successfully", Toast.LENGTH_SHORT).show();
                     // Redirect to ViewLeadsActivity
@@ -207,7 +206,7 @@ public class GenerateLeadsActivity extends AppCompatActivity {
             return;
         }
 
-        double commission = "Contract".equalsIgnoreCase(selectedReason) ? priceQuoted * 0.10 : 0.0;
+        double commission = CommissionCalculator.forNewLead(selectedReason, priceQuoted);
 
         if ("user".equalsIgnoreCase(userName)) {
             showAssignToDialog(premiseName, premiseAddress, priceQuoted, commission, currentDate, selectedReason);
@@ -0,0 +1,148 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.location.Address;
+import android.location.Geocoder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeocodeCache.java
+ *
+ * This class turns contract addresses into coordinates for the route planner and remembers the
+ * answer, so each address goes to the platform geocoder once rather than every time a route is
+ * planned. Addresses the geocoder could not place are remembered too, and only retried after
+ * NOT_FOUND_RETRY_DAYS, so a mistyped address does not cost a lookup on every plan.
+ *
+ * Features:
+ * - One row per address, keyed by the trimmed lower-case address
+ * - Coordinates from the platform Geocoder, looked up only on a cache miss
+ * - Remembers addresses that could not be found, and retries them after a while
+ * - A failed lookup (no network, no geocoder) is not remembered, so it is retried next time
+ *
+ * Author: James Scott
+ */
+
+public class GeocodeCache extends SQLiteOpenHelper {
+
+    static final long NOT_FOUND_RETRY_DAYS = 30;
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_geocode_cache.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Geocodes Table
+    private static final String TABLE_GEOCODES = "geocodes";
+    private static final String COLUMN_ADDRESS_KEY = "address_key";
+    private static final String COLUMN_ADDRESS = "address";
+    private static final String COLUMN_LATITUDE = "latitude";
+    private static final String COLUMN_LONGITUDE = "longitude";
+    private static final String COLUMN_FOUND = "found";
+    private static final String COLUMN_GEOCODED_AT = "geocoded_at";
+
+    private static GeocodeCache instance;
+
+    private final Context appContext;
+
+    /**
+     * Returns the shared geocode cache.
+     */
+    public static synchronized GeocodeCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new GeocodeCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private GeocodeCache(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        appContext = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GEOCODES + " (" +
+                COLUMN_ADDRESS_KEY + " TEXT PRIMARY KEY, " +
+                COLUMN_ADDRESS + " TEXT NOT NULL, " +
+                COLUMN_LATITUDE + " REAL, " +
+                COLUMN_LONGITUDE + " REAL, " +
+                COLUMN_FOUND + " INTEGER NOT NULL, " +
+                COLUMN_GEOCODED_AT + " INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GEOCODES);
+        onCreate(db);
+    }
+
+    /**
+     * Returns the address's coordinates as {latitude, longitude}, from the cache or the geocoder,
+     * or null if the address cannot be placed. Blocks on the network; must not be called on the
+     * UI thread.
+     */
+    public double[] locate(String address) {
+        if (address == null || address.trim().isEmpty() || "N/A".equalsIgnoreCase(address.trim())) {
+            return null;
+        }
+        String key = address.trim().toLowerCase(Locale.ROOT);
+
+        try (Cursor cursor = getReadableDatabase().query(TABLE_GEOCODES,
+                new String[]{COLUMN_LATITUDE, COLUMN_LONGITUDE, COLUMN_FOUND, COLUMN_GEOCODED_AT},
+                COLUMN_ADDRESS_KEY + " = ?", new String[]{key}, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                if (cursor.getInt(2) != 0) {
+                    return new double[]{cursor.getDouble(0), cursor.getDouble(1)};
+                }
+                long retryAt = cursor.getLong(3) + TimeUnit.DAYS.toMillis(NOT_FOUND_RETRY_DAYS);
+                if (System.currentTimeMillis() < retryAt) {
+                    return null;
+                }
+            }
+        }
+
+        if (!Geocoder.isPresent()) {
+            return null;
+        }
+        List<Address> matches;
+        try {
+            matches = new Geocoder(appContext, Locale.getDefault()).getFromLocationName(address.trim(), 1);
+        } catch (IOException | IllegalArgumentException e) {
+            return null; // Offline or refused; not remembered, so the next plan asks again
+        }
+
+        double[] location = null;
+        if (matches != null && !matches.isEmpty() && matches.get(0).hasLatitude() && matches.get(0).hasLongitude()) {
+            location = new double[]{matches.get(0).getLatitude(), matches.get(0).getLongitude()};
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ADDRESS_KEY, key);
+        values.put(COLUMN_ADDRESS, address.trim());
+        values.put(COLUMN_FOUND, location != null ? 1 : 0);
+        if (location != null) {
+            values.put(COLUMN_LATITUDE, location[0]);
+            values.put(COLUMN_LONGITUDE, location[1]);
+        }
+        values.put(COLUMN_GEOCODED_AT, System.currentTimeMillis());
+        getWritableDatabase().insertWithOnConflict(TABLE_GEOCODES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        return location;
+    }
+
+    /**
+     * Forgets a cached address, e.g. after the user corrected a wrong location.
+     */
+    public void forget(String address) {
+        if (address != null) {
+            getWritableDatabase().delete(TABLE_GEOCODES, COLUMN_ADDRESS_KEY + " = ?",
+                    new String[]{address.trim().toLowerCase(Locale.ROOT)});
+        }
+    }
+}
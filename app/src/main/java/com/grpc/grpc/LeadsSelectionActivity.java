@@ -19,6 +19,7 @@ import androidx.appcompat.app.AppCompatActivity;
  * - Displays a welcome message with the user's name
  * - Allows navigation to the lead generation screen
  * - Allows navigation to the lead viewing screen
+ * - Allows navigation to the monthly commission summary
  * - Ensures USER_NAME is always passed to the next activity
  *
  * Author: James Scott
@@ -27,7 +28,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 public class LeadsSelectionActivity extends AppCompatActivity {
 
-    private Button GenerateLeadsButton, ViewLeadButton;
+    private Button GenerateLeadsButton, ViewLeadButton, CommissionSummaryButton;
     private String userName;
     private TextView welcomeTextView;
 
@@ -48,6 +49,7 @@ public class LeadsSelectionActivity extends AppCompatActivity {
 
         GenerateLeadsButton = findViewById(R.id.GenerateLeadsButton);
         ViewLeadButton = findViewById(R.id.ViewLeadButton);
+        CommissionSummaryButton = findViewById(R.id.CommissionSummaryButton);
 
         GenerateLeadsButton.setOnClickListener(view -> {
             Intent intent = new Intent(LeadsSelectionActivity.this, GenerateLeadsActivity.class);
@@ -61,6 +63,12 @@ public class LeadsSelectionActivity extends AppCompatActivity {
             startActivity(intent);
         });
 
+        CommissionSummaryButton.setOnClickListener(view -> {
+            Intent intent = new Intent(LeadsSelectionActivity.this, CommissionSummaryActivity.class);
+            intent.putExtra("USER_NAME", userName);
+            startActivity(intent);
+        });
+
 
     }
 }
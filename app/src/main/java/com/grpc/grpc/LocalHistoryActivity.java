@@ -0,0 +1,335 @@
+package com.grpc.grpc;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LocalHistoryActivity.java
+ *
+ * This screen lists the company reports, general quotes and bird quotes saved in the local report
+ * database, newest first. The history is read a page at a time as the list scrolls and only a
+ * few pages are held at once, so it opens instantly and uses the same memory for ten rows or
+ * fifty thousand.
+ *
+ * Features:
+ * - Reports / Quotes / Bird Quotes selector
+ * - PAGE_SIZE rows per read, loaded ahead of the scroll position in either direction
+ * - At most MAX_LOADED_ROWS rows in memory; pages scrolled far away are dropped and re-read
+ * - New saves appear at the top without reloading what is already shown
+ * - Tap a row for its full details
+ * - Year-to-date quote totals, with a monthly and quarterly breakdown, computed by SQLite
+ *
+ * Author: James Scott
+ */
+
+public class LocalHistoryActivity extends AppCompatActivity implements ReportDatabaseHelper.TableObserver {
+
+    private static final int TYPE_REPORTS = 0;
+    private static final int TYPE_QUOTES = 1;
+    private static final int TYPE_BIRD_QUOTES = 2;
+
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_LOADED_ROWS = 4 * PAGE_SIZE;
+
+    // Start reading the next page when the scroll position is this close to the end of the window
+    private static final int PREFETCH_DISTANCE = 15;
+
+    private ReportDatabaseHelper database;
+    private LocalHistoryAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    private TextView historyEmpty;
+    private TextView historySummary;
+
+    private int historyType = TYPE_REPORTS;
+    private boolean hasOlder = true;
+    private boolean hasNewer;
+    private boolean loading;
+    private boolean newRowsWaiting;
+    // Bumped on every reload so pages read for an earlier list are discarded
+    private int generation;
+
+    private final ExecutorService readExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_local_history);
+
+        database = ReportDatabaseHelper.getInstance(this);
+        historyEmpty = findViewById(R.id.historyEmpty);
+        historySummary = findViewById(R.id.historySummary);
+        Spinner historyTypeSpinner = findViewById(R.id.historyTypeSpinner);
+        RecyclerView historyList = findViewById(R.id.historyList);
+        Button backButton = findViewById(R.id.backButton);
+
+        adapter = new LocalHistoryAdapter(this::showDetails);
+        layoutManager = new LinearLayoutManager(this);
+        historyList.setLayoutManager(layoutManager);
+        historyList.setAdapter(adapter);
+        historyList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadAroundScrollPosition();
+            }
+        });
+
+        ArrayAdapter<String> types = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item,
+                new String[]{"Company Reports", "Quotes", "Bird Quotes"});
+        types.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        historyTypeSpinner.setAdapter(types);
+        historyTypeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (position != historyType || adapter.getItemCount() == 0) {
+                    historyType = position;
+                    reload();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+
+        historySummary.setOnClickListener(view -> showQuoteBreakdown());
+        backButton.setOnClickListener(view -> finish());
+        database.registerObserver(this);
+        loadQuoteSummary();
+    }
+
+    @Override
+    public void onTableChanged(String table, boolean rowsAddedOnly) {
+        if (!table.equals(ReportDatabaseHelper.TABLE_COMPANY_REPORTS)) {
+            loadQuoteSummary();
+        }
+        if (!table.equals(tableFor(historyType))) {
+            return;
+        }
+        if (!rowsAddedOnly) {
+            reload();
+        } else if (!hasNewer) {
+            // Showing the newest rows: read just the ones added above them
+            if (loading) {
+                newRowsWaiting = true;
+            } else {
+                loadPage(false);
+            }
+        }
+    }
+
+    private static String tableFor(int type) {
+        switch (type) {
+            case TYPE_QUOTES:
+                return ReportDatabaseHelper.TABLE_QUOTES;
+            case TYPE_BIRD_QUOTES:
+                return ReportDatabaseHelper.TABLE_BIRD_QUOTES;
+            default:
+                return ReportDatabaseHelper.TABLE_COMPANY_REPORTS;
+        }
+    }
+
+    private void reload() {
+        generation++;
+        loading = false;
+        newRowsWaiting = false;
+        hasOlder = true;
+        hasNewer = false;
+        adapter.clear();
+        loadPage(true);
+    }
+
+    private void loadAroundScrollPosition() {
+        if (loading || adapter.getItemCount() == 0) {
+            return;
+        }
+        if (hasOlder && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+            loadPage(true);
+        } else if (hasNewer && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+            loadPage(false);
+        }
+    }
+
+    /**
+     * Reads the page below (older) or above (newer) the rows in memory, then trims the far end of
+     * the window back to MAX_LOADED_ROWS.
+     */
+    private void loadPage(boolean older) {
+        if (readExecutor.isShutdown()) {
+            return;
+        }
+        boolean empty = adapter.getItemCount() == 0;
+        long anchorId = older ? (empty ? Long.MAX_VALUE : adapter.lastId()) : (empty ? 0 : adapter.firstId());
+        int type = historyType;
+        int requestGeneration = generation;
+        loading = true;
+
+        readExecutor.execute(() -> {
+            List<LocalHistoryAdapter.Row> page = readPage(type, older, anchorId);
+            runOnUiThread(() -> {
+                if (requestGeneration != generation || isDestroyed()) {
+                    return;
+                }
+                loading = false;
+                if (older) {
+                    adapter.append(page);
+                    hasOlder = page.size() == PAGE_SIZE;
+                    int excess = adapter.getItemCount() - MAX_LOADED_ROWS;
+                    if (excess > 0) {
+                        adapter.removeFirst(excess);
+                        hasNewer = true;
+                    }
+                } else {
+                    adapter.prepend(page);
+                    hasNewer = page.size() == PAGE_SIZE;
+                    int excess = adapter.getItemCount() - MAX_LOADED_ROWS;
+                    if (excess > 0) {
+                        adapter.removeLast(excess);
+                        hasOlder = true;
+                    }
+                }
+                historyEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+
+                if (newRowsWaiting && !hasNewer) {
+                    newRowsWaiting = false;
+                    loadPage(false);
+                } else {
+                    loadAroundScrollPosition();
+                }
+            });
+        });
+    }
+
+    private List<LocalHistoryAdapter.Row> readPage(int type, boolean older, long anchorId) {
+        List<LocalHistoryAdapter.Row> rows = new ArrayList<>();
+        if (type == TYPE_REPORTS) {
+            List<ReportDatabaseHelper.CompanyReport> reports = older
+                    ? database.getCompanyReportsBefore(anchorId, PAGE_SIZE)
+                    : database.getCompanyReportsAfter(anchorId, PAGE_SIZE);
+            for (ReportDatabaseHelper.CompanyReport report : reports) {
+                rows.add(toRow(report));
+            }
+        } else {
+            boolean birdQuotes = type == TYPE_BIRD_QUOTES;
+            List<ReportDatabaseHelper.Quote> quotes = older
+                    ? database.getQuotesBefore(birdQuotes, anchorId, PAGE_SIZE)
+                    : database.getQuotesAfter(birdQuotes, anchorId, PAGE_SIZE);
+            for (ReportDatabaseHelper.Quote quote : quotes) {
+                rows.add(toRow(quote));
+            }
+        }
+        return rows;
+    }
+
+    private static LocalHistoryAdapter.Row toRow(ReportDatabaseHelper.CompanyReport report) {
+        String details = "Premise Name: " + report.name +
+                "\nAddress: " + report.address +
+                "\nDate: " + report.date +
+                "\nVisit Type: " + report.visitType +
+                "\nSite Inspection: " + report.siteInspection +
+                "\nRecommendations: " + report.recommendations +
+                "\nFollow-Up: " + report.followUp +
+                "\nPrep: " + report.prep +
+                "\nTech: " + report.tech;
+        return new LocalHistoryAdapter.Row(report.id, report.name,
+                report.date + " - " + report.visitType + " - " + report.tech, details);
+    }
+
+    private static LocalHistoryAdapter.Row toRow(ReportDatabaseHelper.Quote quote) {
+        String total = String.format(Locale.getDefault(), "€%.2f", quote.totalAmount);
+        String details = "Quote Number: " + quote.number +
+                "\nDate: " + quote.date +
+                "\nAddress: " + quote.address +
+                "\nDescription: " + quote.description +
+                "\nTotal: " + total +
+                "\nEmail: " + quote.email +
+                "\nMobile: " + quote.mobile;
+        return new LocalHistoryAdapter.Row(quote.id, "Quote " + quote.number + " - " + total,
+                quote.date + " - " + quote.address, details);
+    }
+
+    private void loadQuoteSummary() {
+        if (readExecutor.isShutdown()) {
+            return;
+        }
+        readExecutor.execute(() -> {
+            ReportDatabaseHelper.QuoteTotals totals = database.getYearToDateQuoteSummary();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    historySummary.setText("Quotes this year: " + describe(totals));
+                }
+            });
+        });
+    }
+
+    /**
+     * Shows this year's quote totals per month and per quarter.
+     */
+    private void showQuoteBreakdown() {
+        Calendar start = Calendar.getInstance();
+        int year = start.get(Calendar.YEAR);
+        start.clear();
+        start.set(year, Calendar.JANUARY, 1);
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.YEAR, 1);
+
+        readExecutor.execute(() -> {
+            StringBuilder text = new StringBuilder("By quarter:\n");
+            for (ReportDatabaseHelper.QuoteTotals totals
+                    : database.getQuarterlyQuoteTotals(start.getTimeInMillis(), end.getTimeInMillis())) {
+                text.append(totals.period).append(": ").append(describe(totals)).append('\n');
+            }
+            text.append("\nBy month:\n");
+            for (ReportDatabaseHelper.QuoteTotals totals
+                    : database.getMonthlyQuoteTotals(start.getTimeInMillis(), end.getTimeInMillis())) {
+                text.append(totals.period).append(": ").append(describe(totals)).append('\n');
+            }
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    new AlertDialog.Builder(this)
+                            .setTitle("Quotes " + year)
+                            .setMessage(text.toString())
+                            .setPositiveButton("OK", null)
+                            .show();
+                }
+            });
+        });
+    }
+
+    private static String describe(ReportDatabaseHelper.QuoteTotals totals) {
+        return String.format(Locale.getDefault(), "%d general (€%.2f), %d bird (€%.2f)",
+                totals.generalCount, totals.generalTotal, totals.birdCount, totals.birdTotal);
+    }
+
+    private void showDetails(LocalHistoryAdapter.Row row) {
+        new AlertDialog.Builder(this)
+                .setTitle(row.title)
+                .setMessage(row.details)
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        database.unregisterObserver(this);
+        readExecutor.shutdownNow();
+    }
+}
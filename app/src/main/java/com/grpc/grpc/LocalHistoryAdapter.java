@@ -0,0 +1,126 @@
+package com.grpc.grpc;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LocalHistoryAdapter.java
+ *
+ * This adapter shows the window of saved reports or quotes that LocalHistoryActivity currently
+ * holds in memory. Rows are always kept newest first; pages are added at either end and trimmed
+ * from the other, so the list never holds more than a few pages however long the history is.
+ *
+ * Features:
+ * - Two-line rows (title and summary)
+ * - Adds and removes whole pages at the start or end with item range notifications
+ * - Click listener for showing a row's details
+ *
+ * Author: James Scott
+ */
+
+public class LocalHistoryAdapter extends RecyclerView.Adapter<LocalHistoryAdapter.ViewHolder> {
+
+    /**
+     * One displayed row, keyed by the database id it was read from.
+     */
+    public static class Row {
+        final long id;
+        final String title;
+        final String summary;
+        final String details;
+
+        Row(long id, String title, String summary, String details) {
+            this.id = id;
+            this.title = title;
+            this.summary = summary;
+            this.details = details;
+        }
+    }
+
+    public interface OnRowClickListener {
+        void onRowClick(Row row);
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final OnRowClickListener listener;
+
+    public LocalHistoryAdapter(OnRowClickListener listener) {
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(android.R.layout.simple_list_item_2, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        holder.title.setText(row.title);
+        holder.summary.setText(row.summary);
+        holder.itemView.setOnClickListener(view -> listener.onRowClick(row));
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    long firstId() {
+        return rows.get(0).id;
+    }
+
+    long lastId() {
+        return rows.get(rows.size() - 1).id;
+    }
+
+    void prepend(List<Row> page) {
+        rows.addAll(0, page);
+        notifyItemRangeInserted(0, page.size());
+    }
+
+    void append(List<Row> page) {
+        int start = rows.size();
+        rows.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    void removeFirst(int count) {
+        rows.subList(0, count).clear();
+        notifyItemRangeRemoved(0, count);
+    }
+
+    void removeLast(int count) {
+        int start = rows.size() - count;
+        rows.subList(start, rows.size()).clear();
+        notifyItemRangeRemoved(start, count);
+    }
+
+    void clear() {
+        int count = rows.size();
+        rows.clear();
+        notifyItemRangeRemoved(0, count);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView title;
+        final TextView summary;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            title = itemView.findViewById(android.R.id.text1);
+            summary = itemView.findViewById(android.R.id.text2);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LocalSearchIndex.java
+ *
+ * This class keeps one on-device full-text index over the jobs, management jobs, leads and
+ * contracts the app has seen in Firestore, and over the report PDFs saved on this device. The
+ * screens that already listen to those collections pass their document changes in, so the index
+ * is kept current a few documents at a time and the global search on the main screen answers from
+ * SQLite alone, online or offline.
+ *
+ * Features:
+ * - One FTS4 table (external content, word prefixes indexed) across every entity type
+ * - Applies snapshot deltas in a single transaction on a background writer thread
+ * - Drops documents deleted while the app was closed on a listener's first server snapshot
+ * - Re-reads only the report files added, changed or removed since the last scan
+ * - Reports moved into ReportArchive's monthly bundles stay in the index
+ * - Ranked results: title hits weigh more than subtitle hits, which weigh more than body hits
+ * - Every match is ranked, keeping only the best few in memory while the matches are read
+ * - Leads are only returned to the technician who added them (or the admin user)
+ *
+ * Author: James Scott
+ */
+
+public class LocalSearchIndex extends SQLiteOpenHelper {
+
+    private static final String TAG = "LocalSearchIndex";
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_search.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Entity types
+    public static final String TYPE_JOB = "job";
+    public static final String TYPE_MANAGEMENT_JOB = "management_job";
+    public static final String TYPE_LEAD = "lead";
+    public static final String TYPE_CONTRACT = "contract";
+    public static final String TYPE_REPORT = "report";
+
+    // Indexed documents
+    private static final String TABLE_DOCUMENTS = "search_documents";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_ENTITY_TYPE = "entity_type";
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_OWNER = "owner";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_SUBTITLE = "subtitle";
+    private static final String COLUMN_BODY = "body";
+    private static final String COLUMN_MODIFIED = "modified";
+
+    private static final String TABLE_DOCUMENTS_FTS = "search_documents_fts";
+
+    // Column weights for ranking, in FTS column order (title, subtitle, body)
+    private static final double[] COLUMN_WEIGHTS = {10.0, 4.0, 1.0};
+    private static final double TITLE_PREFIX_BONUS = 25.0;
+
+    private static final String ADMIN_USER = "user";
+
+    private static LocalSearchIndex instance;
+
+    // Single writer so deltas are always applied in the order the listeners delivered them
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final Context context;
+
+    /**
+     * Returns the shared search index for the application.
+     */
+    public static synchronized LocalSearchIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalSearchIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocalSearchIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Creates the document table, its full-text index and the triggers that keep them in step.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_DOCUMENTS + " (" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_ENTITY_TYPE + " TEXT NOT NULL, " +
+                COLUMN_DOCUMENT_ID + " TEXT NOT NULL, " +
+                COLUMN_OWNER + " TEXT, " +
+                COLUMN_TITLE + " TEXT, " +
+                COLUMN_SUBTITLE + " TEXT, " +
+                COLUMN_BODY + " TEXT, " +
+                COLUMN_MODIFIED + " INTEGER NOT NULL DEFAULT 0, " +
+                "UNIQUE (" + COLUMN_ENTITY_TYPE + ", " + COLUMN_DOCUMENT_ID + "))");
+
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_DOCUMENTS_FTS + " USING fts4(" +
+                "content=\"" + TABLE_DOCUMENTS + "\", prefix=\"2,3\", " +
+                COLUMN_TITLE + ", " + COLUMN_SUBTITLE + ", " + COLUMN_BODY + ")");
+
+        String columns = "(docid, " + COLUMN_TITLE + ", " + COLUMN_SUBTITLE + ", " + COLUMN_BODY + ")";
+        String newValues = "VALUES(new." + COLUMN_ID + ", new." + COLUMN_TITLE + ", new." + COLUMN_SUBTITLE +
+                ", new." + COLUMN_BODY + ")";
+        db.execSQL("CREATE TRIGGER search_fts_before_update BEFORE UPDATE ON " + TABLE_DOCUMENTS + " BEGIN " +
+                "DELETE FROM " + TABLE_DOCUMENTS_FTS + " WHERE docid = old." + COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER search_fts_before_delete BEFORE DELETE ON " + TABLE_DOCUMENTS + " BEGIN " +
+                "DELETE FROM " + TABLE_DOCUMENTS_FTS + " WHERE docid = old." + COLUMN_ID + "; END");
+        db.execSQL("CREATE TRIGGER search_fts_after_update AFTER UPDATE ON " + TABLE_DOCUMENTS + " BEGIN " +
+                "INSERT INTO " + TABLE_DOCUMENTS_FTS + columns + " " + newValues + "; END");
+        db.execSQL("CREATE TRIGGER search_fts_after_insert AFTER INSERT ON " + TABLE_DOCUMENTS + " BEGIN " +
+                "INSERT INTO " + TABLE_DOCUMENTS_FTS + columns + " " + newValues + "; END");
+    }
+
+    /**
+     * The index is derived data, so an upgrade simply rebuilds it from the next snapshots and scan.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_DOCUMENTS_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_DOCUMENTS);
+        onCreate(db);
+    }
+
+    /**
+     * Queues a batch of document changes from a JobWork, ManagmentJobs or Leads snapshot.
+     *
+     * @param entityType      TYPE_JOB, TYPE_MANAGEMENT_JOB or TYPE_LEAD.
+     * @param changes         The document changes from the snapshot.
+     * @param liveDocumentIds Every document id in the snapshot when it is the listener's first server
+     *                        one, so documents deleted while the app was closed can be dropped; otherwise null.
+     */
+    public void applyChangesAsync(String entityType, List<DocumentChange> changes, Set<String> liveDocumentIds) {
+        if ((changes == null || changes.isEmpty()) && liveDocumentIds == null) {
+            return;
+        }
+        // Copy the entries out now; snapshot objects should not be held across threads longer than needed
+        List<Entry> entries = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        for (DocumentChange change : changes != null ? changes : new ArrayList<DocumentChange>()) {
+            DocumentSnapshot document = change.getDocument();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removedIds.add(document.getId());
+            } else {
+                entries.add(Entry.fromDocument(entityType, document.getId(), document.getData()));
+            }
+        }
+
+        writeExecutor.execute(() -> {
+            if (liveDocumentIds != null) {
+                for (String documentId : findDocumentIds(entityType, null)) {
+                    if (!liveDocumentIds.contains(documentId)) {
+                        removedIds.add(documentId);
+                    }
+                }
+            }
+            write(entityType, entries, removedIds);
+        });
+    }
+
+    /**
+     * Replaces one technician's contracts in the index with the list just loaded from their collection.
+     *
+     * @param owner     The technician whose "&lt;owner&gt; Contracts" collection was read.
+     * @param contracts The contract maps, each carrying its "documentId".
+     */
+    public void replaceContractsAsync(String owner, List<Map<String, Object>> contracts) {
+        List<Entry> entries = new ArrayList<>();
+        Set<String> liveIds = new HashSet<>();
+        for (Map<String, Object> contract : contracts) {
+            String documentId = owner + "/" + contract.get("documentId");
+            liveIds.add(documentId);
+            entries.add(Entry.fromDocument(TYPE_CONTRACT, documentId, contract));
+        }
+
+        writeExecutor.execute(() -> {
+            List<String> removedIds = new ArrayList<>();
+            for (String documentId : findDocumentIds(TYPE_CONTRACT, owner + "/")) {
+                if (!liveIds.contains(documentId)) {
+                    removedIds.add(documentId);
+                }
+            }
+            write(TYPE_CONTRACT, entries, removedIds);
+        });
+    }
+
+    /**
+     * Brings the report catalog in step with the PDFs in the local document folders and the report
+     * archive. Only files whose modified time changed are re-read; files that have gone are dropped.
+     */
+    public void refreshReportCatalogAsync() {
+        writeExecutor.execute(() -> {
+            Map<String, Long> indexed = findReportModifiedTimes();
+            List<Entry> entries = new ArrayList<>();
+            Set<String> liveIds = new HashSet<>();
+            for (String folderName : ReportFolders.ALL) {
+                File[] files = ReportFolders.get(context, folderName).listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    if (!file.isFile()) {
+                        continue;
+                    }
+                    String documentId = folderName + "/" + file.getName();
+                    liveIds.add(documentId);
+                    Long previous = indexed.remove(documentId);
+                    if (previous == null || previous != file.lastModified()) {
+                        entries.add(Entry.fromReport(documentId, file.getName(), folderName, file.lastModified()));
+                    }
+                }
+            }
+            for (ReportArchive.ArchivedReport report : ReportArchive.getInstance(context).getAll()) {
+                String documentId = report.folderName + "/" + report.fileName;
+                if (liveIds.contains(documentId)) {
+                    continue; // A live copy with the same name wins
+                }
+                Long previous = indexed.remove(documentId);
+                if (previous == null || previous != report.lastModified) {
+                    entries.add(Entry.fromReport(documentId, report.fileName, report.folderName, report.lastModified));
+                }
+            }
+            // Whatever is left in the map is neither on disk nor in the archive
+            write(TYPE_REPORT, entries, new ArrayList<>(indexed.keySet()));
+        });
+    }
+
+    /**
+     * Upserts and removes entries of one type in a single transaction.
+     */
+    private void write(String entityType, List<Entry> entries, List<String> removedIds) {
+        if (entries.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String documentId : removedIds) {
+                db.delete(TABLE_DOCUMENTS, COLUMN_ENTITY_TYPE + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                        new String[]{entityType, documentId});
+            }
+            for (Entry entry : entries) {
+                // Delete then insert rather than INSERT OR REPLACE, whose implicit delete skips the FTS triggers
+                db.delete(TABLE_DOCUMENTS, COLUMN_ENTITY_TYPE + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                        new String[]{entry.entityType, entry.documentId});
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_ENTITY_TYPE, entry.entityType);
+                values.put(COLUMN_DOCUMENT_ID, entry.documentId);
+                values.put(COLUMN_OWNER, entry.owner);
+                values.put(COLUMN_TITLE, entry.title);
+                values.put(COLUMN_SUBTITLE, entry.subtitle);
+                values.put(COLUMN_BODY, entry.body);
+                values.put(COLUMN_MODIFIED, entry.modified);
+                db.insert(TABLE_DOCUMENTS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update the " + entityType + " index", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private List<String> findDocumentIds(String entityType, String idPrefix) {
+        List<String> ids = new ArrayList<>();
+        String selection = COLUMN_ENTITY_TYPE + " = ?" + (idPrefix != null ? " AND substr(" + COLUMN_DOCUMENT_ID + ", 1, ?) = ?" : "");
+        String[] selectionArgs = idPrefix != null
+                ? new String[]{entityType, String.valueOf(idPrefix.length()), idPrefix}
+                : new String[]{entityType};
+        try (Cursor cursor = getReadableDatabase().query(TABLE_DOCUMENTS, new String[]{COLUMN_DOCUMENT_ID},
+                selection, selectionArgs, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    private Map<String, Long> findReportModifiedTimes() {
+        Map<String, Long> modified = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_DOCUMENTS,
+                new String[]{COLUMN_DOCUMENT_ID, COLUMN_MODIFIED},
+                COLUMN_ENTITY_TYPE + " = ?", new String[]{TYPE_REPORT}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                modified.put(cursor.getString(0), cursor.getLong(1));
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Finds the best matches for a typed query across every entity type, best first. Every word
+     * matches as a prefix, so results appear while the user is still typing.
+     *
+     * @param query    The text typed into the search box.
+     * @param userName The signed-in technician; leads added by others are left out unless this is the admin user.
+     * @param limit    The maximum number of results.
+     */
+    public List<SearchResult> search(String query, String userName, int limit) {
+        List<SearchResult> results = new ArrayList<>();
+        String matchQuery = ReportDatabaseHelper.toMatchQuery(query);
+        if (matchQuery == null || limit <= 0) {
+            return results;
+        }
+        boolean admin = userName == null || ADMIN_USER.equalsIgnoreCase(userName);
+        // Only the columns needed to rank; the text of the winners is read afterwards
+        String sql = "SELECT d." + COLUMN_ID + ", d." + COLUMN_TITLE + ", matchinfo(" + TABLE_DOCUMENTS_FTS + ", 'pcx')" +
+                " FROM " + TABLE_DOCUMENTS_FTS + " JOIN " + TABLE_DOCUMENTS + " d ON d." + COLUMN_ID + " = " +
+                TABLE_DOCUMENTS_FTS + ".docid WHERE " + TABLE_DOCUMENTS_FTS + " MATCH ?" +
+                (admin ? "" : " AND (d." + COLUMN_ENTITY_TYPE + " <> ? OR d." + COLUMN_OWNER + " = ? COLLATE NOCASE)");
+        String[] args = admin ? new String[]{matchQuery} : new String[]{matchQuery, TYPE_LEAD, userName};
+
+        // Worst match at the head, so it is the one dropped once more than limit are held
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        String typedPrefix = query.trim().toLowerCase(Locale.ROOT);
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                String title = cursor.getString(1);
+                double score = score(cursor.getBlob(2));
+                if (title != null && title.toLowerCase(Locale.ROOT).startsWith(typedPrefix)) {
+                    score += TITLE_PREFIX_BONUS;
+                }
+                best.add(new Candidate(cursor.getLong(0), title, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Search failed for: " + query, e);
+            return results;
+        }
+        if (best.isEmpty()) {
+            return results;
+        }
+
+        List<Candidate> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, BEST_FIRST);
+        StringBuilder placeholders = new StringBuilder();
+        String[] ids = new String[ranked.size()];
+        for (int i = 0; i < ids.length; i++) {
+            placeholders.append(i > 0 ? ",?" : "?");
+            ids[i] = String.valueOf(ranked.get(i).id);
+        }
+        Map<Long, String[]> text = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_DOCUMENTS,
+                new String[]{COLUMN_ID, COLUMN_ENTITY_TYPE, COLUMN_DOCUMENT_ID, COLUMN_SUBTITLE, COLUMN_BODY},
+                COLUMN_ID + " IN (" + placeholders + ")", ids, null, null, null)) {
+            while (cursor.moveToNext()) {
+                text.put(cursor.getLong(0), new String[]{cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4)});
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Search failed for: " + query, e);
+            return results;
+        }
+        for (Candidate candidate : ranked) {
+            String[] row = text.get(candidate.id);
+            if (row != null) {
+                results.add(new SearchResult(row[0], row[1], candidate.title, row[2], row[3], candidate.score));
+            }
+        }
+        return results;
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : String.valueOf(a.title).compareToIgnoreCase(String.valueOf(b.title));
+    };
+
+    /**
+     * A match that has been scored but whose text has not been read yet.
+     */
+    private static class Candidate {
+        final long id;
+        final String title;
+        final double score;
+
+        Candidate(long id, String title, double score) {
+            this.id = id;
+            this.title = title;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Scores a row from its matchinfo 'pcx' blob: for each phrase and column, the share of that
+     * phrase's hits across the whole index that fall in this row, weighted by column.
+     */
+    private static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount && column < COLUMN_WEIGHTS.length; column++) {
+                int offset = 4 * (2 + 3 * (phrase * columnCount + column));
+                int hitsInRow = buffer.getInt(offset);
+                int hitsInAllRows = buffer.getInt(offset + 4);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    score += COLUMN_WEIGHTS[column] * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    private static String text(Map<String, Object> data, String key) {
+        Object value = data.get(key);
+        return value != null ? value.toString().trim() : "";
+    }
+
+    private static String join(String... parts) {
+        StringBuilder joined = new StringBuilder();
+        for (String part : parts) {
+            if (part != null && !part.isEmpty()) {
+                joined.append(joined.length() > 0 ? " - " : "").append(part);
+            }
+        }
+        return joined.toString();
+    }
+
+    /**
+     * One search hit, with enough of the document to describe it without another read.
+     */
+    public static class SearchResult {
+        public final String entityType;
+        public final String documentId;
+        public final String title;
+        public final String subtitle;
+        public final String body;
+        final double score;
+
+        SearchResult(String entityType, String documentId, String title, String subtitle, String body, double score) {
+            this.entityType = entityType;
+            this.documentId = documentId;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.body = body;
+            this.score = score;
+        }
+    }
+
+    /**
+     * A document prepared for the index: a title and subtitle for display, and a body made of
+     * every text field so any detail of the document can be searched.
+     */
+    private static class Entry {
+        final String entityType;
+        final String documentId;
+        final String owner;
+        final String title;
+        final String subtitle;
+        final String body;
+        final long modified;
+
+        Entry(String entityType, String documentId, String owner, String title, String subtitle, String body, long modified) {
+            this.entityType = entityType;
+            this.documentId = documentId;
+            this.owner = owner;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.body = body;
+            this.modified = modified;
+        }
+
+        static Entry fromDocument(String entityType, String documentId, Map<String, Object> data) {
+            StringBuilder body = new StringBuilder();
+            for (Map.Entry<String, Object> field : data.entrySet()) {
+                Object value = field.getValue();
+                if (value instanceof String || value instanceof Number) {
+                    body.append(field.getKey()).append(": ").append(value).append('\n');
+                }
+            }
+
+            switch (entityType) {
+                case TYPE_LEAD:
+                    return new Entry(entityType, documentId, text(data, "Added By"), text(data, "Premise Name"),
+                            join(text(data, "Premise Address"), text(data, "Added By"), text(data, "Invoice Status")),
+                            body.toString(), 0);
+                case TYPE_CONTRACT:
+                    return new Entry(entityType, documentId, text(data, "owner"), text(data, "name"),
+                            join(text(data, "address"), text(data, "owner")), body.toString(), 0);
+                default:
+                    return new Entry(entityType, documentId, text(data, "AssignedTech"), text(data, "CustomerName"),
+                            join(text(data, "Address"), text(data, "AssignedTech"), text(data, "Status")),
+                            body.toString(), 0);
+            }
+        }
+
+        static Entry fromReport(String documentId, String fileName, String folderName, long modified) {
+            ReportMetadata metadata = ReportMetadata.fromFileName(fileName, folderName);
+            String body = "File: " + fileName + "\nFolder: " + folderName;
+            return new Entry(TYPE_REPORT, documentId, null, metadata.customer,
+                    join(metadata.reportType, metadata.visitDate), body, modified);
+        }
+    }
+}
@@ -39,6 +39,10 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
+        // Record frame timings for every screen of the app, and UI-thread I/O in debug builds
+        FrameMetricsTracker.install(this);
+        MainThreadAudit.install(this);
+
         // Initialize Firebase Auth
         mAuth = FirebaseAuth.getInstance();
 
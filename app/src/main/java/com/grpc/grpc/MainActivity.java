@@ -1,20 +1,36 @@
 package com.grpc.grpc;
 
 import android.annotation.SuppressLint;
+import android.content.ActivityNotFoundException;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 
 import com.google.firebase.messaging.FirebaseMessaging;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * MainActivity.java
  *
@@ -25,6 +41,10 @@ import com.google.firebase.messaging.FirebaseMessaging;
  * Features:
  * - **User Authentication & Personalization**:
  *   - Retrieves the user's email and extracts their name for a personalized welcome message.
+ * - **Global Search**:
+ *   - Searches jobs, management jobs, leads, contracts and saved reports as you type, from the
+ *     on-device search index, so it works offline.
+ *   - Opens archived reports straight from their monthly bundle.
  * - **Report Management**:
  *   - Create, view, and manage pest control reports.
  *   - Supports different report types, including rodent control, bird control, and general quotations.
@@ -32,6 +52,7 @@ import com.google.firebase.messaging.FirebaseMessaging;
  * - **Contracts & Jobs**:
  *   - View, add, and manage service contracts.
  *   - Track contract status, update last visit dates, and generate contract-based reports.
+ *   - Month calendar of events, contract visits and job follow-ups.
  *   - Manage job assignments, including technician allocation, job status tracking, and WhatsApp notifications.
  * - **Quotations & Service Agreements**:
  *   - Generate professional quotations for pest control services with automatic VAT calculations.
@@ -47,6 +68,7 @@ import com.google.firebase.messaging.FirebaseMessaging;
  * - **Cloud Integration**:
  *   - Uses Firebase Firestore for contract, job, lead, and report management.
  *   - Stores reports and agreements in Firebase Storage for remote access.
+ *   - Meters Firestore and Storage usage per screen (debug builds show the Firebase Usage screen).
  * - **Navigation & External Links**:
  *   - Allows users to open Google Maps for job locations.
  *   - Directs users to the company website for additional information.
@@ -61,9 +83,16 @@ import com.google.firebase.messaging.FirebaseMessaging;
 
 public class MainActivity extends AppCompatActivity {
 
-    private Button reportButton, reportViewButton, contractsButton, quotesButton, logoutButton, CommisionButton, ServiceAgreementButton, JobButton, EnviromentButton, InstantMessage, WebsiteButton;
+    private Button reportButton, reportViewButton, contractsButton, quotesButton, logoutButton, CommisionButton, ServiceAgreementButton, JobButton, EnviromentButton, InstantMessage, WebsiteButton, FirebaseUsageButton;
     private String userEmail, userName;
     private TextView welcomeTextView;
+    private LinearLayout searchResultsContainer;
+
+    private static final int MAX_SEARCH_RESULTS = 20;
+
+    // Searches run off the main thread; a newer keystroke discards the results of an older one
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private int searchGeneration;
 
 
     // You can use any request code value
@@ -75,6 +104,10 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Frame timings are recorded for every screen from here on (no-op if the login screen did it)
+        FrameMetricsTracker.install(this);
+        MainThreadAudit.install(this);
+
         // Request notification permission on Android 13+
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             requestPermissions(new String[]{android.Manifest.permission.POST_NOTIFICATIONS}, REQUEST_NOTIFICATION_PERMISSION);
@@ -84,6 +117,15 @@ public class MainActivity extends AppCompatActivity {
 
 
 
+        // Make sure the daily overdue contracts digest is scheduled (keeps an existing schedule)
+        OverdueDigestWorker.schedule(this, false);
+
+        // Keep the hourly background sync of new reports scheduled
+        ReportSyncWorker.schedule(this);
+        BackupWorker.schedule(this);
+        ReportPrefetchWorker.schedule(this);
+        ReportArchiveWorker.schedule(this);
+
         userEmail = getIntent().getStringExtra("USER_EMAIL");
 
         if (userEmail == null || userEmail.isEmpty()) {
@@ -121,11 +163,31 @@ public class MainActivity extends AppCompatActivity {
 
 
 
+        EditText searchInput = findViewById(R.id.globalSearchInput);
+        searchResultsContainer = findViewById(R.id.globalSearchResults);
+        if (searchInput != null && searchResultsContainer != null) {
+            searchInput.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                    runSearch(s.toString());
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                }
+            });
+        }
+
         // Initialize Buttons
         InstantMessage = findViewById(R.id.InstantMessage);
         reportButton = findViewById(R.id.ReportButton);
         reportViewButton = findViewById(R.id.ReportViewButton);
         contractsButton = findViewById(R.id.ContractsButton);
+        Button calendarButton = findViewById(R.id.CalendarButton);
         quotesButton = findViewById(R.id.GeneralQuotesButton);
         ServiceAgreementButton = findViewById(R.id.ServiceAgreementButton);
         CommisionButton = findViewById(R.id.CommisionButton);
@@ -133,6 +195,9 @@ public class MainActivity extends AppCompatActivity {
         EnviromentButton = findViewById(R.id.EnviromentButton);
         logoutButton = findViewById(R.id.LogoutButton);
         WebsiteButton = findViewById(R.id.WebsiteButton);
+        FirebaseUsageButton = findViewById(R.id.FirebaseUsageButton);
+        Button screenPerformanceButton = findViewById(R.id.ScreenPerformanceButton);
+        Button mainThreadAuditButton = findViewById(R.id.MainThreadAuditButton);
 
         if (InstantMessage != null) {
             InstantMessage.setOnClickListener(view -> openActivity(MessagingActivity.class));
@@ -154,6 +219,10 @@ public class MainActivity extends AppCompatActivity {
             contractsButton.setOnClickListener(view -> openActivity(ContractsActivity.class));
         }
 
+        if (calendarButton != null) {
+            calendarButton.setOnClickListener(view -> openActivity(EventCalendarActivity.class));
+        }
+
         if (quotesButton != null) {
             quotesButton.setOnClickListener(view -> openActivity(QuotesActivity.class));
         }
@@ -174,6 +243,22 @@ public class MainActivity extends AppCompatActivity {
             });
         }
 
+        if (screenPerformanceButton != null) {
+            screenPerformanceButton.setOnClickListener(view -> openActivity(FrameMetricsActivity.class));
+        }
+
+        // Firebase usage metering screen is only offered in debuggable builds
+        if (FirebaseUsageButton != null && (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            FirebaseUsageButton.setVisibility(View.VISIBLE);
+            FirebaseUsageButton.setOnClickListener(view -> openActivity(FirebaseUsageActivity.class));
+        }
+
+        // StrictMode violation report, debuggable builds only
+        if (mainThreadAuditButton != null && MainThreadAudit.isAvailable(this)) {
+            mainThreadAuditButton.setVisibility(View.VISIBLE);
+            mainThreadAuditButton.setOnClickListener(view -> openActivity(MainThreadAuditActivity.class));
+        }
+
         if (JobButton != null) {
             JobButton.setOnClickListener(view -> openActivity(JobsActivity.class));
         }
@@ -188,6 +273,158 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Pick up reports saved since the last visit; only new or changed files are read
+        LocalSearchIndex.getInstance(this).refreshReportCatalogAsync();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchExecutor.shutdownNow();
+    }
+
+    /**
+     * Searches the local index in the background and lists the ranked results under the search box.
+     */
+    private void runSearch(String query) {
+        int requestGeneration = ++searchGeneration;
+        if (query.trim().isEmpty()) {
+            searchResultsContainer.removeAllViews();
+            return;
+        }
+        searchExecutor.execute(() -> {
+            List<LocalSearchIndex.SearchResult> results =
+                    LocalSearchIndex.getInstance(this).search(query, userName, MAX_SEARCH_RESULTS);
+            runOnUiThread(() -> {
+                if (requestGeneration == searchGeneration && !isDestroyed()) {
+                    showSearchResults(results);
+                }
+            });
+        });
+    }
+
+    private void showSearchResults(List<LocalSearchIndex.SearchResult> results) {
+        searchResultsContainer.removeAllViews();
+        if (results.isEmpty()) {
+            TextView empty = new TextView(this);
+            empty.setText("No matches.");
+            empty.setPadding(16, 8, 16, 8);
+            searchResultsContainer.addView(empty);
+            return;
+        }
+        for (LocalSearchIndex.SearchResult result : results) {
+            TextView row = new TextView(this);
+            row.setText("[" + typeLabel(result.entityType) + "] " + result.title +
+                    (result.subtitle == null || result.subtitle.isEmpty() ? "" : "\n" + result.subtitle));
+            row.setPadding(16, 12, 16, 12);
+            row.setBackgroundResource(android.R.drawable.list_selector_background);
+            row.setOnClickListener(view -> showSearchResult(result));
+            searchResultsContainer.addView(row);
+        }
+    }
+
+    private static String typeLabel(String entityType) {
+        switch (entityType) {
+            case LocalSearchIndex.TYPE_JOB:
+                return "Job";
+            case LocalSearchIndex.TYPE_MANAGEMENT_JOB:
+                return "Management Job";
+            case LocalSearchIndex.TYPE_LEAD:
+                return "Lead";
+            case LocalSearchIndex.TYPE_CONTRACT:
+                return "Contract";
+            default:
+                return "Report";
+        }
+    }
+
+    /**
+     * Shows the indexed details of a result, with a button to open it where it lives.
+     */
+    private void showSearchResult(LocalSearchIndex.SearchResult result) {
+        new AlertDialog.Builder(this)
+                .setTitle(typeLabel(result.entityType) + ": " + result.title)
+                .setMessage(result.body)
+                .setPositiveButton("Open", (dialog, which) -> openSearchResult(result))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void openSearchResult(LocalSearchIndex.SearchResult result) {
+        switch (result.entityType) {
+            case LocalSearchIndex.TYPE_JOB:
+                openActivity(ViewJobActivity.class);
+                break;
+            case LocalSearchIndex.TYPE_MANAGEMENT_JOB:
+                openActivity(ViewManagmentJobActivity.class);
+                break;
+            case LocalSearchIndex.TYPE_LEAD:
+                openActivity(ViewLeadsActivity.class);
+                break;
+            case LocalSearchIndex.TYPE_CONTRACT:
+                openActivity(ViewContractActivity.class);
+                break;
+            default:
+                openReport(result.documentId);
+                break;
+        }
+    }
+
+    /**
+     * Opens a saved report PDF, identified in the index as "folder/file name". Reports that have
+     * been archived are extracted from their monthly bundle first.
+     */
+    private void openReport(String documentId) {
+        int slash = documentId.indexOf('/');
+        String folderName = documentId.substring(0, slash);
+        String fileName = documentId.substring(slash + 1);
+        File file = new File(ReportFolders.get(this, folderName), fileName);
+        if (file.exists()) {
+            viewReport(file);
+            return;
+        }
+
+        searchExecutor.execute(() -> {
+            File extracted = null;
+            ReportArchive archive = ReportArchive.getInstance(this);
+            ReportArchive.ArchivedReport archived = archive.find(folderName, fileName);
+            if (archived != null) {
+                try {
+                    extracted = archive.extract(archived);
+                } catch (IOException e) {
+                    Log.w("MainActivity", "Could not extract " + documentId, e);
+                }
+            }
+            File result = extracted;
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                if (result != null) {
+                    viewReport(result);
+                } else {
+                    Toast.makeText(this, "This report is no longer on this device.", Toast.LENGTH_SHORT).show();
+                    LocalSearchIndex.getInstance(this).refreshReportCatalogAsync();
+                }
+            });
+        });
+    }
+
+    private void viewReport(File file) {
+        try {
+            Uri fileUri = FileProvider.getUriForFile(this, "com.grpc.grpc.fileprovider", file);
+            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
+            viewIntent.setDataAndType(fileUri, "application/pdf");
+            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            startActivity(viewIntent);
+        } catch (ActivityNotFoundException e) {
+            Toast.makeText(this, "No application available to open the report.", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void openActivity(Class<?> targetActivity) {
         Log.d("MainActivity", "Opening " + targetActivity.getSimpleName() + " with USER_NAME: " + userName);
         Intent intent = new Intent(MainActivity.this, targetActivity);
@@ -0,0 +1,332 @@
+package com.grpc.grpc;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MainThreadAudit.java
+ *
+ * This class turns on StrictMode in debug builds and keeps every violation it reports: disk reads
+ * and writes, network calls and slow calls on the UI thread, and closeables or SQLite objects that
+ * were never closed. Violations are grouped by the app code that caused them (the first frame of
+ * the stack trace in this app), so each call site is one row with a count, however often it runs.
+ * A call site can be marked fixed; if it shows up again it is flagged as regressed.
+ *
+ * Features:
+ * - Only in debuggable builds, and switchable from the Main Thread Audit screen
+ * - Disk reads, disk writes, unbuffered I/O, network and slow calls on the UI thread
+ * - Leaked closeables and SQLite cursors or databases anywhere in the app
+ * - Slow PipelineTrace sections on the UI thread are reported as slow calls
+ * - One row per violation kind and call site, with counts, versions and a sample stack trace
+ * - Persisted, so the list can be burned down across sessions and releases
+ *
+ * Author: James Scott
+ */
+
+public class MainThreadAudit extends SQLiteOpenHelper {
+
+    private static final String TAG = "MainThreadAudit";
+
+    static final String PREFS_NAME = "MainThreadAudit";
+    static final String KEY_ENABLED = "enabled";
+
+    // Longest sample stack trace kept per call site
+    private static final int MAX_STACK_FRAMES = 40;
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_main_thread_audit.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Violations Table
+    private static final String TABLE_VIOLATIONS = "violations";
+    private static final String COLUMN_KIND = "kind";
+    private static final String COLUMN_CALL_SITE = "call_site";
+    private static final String COLUMN_COUNT = "count";
+    private static final String COLUMN_FIRST_SEEN = "first_seen";
+    private static final String COLUMN_LAST_SEEN = "last_seen";
+    private static final String COLUMN_FIRST_VERSION = "first_version";
+    private static final String COLUMN_LAST_VERSION = "last_version";
+    private static final String COLUMN_MESSAGE = "message";
+    private static final String COLUMN_STACK_TRACE = "stack_trace";
+    private static final String COLUMN_FIXED_AT = "fixed_at";
+    private static final String COLUMN_REGRESSED = "regressed";
+
+    private static MainThreadAudit instance;
+    private static boolean installed;
+
+    // StrictMode hands violations to this thread, which also writes them to the database
+    private static final ExecutorService violationExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the shared audit log.
+     */
+    public static synchronized MainThreadAudit getInstance(Context context) {
+        if (instance == null) {
+            instance = new MainThreadAudit(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MainThreadAudit(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_VIOLATIONS + " (" +
+                COLUMN_KIND + " TEXT NOT NULL, " +
+                COLUMN_CALL_SITE + " TEXT NOT NULL, " +
+                COLUMN_COUNT + " INTEGER NOT NULL, " +
+                COLUMN_FIRST_SEEN + " INTEGER NOT NULL, " +
+                COLUMN_LAST_SEEN + " INTEGER NOT NULL, " +
+                COLUMN_FIRST_VERSION + " TEXT NOT NULL, " +
+                COLUMN_LAST_VERSION + " TEXT NOT NULL, " +
+                COLUMN_MESSAGE + " TEXT, " +
+                COLUMN_STACK_TRACE + " TEXT NOT NULL, " +
+                COLUMN_FIXED_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_REGRESSED + " INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (" + COLUMN_KIND + ", " + COLUMN_CALL_SITE + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_VIOLATIONS);
+        onCreate(db);
+    }
+
+    /**
+     * Turns StrictMode on for the app if this is a debuggable build and the audit is enabled. Call
+     * on the UI thread from each entry screen's onCreate; only the first call does anything.
+     */
+    public static void install(Activity activity) {
+        if (installed || !isAvailable(activity)) {
+            return;
+        }
+        installed = true;
+        applyPolicies(activity, isEnabled(activity));
+    }
+
+    public static boolean isAvailable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * Reports are only collected per call site from Android 9; older versions log to logcat.
+     */
+    public static boolean canCollect() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+    }
+
+    public static boolean isEnabled(Context context) {
+        return isAvailable(context)
+                && context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_ENABLED, true);
+    }
+
+    /**
+     * Switches the audit on or off straight away. Call on the UI thread.
+     */
+    public static void setEnabled(Activity activity, boolean enabled) {
+        activity.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_ENABLED, enabled)
+                .apply();
+        if (isAvailable(activity)) {
+            installed = true;
+            applyPolicies(activity, enabled);
+        }
+    }
+
+    private static void applyPolicies(Activity activity, boolean enabled) {
+        if (!enabled) {
+            StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX);
+            StrictMode.setVmPolicy(StrictMode.VmPolicy.LAX);
+            return;
+        }
+
+        Context appContext = activity.getApplicationContext();
+        StrictMode.ThreadPolicy.Builder threadPolicy = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .detectCustomSlowCalls()
+                .detectUnbufferedIo();
+        StrictMode.VmPolicy.Builder vmPolicy = new StrictMode.VmPolicy.Builder()
+                .detectLeakedClosableObjects()
+                .detectLeakedSqlLiteObjects();
+
+        if (canCollect()) {
+            threadPolicy.penaltyListener(violationExecutor, violation -> record(appContext, violation));
+            vmPolicy.penaltyListener(violationExecutor, violation -> record(appContext, violation));
+        } else {
+            threadPolicy.penaltyLog();
+            vmPolicy.penaltyLog();
+        }
+        StrictMode.setThreadPolicy(threadPolicy.build());
+        StrictMode.setVmPolicy(vmPolicy.build());
+    }
+
+    /**
+     * Adds one violation to its call site's row. Runs on the violation thread.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.P)
+    private static void record(Context context, Violation violation) {
+        try {
+            StackTraceElement[] stack = violation.getStackTrace();
+            getInstance(context).recordViolation(violation.getClass().getSimpleName().replace("Violation", ""),
+                    findCallSite(stack), violation.getMessage(), formatStack(stack));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not record StrictMode violation", e);
+        }
+    }
+
+    private void recordViolation(String kind, String callSite, String message, String stackTrace) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        String appVersion = FrameMetricsTracker.getAppVersion();
+
+        // A call site marked fixed that shows up again is flagged as regressed
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_VIOLATIONS + " SET " +
+                COLUMN_COUNT + " = " + COLUMN_COUNT + " + 1, " +
+                COLUMN_LAST_SEEN + " = ?, " +
+                COLUMN_LAST_VERSION + " = ?, " +
+                COLUMN_STACK_TRACE + " = ?, " +
+                COLUMN_REGRESSED + " = CASE WHEN " + COLUMN_FIXED_AT + " > 0 THEN 1 ELSE " + COLUMN_REGRESSED + " END, " +
+                COLUMN_FIXED_AT + " = 0 " +
+                "WHERE " + COLUMN_KIND + " = ? AND " + COLUMN_CALL_SITE + " = ?")) {
+            update.bindLong(1, now);
+            update.bindString(2, appVersion);
+            update.bindString(3, stackTrace);
+            update.bindString(4, kind);
+            update.bindString(5, callSite);
+            if (update.executeUpdateDelete() > 0) {
+                return;
+            }
+        }
+
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_VIOLATIONS + " (" +
+                COLUMN_KIND + ", " + COLUMN_CALL_SITE + ", " + COLUMN_COUNT + ", " + COLUMN_FIRST_SEEN + ", " +
+                COLUMN_LAST_SEEN + ", " + COLUMN_FIRST_VERSION + ", " + COLUMN_LAST_VERSION + ", " +
+                COLUMN_MESSAGE + ", " + COLUMN_STACK_TRACE + ") VALUES (?, ?, 1, ?, ?, ?, ?, ?, ?)")) {
+            insert.bindString(1, kind);
+            insert.bindString(2, callSite);
+            insert.bindLong(3, now);
+            insert.bindLong(4, now);
+            insert.bindString(5, appVersion);
+            insert.bindString(6, appVersion);
+            if (message != null) {
+                insert.bindString(7, message);
+            } else {
+                insert.bindNull(7);
+            }
+            insert.bindString(8, stackTrace);
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * Returns every call site, open ones first, most frequent first. Call off the UI thread.
+     */
+    public List<CallSite> getAll() {
+        List<CallSite> sites = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_VIOLATIONS, null, null, null, null, null,
+                "(" + COLUMN_FIXED_AT + " > 0), " + COLUMN_COUNT + " DESC")) {
+            while (cursor.moveToNext()) {
+                CallSite site = new CallSite(
+                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_KIND)),
+                        cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CALL_SITE)));
+                site.count = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_COUNT));
+                site.firstSeen = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FIRST_SEEN));
+                site.lastSeen = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LAST_SEEN));
+                site.firstVersion = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FIRST_VERSION));
+                site.lastVersion = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LAST_VERSION));
+                site.message = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MESSAGE));
+                site.stackTrace = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_STACK_TRACE));
+                site.fixedAt = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FIXED_AT));
+                site.regressed = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_REGRESSED)) != 0;
+                sites.add(site);
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Marks a call site fixed; it is flagged as regressed if it is reported again.
+     */
+    public void markFixed(CallSite site) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_FIXED_AT, System.currentTimeMillis());
+        values.put(COLUMN_REGRESSED, 0);
+        getWritableDatabase().update(TABLE_VIOLATIONS, values,
+                COLUMN_KIND + " = ? AND " + COLUMN_CALL_SITE + " = ?", new String[]{site.kind, site.callSite});
+    }
+
+    public void clear() {
+        getWritableDatabase().delete(TABLE_VIOLATIONS, null, null);
+    }
+
+    /**
+     * Returns the first frame of this app's code below StrictMode and the tracing helpers, so the
+     * same line is one call site however it was reached.
+     */
+    static String findCallSite(StackTraceElement[] stack) {
+        String packagePrefix = MainThreadAudit.class.getPackage().getName() + ".";
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.startsWith(packagePrefix)
+                    && !className.startsWith(MainThreadAudit.class.getName())
+                    && !className.startsWith(PipelineTrace.class.getName())) {
+                return frame.toString().substring(packagePrefix.length());
+            }
+        }
+        return stack.length > 0 ? stack[0].toString() : "unknown";
+    }
+
+    private static String formatStack(StackTraceElement[] stack) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < stack.length && i < MAX_STACK_FRAMES; i++) {
+            text.append("at ").append(stack[i]).append('\n');
+        }
+        if (stack.length > MAX_STACK_FRAMES) {
+            text.append("... ").append(stack.length - MAX_STACK_FRAMES).append(" more\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * All violations of one kind at one call site.
+     */
+    public static class CallSite {
+        public final String kind;
+        public final String callSite;
+        public long count;
+        public long firstSeen;
+        public long lastSeen;
+        public String firstVersion;
+        public String lastVersion;
+        public String message;
+        public String stackTrace;
+        public long fixedAt;
+        public boolean regressed;
+
+        CallSite(String kind, String callSite) {
+            this.kind = kind;
+            this.callSite = callSite;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.grpc.grpc;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MainThreadAuditActivity.java
+ *
+ * This debug screen lists the StrictMode violations MainThreadAudit has recorded, one box per call
+ * site with the most frequent open ones first, so UI-thread I/O can be burned down one line of code
+ * at a time. Call sites first seen in this version and ones that came back after being marked fixed
+ * are labelled, so new violations stand out.
+ *
+ * Features:
+ * - Kind, call site, count, versions and last seen time per call site
+ * - "New" and "Regressed" labels
+ * - Tap a call site for its stack trace, to copy it or mark the call site fixed
+ * - Turns the audit on or off and clears the list
+ *
+ * Author: James Scott
+ */
+
+public class MainThreadAuditActivity extends AppCompatActivity {
+
+    private LinearLayout auditContainer;
+    private TextView auditTotals;
+    private Button auditToggleButton;
+
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_main_thread_audit);
+
+        auditContainer = findViewById(R.id.auditContainer);
+        auditTotals = findViewById(R.id.auditTotals);
+        auditToggleButton = findViewById(R.id.auditToggleButton);
+        Button clearAuditButton = findViewById(R.id.clearAuditButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        auditToggleButton.setOnClickListener(view -> {
+            MainThreadAudit.setEnabled(this, !MainThreadAudit.isEnabled(this));
+            updateToggleButton();
+        });
+        clearAuditButton.setOnClickListener(view -> new AlertDialog.Builder(this)
+                .setTitle("Clear Audit")
+                .setMessage("Forget every recorded call site?")
+                .setPositiveButton("Clear", (dialog, which) -> runAndReload(() -> MainThreadAudit.getInstance(this).clear()))
+                .setNegativeButton("Cancel", null)
+                .show());
+        backButton.setOnClickListener(view -> finish());
+        updateToggleButton();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        runAndReload(null);
+    }
+
+    private void updateToggleButton() {
+        auditToggleButton.setText(MainThreadAudit.isEnabled(this) ? "Turn Off" : "Turn On");
+    }
+
+    /**
+     * Runs the change (if any) in the background, then reloads the list.
+     */
+    private void runAndReload(Runnable change) {
+        if (loadExecutor.isShutdown()) {
+            return;
+        }
+        loadExecutor.execute(() -> {
+            if (change != null) {
+                change.run();
+            }
+            List<MainThreadAudit.CallSite> sites = MainThreadAudit.getInstance(this).getAll();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    displayCallSites(sites);
+                }
+            });
+        });
+    }
+
+    private void displayCallSites(List<MainThreadAudit.CallSite> sites) {
+        String currentVersion = FrameMetricsTracker.getAppVersion();
+        int open = 0, fresh = 0, regressed = 0;
+        long violations = 0;
+        auditContainer.removeAllViews();
+        for (MainThreadAudit.CallSite site : sites) {
+            if (site.fixedAt == 0) {
+                open++;
+                violations += site.count;
+                if (site.regressed) {
+                    regressed++;
+                } else if (site.firstVersion.equals(currentVersion)) {
+                    fresh++;
+                }
+            }
+            addCallSiteToView(site, currentVersion);
+        }
+
+        String status = !MainThreadAudit.isEnabled(this) ? "Audit is off"
+                : !MainThreadAudit.canCollect() ? "Audit logs to logcat only before Android 9"
+                : "Audit is on";
+        auditTotals.setText(String.format(Locale.getDefault(), "%s\nOpen call sites: %d (%d new, %d regressed)\nViolations: %d",
+                status, open, fresh, regressed, violations));
+
+        if (sites.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No violations recorded yet.");
+            auditContainer.addView(emptyView);
+        }
+    }
+
+    private void addCallSiteToView(MainThreadAudit.CallSite site, String currentVersion) {
+        LinearLayout siteBox = new LinearLayout(this);
+        siteBox.setOrientation(LinearLayout.VERTICAL);
+        siteBox.setPadding(16, 16, 16, 16);
+        siteBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        String label = site.fixedAt > 0 ? "Fixed"
+                : site.regressed ? "Regressed"
+                : site.firstVersion.equals(currentVersion) ? "New"
+                : null;
+
+        TextView title = new TextView(this);
+        title.setText(site.kind + " x" + site.count + (label != null ? "  [" + label + "]" : ""));
+        title.setTextSize(16);
+        title.setTypeface(null, android.graphics.Typeface.BOLD);
+        if (site.fixedAt > 0) {
+            title.setTextColor(Color.GRAY);
+        } else if (label != null) {
+            title.setTextColor(Color.RED);
+        }
+        siteBox.addView(title);
+
+        TextView details = new TextView(this);
+        details.setText(site.callSite + "\n" +
+                "First seen in " + site.firstVersion + ", last in " + site.lastVersion + "\n" +
+                "Last seen " + new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault()).format(new Date(site.lastSeen)));
+        siteBox.addView(details);
+
+        siteBox.setOnClickListener(view -> showCallSite(site));
+        auditContainer.addView(siteBox);
+    }
+
+    /**
+     * Shows the sample stack trace, with options to copy it or mark the call site fixed.
+     */
+    private void showCallSite(MainThreadAudit.CallSite site) {
+        TextView stackView = new TextView(this);
+        stackView.setPadding(32, 16, 32, 16);
+        stackView.setTextSize(11);
+        stackView.setTextIsSelectable(true);
+        stackView.setText((site.message != null ? site.message + "\n\n" : "") + site.stackTrace);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(stackView);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(site.kind + " at " + site.callSite)
+                .setView(scrollView)
+                .setNeutralButton("Copy", (dialog, which) -> {
+                    ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+                    clipboard.setPrimaryClip(ClipData.newPlainText("StrictMode violation",
+                            site.kind + " at " + site.callSite + "\n" + site.stackTrace));
+                    Toast.makeText(this, "Stack trace copied.", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Close", null);
+        if (site.fixedAt == 0) {
+            builder.setPositiveButton("Mark Fixed", (dialog, which) -> runAndReload(() -> MainThreadAudit.getInstance(this).markFixed(site)));
+        }
+        builder.show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadExecutor.shutdown();
+    }
+}
@@ -16,7 +16,6 @@ import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentChange;
-import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
@@ -52,7 +51,7 @@ public class MessagingActivity extends AppCompatActivity {
     private ArrayList<String> messages;
     private ArrayList<String> messageIds;
     private MessageAdapter messageAdapter;
-    private FirebaseFirestore firestore;
+    private MeteredFirebase firestore;
     private FirebaseUser currentUser;
 
     @Override
@@ -70,7 +69,7 @@ public class MessagingActivity extends AppCompatActivity {
         messageAdapter = new MessageAdapter(this, messages);
         messageListView.setAdapter(messageAdapter);
 
-        firestore = FirebaseFirestore.getInstance();
+        firestore = MeteredFirebase.forScreen(this);
         currentUser = FirebaseAuth.getInstance().getCurrentUser();
 
         sendButton.setOnClickListener(view -> sendMessage());
@@ -99,7 +98,7 @@ public class MessagingActivity extends AppCompatActivity {
         message.put("body", messageText);
         message.put("timestamp", Timestamp.now());
 
-        firestore.collection("messages").add(message)
+        firestore.add(firestore.collection("messages"), message)
                 .addOnSuccessListener(documentReference -> {
                     Log.d("Firestore", "Message sent");
                     Toast.makeText(this, "Message sent", Toast.LENGTH_SHORT).show();
@@ -111,9 +110,8 @@ public class MessagingActivity extends AppCompatActivity {
 
 
     private void loadMessages() {
-        firestore.collection("messages")
-                .orderBy("timestamp", Query.Direction.ASCENDING)
-                .addSnapshotListener((snapshots, error) -> {
+        firestore.listen("messages", firestore.collection("messages")
+                .orderBy("timestamp", Query.Direction.ASCENDING), (snapshots, error) -> {
                     if (error != null) {
                         Log.e("Firestore", "Error loading messages", error);
                         return;
@@ -158,10 +156,10 @@ public class MessagingActivity extends AppCompatActivity {
     }
 
     private void deleteAllMessages() {
-        firestore.collection("messages").get()
+        firestore.get(firestore.collection("messages"))
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                        doc.getReference().delete();
+                        firestore.delete(doc.getReference());
                     }
                     messages.clear();
                     messageIds.clear();
@@ -180,7 +178,7 @@ public class MessagingActivity extends AppCompatActivity {
 
     private void deleteMessage(int position) {
         String messageId = messageIds.get(position);
-        firestore.collection("messages").document(messageId).delete()
+        firestore.delete(firestore.collection("messages").document(messageId))
                 .addOnSuccessListener(aVoid -> {
                     messages.remove(position);
                     messageIds.remove(position);
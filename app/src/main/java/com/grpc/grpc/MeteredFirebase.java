@@ -0,0 +1,407 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.storage.FileDownloadTask;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * MeteredFirebase.java
+ *
+ * This class is the data-access layer every screen uses to talk to Firestore and Firebase Storage.
+ * Each call is passed straight to the Firebase SDK and the original Task is returned, so callers
+ * chain their listeners exactly as before, but the outcome is also recorded in FirebaseUsageMeter
+ * against the calling screen.
+ *
+ * Features:
+ * - Counts billable document reads (cache hits are free), writes, deletes and listener events
+ * - Times every call, and the first snapshot of every listener
+ * - Counts Storage bytes uploaded and downloaded, and estimates Firestore document bytes
+ * - All bookkeeping runs on a background thread, never on the UI thread
+ *
+ * Author: James Scott
+ */
+
+public class MeteredFirebase {
+
+    // Storage lists are billed per page of up to 1000 results
+    private static final int STORAGE_LIST_PAGE_SIZE = 1000;
+
+    private static final Executor meterExecutor = Executors.newSingleThreadExecutor();
+
+    private final String screen;
+    private final FirebaseFirestore firestore;
+    private final FirebaseStorage storage;
+    private final FirebaseUsageMeter meter = FirebaseUsageMeter.getInstance();
+
+    private MeteredFirebase(String screen) {
+        this.screen = screen;
+        this.firestore = FirebaseFirestore.getInstance();
+        this.storage = FirebaseStorage.getInstance();
+    }
+
+    /**
+     * Returns a data-access object that records its usage against the given screen.
+     */
+    public static MeteredFirebase forScreen(Context screen) {
+        return new MeteredFirebase(screen.getClass().getSimpleName());
+    }
+
+    public static MeteredFirebase forScreen(String screen) {
+        return new MeteredFirebase(screen);
+    }
+
+    public CollectionReference collection(String collectionPath) {
+        return firestore.collection(collectionPath);
+    }
+
+    /**
+     * Returns the Storage reference for a path, or the bucket root for an empty path.
+     */
+    public StorageReference storageReference(String path) {
+        StorageReference root = storage.getReference();
+        return path == null || path.isEmpty() ? root : root.child(path);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Firestore
+    // ---------------------------------------------------------------------------------------
+
+    public Task<QuerySnapshot> get(Query query) {
+        return get(label(query), query);
+    }
+
+    /**
+     * Runs a query. A query is billed one read per document returned, and one read if it is empty.
+     */
+    public Task<QuerySnapshot> get(String collectionLabel, Query query) {
+        String operation = "query " + collectionLabel;
+        long start = SystemClock.elapsedRealtime();
+        Task<QuerySnapshot> task = query.get();
+        task.addOnCompleteListener(meterExecutor, completed -> {
+            long latency = SystemClock.elapsedRealtime() - start;
+            QuerySnapshot snapshot = completed.isSuccessful() ? completed.getResult() : null;
+            if (snapshot == null) {
+                meter.record(screen, operation, latency, true, 0, 0, 0, 0, 0);
+                return;
+            }
+            long reads = snapshot.getMetadata().isFromCache() ? 0 : Math.max(1, snapshot.size());
+            meter.record(screen, operation, latency, false, reads, 0, 0, 0, estimateBytes(snapshot.getDocuments()));
+        });
+        return task;
+    }
+
+    public Task<DocumentSnapshot> get(DocumentReference document) {
+        String operation = "read " + label(document);
+        long start = SystemClock.elapsedRealtime();
+        Task<DocumentSnapshot> task = document.get();
+        task.addOnCompleteListener(meterExecutor, completed -> {
+            long latency = SystemClock.elapsedRealtime() - start;
+            DocumentSnapshot snapshot = completed.isSuccessful() ? completed.getResult() : null;
+            if (snapshot == null) {
+                meter.record(screen, operation, latency, true, 0, 0, 0, 0, 0);
+                return;
+            }
+            long reads = snapshot.getMetadata().isFromCache() ? 0 : 1;
+            meter.record(screen, operation, latency, false, reads, 0, 0, 0, estimateBytes(snapshot));
+        });
+        return task;
+    }
+
+    public Task<DocumentReference> add(CollectionReference collection, Object data) {
+        long start = SystemClock.elapsedRealtime();
+        Task<DocumentReference> task = collection.add(data);
+        recordWrite(task, "add " + collection.getPath(), data, start);
+        return task;
+    }
+
+    public Task<Void> set(DocumentReference document, Object data) {
+        long start = SystemClock.elapsedRealtime();
+        Task<Void> task = document.set(data);
+        recordWrite(task, "set " + label(document), data, start);
+        return task;
+    }
+
+    public Task<Void> update(DocumentReference document, Map<String, Object> updates) {
+        long start = SystemClock.elapsedRealtime();
+        Task<Void> task = document.update(updates);
+        recordWrite(task, "update " + label(document), updates, start);
+        return task;
+    }
+
+    public Task<Void> update(DocumentReference document, String field, Object value, Object... moreFieldsAndValues) {
+        long start = SystemClock.elapsedRealtime();
+        Task<Void> task = document.update(field, value, moreFieldsAndValues);
+        List<Object> written = new ArrayList<>();
+        written.add(field);
+        written.add(value);
+        for (Object fieldOrValue : moreFieldsAndValues) {
+            written.add(fieldOrValue);
+        }
+        recordWrite(task, "update " + label(document), written, start);
+        return task;
+    }
+
+    public Task<Void> delete(DocumentReference document) {
+        String operation = "delete " + label(document);
+        long start = SystemClock.elapsedRealtime();
+        Task<Void> task = document.delete();
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, operation,
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                0, 0, completed.isSuccessful() ? 1 : 0, 0, 0));
+        return task;
+    }
+
+    public ListenerRegistration listen(Query query, EventListener<QuerySnapshot> listener) {
+        return listen(label(query), query, listener);
+    }
+
+    /**
+     * Attaches a snapshot listener. The first server snapshot is billed for every document in the
+     * result; later snapshots only for the documents that changed. Cached snapshots are free.
+     */
+    public ListenerRegistration listen(String collectionLabel, Query query, EventListener<QuerySnapshot> listener) {
+        String operation = "listen " + collectionLabel;
+        long start = SystemClock.elapsedRealtime();
+        boolean[] firstEvent = {true};
+        boolean[] firstServerSnapshot = {true};
+
+        return query.addSnapshotListener((snapshots, error) -> {
+            long latency = firstEvent[0] ? SystemClock.elapsedRealtime() - start : -1;
+            firstEvent[0] = false;
+
+            if (error != null || snapshots == null) {
+                meter.record(screen, operation, latency, true, 0, 0, 0, 1, 0);
+            } else {
+                long reads = 0;
+                List<DocumentSnapshot> billedDocuments = new ArrayList<>();
+                if (!snapshots.getMetadata().isFromCache()) {
+                    if (firstServerSnapshot[0]) {
+                        firstServerSnapshot[0] = false;
+                        billedDocuments.addAll(snapshots.getDocuments());
+                        reads = Math.max(1, snapshots.size());
+                    } else {
+                        for (DocumentChange change : snapshots.getDocumentChanges()) {
+                            billedDocuments.add(change.getDocument());
+                        }
+                        reads = billedDocuments.size();
+                    }
+                }
+                long billedReads = reads;
+                meterExecutor.execute(() -> meter.record(screen, operation, latency, false,
+                        billedReads, 0, 0, 1, estimateBytes(billedDocuments)));
+            }
+
+            listener.onEvent(snapshots, error);
+        });
+    }
+
+    private void recordWrite(Task<?> task, String operation, Object data, long start) {
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, operation,
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                0, completed.isSuccessful() ? 1 : 0, 0, 0, completed.isSuccessful() ? estimateValueBytes(data) : 0));
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Storage
+    // ---------------------------------------------------------------------------------------
+
+    public Task<ListResult> listAll(StorageReference reference) {
+        long start = SystemClock.elapsedRealtime();
+        Task<ListResult> task = reference.listAll();
+        task.addOnCompleteListener(meterExecutor, completed -> {
+            long latency = SystemClock.elapsedRealtime() - start;
+            ListResult result = completed.isSuccessful() ? completed.getResult() : null;
+            if (result == null) {
+                meter.record(screen, "storage list", latency, true, 0, 0, 0, 0, 0);
+                return;
+            }
+            int entries = result.getItems().size() + result.getPrefixes().size();
+            long pages = Math.max(1, (entries + STORAGE_LIST_PAGE_SIZE - 1) / STORAGE_LIST_PAGE_SIZE);
+            meter.record(screen, "storage list", latency, false, pages, 0, 0, 0, 0);
+        });
+        return task;
+    }
+
+    /**
+     * Lists one page of a folder. Pass a null page token for the first page.
+     */
+    public Task<ListResult> list(StorageReference reference, int maxResults, String pageToken) {
+        long start = SystemClock.elapsedRealtime();
+        Task<ListResult> task = pageToken == null ? reference.list(maxResults) : reference.list(maxResults, pageToken);
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage list page",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                completed.isSuccessful() ? 1 : 0, 0, 0, 0, 0));
+        return task;
+    }
+
+    public Task<Uri> getDownloadUrl(StorageReference reference) {
+        long start = SystemClock.elapsedRealtime();
+        Task<Uri> task = reference.getDownloadUrl();
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage url",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                completed.isSuccessful() ? 1 : 0, 0, 0, 0, 0));
+        return task;
+    }
+
+    public Task<StorageMetadata> getMetadata(StorageReference reference) {
+        long start = SystemClock.elapsedRealtime();
+        Task<StorageMetadata> task = reference.getMetadata();
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage metadata",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                1, 0, 0, 0, 0));
+        return task;
+    }
+
+    public UploadTask putFile(StorageReference reference, Uri file) {
+        return putFile(reference, file, null, null);
+    }
+
+    /**
+     * Starts an upload, or resumes it from the last acknowledged byte when the session URI of an
+     * earlier attempt is passed.
+     */
+    public UploadTask putFile(StorageReference reference, Uri file, StorageMetadata metadata, Uri existingSessionUri) {
+        long start = SystemClock.elapsedRealtime();
+        UploadTask task;
+        if (existingSessionUri != null) {
+            task = reference.putFile(file, metadata != null ? metadata : new StorageMetadata.Builder().build(), existingSessionUri);
+        } else if (metadata != null) {
+            task = reference.putFile(file, metadata);
+        } else {
+            task = reference.putFile(file);
+        }
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage upload",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                0, completed.isSuccessful() ? 1 : 0, 0, 0, task.getSnapshot().getBytesTransferred()));
+        return task;
+    }
+
+    public UploadTask putBytes(StorageReference reference, byte[] bytes, StorageMetadata metadata) {
+        long start = SystemClock.elapsedRealtime();
+        UploadTask task = metadata != null ? reference.putBytes(bytes, metadata) : reference.putBytes(bytes);
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage upload",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                0, completed.isSuccessful() ? 1 : 0, 0, 0, completed.isSuccessful() ? bytes.length : 0));
+        return task;
+    }
+
+    /**
+     * Downloads a small object into memory. Fails if the object is larger than maxBytes.
+     */
+    public Task<byte[]> getBytes(StorageReference reference, long maxBytes) {
+        long start = SystemClock.elapsedRealtime();
+        Task<byte[]> task = reference.getBytes(maxBytes);
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage download",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                completed.isSuccessful() ? 1 : 0, 0, 0, 0,
+                completed.isSuccessful() && completed.getResult() != null ? completed.getResult().length : 0));
+        return task;
+    }
+
+    public FileDownloadTask getFile(StorageReference reference, File destination) {
+        long start = SystemClock.elapsedRealtime();
+        FileDownloadTask task = reference.getFile(destination);
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage download",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                completed.isSuccessful() ? 1 : 0, 0, 0, 0, task.getSnapshot().getBytesTransferred()));
+        return task;
+    }
+
+    public Task<Void> delete(StorageReference reference) {
+        long start = SystemClock.elapsedRealtime();
+        Task<Void> task = reference.delete();
+        task.addOnCompleteListener(meterExecutor, completed -> meter.record(screen, "storage delete",
+                SystemClock.elapsedRealtime() - start, !completed.isSuccessful(),
+                0, 0, completed.isSuccessful() ? 1 : 0, 0, 0));
+        return task;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Helpers
+    // ---------------------------------------------------------------------------------------
+
+    private static String label(Query query) {
+        return query instanceof CollectionReference ? ((CollectionReference) query).getPath() : "query";
+    }
+
+    private static String label(DocumentReference document) {
+        return document.getParent().getPath();
+    }
+
+    private static long estimateBytes(List<DocumentSnapshot> documents) {
+        long bytes = 0;
+        for (DocumentSnapshot document : documents) {
+            bytes += estimateBytes(document);
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximates the stored size of a document using Firestore's size rules
+     * (the SDK does not expose the bytes actually sent over the wire).
+     */
+    private static long estimateBytes(DocumentSnapshot document) {
+        long bytes = utf8Length(document.getReference().getPath()) + 16;
+        Map<String, Object> data = document.getData();
+        return data != null ? bytes + estimateValueBytes(data) : bytes;
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return utf8Length((String) value) + 1;
+        }
+        if (value instanceof Number || value instanceof Date || value instanceof Timestamp) {
+            return 8;
+        }
+        if (value instanceof Map) {
+            long bytes = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += utf8Length(String.valueOf(entry.getKey())) + 1 + estimateValueBytes(entry.getValue());
+            }
+            return bytes;
+        }
+        if (value instanceof Collection) {
+            long bytes = 0;
+            for (Object element : (Collection<?>) value) {
+                bytes += estimateValueBytes(element);
+            }
+            return bytes;
+        }
+        return utf8Length(String.valueOf(value)) + 1;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -50,7 +50,7 @@ public class NonToxERAActivity extends AppCompatActivity {
 
 
         // Generate PDF
-        btnGeneratePDF.setOnClickListener(view -> generatePDF());
+        btnGeneratePDF.setOnClickListener(view -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePDF));
     }
 
 
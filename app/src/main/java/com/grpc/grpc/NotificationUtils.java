@@ -2,6 +2,7 @@ package com.grpc.grpc;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.content.Context;
 import android.os.Build;
 import androidx.core.app.NotificationCompat;
@@ -11,6 +12,14 @@ public class NotificationUtils {
     private static final String CHANNEL_ID = "grpc_notifications";
 
     public static void showNotification(Context context, String title, String message) {
+        showNotification(context, (int) System.currentTimeMillis(), title, message, null);
+    }
+
+    /**
+     * Shows a notification with a fixed id (re-posting the same id replaces it) and an optional tap action.
+     */
+    public static void showNotification(Context context, int notificationId, String title, String message,
+                                        PendingIntent contentIntent) {
         NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 
         // Channel for Android O+
@@ -27,8 +36,13 @@ public class NotificationUtils {
                 .setSmallIcon(R.drawable.bk)
                 .setContentTitle(title)
                 .setContentText(message)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
                 .setAutoCancel(true);
 
-        manager.notify((int) System.currentTimeMillis(), builder.build());
+        if (contentIntent != null) {
+            builder.setContentIntent(contentIntent);
+        }
+
+        manager.notify(notificationId, builder.build());
     }
 }
@@ -0,0 +1,137 @@
+package com.grpc.grpc;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OverdueDigestWorker.java
+ *
+ * This background job posts the daily overdue contracts digest. It runs once a day at the
+ * configured time, reads the overdue contracts for each technician from the ContractScheduleCache
+ * (no Firestore reads), and posts them as one grouped notification.
+ *
+ * Features:
+ * - Runs off the UI thread through WorkManager, whether or not the contracts screen is opened
+ * - Configurable delivery time stored in the "ContractReminders" preferences
+ * - One notification group with a child per technician and a summary
+ *
+ * Author: James Scott
+ */
+
+public class OverdueDigestWorker extends Worker {
+
+    private static final String UNIQUE_WORK_NAME = "daily_overdue_digest";
+    private static final String CHANNEL_ID = "grpc_overdue_digest";
+    private static final String GROUP_KEY = "com.grpc.grpc.OVERDUE_DIGEST";
+    private static final int SUMMARY_NOTIFICATION_ID = 4100;
+
+    static final String PREFS_NAME = "ContractReminders";
+    static final String KEY_DIGEST_HOUR = "digest_hour";
+    static final String KEY_DIGEST_MINUTE = "digest_minute";
+    static final int DEFAULT_DIGEST_HOUR = 8;
+    static final int DEFAULT_DIGEST_MINUTE = 0;
+
+    public OverdueDigestWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the daily digest at the configured time.
+     *
+     * @param replace True when the time was changed and the existing schedule should be replaced.
+     */
+    public static void schedule(Context context, boolean replace) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        int hour = prefs.getInt(KEY_DIGEST_HOUR, DEFAULT_DIGEST_HOUR);
+        int minute = prefs.getInt(KEY_DIGEST_MINUTE, DEFAULT_DIGEST_MINUTE);
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(OverdueDigestWorker.class, 1, TimeUnit.DAYS)
+                .setInitialDelay(CalendarDays.millisUntil(hour, minute), TimeUnit.MILLISECONDS)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME,
+                replace ? ExistingPeriodicWorkPolicy.CANCEL_AND_REENQUEUE : ExistingPeriodicWorkPolicy.KEEP,
+                request);
+    }
+
+    /**
+     * Saves a new delivery time and reschedules the digest.
+     */
+    public static void setDigestTime(Context context, int hour, int minute) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putInt(KEY_DIGEST_HOUR, hour)
+                .putInt(KEY_DIGEST_MINUTE, minute)
+                .apply();
+        schedule(context, true);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        Map<String, List<String>> overdueByTech = ContractScheduleCache.getInstance(context)
+                .getOverdueSummariesByTechnician(System.currentTimeMillis());
+
+        if (overdueByTech.isEmpty()) {
+            return Result.success();
+        }
+
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(
+                    CHANNEL_ID, "Overdue Contracts Digest", NotificationManager.IMPORTANCE_DEFAULT));
+        }
+
+        int totalOverdue = 0;
+        NotificationCompat.InboxStyle summaryStyle = new NotificationCompat.InboxStyle();
+
+        for (Map.Entry<String, List<String>> entry : overdueByTech.entrySet()) {
+            String technician = entry.getKey();
+            List<String> summaries = entry.getValue();
+            totalOverdue += summaries.size();
+            summaryStyle.addLine(technician + ": " + summaries.size() + " overdue");
+
+            NotificationCompat.InboxStyle techStyle = new NotificationCompat.InboxStyle();
+            for (String summary : summaries) {
+                techStyle.addLine(summary);
+            }
+
+            manager.notify(technician.toLowerCase().hashCode(), new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(R.drawable.bk)
+                    .setContentTitle("🛑 Overdue Contracts for " + technician)
+                    .setContentText(summaries.size() + " contracts are overdue")
+                    .setStyle(techStyle)
+                    .setGroup(GROUP_KEY)
+                    .setAutoCancel(true)
+                    .build());
+        }
+
+        manager.notify(SUMMARY_NOTIFICATION_ID, new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.bk)
+                .setContentTitle("Daily Overdue Contracts")
+                .setContentText(totalOverdue + " overdue contracts")
+                .setStyle(summaryStyle)
+                .setGroup(GROUP_KEY)
+                .setGroupSummary(true)
+                .setAutoCancel(true)
+                .build());
+
+        return Result.success();
+    }
+}
@@ -144,8 +144,8 @@ public class PDFQuotationReportGenerator {
                     .setFontSize(14).setBold());
 
             // ✅ Save the quote data to the database before closing the document
-            ReportDatabaseHelper dbHelper = new ReportDatabaseHelper(context);
-            dbHelper.insertQuote(
+            ReportDatabaseHelper dbHelper = ReportDatabaseHelper.getInstance(context);
+            dbHelper.insertQuoteAsync(
                     quoteNumber,
                     currentDate,
                     address,
@@ -153,7 +153,7 @@ public class PDFQuotationReportGenerator {
                     grandTotal,
                     userEmail,
                     mobileNumber,
-                    true);
+                    ReportDatabaseHelper.toastOnError(context, "Error inserting quote."));
 
             // ✅ Close the document after successful data saving
             document.close();
@@ -63,6 +63,8 @@ import java.util.Set;
  * - Saves the report locally in the designated folder
  * - Formats report content with structured headings and separators
  * - Allows users to attach images to the report for additional documentation
+ * - Stamps searchable report metadata into the PDF's document information
+ * - Marks each stage (assets, photos, sections, page events, flush) as a PipelineTrace section
  *
  * Author: James Scott
  */
@@ -93,16 +95,23 @@ public class PDFReportGenerator {
         String sanitizedReportName = reportName.replaceAll("[^a-zA-Z0-9]", "_") + "_" + currentDate + ".pdf";
         File pdfFile = new File(pdfFolder, sanitizedReportName);
 
-        try (PdfWriter writer = new PdfWriter(new FileOutputStream(pdfFile))) {
+        try (PipelineTrace.Section reportSection = PipelineTrace.begin("Report PDF", sanitizedReportName);
+             PdfWriter writer = new PdfWriter(new FileOutputStream(pdfFile))) {
             PdfDocument pdfDocument = new PdfDocument(writer);
+
+            // Customer, address, date and technician travel with the file for the upload index
+            ReportMetadata.fromContent(reportType, reportName, content).writeTo(pdfDocument);
             Document document = new Document(pdfDocument);
 
             // Apply watermark and footer event handler
             pdfDocument.addEventHandler(PdfDocumentEvent.END_PAGE, new PdfWatermarkAndFooterHandler(context));
 
             // Adding a logo image at the top of the report
-            int logoResourceId = context.getResources().getIdentifier("logo", "drawable", context.getPackageName());
-            ImageData logoData = ImageDataFactory.create(context.getResources().openRawResource(logoResourceId).readAllBytes());
+            ImageData logoData;
+            try (PipelineTrace.Section section = PipelineTrace.begin("Report assets", "logo")) {
+                int logoResourceId = context.getResources().getIdentifier("logo", "drawable", context.getPackageName());
+                logoData = ImageDataFactory.create(context.getResources().openRawResource(logoResourceId).readAllBytes());
+            }
             Image logo = new Image(logoData).scaleToFit(200, 200).setHorizontalAlignment(com.itextpdf.layout.property.HorizontalAlignment.CENTER);
             document.add(logo);
 
@@ -129,50 +138,51 @@ public class PDFReportGenerator {
 
             for (String detail : reportDetails) {
                 String[] splitDetail = detail.split(":", 2);
-
-                if (splitDetail.length == 2) {
-                    String labelText = splitDetail[0].trim();
-                    String valueText = splitDetail[1].trim().isEmpty() ? "N/A" : splitDetail[1].trim();
-
-                    // Add top separator **only if the heading is not "Premise Name"**
-                    if (headingsWithSeparator.contains(labelText)) {
+                try (PipelineTrace.Section section = PipelineTrace.begin("Report section layout", splitDetail[0].trim())) {
+                    if (splitDetail.length == 2) {
+                        String labelText = splitDetail[0].trim();
+                        String valueText = splitDetail[1].trim().isEmpty() ? "N/A" : splitDetail[1].trim();
+
+                        // Add top separator **only if the heading is not "Premise Name"**
+                        if (headingsWithSeparator.contains(labelText)) {
+                            document.add(blackSeparator);
+                        }
+
+                        // Add a heading with reduced spacing
+                        Paragraph labelParagraph = new Paragraph(labelText)
+                                .setFontColor(ColorConstants.BLACK)
+                                .setBackgroundColor(ColorConstants.LIGHT_GRAY)
+                                .setBold()
+                                .setFontSize(14)
+                                .setTextAlignment(TextAlignment.CENTER)
+                                .setMarginBottom(8)
+                                .setMarginTop(8);
+
+                        // Add the heading to the document
+                        document.add(labelParagraph);
+
+                        // Add bottom separator **after the heading**
                         document.add(blackSeparator);
-                    }
 
-                    // Add a heading with reduced spacing
-                    Paragraph labelParagraph = new Paragraph(labelText)
-                            .setFontColor(ColorConstants.BLACK)
-                            .setBackgroundColor(ColorConstants.LIGHT_GRAY)
-                            .setBold()
-                            .setFontSize(14)
-                            .setTextAlignment(TextAlignment.CENTER)
-                            .setMarginBottom(8)
-                            .setMarginTop(8);
-
-                    // Add the heading to the document
-                    document.add(labelParagraph);
-
-                    // Add bottom separator **after the heading**
-                    document.add(blackSeparator);
-
-                    // Add the value text with tight spacing
-                    Paragraph valueParagraph = new Paragraph(valueText)
-                            .setFontColor(ColorConstants.BLACK)
-                            .setFontSize(12)
-                            .setTextAlignment(TextAlignment.LEFT)
-                            .setMargin(0)
-                            .setMultipliedLeading(1.2f);
-
-                    document.add(valueParagraph);
-
-                } else {
-                    // For single-line paragraphs, reduce spacing
-                    document.add(new Paragraph(detail.trim())
-                            .setFontColor(ColorConstants.BLACK)
-                            .setFontSize(12)
-                            .setTextAlignment(TextAlignment.LEFT)
-                            .setMargin(0)
-                            .setMultipliedLeading(1.2f));
+                        // Add the value text with tight spacing
+                        Paragraph valueParagraph = new Paragraph(valueText)
+                                .setFontColor(ColorConstants.BLACK)
+                                .setFontSize(12)
+                                .setTextAlignment(TextAlignment.LEFT)
+                                .setMargin(0)
+                                .setMultipliedLeading(1.2f);
+
+                        document.add(valueParagraph);
+
+                    } else {
+                        // For single-line paragraphs, reduce spacing
+                        document.add(new Paragraph(detail.trim())
+                                .setFontColor(ColorConstants.BLACK)
+                                .setFontSize(12)
+                                .setTextAlignment(TextAlignment.LEFT)
+                                .setMargin(0)
+                                .setMultipliedLeading(1.2f));
+                    }
                 }
             }
 
@@ -191,16 +201,24 @@ public class PDFReportGenerator {
                     Uri uri = imageUris.get(i);
                     try {
                         document.add(new Paragraph("Images " + (i + 1)).setFontSize(16).setBold());
-                        ImageData imageData = ImageDataFactory.create(context.getContentResolver().openInputStream(uri).readAllBytes());
-                        Image image = new Image(imageData).scaleToFit(300, 300).setHorizontalAlignment(com.itextpdf.layout.property.HorizontalAlignment.CENTER);
-                        document.add(image);
+                        ImageData imageData;
+                        try (PipelineTrace.Section section = PipelineTrace.begin("Report photo decode", "image " + (i + 1))) {
+                            imageData = ImageDataFactory.create(context.getContentResolver().openInputStream(uri).readAllBytes());
+                        }
+                        try (PipelineTrace.Section section = PipelineTrace.begin("Report photo layout", "image " + (i + 1))) {
+                            Image image = new Image(imageData).scaleToFit(300, 300).setHorizontalAlignment(com.itextpdf.layout.property.HorizontalAlignment.CENTER);
+                            document.add(image);
+                        }
                     } catch (IOException e) {
                         Toast.makeText(context, "Error loading image: " + uri.toString(), Toast.LENGTH_SHORT).show();
                     }
                 }
             }
 
-            document.close();  // Close the document after content is added
+            // Closing lays out and writes the remaining pages, then flushes the file
+            try (PipelineTrace.Section section = PipelineTrace.begin("Report flush", sanitizedReportName)) {
+                document.close();
+            }
             Toast.makeText(context, "PDF Created Successfully!", Toast.LENGTH_SHORT).show();
 
 
@@ -235,6 +253,7 @@ public class PDFReportGenerator {
             PdfDocumentEvent pdfEvent = (PdfDocumentEvent) event;
             PdfDocument pdfDoc = pdfEvent.getDocument();
             PdfPage page = pdfEvent.getPage();
+            PipelineTrace.Section section = PipelineTrace.begin("Report END_PAGE", "page " + pdfDoc.getPageNumber(page));
             Rectangle pageSize = page.getPageSize();
             float pageWidth = pageSize.getWidth();
             float pageHeight = pageSize.getHeight();
@@ -243,8 +262,11 @@ public class PDFReportGenerator {
                 Document doc = new Document(pdfDoc);
 
                 // Applying a watermark image
-                int watermarkResourceId = context.getResources().getIdentifier("bk", "drawable", context.getPackageName());
-                ImageData watermarkData = ImageDataFactory.create(context.getResources().openRawResource(watermarkResourceId).readAllBytes());
+                ImageData watermarkData;
+                try (PipelineTrace.Section assetSection = PipelineTrace.begin("Report assets", "watermark")) {
+                    int watermarkResourceId = context.getResources().getIdentifier("bk", "drawable", context.getPackageName());
+                    watermarkData = ImageDataFactory.create(context.getResources().openRawResource(watermarkResourceId).readAllBytes());
+                }
                 Image watermark = new Image(watermarkData)
                         .scaleToFit(500, 500)
                         .setFixedPosition(pageWidth / 4, pageHeight / 4);
@@ -261,6 +283,8 @@ public class PDFReportGenerator {
             } catch (Exception e) {
                 Toast.makeText(context, "Error adding watermark or footer!", Toast.LENGTH_SHORT).show();
                 e.printStackTrace();
+            } finally {
+                section.close();
             }
         }
     }
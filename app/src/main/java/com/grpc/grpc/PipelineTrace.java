@@ -0,0 +1,207 @@
+package com.grpc.grpc;
+
+import android.os.Build;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PipelineTrace.java
+ *
+ * This class marks the stages of slow pipelines, such as saving and uploading a report, as named
+ * sections in Android system traces (Perfetto / systrace), so a trace shows exactly which stage the
+ * time went to. The duration of every section is also kept in a small in-memory ring buffer that
+ * the Screen Performance screen exports as CSV, for when no trace was being recorded.
+ *
+ * Features:
+ * - Sections are closed with try-with-resources, so an early return or exception still ends them
+ * - Async sections for stages that start on one thread and finish on another
+ * - Keeps the last CAPACITY sections with thread, nesting depth, start time and duration
+ * - Exports the ring buffer as CSV
+ * - Sections slower than SLOW_CALL_MS on the UI thread are reported to StrictMode as slow calls
+ *
+ * Author: James Scott
+ */
+
+public final class PipelineTrace {
+
+    static final int CAPACITY = 1000;
+
+    // A section on the UI thread slower than this is reported to StrictMode (MainThreadAudit)
+    static final long SLOW_CALL_MS = 50;
+
+    // Longest section name the platform accepts
+    private static final int MAX_TRACE_NAME_LENGTH = 127;
+
+    private static final Entry[] ring = new Entry[CAPACITY];
+    private static int nextSlot;
+    private static int size;
+
+    private static final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    private static final AtomicInteger nextCookie = new AtomicInteger();
+
+    private PipelineTrace() {
+    }
+
+    /**
+     * Begins a section on the current thread; close it on the same thread.
+     */
+    public static Section begin(String name) {
+        return begin(name, null);
+    }
+
+    /**
+     * Begins a section on the current thread; close it on the same thread.
+     *
+     * @param detail Extra text for the ring buffer only (file name, page number ...), or null.
+     */
+    public static Section begin(String name, String detail) {
+        Trace.beginSection(traceName(name));
+        return new Section(name, detail, depth.get()[0]++);
+    }
+
+    /**
+     * Begins a section that may be ended on any thread, e.g. from a callback.
+     */
+    public static AsyncSection beginAsync(String name, String detail) {
+        AsyncSection section = new AsyncSection(name, detail, nextCookie.incrementAndGet());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(traceName(name), section.cookie);
+        }
+        return section;
+    }
+
+    /**
+     * Returns the recorded sections, oldest first.
+     */
+    public static synchronized List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(size);
+        int first = (nextSlot - size + CAPACITY) % CAPACITY;
+        for (int i = 0; i < size; i++) {
+            entries.add(ring[(first + i) % CAPACITY]);
+        }
+        return entries;
+    }
+
+    public static synchronized void clear() {
+        nextSlot = 0;
+        size = 0;
+    }
+
+    /**
+     * Renders the ring buffer as CSV, one row per section, oldest first.
+     */
+    public static String toCsv() {
+        StringBuilder csv = new StringBuilder("started_at,thread,depth,section,detail,duration_ms\n");
+        for (Entry entry : getEntries()) {
+            csv.append(entry.startedAt).append(',')
+                    .append(DiagnosticsExport.csvField(entry.thread)).append(',')
+                    .append(entry.depth).append(',')
+                    .append(DiagnosticsExport.csvField(entry.name)).append(',')
+                    .append(DiagnosticsExport.csvField(entry.detail != null ? entry.detail : "")).append(',')
+                    .append(String.format(Locale.US, "%.2f", entry.durationMs)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static synchronized void record(Entry entry) {
+        ring[nextSlot] = entry;
+        nextSlot = (nextSlot + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+    }
+
+    private static String traceName(String name) {
+        return name.length() > MAX_TRACE_NAME_LENGTH ? name.substring(0, MAX_TRACE_NAME_LENGTH) : name;
+    }
+
+    /**
+     * A section open on one thread.
+     */
+    public static final class Section implements AutoCloseable {
+        private final String name;
+        private final String detail;
+        private final int sectionDepth;
+        private final long startedAt = System.currentTimeMillis();
+        private final long startNanos = SystemClock.elapsedRealtimeNanos();
+        private boolean closed;
+
+        private Section(String name, String detail, int sectionDepth) {
+            this.name = name;
+            this.detail = detail;
+            this.sectionDepth = sectionDepth;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Trace.endSection();
+            depth.get()[0]--;
+            double durationMs = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000.0;
+            record(new Entry(startedAt, Thread.currentThread().getName(), sectionDepth, name, detail, durationMs));
+            if (durationMs >= SLOW_CALL_MS && Looper.myLooper() == Looper.getMainLooper()) {
+                StrictMode.noteSlowCall(name + " took " + Math.round(durationMs) + " ms");
+            }
+        }
+    }
+
+    /**
+     * A section that may end on a different thread from the one that began it.
+     */
+    public static final class AsyncSection {
+        private final String name;
+        private final String detail;
+        private final int cookie;
+        private final String startThread = Thread.currentThread().getName();
+        private final long startedAt = System.currentTimeMillis();
+        private final long startNanos = SystemClock.elapsedRealtimeNanos();
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private AsyncSection(String name, String detail, int cookie) {
+            this.name = name;
+            this.detail = detail;
+            this.cookie = cookie;
+        }
+
+        public void end() {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(traceName(name), cookie);
+            }
+            record(new Entry(startedAt, startThread, 0, name, detail,
+                    (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000.0));
+        }
+    }
+
+    /**
+     * One finished section in the ring buffer.
+     */
+    public static final class Entry {
+        public final long startedAt;
+        public final String thread;
+        public final int depth;
+        public final String name;
+        public final String detail;
+        public final double durationMs;
+
+        Entry(long startedAt, String thread, int depth, String name, String detail, double durationMs) {
+            this.startedAt = startedAt;
+            this.thread = thread;
+            this.depth = depth;
+            this.name = name;
+            this.detail = detail;
+            this.durationMs = durationMs;
+        }
+    }
+}
@@ -23,6 +23,8 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import com.grpc.pdfviewer.PdfViewerActivity;
+
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
@@ -43,7 +45,7 @@ import java.util.List;
  * Features:
  * - Displays a list of stored PDF quotations
  * - Supports searching quotations by name using a search bar
- * - Enables viewing quotations with a PDF viewer
+ * - Enables viewing quotations in the embedded PDF viewer
  * - Allows users to share, rename, and delete quotations
  * - Ensures user-friendly alerts for report interactions
  *
@@ -243,26 +245,12 @@ public class QuotationViewActivity extends AppCompatActivity {
 
 
     /**
-     * Launches an intent to view the selected PDF file using a PDF viewer app.
+     * Opens the selected PDF file in the app's embedded PDF viewer.
      *
      * @param file The report file to be viewed.
      */
     private void viewPDF(File file) {
-        try {
-            Uri fileUri = FileProvider.getUriForFile(
-                    this,
-                    "com.grpc.grpc.fileprovider",
-                    file
-            );
-
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(fileUri, "application/pdf");
-            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-            startActivity(viewIntent);
-        } catch (Exception e) {
-            Toast.makeText(this, "No application found to view this PDF.", Toast.LENGTH_SHORT).show();
-        }
+        PdfViewerActivity.start(this, file);
     }
     /**
      * Renames the selected report and refreshes the report list.
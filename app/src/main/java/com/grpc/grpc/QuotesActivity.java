@@ -18,6 +18,7 @@ import androidx.appcompat.app.AppCompatActivity;
  * - Provides navigation to different quotation generation activities
  * - Ensures USER_NAME is always passed to the next activity
  * - Supports multiple service contract types (4pt, 6pt, 8pt, 12pt)
+ * - Opens the saved reports and quotes history
  *
  * Author: James Scott
  */
@@ -44,6 +45,7 @@ public class QuotesActivity extends AppCompatActivity {
         Button button6ptContract = findViewById(R.id.button6ptContract);
         Button button4ptContract = findViewById(R.id.button4ptContract);
         Button button12ptContract = findViewById(R.id.button12ptContract);
+        Button buttonSavedHistory = findViewById(R.id.buttonSavedHistory);
 
         // Open General8ptActivity
         button8ptContact.setOnClickListener(view -> {
@@ -72,5 +74,9 @@ public class QuotesActivity extends AppCompatActivity {
             intent.putExtra("USER_NAME", userName);
             startActivity(intent);
         });
+
+        // Open LocalHistoryActivity
+        buttonSavedHistory.setOnClickListener(view ->
+                startActivity(new Intent(QuotesActivity.this, LocalHistoryActivity.class)));
     }
 }
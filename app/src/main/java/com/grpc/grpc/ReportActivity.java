@@ -20,7 +20,6 @@ import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -110,17 +109,13 @@ public class ReportActivity extends AppCompatActivity {
         SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm", Locale.getDefault());
         dateInput.setText(sdf.format(new Date()));
 
-        // Initialize the database helper
-        ReportDatabaseHelper dbHelper = new ReportDatabaseHelper(this);
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
         // Set up button actions
         selectImageButton.setOnClickListener(view -> openImageSelector());
-        saveButton.setOnClickListener(view -> {
-            saveReport(db); // Keep the save functionality
+        // Checks there is room for the PDF and its images before saving
+        saveButton.setOnClickListener(view -> StorageBudget.confirmSpaceForDocument(this, selectedImageUris, () -> {
+            saveReport(); // Keep the save functionality
             clearFields();
-
-        });
+        }));
         backButton.setOnClickListener(view -> {
             clearFields();
         });
@@ -137,7 +132,7 @@ public class ReportActivity extends AppCompatActivity {
         followUpInput.setText("");
         prepInput.setText("");
         techInput.setText("");
-        selectedImageUris.clear(); // Clear selected images
+        selectedImageUris = new ArrayList<>(); // A save still in progress keeps the previous list
     }
 
 
@@ -179,11 +174,9 @@ public class ReportActivity extends AppCompatActivity {
     }
 
     /**
-     * Saves the report data into the SQLite database and generates a PDF report.
-     *
-     * @param db The writable SQLiteDatabase instance.
+     * Queues the report for the database writer and generates a PDF report once it is saved.
      */
-    private void saveReport(SQLiteDatabase db) {
+    private void saveReport() {
         // Collect input values for the report
         String reportName = nameInput.getText().toString();
         String content = "Premise Name: " + nameInput.getText().toString() +
@@ -208,23 +201,34 @@ public class ReportActivity extends AppCompatActivity {
         values.put("prep", prepInput.getText().toString());
         values.put("tech", techInput.getText().toString());
 
-        // Insert the report data into the database
-        long newRowId = db.insert("CompanyReports", null, values);
-        if (newRowId != -1) {
-            Toast.makeText(this, "Company Report Saved Successfully!", Toast.LENGTH_SHORT).show();
-
-            // Generate a PDF report only if the OS version supports it
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                PDFReportGenerator.generatePDFReport(
-                        "Company",
-                        reportName,
-                        content,
-                        this,
-                        !selectedImageUris.isEmpty() ? selectedImageUris : null
-                );
+        // The fields are cleared straight after this returns, so keep this report's images
+        List<Uri> imageUris = selectedImageUris;
+
+        // Insert the report data into the database off the UI thread; the trace covers the queue wait too
+        PipelineTrace.AsyncSection dbWrite = PipelineTrace.beginAsync("Report DB write", reportName);
+        ReportDatabaseHelper.getInstance(this).insertCompanyReportAsync(values, new ReportDatabaseHelper.WriteCallback() {
+            @Override
+            public void onWritten(long rowId) {
+                dbWrite.end();
+                Toast.makeText(ReportActivity.this, "Company Report Saved Successfully!", Toast.LENGTH_SHORT).show();
+
+                // Generate a PDF report only if the OS version supports it
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                    PDFReportGenerator.generatePDFReport(
+                            "Company",
+                            reportName,
+                            content,
+                            ReportActivity.this,
+                            !imageUris.isEmpty() ? imageUris : null
+                    );
+                }
             }
-        } else {
-            Toast.makeText(this, "Error Saving Report!", Toast.LENGTH_SHORT).show();
-        }
+
+            @Override
+            public void onError(Exception e) {
+                dbWrite.end();
+                Toast.makeText(ReportActivity.this, "Error Saving Report!", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
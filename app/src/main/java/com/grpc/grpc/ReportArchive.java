@@ -0,0 +1,337 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ReportArchive.java
+ *
+ * This class keeps old reports in compressed monthly bundles ("ReportArchive/<folder>/<yyyy-MM>.zip")
+ * instead of the live document folders, and an index of every file in every bundle. The live
+ * folders stay small and quick to list, while the index keeps archived reports searchable and a
+ * single report can be pulled back out of its bundle when someone opens it.
+ *
+ * Features:
+ * - One bundle per document folder and month, written to a temporary file and swapped in whole
+ * - Index of archived files with their size, modified time, hash and bundle
+ * - Extracts a single report on demand into the external cache (reused while it is there)
+ * - Totals of archived files and bundle sizes for the settings screen
+ *
+ * Author: James Scott
+ */
+
+public class ReportArchive extends SQLiteOpenHelper {
+
+    private static final String ARCHIVE_FOLDER = "ReportArchive";
+    private static final String EXTRACT_FOLDER = "archive_extracts";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Database Configuration
+    static final String DATABASE_NAME = "grpest_report_archive.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Archived Files Table
+    private static final String TABLE_ARCHIVED_FILES = "archived_files";
+    private static final String COLUMN_FOLDER = "folder";
+    private static final String COLUMN_FILE_NAME = "file_name";
+    private static final String COLUMN_MONTH = "month";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+    private static final String COLUMN_CONTENT_MD5 = "content_md5";
+    private static final String COLUMN_ARCHIVED_AT = "archived_at";
+
+    private static ReportArchive instance;
+
+    private final Context context;
+
+    /**
+     * Returns the shared report archive.
+     */
+    public static synchronized ReportArchive getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportArchive(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReportArchive(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARCHIVED_FILES + " (" +
+                COLUMN_FOLDER + " TEXT NOT NULL, " +
+                COLUMN_FILE_NAME + " TEXT NOT NULL, " +
+                COLUMN_MONTH + " TEXT NOT NULL, " +
+                COLUMN_SIZE + " INTEGER NOT NULL, " +
+                COLUMN_LAST_MODIFIED + " INTEGER NOT NULL, " +
+                COLUMN_CONTENT_MD5 + " TEXT NOT NULL, " +
+                COLUMN_ARCHIVED_AT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_FOLDER + ", " + COLUMN_FILE_NAME + "))");
+        db.execSQL("CREATE INDEX idx_archived_files_bundle ON " + TABLE_ARCHIVED_FILES +
+                " (" + COLUMN_FOLDER + ", " + COLUMN_MONTH + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The index is the only way into the bundles, so it is never dropped
+    }
+
+    /**
+     * Returns the folder holding every bundle (it may not exist yet).
+     */
+    File getArchiveFolder() {
+        return new File(context.getExternalFilesDir(null), ARCHIVE_FOLDER);
+    }
+
+    /**
+     * Returns the cache folder extracted reports are written to (it may not exist yet).
+     */
+    File getExtractFolder() {
+        return new File(context.getExternalCacheDir(), EXTRACT_FOLDER);
+    }
+
+    File bundleFile(String folderName, String month) {
+        return new File(new File(getArchiveFolder(), folderName), month + ".zip");
+    }
+
+    /**
+     * Adds files from one document folder to that folder's bundle for the month, then records them
+     * in the index. Files already in the bundle under the same name are replaced. The originals are
+     * left in place; the caller deletes them once this returns. Must not be called on the UI thread.
+     *
+     * @param contentMd5s Base64 MD5 of each file, in the same order.
+     */
+    synchronized void addToBundle(String folderName, String month, List<File> files, List<String> contentMd5s)
+            throws IOException {
+        File bundle = bundleFile(folderName, month);
+        File partial = new File(bundle.getPath() + ".partial");
+        File parent = bundle.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        Set<String> newNames = new HashSet<>();
+        for (File file : files) {
+            newNames.add(file.getName());
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (FileOutputStream fileOut = new FileOutputStream(partial);
+             ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE))) {
+            zip.setLevel(Deflater.BEST_COMPRESSION);
+
+            // Carry over what the bundle already holds, except entries being replaced
+            if (bundle.exists()) {
+                try (ZipFile existing = new ZipFile(bundle)) {
+                    Enumeration<? extends ZipEntry> entries = existing.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        if (newNames.contains(entry.getName())) {
+                            continue;
+                        }
+                        ZipEntry copy = new ZipEntry(entry.getName());
+                        copy.setTime(entry.getTime());
+                        zip.putNextEntry(copy);
+                        try (InputStream in = existing.getInputStream(entry)) {
+                            copy(in, zip, buffer);
+                        }
+                        zip.closeEntry();
+                    }
+                }
+            }
+
+            for (File file : files) {
+                ZipEntry entry = new ZipEntry(file.getName());
+                entry.setTime(file.lastModified());
+                zip.putNextEntry(entry);
+                try (InputStream in = new FileInputStream(file)) {
+                    copy(in, zip, buffer);
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+
+        if (!partial.renameTo(bundle)) {
+            partial.delete();
+            throw new IOException("Cannot replace " + bundle);
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_FOLDER, folderName);
+                values.put(COLUMN_FILE_NAME, file.getName());
+                values.put(COLUMN_MONTH, month);
+                values.put(COLUMN_SIZE, file.length());
+                values.put(COLUMN_LAST_MODIFIED, file.lastModified());
+                values.put(COLUMN_CONTENT_MD5, contentMd5s.get(i));
+                values.put(COLUMN_ARCHIVED_AT, now);
+                db.insertWithOnConflict(TABLE_ARCHIVED_FILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the archived report with this folder and file name, or null if it is not archived.
+     * Must not be called on the UI thread.
+     */
+    public ArchivedReport find(String folderName, String fileName) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_ARCHIVED_FILES, null,
+                COLUMN_FOLDER + "=? AND " + COLUMN_FILE_NAME + "=?", new String[]{folderName, fileName},
+                null, null, null)) {
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        }
+    }
+
+    /**
+     * Returns every archived report. Must not be called on the UI thread.
+     */
+    public List<ArchivedReport> getAll() {
+        List<ArchivedReport> reports = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_ARCHIVED_FILES, null,
+                null, null, null, null, COLUMN_FOLDER + ", " + COLUMN_FILE_NAME)) {
+            while (cursor.moveToNext()) {
+                reports.add(fromCursor(cursor));
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Returns the number of archived files, their original total size and the size of the bundles.
+     */
+    public long[] getTotals() {
+        long fileCount = 0;
+        long originalBytes = 0;
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*), SUM(" + COLUMN_SIZE + ") FROM " +
+                TABLE_ARCHIVED_FILES, null)) {
+            if (cursor.moveToFirst()) {
+                fileCount = cursor.getLong(0);
+                originalBytes = cursor.getLong(1);
+            }
+        }
+        long bundleBytes = 0;
+        File[] folders = getArchiveFolder().listFiles(File::isDirectory);
+        if (folders != null) {
+            for (File folder : folders) {
+                File[] bundles = folder.listFiles((dir, name) -> name.endsWith(".zip"));
+                if (bundles != null) {
+                    for (File bundle : bundles) {
+                        bundleBytes += bundle.length();
+                    }
+                }
+            }
+        }
+        return new long[]{fileCount, originalBytes, bundleBytes};
+    }
+
+    /**
+     * Pulls one report out of its bundle into the external cache and returns the file. A copy
+     * extracted earlier is returned as it is. Must not be called on the UI thread.
+     */
+    public File extract(ArchivedReport report) throws IOException {
+        File target = new File(new File(getExtractFolder(), report.folderName), report.fileName);
+        if (target.exists() && target.length() == report.size) {
+            target.setLastModified(System.currentTimeMillis()); // Recency for StorageBudget's cache eviction
+            return target;
+        }
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        File partial = new File(target.getPath() + ".partial");
+        try (ZipFile bundle = new ZipFile(bundleFile(report.folderName, report.month))) {
+            ZipEntry entry = bundle.getEntry(report.fileName);
+            if (entry == null) {
+                throw new IOException(report.fileName + " is missing from the " + report.month + " bundle");
+            }
+            try (InputStream in = bundle.getInputStream(entry);
+                 OutputStream out = new FileOutputStream(partial)) {
+                copy(in, out, new byte[BUFFER_SIZE]);
+            }
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Cannot write " + target);
+        }
+        return target;
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static ArchivedReport fromCursor(Cursor cursor) {
+        return new ArchivedReport(
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FOLDER)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FILE_NAME)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MONTH)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_SIZE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LAST_MODIFIED)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT_MD5)));
+    }
+
+    /**
+     * One report held in a monthly bundle.
+     */
+    public static class ArchivedReport {
+        public final String folderName;
+        public final String fileName;
+        public final String month;
+        public final long size;
+        public final long lastModified;
+        public final String contentMd5;
+
+        ArchivedReport(String folderName, String fileName, String month, long size, long lastModified, String contentMd5) {
+            this.folderName = folderName;
+            this.fileName = fileName;
+            this.month = month;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentMd5 = contentMd5;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReportArchiveWorker.java
+ *
+ * This background job moves old reports out of the live document folders into ReportArchive's
+ * monthly bundles, then holds every storage category to its StorageBudget. A report is only
+ * archived once it is older than the configured age and the upload worker has confirmed the server
+ * holds exactly these bytes, so the archive never holds the only copy of an unsent report.
+ * Archived reports stay searchable, can be opened from the main screen's search, and are still
+ * included in ReportBackup snapshots and ReportZipExporter exports.
+ *
+ * Features:
+ * - Daily, while charging with the battery not low, and on demand from the uploads screen
+ * - Configurable age (ARCHIVE_AFTER_DAYS by default, 0 turns archiving off)
+ * - Only files whose current hash matches the hash the server confirmed
+ * - A month is archived once all of it is older than the cutoff, so its bundle is written once
+ * - One bundle rewrite per folder and month, then the originals are deleted
+ * - Enforces the storage budgets after archiving
+ * - Keeps a short summary of the last run for the uploads screen
+ *
+ * Author: James Scott
+ */
+
+public class ReportArchiveWorker extends Worker {
+
+    private static final String TAG = "ReportArchiveWorker";
+    private static final String PERIODIC_WORK_NAME = "report_archive";
+    private static final String ONE_TIME_WORK_NAME = "report_archive_now";
+
+    static final String PREFS_NAME = "ReportArchive";
+    static final String KEY_ARCHIVE_AFTER_DAYS = "archive_after_days";
+    static final String KEY_LAST_RESULT = "last_result";
+    static final int DEFAULT_ARCHIVE_AFTER_DAYS = 180;
+
+    public ReportArchiveWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the daily archive run (keeps an existing schedule).
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(ReportArchiveWorker.class, 24, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Runs an archive pass as soon as possible, unless one is already waiting to run.
+     */
+    public static void archiveNow(Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.KEEP,
+                new OneTimeWorkRequest.Builder(ReportArchiveWorker.class).build());
+    }
+
+    /**
+     * Sets how many days old a report must be before it is archived; 0 turns archiving off.
+     */
+    public static void setArchiveAfterDays(Context context, int days) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putInt(KEY_ARCHIVE_AFTER_DAYS, Math.max(0, days))
+                .apply();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        int archiveAfterDays = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getInt(KEY_ARCHIVE_AFTER_DAYS, DEFAULT_ARCHIVE_AFTER_DAYS);
+        // Whole months only: archiving the month the cutoff falls in a day at a time would rewrite
+        // (and deflate again) the same bundle every night
+        long cutoff = CalendarDays.startOfMonth(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveAfterDays));
+
+        ReportSyncState syncState = ReportSyncState.getInstance(context);
+        ReportArchive archive = ReportArchive.getInstance(context);
+        SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM", Locale.ROOT);
+        int archivedCount = 0;
+        long archivedBytes = 0;
+        int failedBundles = 0;
+
+        // An age of 0 turns archiving off; the storage budgets below are still enforced
+        for (String folderName : archiveAfterDays > 0 ? ReportFolders.ALL : new String[0]) {
+            File[] files = ReportFolders.get(context, folderName).listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+
+            // Group the eligible files by the month they were last modified in
+            Map<String, List<File>> filesByMonth = new LinkedHashMap<>();
+            Map<String, List<String>> md5sByMonth = new LinkedHashMap<>();
+            for (File file : files) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                if (file.getName().startsWith(".") || file.lastModified() >= cutoff) {
+                    continue;
+                }
+                String contentMd5 = syncState.getConfirmedMd5(file);
+                if (contentMd5 == null) {
+                    continue; // Not uploaded, or changed since; the next sync sends it first
+                }
+                String month = monthFormat.format(new Date(file.lastModified()));
+                if (!filesByMonth.containsKey(month)) {
+                    filesByMonth.put(month, new ArrayList<>());
+                    md5sByMonth.put(month, new ArrayList<>());
+                }
+                filesByMonth.get(month).add(file);
+                md5sByMonth.get(month).add(contentMd5);
+            }
+
+            for (Map.Entry<String, List<File>> month : filesByMonth.entrySet()) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                List<File> monthFiles = month.getValue();
+                try {
+                    archive.addToBundle(folderName, month.getKey(), monthFiles, md5sByMonth.get(month.getKey()));
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not archive " + folderName + " " + month.getKey(), e);
+                    failedBundles++;
+                    continue;
+                }
+                // The bundle and its index rows are committed; only now let go of the originals
+                for (File file : monthFiles) {
+                    long size = file.length();
+                    if (file.delete()) {
+                        archivedCount++;
+                        archivedBytes += size;
+                    }
+                }
+            }
+        }
+
+        if (archivedCount > 0) {
+            LocalSearchIndex.getInstance(context).refreshReportCatalogAsync();
+        }
+        long evictedBytes = StorageBudget.enforce(context);
+        saveResult(String.format(Locale.getDefault(), "Archived %d reports (%.1f MB), evicted %.1f MB over budget%s",
+                archivedCount, archivedBytes / 1048576.0, evictedBytes / 1048576.0,
+                failedBundles > 0 ? "; " + failedBundles + " bundles failed" : ""));
+        return failedBundles > 0 ? Result.retry() : Result.success();
+    }
+
+    private void saveResult(String result) {
+        getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_LAST_RESULT, result)
+                .apply();
+    }
+}
@@ -0,0 +1,551 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * ReportBackup.java
+ *
+ * This class backs up the local report database (grpest_reports.db), the document folders and the
+ * report archive (its monthly bundles and grpest_report_archive.db) to the "backup" folder in
+ * Firebase Storage, and restores them. Every file is split into
+ * content-defined chunks (ContentChunker) stored under their SHA-256, and each backup writes a
+ * snapshot manifest listing every file and its chunks. Only chunks that are not already stored are
+ * uploaded, so a nightly backup of a large report folder uploads just the new and changed parts.
+ *
+ * Storage layout, per signed-in user:
+ *   backup/<uid>/chunks/<first two hex digits>/<sha256>
+ *   backup/<uid>/snapshots/<yyyyMMdd-HHmmss>.json
+ *
+ * Features:
+ * - Incremental: unchanged files are not re-read, known chunks are not re-uploaded
+ * - Consistent database copy taken while holding a database transaction
+ * - Archived reports are backed up too, so they never drop out of the snapshots
+ * - Keeps the last KEEP_SNAPSHOTS snapshots and deletes chunks no snapshot uses any more
+ * - Restores any snapshot, verifying every chunk's hash, and skips files already up to date
+ *
+ * Author: James Scott
+ */
+
+public class ReportBackup {
+
+    private static final String TAG = "ReportBackup";
+
+    static final String BACKUP_ROOT = "backup";
+    static final String DATABASE_NAME = "grpest_reports.db";
+
+    private static final int MANIFEST_VERSION = 1;
+    static final int KEEP_SNAPSHOTS = 14;
+    private static final long MAX_MANIFEST_BYTES = 32L * 1024 * 1024;
+
+    // Manifest paths are "databases/<name>", "files/<folder>/<name>" or "archive/<folder>/<yyyy-MM>.zip"
+    private static final String DATABASES_PREFIX = "databases/";
+    private static final String FILES_PREFIX = "files/";
+    private static final String ARCHIVE_PREFIX = "archive/";
+
+    /**
+     * Receives restore progress on the calling (background) thread.
+     */
+    public interface ProgressListener {
+        void onProgress(int filesDone, int fileCount, String currentFile);
+    }
+
+    /**
+     * What one backup stored.
+     */
+    public static class Summary {
+        public final String snapshotName;
+        public final int fileCount;
+        public final int chunksUploaded;
+        public final long bytesUploaded;
+        public final long totalBytes;
+
+        Summary(String snapshotName, int fileCount, int chunksUploaded, long bytesUploaded, long totalBytes) {
+            this.snapshotName = snapshotName;
+            this.fileCount = fileCount;
+            this.chunksUploaded = chunksUploaded;
+            this.bytesUploaded = bytesUploaded;
+            this.totalBytes = totalBytes;
+        }
+    }
+
+    private final Context context;
+    private final MeteredFirebase firebase;
+    private final BackupState state;
+    private final String userRoot;
+
+    /**
+     * Returns a backup for the signed-in user, or null if nobody is signed in.
+     */
+    public static ReportBackup forCurrentUser(Context context) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? new ReportBackup(context, user.getUid()) : null;
+    }
+
+    private ReportBackup(Context context, String uid) {
+        this.context = context.getApplicationContext();
+        this.firebase = MeteredFirebase.forScreen(TAG);
+        this.state = BackupState.getInstance(context, uid);
+        this.userRoot = BACKUP_ROOT + "/" + uid;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Backup
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Takes a snapshot. Must not be called on the UI thread.
+     */
+    public Summary backUp() throws IOException, InterruptedException {
+        if (state.getChunkCount() == 0) {
+            seedFromLatestSnapshot();
+        }
+
+        JSONArray files = new JSONArray();
+        int[] chunksUploaded = {0};
+        long[] bytesUploaded = {0};
+        long totalBytes = 0;
+
+        // The database first, from a consistent copy
+        totalBytes += addDatabase(files, ReportDatabaseHelper.getInstance(context), DATABASE_NAME,
+                chunksUploaded, bytesUploaded);
+
+        for (String folderName : ReportFolders.ALL) {
+            File[] folderFiles = ReportFolders.get(context, folderName).listFiles(File::isFile);
+            if (folderFiles == null) {
+                continue;
+            }
+            for (File file : folderFiles) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                totalBytes += addFile(files, FILES_PREFIX + folderName + "/" + file.getName(), file, true,
+                        chunksUploaded, bytesUploaded);
+            }
+        }
+
+        // The archive after the live folders, so a report archived meanwhile is in one or the other.
+        // Holding the archive's lock keeps the bundles and their index from changing underneath.
+        ReportArchive archive = ReportArchive.getInstance(context);
+        synchronized (archive) {
+            for (String folderName : ReportFolders.ALL) {
+                File[] bundles = new File(archive.getArchiveFolder(), folderName).listFiles(File::isFile);
+                if (bundles == null) {
+                    continue;
+                }
+                for (File bundle : bundles) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    if (bundle.getName().endsWith(".zip")) {
+                        totalBytes += addFile(files, ARCHIVE_PREFIX + folderName + "/" + bundle.getName(), bundle, true,
+                                chunksUploaded, bytesUploaded);
+                    }
+                }
+            }
+            totalBytes += addDatabase(files, archive, ReportArchive.DATABASE_NAME, chunksUploaded, bytesUploaded);
+        }
+
+        String snapshotName = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        try {
+            JSONObject manifest = new JSONObject();
+            manifest.put("version", MANIFEST_VERSION);
+            manifest.put("createdAt", System.currentTimeMillis());
+            manifest.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            manifest.put("totalBytes", totalBytes);
+            manifest.put("files", files);
+
+            StorageMetadata metadata = new StorageMetadata.Builder().setContentType("application/json").build();
+            await(firebase.putBytes(snapshotReference(snapshotName),
+                    manifest.toString().getBytes(StandardCharsets.UTF_8), metadata));
+        } catch (JSONException e) {
+            throw new IOException("Could not write manifest", e);
+        }
+
+        pruneOldSnapshots();
+        return new Summary(snapshotName, files.length(), chunksUploaded[0], bytesUploaded[0], totalBytes);
+    }
+
+    /**
+     * Adds a file to the manifest, uploading any chunk that is not stored yet.
+     *
+     * @param trackChanges True to skip re-reading the file when its size and modified time are unchanged.
+     * @return The file size.
+     */
+    private long addFile(JSONArray files, String path, File file, boolean trackChanges,
+                         int[] chunksUploaded, long[] bytesUploaded) throws IOException, InterruptedException {
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        List<String> chunks = trackChanges ? state.getUnchangedFileChunks(path, size, lastModified) : null;
+        if (chunks == null) {
+            List<String> newChunks = new ArrayList<>();
+            try (InputStream in = new FileInputStream(file)) {
+                ContentChunker.split(in, (data, length, sha256) -> {
+                    newChunks.add(sha256);
+                    if (state.hasChunk(sha256)) {
+                        return;
+                    }
+                    byte[] bytes = new byte[length];
+                    System.arraycopy(data, 0, bytes, 0, length);
+                    try {
+                        await(firebase.putBytes(chunkReference(sha256), bytes, null));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Backup interrupted", e);
+                    }
+                    state.recordChunk(sha256, length);
+                    chunksUploaded[0]++;
+                    bytesUploaded[0] += length;
+                });
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            chunks = newChunks;
+            if (trackChanges) {
+                state.recordFile(path, size, lastModified, chunks);
+            }
+        }
+
+        try {
+            JSONObject entry = new JSONObject();
+            entry.put("path", path);
+            entry.put("size", size);
+            entry.put("modified", lastModified);
+            entry.put("chunks", new JSONArray(chunks));
+            files.put(entry);
+        } catch (JSONException e) {
+            throw new IOException("Could not describe " + path, e);
+        }
+        return size;
+    }
+
+    /**
+     * Adds a consistent copy of a database (and its log, if any) to the manifest.
+     *
+     * @return The bytes added.
+     */
+    private long addDatabase(JSONArray files, SQLiteOpenHelper helper, String name,
+                             int[] chunksUploaded, long[] bytesUploaded) throws IOException, InterruptedException {
+        File databaseCopy = new File(context.getCacheDir(), "backup/" + name);
+        File walCopy = new File(databaseCopy.getPath() + "-wal");
+        try {
+            copyDatabase(helper, name, databaseCopy, walCopy);
+            long bytes = addFile(files, DATABASES_PREFIX + name, databaseCopy, false, chunksUploaded, bytesUploaded);
+            if (walCopy.exists()) {
+                bytes += addFile(files, DATABASES_PREFIX + name + "-wal", walCopy, false, chunksUploaded, bytesUploaded);
+            }
+            return bytes;
+        } finally {
+            databaseCopy.delete();
+            walCopy.delete();
+        }
+    }
+
+    /**
+     * Copies a database while holding a transaction, so no write lands half-way through the copy.
+     * In WAL mode the log is checkpointed first and any remainder is copied as well.
+     */
+    private void copyDatabase(SQLiteOpenHelper helper, String name, File databaseCopy, File walCopy) throws IOException {
+        File source = context.getDatabasePath(name);
+        File sourceWal = new File(source.getPath() + "-wal");
+        databaseCopy.getParentFile().mkdirs();
+        walCopy.delete();
+
+        // The shared connection stays open for the app; only the transaction is released here
+        SQLiteDatabase db = helper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+            cursor.moveToFirst();
+        }
+        db.beginTransaction();
+        try {
+            copy(source, databaseCopy);
+            if (sourceWal.length() > 0) {
+                copy(sourceWal, walCopy);
+            }
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks the chunks of the newest snapshot as stored, so a reinstalled app does not upload them again.
+     */
+    private void seedFromLatestSnapshot() throws IOException, InterruptedException {
+        List<String> snapshots = listSnapshots();
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        Set<String> hashes = new HashSet<>();
+        collectChunks(readManifest(snapshots.get(0)), hashes);
+        state.recordChunks(hashes);
+    }
+
+    /**
+     * Deletes snapshots beyond KEEP_SNAPSHOTS, then the chunks none of the remaining ones use.
+     */
+    private void pruneOldSnapshots() throws InterruptedException {
+        try {
+            List<String> snapshots = listSnapshots();
+            if (snapshots.size() <= KEEP_SNAPSHOTS) {
+                return;
+            }
+            for (String old : snapshots.subList(KEEP_SNAPSHOTS, snapshots.size())) {
+                await(firebase.delete(snapshotReference(old)));
+            }
+
+            Set<String> referenced = new HashSet<>();
+            for (String kept : snapshots.subList(0, KEEP_SNAPSHOTS)) {
+                collectChunks(readManifest(kept), referenced);
+            }
+            for (String hash : state.getChunkHashes()) {
+                if (!referenced.contains(hash)) {
+                    await(firebase.delete(chunkReference(hash)));
+                    state.deleteChunk(hash);
+                }
+            }
+        } catch (IOException e) {
+            // Chunks are only deleted once every kept manifest has been read
+            Log.w(TAG, "Pruning old snapshots failed", e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Restore
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Returns snapshot names, newest first. Must not be called on the UI thread.
+     */
+    public List<String> listSnapshots() throws IOException, InterruptedException {
+        ListResult result = await(firebase.listAll(firebase.storageReference(userRoot + "/snapshots")));
+        List<String> names = new ArrayList<>();
+        for (StorageReference item : result.getItems()) {
+            String name = item.getName();
+            if (name.endsWith(".json")) {
+                names.add(name.substring(0, name.length() - ".json".length()));
+            }
+        }
+        Collections.sort(names, Collections.reverseOrder());
+        return names;
+    }
+
+    /**
+     * Restores every file of a snapshot. Files whose size and modified time already match the
+     * snapshot are left alone. The databases are written last; the app must restart afterwards.
+     *
+     * @return The number of files written.
+     */
+    public int restore(String snapshotName, ProgressListener listener) throws IOException, InterruptedException {
+        JSONObject manifest = readManifest(snapshotName);
+        JSONArray files = manifest.optJSONArray("files");
+        if (files == null) {
+            throw new IOException("Snapshot " + snapshotName + " has no files");
+        }
+
+        // Report folders first, the database last
+        List<JSONObject> ordered = new ArrayList<>();
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject entry = files.optJSONObject(i);
+            if (entry != null && !entry.optString("path").startsWith(DATABASES_PREFIX)) {
+                ordered.add(entry);
+            }
+        }
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject entry = files.optJSONObject(i);
+            if (entry != null && entry.optString("path").startsWith(DATABASES_PREFIX)) {
+                ordered.add(entry);
+            }
+        }
+
+        int written = 0;
+        Set<String> databaseLogsCleared = new HashSet<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            JSONObject entry = ordered.get(i);
+            String path = entry.optString("path");
+            listener.onProgress(i, ordered.size(), path);
+
+            File target = localFile(path);
+            if (path.startsWith(DATABASES_PREFIX)) {
+                String databaseName = path.substring(DATABASES_PREFIX.length()).replace("-wal", "");
+                if (databaseLogsCleared.add(databaseName)) {
+                    // A stale log would be replayed over the restored database
+                    File database = context.getDatabasePath(databaseName);
+                    new File(database.getPath() + "-wal").delete();
+                    new File(database.getPath() + "-shm").delete();
+                }
+            }
+            long size = entry.optLong("size");
+            long modified = entry.optLong("modified");
+            if (target.exists() && target.length() == size && target.lastModified() == modified) {
+                continue;
+            }
+            restoreFile(target, entry.optJSONArray("chunks"));
+            target.setLastModified(modified);
+            written++;
+        }
+        listener.onProgress(ordered.size(), ordered.size(), null);
+        return written;
+    }
+
+    /**
+     * Rebuilds a file from its chunks into a temporary file next to it, then swaps it in.
+     */
+    private void restoreFile(File target, JSONArray chunks) throws IOException, InterruptedException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File partial = new File(target.getPath() + ".restoring");
+        try (OutputStream out = new FileOutputStream(partial)) {
+            for (int i = 0; chunks != null && i < chunks.length(); i++) {
+                String hash = chunks.optString(i);
+                byte[] data = await(firebase.getBytes(chunkReference(hash), ContentChunker.MAX_CHUNK_SIZE));
+                if (!hash.equals(ContentHash.sha256Hex(data, 0, data.length))) {
+                    throw new IOException("Chunk " + hash + " is corrupt");
+                }
+                out.write(data);
+            }
+        } catch (IOException | InterruptedException e) {
+            partial.delete();
+            throw e;
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    /**
+     * Maps a manifest path back to a file on this device, refusing anything outside the backed-up folders.
+     */
+    private File localFile(String path) throws IOException {
+        if (path.contains("..")) {
+            throw new IOException("Invalid path in snapshot: " + path);
+        }
+        if (path.startsWith(DATABASES_PREFIX)) {
+            String name = path.substring(DATABASES_PREFIX.length());
+            for (String known : new String[]{DATABASE_NAME, ReportArchive.DATABASE_NAME}) {
+                if (name.equals(known) || name.equals(known + "-wal")) {
+                    return context.getDatabasePath(name);
+                }
+            }
+        } else if (path.startsWith(FILES_PREFIX)) {
+            String relative = path.substring(FILES_PREFIX.length());
+            int slash = relative.indexOf('/');
+            if (slash > 0) {
+                String folderName = relative.substring(0, slash);
+                for (String known : ReportFolders.ALL) {
+                    if (known.equals(folderName)) {
+                        return new File(ReportFolders.get(context, folderName), relative.substring(slash + 1));
+                    }
+                }
+            }
+        } else if (path.startsWith(ARCHIVE_PREFIX)) {
+            String relative = path.substring(ARCHIVE_PREFIX.length());
+            int slash = relative.indexOf('/');
+            String bundleName = slash > 0 ? relative.substring(slash + 1) : "";
+            if (bundleName.matches("\\d{4}-\\d{2}\\.zip")) {
+                String folderName = relative.substring(0, slash);
+                for (String known : ReportFolders.ALL) {
+                    if (known.equals(folderName)) {
+                        return ReportArchive.getInstance(context).bundleFile(folderName,
+                                bundleName.substring(0, bundleName.length() - ".zip".length()));
+                    }
+                }
+            }
+        }
+        throw new IOException("Unknown path in snapshot: " + path);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Helpers
+    // ---------------------------------------------------------------------------------------
+
+    private JSONObject readManifest(String snapshotName) throws IOException, InterruptedException {
+        byte[] bytes = await(firebase.getBytes(snapshotReference(snapshotName), MAX_MANIFEST_BYTES));
+        try {
+            JSONObject manifest = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            if (manifest.optInt("version") > MANIFEST_VERSION) {
+                throw new IOException("Snapshot " + snapshotName + " was written by a newer version of the app");
+            }
+            return manifest;
+        } catch (JSONException e) {
+            throw new IOException("Snapshot " + snapshotName + " is unreadable", e);
+        }
+    }
+
+    private static void collectChunks(JSONObject manifest, Set<String> into) {
+        JSONArray files = manifest.optJSONArray("files");
+        for (int i = 0; files != null && i < files.length(); i++) {
+            JSONObject entry = files.optJSONObject(i);
+            JSONArray chunks = entry != null ? entry.optJSONArray("chunks") : null;
+            for (int j = 0; chunks != null && j < chunks.length(); j++) {
+                into.add(chunks.optString(j));
+            }
+        }
+    }
+
+    private StorageReference chunkReference(String hash) {
+        return firebase.storageReference(userRoot + "/chunks/" + hash.substring(0, 2) + "/" + hash);
+    }
+
+    private StorageReference snapshotReference(String snapshotName) {
+        return firebase.storageReference(userRoot + "/snapshots/" + snapshotName + ".json");
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static <T> T await(Task<T> task) throws IOException, InterruptedException {
+        try {
+            return Tasks.await(task);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause() != null ? e.getCause().getMessage() : "Storage request failed", e.getCause());
+        }
+    }
+}
@@ -3,11 +3,30 @@ package com.grpc.grpc;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ReportDatabaseHelper.java
@@ -19,7 +38,19 @@ import java.util.ArrayList;
  * Features:
  * - Creates and manages tables for company reports, events, general quotations, and bird quotations
  * - Supports inserting and retrieving events based on date and name
- * - Handles database version upgrades by recreating tables when needed
+ * - Events carry an epoch day for one-query month windows; contract visits and job follow-ups are
+ *   written into the same table under a source key, so a refresh replaces rather than duplicates them
+ * - One process-wide connection in write-ahead logging mode, opened once and never closed
+ * - Indexes on the columns the queries filter by, and a full-text index of event names
+ * - Reports and quotes are written asynchronously by a single writer thread, which commits the
+ *   inserts that arrive within GROUP_COMMIT_WINDOW_MS of each other in one transaction
+ * - Write results are delivered to a WriteCallback on the main thread
+ * - Typed CompanyReport and Quote rows, read a page at a time by id (keyset paging)
+ * - TableObservers are told which tables changed after each commit, and whether only rows were added
+ * - Report and quote dates are also stored as epoch milliseconds, with covering indexes, so date
+ *   ranges and monthly/quarterly quote totals are answered by SQLite from the index alone
+ * - Insert statements compiled once and reused
+ * - Upgrades one version at a time through migrateTo, keeping the data from version 3 on
  * - Provides methods for saving and deleting reports and quotes
  * - Ensures data persistence for structured reporting in pest control operations
  *
@@ -30,10 +61,10 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
 
     // Database Configuration
     private static final String DATABASE_NAME = "grpest_reports.db";
-    private static final int DATABASE_VERSION = 3; // Incremented for quotes support
+    private static final int DATABASE_VERSION = 6; // Calendar columns on events
 
     // CompanyReports Table
-    private static final String TABLE_COMPANY_REPORTS = "CompanyReports";
+    public static final String TABLE_COMPANY_REPORTS = "CompanyReports";
     private static final String COLUMN_COMPANY_ID = "id";
     private static final String COLUMN_COMPANY_NAME = "name";
     private static final String COLUMN_COMPANY_ADDRESS = "address";
@@ -44,15 +75,23 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_COMPANY_FOLLOW_UP = "follow_up";
     private static final String COLUMN_COMPANY_PREP = "prep";
     private static final String COLUMN_COMPANY_TECH = "tech";
+    private static final String COLUMN_COMPANY_DATE_MILLIS = "date_millis";
 
     // Events Table
-    private static final String TABLE_EVENTS = "events";
+    public static final String TABLE_EVENTS = "events";
     private static final String COLUMN_EVENT_ID = "_id";
     private static final String COLUMN_EVENT_DATE = "date";
     private static final String COLUMN_EVENT_NAME = "event_name";
+    private static final String COLUMN_EVENT_DAY_MILLIS = "day_millis"; // Local midnight of the event's day
+    private static final String COLUMN_EVENT_SOURCE = "source"; // NULL for events added by hand
+    private static final String COLUMN_EVENT_SOURCE_KEY = "source_key";
+
+    // Sources of generated events
+    public static final String EVENT_SOURCE_CONTRACT_VISIT = "contract_visit";
+    public static final String EVENT_SOURCE_FOLLOW_UP = "follow_up";
 
     // General Quotes Table
-    private static final String TABLE_QUOTES = "quotes";
+    public static final String TABLE_QUOTES = "quotes";
     private static final String COLUMN_QUOTE_ID = "id";
     private static final String COLUMN_QUOTE_NUMBER = "quote_number";
     private static final String COLUMN_QUOTE_DATE = "date";
@@ -61,9 +100,10 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_QUOTE_TOTAL = "total_amount";
     private static final String COLUMN_QUOTE_EMAIL = "email";
     private static final String COLUMN_QUOTE_MOBILE = "mobile_number";
+    private static final String COLUMN_QUOTE_DATE_MILLIS = "date_millis";
 
     // Bird Quotes Table
-    private static final String TABLE_BIRD_QUOTES = "BirdQuotes";
+    public static final String TABLE_BIRD_QUOTES = "BirdQuotes";
     private static final String COLUMN_BIRD_QUOTE_ID = "id";
     private static final String COLUMN_BIRD_QUOTE_NUMBER = "quote_number";
     private static final String COLUMN_BIRD_QUOTE_DATE = "date";
@@ -72,15 +112,227 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_BIRD_QUOTE_TOTAL = "total_amount";
     private static final String COLUMN_BIRD_QUOTE_EMAIL = "email";
     private static final String COLUMN_BIRD_QUOTE_MOBILE = "mobile_number";
+    private static final String COLUMN_BIRD_QUOTE_DATE_MILLIS = "date_millis";
+
+    // Period keys for the quote aggregates, computed by SQLite from the epoch column in local time
+    private static final String LOCAL_DATE = COLUMN_QUOTE_DATE_MILLIS + " / 1000, 'unixepoch', 'localtime'";
+    private static final String MONTH_PERIOD = "strftime('%Y-%m', " + LOCAL_DATE + ")";
+    private static final String QUARTER_PERIOD = "strftime('%Y', " + LOCAL_DATE + ") || '-Q' || " +
+            "((CAST(strftime('%m', " + LOCAL_DATE + ") AS INTEGER) + 2) / 3)";
+
+    // Formats the free-text date columns have been saved in; the first that parses wins
+    private static final String[] DATE_PATTERNS = {"dd-MM-yyyy HH:mm", "dd-MM-yyyy", "dd/MM/yyyy HH:mm", "dd/MM/yyyy", "yyyy-MM-dd"};
+
+    // Date text written with generated events, matching the quote dates
+    private static final String EVENT_DATE_PATTERN = "dd-MM-yyyy";
+
+    // Full-text index of event names, kept in step with the events table by triggers
+    private static final String TABLE_EVENTS_FTS = "events_fts";
+
+    // Column order of the typed row readers; readCompanyReport/readQuote index into these
+    private static final String[] COMPANY_REPORT_COLUMNS = {
+            COLUMN_COMPANY_ID, COLUMN_COMPANY_NAME, COLUMN_COMPANY_ADDRESS, COLUMN_COMPANY_DATE,
+            COLUMN_COMPANY_VISIT_TYPE, COLUMN_COMPANY_SITE_INSPECTION, COLUMN_COMPANY_RECOMMENDATIONS,
+            COLUMN_COMPANY_FOLLOW_UP, COLUMN_COMPANY_PREP, COLUMN_COMPANY_TECH, COLUMN_COMPANY_DATE_MILLIS};
+    private static final String[] QUOTE_COLUMNS = {
+            COLUMN_QUOTE_ID, COLUMN_QUOTE_NUMBER, COLUMN_QUOTE_DATE, COLUMN_QUOTE_ADDRESS,
+            COLUMN_QUOTE_DESCRIPTION, COLUMN_QUOTE_TOTAL, COLUMN_QUOTE_EMAIL, COLUMN_QUOTE_MOBILE,
+            COLUMN_QUOTE_DATE_MILLIS};
+
+    // Writes queued within this long of the first one share its transaction
+    private static final long GROUP_COMMIT_WINDOW_MS = 10;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static ReportDatabaseHelper instance;
 
     private final Context context;
 
+    // Single writer: every report and quote insert is committed on this thread, in queue order
+    private final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<PendingWrite> pendingWrites = new ArrayList<>();
+    private final Set<TableObserver> observers = new CopyOnWriteArraySet<>();
+
+    // Compiled on first use and reused. The event statement is guarded by this helper's lock,
+    // the quote statements are only used by the writer thread
+    private SQLiteStatement insertEventStatement;
+    private SQLiteStatement insertQuoteStatement;
+    private SQLiteStatement insertBirdQuoteStatement;
+
+    /**
+     * Receives the outcome of an asynchronous write, on the main thread.
+     */
+    public interface WriteCallback {
+        void onWritten(long rowId);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Told on the main thread when a table changed. rowsAddedOnly means every change was an insert,
+     * so the new rows are exactly those with a higher id than before; otherwise reload the table.
+     */
+    public interface TableObserver {
+        void onTableChanged(String table, boolean rowsAddedOnly);
+    }
+
+    /**
+     * One saved company report.
+     */
+    public static class CompanyReport {
+        public final long id;
+        public final String name;
+        public final String address;
+        public final String date;
+        public final String visitType;
+        public final String siteInspection;
+        public final String recommendations;
+        public final String followUp;
+        public final String prep;
+        public final String tech;
+        // 0 when the saved date text could not be read
+        public final long dateMillis;
+
+        CompanyReport(long id, String name, String address, String date, String visitType, String siteInspection,
+                      String recommendations, String followUp, String prep, String tech, long dateMillis) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+            this.date = date;
+            this.visitType = visitType;
+            this.siteInspection = siteInspection;
+            this.recommendations = recommendations;
+            this.followUp = followUp;
+            this.prep = prep;
+            this.tech = tech;
+            this.dateMillis = dateMillis;
+        }
+    }
+
+    /**
+     * One saved general or bird quote.
+     */
+    public static class Quote {
+        public final long id;
+        public final boolean birdQuote;
+        public final String number;
+        public final String date;
+        public final String address;
+        public final String description;
+        public final double totalAmount;
+        public final String email;
+        public final String mobile;
+        // 0 when the saved date text could not be read
+        public final long dateMillis;
+
+        Quote(long id, boolean birdQuote, String number, String date, String address, String description,
+              double totalAmount, String email, String mobile, long dateMillis) {
+            this.id = id;
+            this.birdQuote = birdQuote;
+            this.number = number;
+            this.date = date;
+            this.address = address;
+            this.description = description;
+            this.totalAmount = totalAmount;
+            this.email = email;
+            this.mobile = mobile;
+            this.dateMillis = dateMillis;
+        }
+    }
+
+    /**
+     * One calendar event. source and sourceKey are null for events added by hand.
+     */
+    public static class CalendarEvent {
+        public final long id;
+        public final long dayMillis;
+        public final String name;
+        public final String source;
+        public final String sourceKey;
+
+        public CalendarEvent(long id, long dayMillis, String name, String source, String sourceKey) {
+            this.id = id;
+            this.dayMillis = dayMillis;
+            this.name = name;
+            this.source = source;
+            this.sourceKey = sourceKey;
+        }
+    }
+
+    /**
+     * Quote counts and totals for one period (or a whole date range, with a null period), general
+     * and bird quotes apart.
+     */
+    public static class QuoteTotals {
+        public final String period;
+        public int generalCount;
+        public double generalTotal;
+        public int birdCount;
+        public double birdTotal;
+
+        QuoteTotals(String period) {
+            this.period = period;
+        }
+    }
+
+    private interface RowReader<T> {
+        T read(Cursor cursor);
+    }
+
+    /**
+     * Returns a callback that only speaks up when the write failed, for callers that already
+     * confirm success themselves.
+     */
+    public static WriteCallback toastOnError(Context context, String message) {
+        Context appContext = context.getApplicationContext();
+        return new WriteCallback() {
+            @Override
+            public void onWritten(long rowId) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(appContext, message, Toast.LENGTH_SHORT).show();
+            }
+        };
+    }
+
+    /**
+     * One insert, run by the writer thread inside the batch transaction.
+     */
+    private interface RowWriter {
+        long write(SQLiteDatabase db);
+    }
+
+    private static class PendingWrite {
+        final String table;
+        final boolean insertOnly;
+        final RowWriter writer;
+        final WriteCallback callback;
+
+        PendingWrite(String table, boolean insertOnly, RowWriter writer, WriteCallback callback) {
+            this.table = table;
+            this.insertOnly = insertOnly;
+            this.writer = writer;
+            this.callback = callback;
+        }
+    }
+
     /**
-     * Constructor for initializing the database helper.
+     * Returns the shared database helper. Its connection stays open for the life of the process.
      */
-    public ReportDatabaseHelper(Context context) {
+    public static synchronized ReportDatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportDatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReportDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
         this.context = context;
+        // Readers no longer wait for the writer, and a commit is one append to the log
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
@@ -99,13 +351,17 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
                 COLUMN_COMPANY_RECOMMENDATIONS + " TEXT, " +
                 COLUMN_COMPANY_FOLLOW_UP + " TEXT, " +
                 COLUMN_COMPANY_PREP + " TEXT, " +
-                COLUMN_COMPANY_TECH + " TEXT)");
+                COLUMN_COMPANY_TECH + " TEXT, " +
+                COLUMN_COMPANY_DATE_MILLIS + " INTEGER)");
 
         // Events Table
         db.execSQL("CREATE TABLE " + TABLE_EVENTS + " (" +
                 COLUMN_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COLUMN_EVENT_DATE + " TEXT, " +
-                COLUMN_EVENT_NAME + " TEXT)");
+                COLUMN_EVENT_NAME + " TEXT, " +
+                COLUMN_EVENT_DAY_MILLIS + " INTEGER, " +
+                COLUMN_EVENT_SOURCE + " TEXT, " +
+                COLUMN_EVENT_SOURCE_KEY + " TEXT)");
 
         // General Quotes Table
         db.execSQL("CREATE TABLE " + TABLE_QUOTES + " (" +
@@ -116,7 +372,8 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
                 COLUMN_QUOTE_DESCRIPTION + " TEXT, " +
                 COLUMN_QUOTE_TOTAL + " REAL, " +
                 COLUMN_QUOTE_EMAIL + " TEXT, " +
-                COLUMN_QUOTE_MOBILE + " TEXT)");
+                COLUMN_QUOTE_MOBILE + " TEXT, " +
+                COLUMN_QUOTE_DATE_MILLIS + " INTEGER)");
 
         // Bird Quotes Table
         db.execSQL("CREATE TABLE " + TABLE_BIRD_QUOTES + " (" +
@@ -127,31 +384,288 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
                 COLUMN_BIRD_QUOTE_DESCRIPTION + " TEXT, " +
                 COLUMN_BIRD_QUOTE_TOTAL + " REAL, " +
                 COLUMN_BIRD_QUOTE_EMAIL + " TEXT, " +
-                COLUMN_BIRD_QUOTE_MOBILE + " TEXT)");
+                COLUMN_BIRD_QUOTE_MOBILE + " TEXT, " +
+                COLUMN_BIRD_QUOTE_DATE_MILLIS + " INTEGER)");
+
+        createIndexes(db);
+        createEventSearch(db);
     }
 
     /**
-     * Upgrades the database by dropping and recreating tables.
+     * Upgrades the database one version at a time. Versions before 3 had no quote tables and are
+     * recreated; from 3 on every step keeps the data.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_COMPANY_REPORTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUOTES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BIRD_QUOTES);
-        onCreate(db);
+        if (oldVersion < 3) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_COMPANY_REPORTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_QUOTES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_BIRD_QUOTES);
+            onCreate(db);
+            return;
+        }
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
+    }
+
+    /**
+     * Brings a database at version - 1 up to version. onCreate always builds the latest schema
+     * directly, so a new step here needs the same change made there.
+     */
+    private static void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 4:
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_date ON " + TABLE_EVENTS + "(" + COLUMN_EVENT_DATE + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_company_reports_name ON " + TABLE_COMPANY_REPORTS + "(" + COLUMN_COMPANY_NAME + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_company_reports_date ON " + TABLE_COMPANY_REPORTS + "(" + COLUMN_COMPANY_DATE + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_quotes_number ON " + TABLE_QUOTES + "(" + COLUMN_QUOTE_NUMBER + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_quotes_date ON " + TABLE_QUOTES + "(" + COLUMN_QUOTE_DATE + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_bird_quotes_number ON " + TABLE_BIRD_QUOTES + "(" + COLUMN_BIRD_QUOTE_NUMBER + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_bird_quotes_date ON " + TABLE_BIRD_QUOTES + "(" + COLUMN_BIRD_QUOTE_DATE + ")");
+                createEventSearch(db);
+                db.execSQL("INSERT INTO " + TABLE_EVENTS_FTS + "(" + TABLE_EVENTS_FTS + ") VALUES('rebuild')");
+                break;
+            case 5:
+                db.execSQL("ALTER TABLE " + TABLE_COMPANY_REPORTS + " ADD COLUMN " + COLUMN_COMPANY_DATE_MILLIS + " INTEGER");
+                db.execSQL("ALTER TABLE " + TABLE_QUOTES + " ADD COLUMN " + COLUMN_QUOTE_DATE_MILLIS + " INTEGER");
+                db.execSQL("ALTER TABLE " + TABLE_BIRD_QUOTES + " ADD COLUMN " + COLUMN_BIRD_QUOTE_DATE_MILLIS + " INTEGER");
+                backfillDateMillis(db, TABLE_COMPANY_REPORTS, COLUMN_COMPANY_ID, COLUMN_COMPANY_DATE, COLUMN_COMPANY_DATE_MILLIS);
+                backfillDateMillis(db, TABLE_QUOTES, COLUMN_QUOTE_ID, COLUMN_QUOTE_DATE, COLUMN_QUOTE_DATE_MILLIS);
+                backfillDateMillis(db, TABLE_BIRD_QUOTES, COLUMN_BIRD_QUOTE_ID, COLUMN_BIRD_QUOTE_DATE, COLUMN_BIRD_QUOTE_DATE_MILLIS);
+                // The text dates do not sort, so their indexes never helped a range query
+                db.execSQL("DROP INDEX IF EXISTS idx_company_reports_date");
+                db.execSQL("DROP INDEX IF EXISTS idx_quotes_date");
+                db.execSQL("DROP INDEX IF EXISTS idx_bird_quotes_date");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_company_reports_date_millis ON " + TABLE_COMPANY_REPORTS + "(" + COLUMN_COMPANY_DATE_MILLIS + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_quotes_date_millis ON " + TABLE_QUOTES +
+                        "(" + COLUMN_QUOTE_DATE_MILLIS + ", " + COLUMN_QUOTE_TOTAL + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_bird_quotes_date_millis ON " + TABLE_BIRD_QUOTES +
+                        "(" + COLUMN_BIRD_QUOTE_DATE_MILLIS + ", " + COLUMN_BIRD_QUOTE_TOTAL + ")");
+                break;
+            case 6:
+                db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_EVENT_DAY_MILLIS + " INTEGER");
+                db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_EVENT_SOURCE + " TEXT");
+                db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_EVENT_SOURCE_KEY + " TEXT");
+                backfillDateMillis(db, TABLE_EVENTS, COLUMN_EVENT_ID, COLUMN_EVENT_DATE, COLUMN_EVENT_DAY_MILLIS);
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_day_millis ON " + TABLE_EVENTS +
+                        "(" + COLUMN_EVENT_DAY_MILLIS + ", " + COLUMN_EVENT_NAME + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_source ON " + TABLE_EVENTS +
+                        "(" + COLUMN_EVENT_SOURCE + ", " + COLUMN_EVENT_SOURCE_KEY + ")");
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Indexes every column a query filters or sorts by, so lookups stop scanning whole tables. The
+     * quote date indexes also carry the total, so the aggregates never read the table rows.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_date ON " + TABLE_EVENTS + "(" + COLUMN_EVENT_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_day_millis ON " + TABLE_EVENTS +
+                "(" + COLUMN_EVENT_DAY_MILLIS + ", " + COLUMN_EVENT_NAME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_source ON " + TABLE_EVENTS +
+                "(" + COLUMN_EVENT_SOURCE + ", " + COLUMN_EVENT_SOURCE_KEY + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_company_reports_name ON " + TABLE_COMPANY_REPORTS + "(" + COLUMN_COMPANY_NAME + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_company_reports_date_millis ON " + TABLE_COMPANY_REPORTS + "(" + COLUMN_COMPANY_DATE_MILLIS + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_quotes_number ON " + TABLE_QUOTES + "(" + COLUMN_QUOTE_NUMBER + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_quotes_date_millis ON " + TABLE_QUOTES +
+                "(" + COLUMN_QUOTE_DATE_MILLIS + ", " + COLUMN_QUOTE_TOTAL + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_bird_quotes_number ON " + TABLE_BIRD_QUOTES + "(" + COLUMN_BIRD_QUOTE_NUMBER + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_bird_quotes_date_millis ON " + TABLE_BIRD_QUOTES +
+                "(" + COLUMN_BIRD_QUOTE_DATE_MILLIS + ", " + COLUMN_BIRD_QUOTE_TOTAL + ")");
+    }
+
+    /**
+     * Fills the epoch column of existing rows from their date text. Rows whose text cannot be read
+     * keep NULL and are left out of date ranges.
+     */
+    private static void backfillDateMillis(SQLiteDatabase db, String table, String idColumn, String dateColumn,
+                                           String millisColumn) {
+        SQLiteStatement update = db.compileStatement(
+                "UPDATE " + table + " SET " + millisColumn + " = ? WHERE " + idColumn + " = ?");
+        try (Cursor cursor = db.query(table, new String[]{idColumn, dateColumn}, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                long millis = parseDateMillis(cursor.getString(1));
+                if (millis > 0 && TABLE_EVENTS.equals(table)) {
+                    millis = CalendarDays.startOfDay(millis);
+                }
+                if (millis > 0) {
+                    update.bindLong(1, millis);
+                    update.bindLong(2, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * Reads a saved date text as local time, or returns 0 when it is in none of DATE_PATTERNS.
+     */
+    static long parseDateMillis(String date) {
+        if (date == null) {
+            return 0;
+        }
+        String text = date.trim();
+        for (String pattern : DATE_PATTERNS) {
+            if (text.length() != pattern.length()) {
+                continue;
+            }
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setLenient(false);
+            try {
+                return format.parse(text).getTime();
+            } catch (ParseException e) {
+                // Try the next pattern
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The epoch value stored with a new row: its date text, or the time it is saved when the text
+     * cannot be read.
+     */
+    private static long dateMillisOrNow(String date) {
+        long millis = parseDateMillis(date);
+        return millis > 0 ? millis : System.currentTimeMillis();
+    }
+
+    /**
+     * Creates the event name full-text index (FTS4, external content) and the triggers that keep it
+     * in step with the events table.
+     */
+    private static void createEventSearch(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_EVENTS_FTS + " USING fts4(" +
+                "content=\"" + TABLE_EVENTS + "\", " + COLUMN_EVENT_NAME + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_fts_before_update BEFORE UPDATE ON " + TABLE_EVENTS + " BEGIN " +
+                "DELETE FROM " + TABLE_EVENTS_FTS + " WHERE docid = old." + COLUMN_EVENT_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_fts_before_delete BEFORE DELETE ON " + TABLE_EVENTS + " BEGIN " +
+                "DELETE FROM " + TABLE_EVENTS_FTS + " WHERE docid = old." + COLUMN_EVENT_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_fts_after_update AFTER UPDATE ON " + TABLE_EVENTS + " BEGIN " +
+                "INSERT INTO " + TABLE_EVENTS_FTS + "(docid, " + COLUMN_EVENT_NAME + ") " +
+                "VALUES(new." + COLUMN_EVENT_ID + ", new." + COLUMN_EVENT_NAME + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS events_fts_after_insert AFTER INSERT ON " + TABLE_EVENTS + " BEGIN " +
+                "INSERT INTO " + TABLE_EVENTS_FTS + "(docid, " + COLUMN_EVENT_NAME + ") " +
+                "VALUES(new." + COLUMN_EVENT_ID + ", new." + COLUMN_EVENT_NAME + "); END");
+    }
+
+    /**
+     * Turns a typed event name into an FTS query where every word matches as a prefix, or returns
+     * null when the name has no searchable words.
+     */
+    static String toMatchQuery(String eventName) {
+        if (eventName == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String word : eventName.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                query.append(query.length() > 0 ? " " : "").append(word).append('*');
+            }
+        }
+        return query.length() > 0 ? query.toString() : null;
     }
 
     /**
      * Inserts a new event into the database.
      */
     public void insertEvent(String date, String eventName) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        long dayMillis = parseDateMillis(date);
+        synchronized (this) {
+            if (insertEventStatement == null) {
+                insertEventStatement = getWritableDatabase().compileStatement(
+                        "INSERT INTO " + TABLE_EVENTS + " (" + COLUMN_EVENT_DATE + ", " + COLUMN_EVENT_NAME + ", " +
+                                COLUMN_EVENT_DAY_MILLIS + ") VALUES (?, ?, ?)");
+            }
+            bindNullable(insertEventStatement, 1, date);
+            bindNullable(insertEventStatement, 2, eventName);
+            if (dayMillis > 0) {
+                insertEventStatement.bindLong(3, CalendarDays.startOfDay(dayMillis));
+            } else {
+                insertEventStatement.bindNull(3);
+            }
+            insertEventStatement.executeInsert();
+            insertEventStatement.clearBindings();
+        }
+        notifyTablesChanged(Collections.singleton(TABLE_EVENTS), true);
+    }
+
+    /**
+     * Queues a hand-added event on the given day for the writer thread.
+     */
+    public void insertEventAsync(long dayMillis, String eventName, WriteCallback callback) {
+        ContentValues values = eventValues(dayMillis, eventName, null, null);
+        enqueueWrite(TABLE_EVENTS, db -> db.insertOrThrow(TABLE_EVENTS, null, values), callback);
+    }
+
+    /**
+     * Queues an upsert of the generated event for one source item (a job's follow-up, say). A
+     * dayMillis of 0 removes the item's event.
+     */
+    public void putSourceEventAsync(String source, String sourceKey, long dayMillis, String eventName) {
+        ContentValues values = dayMillis > 0 ? eventValues(dayMillis, eventName, source, sourceKey) : null;
+        enqueueWrite(TABLE_EVENTS, false, db -> {
+            // Delete then insert rather than INSERT OR REPLACE, whose implicit delete skips the FTS triggers
+            db.delete(TABLE_EVENTS, COLUMN_EVENT_SOURCE + " = ? AND " + COLUMN_EVENT_SOURCE_KEY + " = ?",
+                    new String[]{source, sourceKey});
+            return values != null ? db.insertOrThrow(TABLE_EVENTS, null, values) : 0;
+        }, null);
+    }
+
+    /**
+     * Queues a replacement of every generated event whose key starts with keyPrefix (all of one
+     * technician's contract visits, say) by the given day/name pairs, keyed the same way.
+     */
+    public void replaceSourceEventsAsync(String source, String keyPrefix, List<CalendarEvent> events) {
+        List<ContentValues> rows = new ArrayList<>(events.size());
+        for (CalendarEvent event : events) {
+            rows.add(eventValues(event.dayMillis, event.name, source, event.sourceKey));
+        }
+        enqueueWrite(TABLE_EVENTS, false, db -> {
+            db.delete(TABLE_EVENTS, COLUMN_EVENT_SOURCE + " = ? AND substr(" + COLUMN_EVENT_SOURCE_KEY + ", 1, ?) = ?",
+                    new String[]{source, String.valueOf(keyPrefix.length()), keyPrefix});
+            for (ContentValues values : rows) {
+                db.insertOrThrow(TABLE_EVENTS, null, values);
+            }
+            return rows.size();
+        }, null);
+    }
+
+    private static ContentValues eventValues(long dayMillis, String eventName, String source, String sourceKey) {
+        long day = CalendarDays.startOfDay(dayMillis);
         ContentValues values = new ContentValues();
-        values.put(COLUMN_EVENT_DATE, date);
+        values.put(COLUMN_EVENT_DATE, new SimpleDateFormat(EVENT_DATE_PATTERN, Locale.US).format(day));
         values.put(COLUMN_EVENT_NAME, eventName);
-        db.insert(TABLE_EVENTS, null, values);
-        db.close();
+        values.put(COLUMN_EVENT_DAY_MILLIS, day);
+        values.put(COLUMN_EVENT_SOURCE, source);
+        values.put(COLUMN_EVENT_SOURCE_KEY, sourceKey);
+        return values;
+    }
+
+    /**
+     * Returns every event from fromMillis (inclusive) to toMillis (exclusive) in day order, in one
+     * range scan of the day index. Events whose date text could not be read are not included.
+     */
+    public List<CalendarEvent> getEventsBetween(long fromMillis, long toMillis) {
+        List<CalendarEvent> events = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_EVENTS,
+                new String[]{COLUMN_EVENT_ID, COLUMN_EVENT_DAY_MILLIS, COLUMN_EVENT_NAME, COLUMN_EVENT_SOURCE, COLUMN_EVENT_SOURCE_KEY},
+                COLUMN_EVENT_DAY_MILLIS + " >= ? AND " + COLUMN_EVENT_DAY_MILLIS + " < ?",
+                new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)},
+                null, null, COLUMN_EVENT_DAY_MILLIS + ", " + COLUMN_EVENT_NAME)) {
+            while (cursor.moveToNext()) {
+                events.add(new CalendarEvent(cursor.getLong(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4)));
+            }
+        }
+        return events;
     }
 
     /**
@@ -167,55 +681,174 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
             do {
                 events.add(cursor.getString(0));
             } while (cursor.moveToNext());
+        }
+        if (cursor != null) {
             cursor.close();
         }
-        db.close();
         return events;
     }
 
     /**
-     * Inserts a new general quote into the database.
+     * Queues a new general quote for the writer thread. Safe to call from any thread; the callback
+     * (may be null) runs on the main thread once the quote is committed.
      */
-    public void insertQuote(String number, String date, String address, String description, double totalAmount, String email, String mobile, boolean b) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_QUOTE_NUMBER, number);
-        values.put(COLUMN_QUOTE_DATE, date);
-        values.put(COLUMN_QUOTE_ADDRESS, address);
-        values.put(COLUMN_QUOTE_DESCRIPTION, description);
-        values.put(COLUMN_QUOTE_TOTAL, totalAmount);
-        values.put(COLUMN_QUOTE_EMAIL, email);
-        values.put(COLUMN_QUOTE_MOBILE, mobile);
-        long result = db.insert(TABLE_QUOTES, null, values);
-        db.close();
-
-        if (result == -1) {
-            Toast.makeText(context, "Error inserting quote.", Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(context, "Quote saved successfully!", Toast.LENGTH_SHORT).show();
+    public void insertQuoteAsync(String number, String date, String address, String description, double totalAmount,
+                                 String email, String mobile, WriteCallback callback) {
+        long dateMillis = dateMillisOrNow(date);
+        enqueueWrite(TABLE_QUOTES, db -> {
+            if (insertQuoteStatement == null) {
+                insertQuoteStatement = db.compileStatement(insertQuoteSql(TABLE_QUOTES));
+            }
+            return executeQuoteInsert(insertQuoteStatement, number, date, address, description, totalAmount, email, mobile,
+                    dateMillis);
+        }, callback);
+    }
+
+    /**
+     * Queues a new bird quote for the writer thread. Safe to call from any thread; the callback
+     * (may be null) runs on the main thread once the quote is committed.
+     */
+    public void insertBirdQuoteAsync(String number, String date, String address, String description, double totalAmount,
+                                     String email, String mobile, WriteCallback callback) {
+        long dateMillis = dateMillisOrNow(date);
+        enqueueWrite(TABLE_BIRD_QUOTES, db -> {
+            if (insertBirdQuoteStatement == null) {
+                insertBirdQuoteStatement = db.compileStatement(insertQuoteSql(TABLE_BIRD_QUOTES));
+            }
+            return executeQuoteInsert(insertBirdQuoteStatement, number, date, address, description, totalAmount, email, mobile,
+                    dateMillis);
+        }, callback);
+    }
+
+    /**
+     * Queues a company report row (CompanyReports column names as keys) for the writer thread.
+     */
+    public void insertCompanyReportAsync(ContentValues values, WriteCallback callback) {
+        ContentValues copy = new ContentValues(values);
+        copy.put(COLUMN_COMPANY_DATE_MILLIS, dateMillisOrNow(copy.getAsString(COLUMN_COMPANY_DATE)));
+        enqueueWrite(TABLE_COMPANY_REPORTS, db -> db.insertOrThrow(TABLE_COMPANY_REPORTS, null, copy), callback);
+    }
+
+    /**
+     * Adds a write to the pending batch. The first write of a batch schedules the commit; a full
+     * batch is committed straight away.
+     */
+    private void enqueueWrite(String table, RowWriter writer, WriteCallback callback) {
+        enqueueWrite(table, true, writer, callback);
+    }
+
+    private void enqueueWrite(String table, boolean insertOnly, RowWriter writer, WriteCallback callback) {
+        synchronized (pendingWrites) {
+            pendingWrites.add(new PendingWrite(table, insertOnly, writer, callback));
+            if (pendingWrites.size() == 1) {
+                writeExecutor.schedule(this::commitPendingWrites, GROUP_COMMIT_WINDOW_MS, TimeUnit.MILLISECONDS);
+            } else if (pendingWrites.size() == MAX_BATCH_SIZE) {
+                writeExecutor.execute(this::commitPendingWrites);
+            }
         }
     }
 
     /**
-     * Inserts a new bird quote into the database.
+     * Runs on the writer thread: commits every pending write in one transaction, then reports each
+     * result. A failed row does not undo the others; a failed commit fails them all.
      */
-    public void insertBirdQuote(String number, String date, String address, String description, double totalAmount, String email, String mobile) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_BIRD_QUOTE_NUMBER, number);
-        values.put(COLUMN_BIRD_QUOTE_DATE, date);
-        values.put(COLUMN_BIRD_QUOTE_ADDRESS, address);
-        values.put(COLUMN_BIRD_QUOTE_DESCRIPTION, description);
-        values.put(COLUMN_BIRD_QUOTE_TOTAL, totalAmount);
-        values.put(COLUMN_BIRD_QUOTE_EMAIL, email);
-        values.put(COLUMN_BIRD_QUOTE_MOBILE, mobile);
-        long result = db.insert(TABLE_BIRD_QUOTES, null, values);
-        db.close();
-
-        if (result == -1) {
-            Toast.makeText(context, "Error inserting bird quote.", Toast.LENGTH_SHORT).show();
+    private void commitPendingWrites() {
+        List<PendingWrite> batch;
+        synchronized (pendingWrites) {
+            if (pendingWrites.isEmpty()) {
+                return; // Already taken by a full-batch commit
+            }
+            batch = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
+        }
+
+        long[] rowIds = new long[batch.size()];
+        Exception[] errors = new Exception[batch.size()];
+        try (PipelineTrace.Section section = PipelineTrace.begin("ReportDB commit", batch.size() + " rows")) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        rowIds[i] = batch.get(i).writer.write(db);
+                    } catch (SQLException e) {
+                        errors[i] = e;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = e;
+            }
+        }
+
+        Set<String> insertedTables = new HashSet<>();
+        Set<String> changedTables = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] == null) {
+                (batch.get(i).insertOnly ? insertedTables : changedTables).add(batch.get(i).table);
+            }
+        }
+        insertedTables.removeAll(changedTables);
+        notifyTablesChanged(insertedTables, true);
+        notifyTablesChanged(changedTables, false);
+
+        for (int i = 0; i < batch.size(); i++) {
+            WriteCallback callback = batch.get(i).callback;
+            if (callback == null) {
+                continue;
+            }
+            long rowId = rowIds[i];
+            Exception error = errors[i];
+            mainHandler.post(() -> {
+                if (error != null) {
+                    callback.onError(error);
+                } else {
+                    callback.onWritten(rowId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Both quote tables share a layout, so one statement text serves either.
+     */
+    private static String insertQuoteSql(String table) {
+        return "INSERT INTO " + table + " (" +
+                COLUMN_QUOTE_NUMBER + ", " + COLUMN_QUOTE_DATE + ", " + COLUMN_QUOTE_ADDRESS + ", " +
+                COLUMN_QUOTE_DESCRIPTION + ", " + COLUMN_QUOTE_TOTAL + ", " + COLUMN_QUOTE_EMAIL + ", " +
+                COLUMN_QUOTE_MOBILE + ", " + COLUMN_QUOTE_DATE_MILLIS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    /**
+     * Binds and runs a compiled quote insert. Returns the new row id.
+     */
+    private static long executeQuoteInsert(SQLiteStatement statement, String number, String date, String address,
+                                           String description, double totalAmount, String email, String mobile,
+                                           long dateMillis) {
+        try {
+            bindNullable(statement, 1, number);
+            bindNullable(statement, 2, date);
+            bindNullable(statement, 3, address);
+            bindNullable(statement, 4, description);
+            statement.bindDouble(5, totalAmount);
+            bindNullable(statement, 6, email);
+            bindNullable(statement, 7, mobile);
+            statement.bindLong(8, dateMillis);
+            return statement.executeInsert();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
         } else {
-            Toast.makeText(context, "Bird quote saved successfully!", Toast.LENGTH_SHORT).show();
+            statement.bindString(index, value);
         }
     }
 
@@ -224,11 +857,200 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
      */
     public void clearDatabase() {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.execSQL("DELETE FROM " + TABLE_COMPANY_REPORTS);
-        db.execSQL("DELETE FROM " + TABLE_EVENTS);
-        db.execSQL("DELETE FROM " + TABLE_QUOTES);
-        db.execSQL("DELETE FROM " + TABLE_BIRD_QUOTES);
-        db.close();
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_COMPANY_REPORTS);
+            db.execSQL("DELETE FROM " + TABLE_EVENTS);
+            db.execSQL("DELETE FROM " + TABLE_QUOTES);
+            db.execSQL("DELETE FROM " + TABLE_BIRD_QUOTES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyTablesChanged(new HashSet<>(Arrays.asList(TABLE_COMPANY_REPORTS, TABLE_EVENTS, TABLE_QUOTES, TABLE_BIRD_QUOTES)), false);
+    }
+
+    public void registerObserver(TableObserver observer) {
+        observers.add(observer);
+    }
+
+    public void unregisterObserver(TableObserver observer) {
+        observers.remove(observer);
+    }
+
+    private void notifyTablesChanged(Set<String> tables, boolean rowsAddedOnly) {
+        if (tables.isEmpty() || observers.isEmpty()) {
+            return;
+        }
+        mainHandler.post(() -> {
+            for (String table : tables) {
+                for (TableObserver observer : observers) {
+                    observer.onTableChanged(table, rowsAddedOnly);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns up to limit company reports older than beforeId, newest first. Pass Long.MAX_VALUE
+     * for the first page.
+     */
+    public List<CompanyReport> getCompanyReportsBefore(long beforeId, int limit) {
+        return queryPage(TABLE_COMPANY_REPORTS, COMPANY_REPORT_COLUMNS, true, beforeId, limit,
+                ReportDatabaseHelper::readCompanyReport);
+    }
+
+    /**
+     * Returns up to limit company reports newer than afterId (the closest ones), newest first.
+     */
+    public List<CompanyReport> getCompanyReportsAfter(long afterId, int limit) {
+        return queryPage(TABLE_COMPANY_REPORTS, COMPANY_REPORT_COLUMNS, false, afterId, limit,
+                ReportDatabaseHelper::readCompanyReport);
+    }
+
+    /**
+     * Returns up to limit general or bird quotes older than beforeId, newest first.
+     */
+    public List<Quote> getQuotesBefore(boolean birdQuotes, long beforeId, int limit) {
+        return queryPage(birdQuotes ? TABLE_BIRD_QUOTES : TABLE_QUOTES, QUOTE_COLUMNS, true, beforeId, limit,
+                cursor -> readQuote(cursor, birdQuotes));
+    }
+
+    /**
+     * Returns up to limit general or bird quotes newer than afterId (the closest ones), newest first.
+     */
+    public List<Quote> getQuotesAfter(boolean birdQuotes, long afterId, int limit) {
+        return queryPage(birdQuotes ? TABLE_BIRD_QUOTES : TABLE_QUOTES, QUOTE_COLUMNS, false, afterId, limit,
+                cursor -> readQuote(cursor, birdQuotes));
+    }
+
+    /**
+     * Reads one page by primary key rather than OFFSET, so every page costs the same however deep
+     * into the history it is.
+     */
+    private <T> List<T> queryPage(String table, String[] columns, boolean older, long anchorId, int limit,
+                                  RowReader<T> reader) {
+        List<T> rows = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(table, columns,
+                columns[0] + (older ? " < ?" : " > ?"), new String[]{String.valueOf(anchorId)},
+                null, null, columns[0] + (older ? " DESC" : " ASC"), String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                rows.add(reader.read(cursor));
+            }
+        }
+        if (!older) {
+            Collections.reverse(rows);
+        }
+        return rows;
+    }
+
+    private static CompanyReport readCompanyReport(Cursor cursor) {
+        return new CompanyReport(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                cursor.getString(4), cursor.getString(5), cursor.getString(6), cursor.getString(7),
+                cursor.getString(8), cursor.getString(9), cursor.getLong(10));
+    }
+
+    /**
+     * Returns up to limit company reports dated in [fromMillis, toMillis), newest first.
+     */
+    public List<CompanyReport> getCompanyReportsBetween(long fromMillis, long toMillis, int limit) {
+        List<CompanyReport> reports = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_COMPANY_REPORTS, COMPANY_REPORT_COLUMNS,
+                COLUMN_COMPANY_DATE_MILLIS + " >= ? AND " + COLUMN_COMPANY_DATE_MILLIS + " < ?",
+                new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)},
+                null, null, COLUMN_COMPANY_DATE_MILLIS + " DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                reports.add(readCompanyReport(cursor));
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Returns up to limit general or bird quotes dated in [fromMillis, toMillis), newest first.
+     */
+    public List<Quote> getQuotesBetween(boolean birdQuotes, long fromMillis, long toMillis, int limit) {
+        List<Quote> quotes = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(birdQuotes ? TABLE_BIRD_QUOTES : TABLE_QUOTES, QUOTE_COLUMNS,
+                COLUMN_QUOTE_DATE_MILLIS + " >= ? AND " + COLUMN_QUOTE_DATE_MILLIS + " < ?",
+                new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)},
+                null, null, COLUMN_QUOTE_DATE_MILLIS + " DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                quotes.add(readQuote(cursor, birdQuotes));
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Quote totals per calendar month ("yyyy-MM") for quotes dated in [fromMillis, toMillis), oldest first.
+     */
+    public List<QuoteTotals> getMonthlyQuoteTotals(long fromMillis, long toMillis) {
+        return new ArrayList<>(queryQuoteTotals(MONTH_PERIOD, fromMillis, toMillis).values());
+    }
+
+    /**
+     * Quote totals per quarter ("yyyy-Qn") for quotes dated in [fromMillis, toMillis), oldest first.
+     */
+    public List<QuoteTotals> getQuarterlyQuoteTotals(long fromMillis, long toMillis) {
+        return new ArrayList<>(queryQuoteTotals(QUARTER_PERIOD, fromMillis, toMillis).values());
+    }
+
+    /**
+     * Quote totals for the whole range, in one aggregate query.
+     */
+    public QuoteTotals getQuoteSummary(long fromMillis, long toMillis) {
+        QuoteTotals summary = queryQuoteTotals("NULL", fromMillis, toMillis).get(null);
+        return summary != null ? summary : new QuoteTotals(null);
+    }
+
+    /**
+     * Quote totals from 1 January this year up to the end of today.
+     */
+    public QuoteTotals getYearToDateQuoteSummary() {
+        Calendar start = Calendar.getInstance();
+        start.set(Calendar.DAY_OF_YEAR, 1);
+        return getQuoteSummary(CalendarDays.startOfDay(start.getTimeInMillis()), CalendarDays.startOfDayFromToday(1));
+    }
+
+    /**
+     * Groups both quote tables by period and kind in one statement. Each side is a range scan of
+     * its (date_millis, total_amount) index, so no table rows are read.
+     */
+    private Map<String, QuoteTotals> queryQuoteTotals(String periodExpression, long fromMillis, long toMillis) {
+        String range = " WHERE " + COLUMN_QUOTE_DATE_MILLIS + " >= ? AND " + COLUMN_QUOTE_DATE_MILLIS + " < ?";
+        String sql = "SELECT period, bird, COUNT(*), TOTAL(total) FROM (" +
+                "SELECT " + periodExpression + " AS period, 0 AS bird, " + COLUMN_QUOTE_TOTAL + " AS total FROM " + TABLE_QUOTES + range +
+                " UNION ALL " +
+                "SELECT " + periodExpression + " AS period, 1 AS bird, " + COLUMN_BIRD_QUOTE_TOTAL + " AS total FROM " + TABLE_BIRD_QUOTES + range +
+                ") GROUP BY period, bird ORDER BY period";
+        String from = String.valueOf(fromMillis);
+        String to = String.valueOf(toMillis);
+
+        Map<String, QuoteTotals> totals = new LinkedHashMap<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, new String[]{from, to, from, to})) {
+            while (cursor.moveToNext()) {
+                String period = cursor.isNull(0) ? null : cursor.getString(0);
+                QuoteTotals periodTotals = totals.get(period);
+                if (periodTotals == null) {
+                    periodTotals = new QuoteTotals(period);
+                    totals.put(period, periodTotals);
+                }
+                if (cursor.getInt(1) == 1) {
+                    periodTotals.birdCount = cursor.getInt(2);
+                    periodTotals.birdTotal = cursor.getDouble(3);
+                } else {
+                    periodTotals.generalCount = cursor.getInt(2);
+                    periodTotals.generalTotal = cursor.getDouble(3);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static Quote readQuote(Cursor cursor, boolean birdQuote) {
+        return new Quote(cursor.getLong(0), birdQuote, cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                cursor.getString(4), cursor.getDouble(5), cursor.getString(6), cursor.getString(7), cursor.getLong(8));
     }
 
     /**
@@ -237,21 +1059,28 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
     public ArrayList<String> getDatesByName(String eventName) {
         ArrayList<String> dates = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(
-                "events", // Table name
-                new String[]{"date"}, // Column to retrieve
-                "event_name LIKE ?", // WHERE clause
-                new String[]{"%" + eventName + "%"}, // Filter value
-                null, null, "date ASC"
-        );
+        String matchQuery = toMatchQuery(eventName);
+        Cursor cursor;
+        if (matchQuery != null) {
+            // Every word of the name must start a word of the event, e.g. "smith ltd" finds "Smith & Co Ltd"
+            cursor = db.rawQuery("SELECT " + COLUMN_EVENT_DATE + " FROM " + TABLE_EVENTS +
+                    " WHERE " + COLUMN_EVENT_ID + " IN (SELECT docid FROM " + TABLE_EVENTS_FTS +
+                    " WHERE " + TABLE_EVENTS_FTS + " MATCH ?) ORDER BY " + COLUMN_EVENT_DATE + " ASC",
+                    new String[]{matchQuery});
+        } else {
+            cursor = db.query(TABLE_EVENTS, new String[]{COLUMN_EVENT_DATE},
+                    COLUMN_EVENT_NAME + " LIKE ?", new String[]{"%" + eventName + "%"},
+                    null, null, COLUMN_EVENT_DATE + " ASC");
+        }
 
         if (cursor != null && cursor.moveToFirst()) {
             do {
                 dates.add(cursor.getString(0)); // Adding date to the list
             } while (cursor.moveToNext());
+        }
+        if (cursor != null) {
             cursor.close();
         }
-        db.close();
         return dates;
     }
 
@@ -260,12 +1089,16 @@ public class ReportDatabaseHelper extends SQLiteOpenHelper {
      */
     public void deleteEventsByName(String eventName) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int deletedRows = db.delete(
-                "events", // Table name
-                "event_name LIKE ?", // WHERE clause
-                new String[]{"%" + eventName + "%"} // Filter value
-        );
-        db.close();
+        String matchQuery = toMatchQuery(eventName);
+        int deletedRows;
+        if (matchQuery != null) {
+            deletedRows = db.delete(TABLE_EVENTS,
+                    COLUMN_EVENT_ID + " IN (SELECT docid FROM " + TABLE_EVENTS_FTS + " WHERE " + TABLE_EVENTS_FTS + " MATCH ?)",
+                    new String[]{matchQuery});
+        } else {
+            deletedRows = db.delete(TABLE_EVENTS, COLUMN_EVENT_NAME + " LIKE ?", new String[]{"%" + eventName + "%"});
+        }
+        notifyTablesChanged(Collections.singleton(TABLE_EVENTS), false);
 
         if (deletedRows > 0) {
             Toast.makeText(context, "Deleted " + deletedRows + " events for " + eventName, Toast.LENGTH_SHORT).show();
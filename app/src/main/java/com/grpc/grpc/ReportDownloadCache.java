@@ -0,0 +1,518 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReportDownloadCache.java
+ *
+ * This class keeps copies of the Storage files users open on the device, so a report viewed
+ * yesterday opens from disk instead of being downloaded again. Each copy is stored with the
+ * generation and MD5 the server reported for it; on the next open a metadata request (no file
+ * bytes) confirms the server copy is unchanged before the local copy is used. The cache is size
+ * bounded and evicts the least recently opened files first.
+ *
+ * Features:
+ * - Keyed by Storage path, validated by object generation and MD5
+ * - Size-bounded LRU eviction (StorageBudget's download budget, MAX_CACHE_BYTES by default)
+ * - Files opened in the last few minutes are served without asking the server at all
+ * - Falls back to the cached copy when the server cannot be reached
+ * - Merges duplicate requests for the same file while one is in flight
+ * - Delivers every callback on the UI thread
+ * - Prefetched files are kept until their visit is over and open without any network request
+ * - Every change to the cached files and their rows is made on one executor thread
+ *
+ * Author: James Scott
+ */
+
+public class ReportDownloadCache extends SQLiteOpenHelper {
+
+    private static final String TAG = "ReportDownloadCache";
+
+    static final long MAX_CACHE_BYTES = 250L * 1024 * 1024;
+    private static final long REVALIDATE_AFTER_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final String CACHE_FOLDER = "report_downloads";
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_download_cache.db";
+    private static final int DATABASE_VERSION = 2; // 2: prefetched_until
+
+    // Cached Files Table
+    private static final String TABLE_FILES = "cached_files";
+    private static final String COLUMN_STORAGE_PATH = "storage_path";
+    private static final String COLUMN_LOCAL_PATH = "local_path";
+    private static final String COLUMN_GENERATION = "generation";
+    private static final String COLUMN_MD5 = "md5";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_LAST_ACCESSED = "last_accessed";
+    private static final String COLUMN_VALIDATED_AT = "validated_at";
+    private static final String COLUMN_PREFETCHED_UNTIL = "prefetched_until"; // 0 unless prefetched for a visit
+
+    private static ReportDownloadCache instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Requests waiting on a file that is already being opened; only touched on the UI thread
+    private final Map<String, List<FileCallback>> inFlight = new HashMap<>();
+
+    /**
+     * Receives a local copy of a Storage file.
+     */
+    public interface FileCallback {
+        /**
+         * @param fromCache True if no file bytes were downloaded.
+         */
+        void onFile(File file, boolean fromCache);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Returns the shared download cache.
+     */
+    public static synchronized ReportDownloadCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportDownloadCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReportDownloadCache(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_FILES + " (" +
+                COLUMN_STORAGE_PATH + " TEXT PRIMARY KEY, " +
+                COLUMN_LOCAL_PATH + " TEXT NOT NULL, " +
+                COLUMN_GENERATION + " TEXT, " +
+                COLUMN_MD5 + " TEXT, " +
+                COLUMN_SIZE + " INTEGER NOT NULL, " +
+                COLUMN_LAST_ACCESSED + " INTEGER NOT NULL, " +
+                COLUMN_VALIDATED_AT + " INTEGER NOT NULL, " +
+                COLUMN_PREFETCHED_UNTIL + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_cached_files_accessed ON " + TABLE_FILES + " (" + COLUMN_LAST_ACCESSED + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_PREFETCHED_UNTIL + " INTEGER NOT NULL DEFAULT 0");
+            return;
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FILES);
+        onCreate(db);
+    }
+
+    /**
+     * Returns a local copy of a Storage file, downloading it only if the cached copy is missing
+     * or the server copy has changed. Must be called on the UI thread.
+     */
+    public void open(String storagePath, MeteredFirebase firebase, FileCallback callback) {
+        List<FileCallback> waiting = inFlight.get(storagePath);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(storagePath, waiting);
+
+        executor.execute(() -> {
+            CachedFile cached = readEntry(storagePath);
+            long now = System.currentTimeMillis();
+            // Prefetched for today's visit: open straight from disk, even with no signal on site
+            if (cached != null && (now - cached.validatedAt < REVALIDATE_AFTER_MS || cached.prefetchedUntil > now)) {
+                touch(storagePath, false);
+                deliver(storagePath, cached.file, true, null);
+                return;
+            }
+
+            StorageReference reference = firebase.storageReference(storagePath);
+            firebase.getMetadata(reference)
+                    .addOnSuccessListener(executor, metadata -> {
+                        if (cached != null && cached.matches(metadata)) {
+                            touch(storagePath, true);
+                            deliver(storagePath, cached.file, true, null);
+                        } else {
+                            download(storagePath, reference, metadata, cached, firebase);
+                        }
+                    })
+                    .addOnFailureListener(executor, e -> {
+                        if (cached != null) {
+                            // Offline or the server is unreachable; an older copy beats nothing
+                            Log.w(TAG, "Could not validate " + storagePath + ", using cached copy", e);
+                            touch(storagePath, false);
+                            deliver(storagePath, cached.file, true, null);
+                        } else {
+                            deliver(storagePath, null, false, e);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Drops the cached copy of a file, for example after it was deleted on the server.
+     */
+    public void invalidate(String storagePath) {
+        executor.execute(() -> {
+            CachedFile cached = readEntry(storagePath);
+            if (cached != null) {
+                removeEntry(storagePath, cached.file);
+            }
+        });
+    }
+
+    /**
+     * Downloads a file ahead of a visit and keeps it, outside the LRU limit, until keepUntil.
+     * Blocks until done; must not be called on the UI thread. The network requests are waited on
+     * here, but the cache is only read and changed on the executor, like open() does.
+     *
+     * @param maxBytes Files larger than this are not downloaded.
+     * @return The bytes downloaded; 0 if the cached copy was already current, -1 if the file is too large.
+     */
+    public long prefetch(String storagePath, MeteredFirebase firebase, long keepUntil, long maxBytes)
+            throws IOException, ExecutionException, InterruptedException {
+        StorageReference reference = firebase.storageReference(storagePath);
+        StorageMetadata metadata = Tasks.await(firebase.getMetadata(reference));
+
+        Long skipped = onExecutor(() -> {
+            CachedFile cached = readEntry(storagePath);
+            if (cached != null && cached.matches(metadata)) {
+                markPrefetched(storagePath, Math.max(keepUntil, cached.prefetchedUntil), true);
+                return 0L;
+            }
+            return metadata.getSizeBytes() > maxBytes ? -1L : null;
+        });
+        if (skipped != null) {
+            return skipped;
+        }
+
+        File folder = onExecutor(() -> folderFor(storagePath));
+        File partial = new File(folder, reference.getName() + ".prefetch");
+        try {
+            Tasks.await(firebase.getFile(reference, partial));
+        } catch (ExecutionException | InterruptedException e) {
+            partial.delete();
+            throw e;
+        }
+
+        return onExecutor(() -> {
+            // Read again; open() may have replaced the copy while this one was downloading
+            CachedFile cached = readEntry(storagePath);
+            File target = new File(folder, reference.getName());
+            if (!partial.renameTo(target)) {
+                partial.delete();
+                throw new IOException("Could not save " + target.getName());
+            }
+            if (cached != null && !cached.file.equals(target)) {
+                cached.file.delete();
+            }
+            writeEntry(storagePath, target, metadata);
+            markPrefetched(storagePath, keepUntil, false);
+            evict(storagePath);
+            return target.length();
+        });
+    }
+
+    /**
+     * Returns the bytes held by files prefetched for visits that are not over yet.
+     */
+    public long getPrefetchedBytes() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT SUM(" + COLUMN_SIZE + ") FROM " + TABLE_FILES +
+                " WHERE " + COLUMN_PREFETCHED_UNTIL + " > ?", new String[]{String.valueOf(System.currentTimeMillis())})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Deletes prefetched files whose visit is over. Must not be called on the UI thread.
+     */
+    public void releaseExpiredPrefetches() {
+        try {
+            onExecutor(() -> {
+                try (Cursor cursor = getReadableDatabase().query(TABLE_FILES, new String[]{COLUMN_STORAGE_PATH, COLUMN_LOCAL_PATH},
+                        COLUMN_PREFETCHED_UNTIL + " > 0 AND " + COLUMN_PREFETCHED_UNTIL + " <= ?",
+                        new String[]{String.valueOf(System.currentTimeMillis())}, null, null, null)) {
+                    while (cursor.moveToNext()) {
+                        removeEntry(cursor.getString(0), new File(cursor.getString(1)));
+                    }
+                }
+                return null;
+            });
+        } catch (IOException | ExecutionException e) {
+            Log.w(TAG, "Could not release expired prefetches", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a task on the executor and waits for it, so callers on other threads never change
+     * the cache alongside open().
+     */
+    private <T> T onExecutor(Callable<T> task) throws IOException, ExecutionException, InterruptedException {
+        try {
+            return executor.submit(task).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void markPrefetched(String storagePath, long keepUntil, boolean validated) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PREFETCHED_UNTIL, keepUntil);
+        if (validated) {
+            values.put(COLUMN_VALIDATED_AT, System.currentTimeMillis());
+        }
+        getWritableDatabase().update(TABLE_FILES, values, COLUMN_STORAGE_PATH + "=?", new String[]{storagePath});
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Executor thread
+    // ---------------------------------------------------------------------------------------
+
+    private void download(String storagePath, StorageReference reference, StorageMetadata metadata,
+                          CachedFile previous, MeteredFirebase firebase) {
+        File folder;
+        try {
+            folder = folderFor(storagePath);
+        } catch (IOException e) {
+            deliver(storagePath, null, false, e);
+            return;
+        }
+        File target = new File(folder, reference.getName());
+        File partial = new File(folder, reference.getName() + ".part");
+
+        firebase.getFile(reference, partial)
+                .addOnSuccessListener(executor, snapshot -> {
+                    if (!partial.renameTo(target)) {
+                        partial.delete();
+                        deliver(storagePath, null, false, new IOException("Could not save " + target.getName()));
+                        return;
+                    }
+                    if (previous != null && !previous.file.equals(target)) {
+                        previous.file.delete();
+                    }
+                    writeEntry(storagePath, target, metadata);
+                    evict(storagePath);
+                    deliver(storagePath, target, false, null);
+                })
+                .addOnFailureListener(executor, e -> {
+                    partial.delete();
+                    if (previous != null) {
+                        Log.w(TAG, "Download of " + storagePath + " failed, using cached copy", e);
+                        deliver(storagePath, previous.file, true, null);
+                    } else {
+                        deliver(storagePath, null, false, e);
+                    }
+                });
+    }
+
+    /**
+     * Each Storage path gets its own folder, so the file keeps its real name for the viewer app.
+     */
+    private File folderFor(String storagePath) throws IOException {
+        File root = context.getExternalCacheDir();
+        if (root == null) {
+            throw new IOException("External storage is not available");
+        }
+        File folder = new File(new File(root, CACHE_FOLDER), hashPath(storagePath));
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        return folder;
+    }
+
+    private static String hashPath(String storagePath) {
+        byte[] hash = ContentHash.newDigest("SHA-1").digest(storagePath.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            hex.append(String.format(Locale.US, "%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private CachedFile readEntry(String storagePath) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_FILES, null, COLUMN_STORAGE_PATH + "=?",
+                new String[]{storagePath}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            File file = new File(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCAL_PATH)));
+            if (!file.exists()) {
+                // The system cleared the cache folder behind our back
+                getWritableDatabase().delete(TABLE_FILES, COLUMN_STORAGE_PATH + "=?", new String[]{storagePath});
+                return null;
+            }
+            return new CachedFile(file,
+                    cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_GENERATION)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MD5)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_VALIDATED_AT)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_PREFETCHED_UNTIL)));
+        }
+    }
+
+    private void writeEntry(String storagePath, File file, StorageMetadata metadata) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STORAGE_PATH, storagePath);
+        values.put(COLUMN_LOCAL_PATH, file.getAbsolutePath());
+        values.put(COLUMN_GENERATION, metadata.getGeneration());
+        values.put(COLUMN_MD5, metadata.getMd5Hash());
+        values.put(COLUMN_SIZE, file.length());
+        values.put(COLUMN_LAST_ACCESSED, now);
+        values.put(COLUMN_VALIDATED_AT, now);
+        getWritableDatabase().insertWithOnConflict(TABLE_FILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private void touch(String storagePath, boolean validated) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_LAST_ACCESSED, now);
+        if (validated) {
+            values.put(COLUMN_VALIDATED_AT, now);
+        }
+        getWritableDatabase().update(TABLE_FILES, values, COLUMN_STORAGE_PATH + "=?", new String[]{storagePath});
+    }
+
+    private void removeEntry(String storagePath, File file) {
+        file.delete();
+        File folder = file.getParentFile();
+        if (folder != null) {
+            folder.delete(); // Only succeeds once the folder is empty
+        }
+        getWritableDatabase().delete(TABLE_FILES, COLUMN_STORAGE_PATH + "=?", new String[]{storagePath});
+    }
+
+    private void evict(String keepStoragePath) {
+        long budget = StorageBudget.getBudgetBytes(context, StorageBudget.CATEGORY_DOWNLOADS);
+        evict(keepStoragePath, budget > 0 ? budget : Long.MAX_VALUE); // 0 means the user removed the budget
+    }
+
+    /**
+     * Returns the bytes held by every cached file. Must not be called on the UI thread.
+     */
+    public long getCachedBytes() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT SUM(" + COLUMN_SIZE + ") FROM " + TABLE_FILES, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Removes the least recently opened files until the cache fits in maxBytes, for StorageBudget.
+     * Blocks until done on the executor; must not be called on the UI thread.
+     *
+     * @return The number of bytes freed.
+     */
+    public long trimTo(long maxBytes) {
+        try {
+            return onExecutor(() -> evict("", maxBytes));
+        } catch (IOException | ExecutionException e) {
+            Log.w(TAG, "Could not trim the download cache", e);
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /**
+     * Removes the least recently opened files until the cache fits in maxBytes.
+     * The file just opened and files prefetched for an upcoming visit are never evicted.
+     */
+    private long evict(String keepStoragePath, long maxBytes) {
+        long total = getCachedBytes();
+        if (total <= maxBytes) {
+            return 0;
+        }
+
+        long freed = 0;
+        try (Cursor cursor = getWritableDatabase().query(TABLE_FILES, new String[]{COLUMN_STORAGE_PATH, COLUMN_LOCAL_PATH, COLUMN_SIZE},
+                COLUMN_STORAGE_PATH + "!=? AND " + COLUMN_PREFETCHED_UNTIL + " <= ?",
+                new String[]{keepStoragePath, String.valueOf(System.currentTimeMillis())},
+                null, null, COLUMN_LAST_ACCESSED + " ASC")) {
+            while (total - freed > maxBytes && cursor.moveToNext()) {
+                removeEntry(cursor.getString(0), new File(cursor.getString(1)));
+                freed += cursor.getLong(2);
+            }
+        }
+        return freed;
+    }
+
+    private void deliver(String storagePath, File file, boolean fromCache, Exception error) {
+        mainHandler.post(() -> {
+            List<FileCallback> callbacks = inFlight.remove(storagePath);
+            if (callbacks == null) {
+                return;
+            }
+            for (FileCallback callback : callbacks) {
+                if (error != null) {
+                    callback.onError(error);
+                } else {
+                    callback.onFile(file, fromCache);
+                }
+            }
+        });
+    }
+
+    /**
+     * A cached copy and the server version it was downloaded from.
+     */
+    private static class CachedFile {
+        final File file;
+        final String generation;
+        final String md5;
+        final long validatedAt;
+        final long prefetchedUntil;
+
+        CachedFile(File file, String generation, String md5, long validatedAt, long prefetchedUntil) {
+            this.file = file;
+            this.generation = generation;
+            this.md5 = md5;
+            this.validatedAt = validatedAt;
+            this.prefetchedUntil = prefetchedUntil;
+        }
+
+        /**
+         * True if the server copy is the one this file was downloaded from.
+         */
+        boolean matches(StorageMetadata metadata) {
+            if (generation != null && metadata.getGeneration() != null) {
+                return generation.equals(metadata.getGeneration());
+            }
+            return md5 != null && md5.equals(metadata.getMd5Hash());
+        }
+    }
+}
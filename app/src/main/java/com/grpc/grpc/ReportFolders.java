@@ -0,0 +1,39 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * ReportFolders.java
+ *
+ * This class names the folders (under the app's external files directory) the report, quote,
+ * service agreement and risk assessment generators write their PDFs to, so the background jobs
+ * that sync, export or back up documents all look in the same places.
+ *
+ * Features:
+ * - One constant per document folder
+ * - ALL lists every document folder in a stable order
+ *
+ * Author: James Scott
+ */
+
+public final class ReportFolders {
+
+    public static final String REPORTS = "GRPEST REPORTS";
+    public static final String QUOTES = "GRPEST_QUOTES";
+    public static final String SERVICE_AGREEMENTS = "ServiceAgreements";
+    public static final String RISK_ASSESSMENTS = "EnvironmentalRiskAssessments";
+
+    public static final String[] ALL = {REPORTS, QUOTES, SERVICE_AGREEMENTS, RISK_ASSESSMENTS};
+
+    private ReportFolders() {
+    }
+
+    /**
+     * Returns a document folder on this device (it may not exist yet).
+     */
+    public static File get(Context context, String folderName) {
+        return new File(context.getExternalFilesDir(null), folderName);
+    }
+}
@@ -0,0 +1,325 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.storage.StorageMetadata;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfDocumentInfo;
+import com.itextpdf.kernel.pdf.PdfReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ReportMetadata.java
+ *
+ * This class describes an uploaded report - customer, address, report type, visit date and
+ * technician - so reports in Firebase Storage can be found without walking the bucket. The report
+ * generator stamps these fields into the PDF's document information when it writes the file; the
+ * upload worker reads them back, attaches them to the Storage object as custom metadata and writes
+ * a matching document to the "report_index" collection, which StoredReportsActivity searches.
+ *
+ * Features:
+ * - Parsed from the report's "Label: value" content when the PDF is generated
+ * - Read back from the PDF's document information at upload time
+ * - Falls back to the file name, folder and modified date for older PDFs
+ * - Builds the Storage custom metadata and the Firestore index document
+ * - Search tokens (words and word prefixes) for single-query customer/address search
+ *
+ * Author: James Scott
+ */
+
+public class ReportMetadata {
+
+    private static final String TAG = "ReportMetadata";
+
+    public static final String INDEX_COLLECTION = "report_index";
+
+    // Field names, shared by the Storage custom metadata and the index document
+    public static final String FIELD_CUSTOMER = "customer";
+    public static final String FIELD_ADDRESS = "address";
+    public static final String FIELD_REPORT_TYPE = "reportType";
+    public static final String FIELD_VISIT_DATE = "visitDate";
+    public static final String FIELD_TECHNICIAN = "technician";
+
+    // Index-only fields
+    public static final String FIELD_STORAGE_PATH = "storagePath";
+    public static final String FIELD_FILE_NAME = "fileName";
+    public static final String FIELD_VISIT_DATE_MILLIS = "visitDateMillis";
+    public static final String FIELD_SIZE_BYTES = "sizeBytes";
+    public static final String FIELD_MD5 = "md5";
+    public static final String FIELD_UPLOADED_AT = "uploadedAt";
+    public static final String FIELD_SEARCH_TOKENS = "searchTokens";
+
+    // Keys in the PDF's document information dictionary
+    private static final String PDF_KEY_PREFIX = "GRPEST-";
+
+    // Shortest word prefix added to the search tokens
+    private static final int MIN_TOKEN_PREFIX = 2;
+
+    private static final String DATE_PATTERN = "dd/MM/yyyy";
+    private static final Pattern FILE_NAME_DATE = Pattern.compile("_(\\d{2}-\\d{2}-\\d{4})$");
+
+    public String customer = "";
+    public String address = "";
+    public String reportType = "";
+    public String visitDate = "";
+    public long visitDateMillis;
+    public String technician = "";
+
+    /**
+     * Picks the fields out of report content made of "Label: value" lines.
+     */
+    public static ReportMetadata fromContent(String reportType, String reportName, String content) {
+        ReportMetadata metadata = new ReportMetadata();
+        metadata.reportType = clean(reportType);
+        metadata.customer = clean(reportName);
+
+        if (content != null) {
+            for (String line : content.replace("\r\n", "\n").split("\n")) {
+                String[] parts = line.split(":", 2);
+                if (parts.length != 2 || parts[1].trim().isEmpty()) {
+                    continue;
+                }
+                String label = parts[0].trim().toLowerCase(Locale.ROOT);
+                String value = clean(parts[1]);
+                switch (label) {
+                    case "premise name":
+                    case "company name":
+                    case "customer":
+                    case "customer name":
+                        metadata.customer = value;
+                        break;
+                    case "address":
+                        metadata.address = value;
+                        break;
+                    case "date":
+                        metadata.setVisitDate(value);
+                        break;
+                    case "visit type":
+                        metadata.reportType = value;
+                        break;
+                    case "tech":
+                    case "technician":
+                        metadata.technician = value;
+                        break;
+                }
+            }
+        }
+        if (metadata.visitDateMillis == 0) {
+            metadata.setVisitDateMillis(System.currentTimeMillis());
+        }
+        return metadata;
+    }
+
+    /**
+     * Reads the fields stamped into a PDF, filling any gaps from the file name and folder.
+     *
+     * @param fileName   The name the file is uploaded under.
+     * @param folderName The local folder the file came from, or null if unknown.
+     */
+    public static ReportMetadata read(Context context, Uri source, String fileName, String folderName) {
+        ReportMetadata metadata = fromFileName(fileName, folderName);
+        File file = "file".equals(source.getScheme()) ? new File(source.getPath()) : null;
+        if (file != null) {
+            long modified = file.lastModified();
+            if (metadata.visitDateMillis == 0 && modified > 0) {
+                metadata.setVisitDateMillis(modified);
+            }
+        }
+        if (fileName == null || !fileName.toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+            return metadata;
+        }
+
+        // Only the trailer and the info dictionary are parsed, not the page content. A reader on
+        // the path reads the file randomly; a reader on a stream copies all of it into memory, so
+        // streams are only used for content Uris, which have no path.
+        try {
+            if (file != null) {
+                try (PdfDocument pdf = new PdfDocument(new PdfReader(file.getAbsolutePath()))) {
+                    metadata.readFrom(pdf.getDocumentInfo());
+                }
+            } else {
+                try (InputStream in = context.getContentResolver().openInputStream(source)) {
+                    if (in != null) {
+                        try (PdfDocument pdf = new PdfDocument(new PdfReader(in))) {
+                            metadata.readFrom(pdf.getDocumentInfo());
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read document information from " + fileName, e);
+        }
+        return metadata;
+    }
+
+    /**
+     * Derives what it can from a generated file name such as "Site_X_05-03-2025.pdf".
+     */
+    static ReportMetadata fromFileName(String fileName, String folderName) {
+        ReportMetadata metadata = new ReportMetadata();
+        String base = fileName == null ? "" : fileName.replaceAll("(?i)\\.pdf$", "");
+        Matcher matcher = FILE_NAME_DATE.matcher(base);
+        if (matcher.find()) {
+            metadata.setVisitDate(matcher.group(1).replace('-', '/'));
+            base = base.substring(0, matcher.start());
+        }
+        metadata.customer = clean(base.replace('_', ' '));
+        metadata.reportType = typeForFolder(folderName);
+        return metadata;
+    }
+
+    private static String typeForFolder(String folderName) {
+        if (folderName == null) {
+            return "";
+        }
+        switch (folderName) {
+            case ReportFolders.REPORTS:
+                return "Report";
+            case ReportFolders.QUOTES:
+                return "Quote";
+            case ReportFolders.SERVICE_AGREEMENTS:
+                return "Service Agreement";
+            case ReportFolders.RISK_ASSESSMENTS:
+                return "Risk Assessment";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Stamps the fields into a PDF being generated (standard title/author/subject plus custom keys).
+     */
+    public void writeTo(PdfDocument pdf) {
+        PdfDocumentInfo info = pdf.getDocumentInfo();
+        info.setTitle(customer);
+        info.setAuthor(technician);
+        info.setSubject(reportType);
+        for (Map.Entry<String, String> field : fields().entrySet()) {
+            info.setMoreInfo(PDF_KEY_PREFIX + field.getKey(), field.getValue());
+        }
+    }
+
+    private void readFrom(PdfDocumentInfo info) {
+        String value;
+        if (!(value = clean(info.getMoreInfo(PDF_KEY_PREFIX + FIELD_CUSTOMER))).isEmpty()) customer = value;
+        if (!(value = clean(info.getMoreInfo(PDF_KEY_PREFIX + FIELD_ADDRESS))).isEmpty()) address = value;
+        if (!(value = clean(info.getMoreInfo(PDF_KEY_PREFIX + FIELD_REPORT_TYPE))).isEmpty()) reportType = value;
+        if (!(value = clean(info.getMoreInfo(PDF_KEY_PREFIX + FIELD_VISIT_DATE))).isEmpty()) setVisitDate(value);
+        if (!(value = clean(info.getMoreInfo(PDF_KEY_PREFIX + FIELD_TECHNICIAN))).isEmpty()) technician = value;
+    }
+
+    /**
+     * Adds the fields to an upload's Storage metadata.
+     */
+    public StorageMetadata.Builder applyTo(StorageMetadata.Builder builder) {
+        for (Map.Entry<String, String> field : fields().entrySet()) {
+            builder.setCustomMetadata(field.getKey(), field.getValue());
+        }
+        return builder;
+    }
+
+    /**
+     * Builds the report_index document for an uploaded object.
+     */
+    public Map<String, Object> toIndexDocument(String storagePath, long sizeBytes, String md5) {
+        Map<String, Object> document = new HashMap<>(fields());
+        document.put(FIELD_STORAGE_PATH, storagePath);
+        document.put(FIELD_FILE_NAME, storagePath.substring(storagePath.lastIndexOf('/') + 1));
+        document.put(FIELD_VISIT_DATE_MILLIS, visitDateMillis);
+        document.put(FIELD_SIZE_BYTES, sizeBytes);
+        document.put(FIELD_MD5, md5);
+        document.put(FIELD_UPLOADED_AT, FieldValue.serverTimestamp());
+        document.put(FIELD_SEARCH_TOKENS, searchTokens(customer + " " + address));
+        return document;
+    }
+
+    /**
+     * Reads a report_index document back.
+     */
+    public static ReportMetadata fromIndexDocument(DocumentSnapshot document) {
+        ReportMetadata metadata = new ReportMetadata();
+        metadata.customer = clean(document.getString(FIELD_CUSTOMER));
+        metadata.address = clean(document.getString(FIELD_ADDRESS));
+        metadata.reportType = clean(document.getString(FIELD_REPORT_TYPE));
+        metadata.visitDate = clean(document.getString(FIELD_VISIT_DATE));
+        metadata.technician = clean(document.getString(FIELD_TECHNICIAN));
+        Long millis = document.getLong(FIELD_VISIT_DATE_MILLIS);
+        metadata.visitDateMillis = millis != null ? millis : 0;
+        return metadata;
+    }
+
+    /**
+     * The index document ID for a Storage path ("/" is not allowed in document IDs).
+     */
+    public static String indexDocumentId(String storagePath) {
+        return storagePath.replace('/', '|');
+    }
+
+    /**
+     * Lower-case words of the text and their prefixes, so "smi" and "smith" both find "Smith & Co".
+     */
+    public static List<String> searchTokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            for (int length = MIN_TOKEN_PREFIX; length <= word.length(); length++) {
+                tokens.add(word.substring(0, length));
+            }
+            if (word.length() == 1) {
+                tokens.add(word);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private Map<String, String> fields() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_CUSTOMER, customer);
+        fields.put(FIELD_ADDRESS, address);
+        fields.put(FIELD_REPORT_TYPE, reportType);
+        fields.put(FIELD_VISIT_DATE, visitDate);
+        fields.put(FIELD_TECHNICIAN, technician);
+        return fields;
+    }
+
+    private void setVisitDate(String value) {
+        for (String pattern : new String[]{DATE_PATTERN, "dd-MM-yyyy", "yyyy-MM-dd", "dd/MM/yy"}) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.getDefault());
+            format.setLenient(false);
+            try {
+                setVisitDateMillis(format.parse(value).getTime());
+                return;
+            } catch (ParseException ignored) {
+                // Try the next format
+            }
+        }
+        // Keep unparseable dates as written; they still show in results
+        visitDate = value;
+    }
+
+    private void setVisitDateMillis(long millis) {
+        visitDateMillis = millis;
+        visitDate = new SimpleDateFormat(DATE_PATTERN, Locale.getDefault()).format(new Date(millis));
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ");
+    }
+}
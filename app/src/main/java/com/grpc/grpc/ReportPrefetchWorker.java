@@ -0,0 +1,181 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReportPrefetchWorker.java
+ *
+ * This background job downloads the most recent reports of every customer due a visit today (or
+ * behind) into the ReportDownloadCache, over Wi-Fi, before the technician sets off. Reports are
+ * found through the report_index collection and kept until the end of the day, so the previous
+ * visit's report opens on site with no network request at all. Prefetched files are deleted once
+ * their day is over.
+ *
+ * Features:
+ * - Reads today's due and behind contracts from the ContractScheduleCache (no Firestore reads)
+ * - REPORTS_PER_CUSTOMER most recent reports per customer, most imminent visits first
+ * - Bounded by PREFETCH_BUDGET_BYTES across all prefetched files
+ * - Unmetered networks only; runs early every morning and after the contracts are refreshed
+ *
+ * Author: James Scott
+ */
+
+public class ReportPrefetchWorker extends Worker {
+
+    private static final String TAG = "ReportPrefetchWorker";
+    private static final String PERIODIC_WORK_NAME = "report_prefetch";
+    private static final String ONE_TIME_WORK_NAME = "report_prefetch_now";
+
+    static final long PREFETCH_BUDGET_BYTES = 100L * 1024 * 1024;
+    static final int REPORTS_PER_CUSTOMER = 2;
+    private static final int MAX_CUSTOMERS = 40;
+
+    // Newest index documents read per customer; enough to find the newest few among similar names
+    private static final int INDEX_QUERY_LIMIT = 25;
+
+    // Hour of the day (local time) the morning prefetch aims for
+    private static final int PREFETCH_HOUR = 6;
+
+    public ReportPrefetchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the morning prefetch (keeps an existing schedule).
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(ReportPrefetchWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(unmetered())
+                .setInitialDelay(CalendarDays.millisUntil(PREFETCH_HOUR, 0), TimeUnit.MILLISECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Prefetches as soon as the phone is on Wi-Fi, for example after the contracts were reloaded.
+     */
+    public static void prefetchNow(Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.KEEP,
+                new OneTimeWorkRequest.Builder(ReportPrefetchWorker.class).setConstraints(unmetered()).build());
+    }
+
+    private static Constraints unmetered() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresStorageNotLow(true)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        ReportDownloadCache cache = ReportDownloadCache.getInstance(context);
+        MeteredFirebase firebase = MeteredFirebase.forScreen(TAG);
+
+        cache.releaseExpiredPrefetches();
+
+        long keepUntil = CalendarDays.startOfDayFromToday(1);
+        List<ContractScheduleCache.ScheduledVisit> visits =
+                ContractScheduleCache.getInstance(context).getVisitsDueBy(keepUntil);
+        long budget = PREFETCH_BUDGET_BYTES - cache.getPrefetchedBytes();
+
+        int customers = 0;
+        try {
+            for (ContractScheduleCache.ScheduledVisit visit : visits) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                if (budget <= 0 || customers++ >= MAX_CUSTOMERS) {
+                    break;
+                }
+                for (String storagePath : findRecentReports(firebase, visit.name)) {
+                    try {
+                        long downloaded = cache.prefetch(storagePath, firebase, keepUntil, budget);
+                        if (downloaded > 0) {
+                            budget -= downloaded;
+                        }
+                    } catch (IOException | ExecutionException e) {
+                        // Deleted or unreadable object; the rest of the day's reports still matter
+                        Log.w(TAG, "Prefetch of " + storagePath + " failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            return Result.retry();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Report index query failed", e.getCause());
+            return Result.retry();
+        }
+        return Result.success();
+    }
+
+    /**
+     * Returns the Storage paths of a customer's newest reports, found with one index query. The
+     * query orders by visit date on the server, so the limit keeps the newest matches rather than
+     * the first by document id; it needs the searchTokens + visitDateMillis composite index in
+     * firestore.indexes.json.
+     */
+    private List<String> findRecentReports(MeteredFirebase firebase, String customerName)
+            throws ExecutionException, InterruptedException {
+        List<String> words = new ArrayList<>();
+        if (customerName != null) {
+            for (String word : customerName.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        if (words.isEmpty() || "n/a".equalsIgnoreCase(customerName)) {
+            return Collections.emptyList();
+        }
+
+        String longest = Collections.max(words, (a, b) -> a.length() - b.length());
+        Query query = firebase.collection(ReportMetadata.INDEX_COLLECTION)
+                .whereArrayContains(ReportMetadata.FIELD_SEARCH_TOKENS, longest)
+                .orderBy(ReportMetadata.FIELD_VISIT_DATE_MILLIS, Query.Direction.DESCENDING)
+                .limit(INDEX_QUERY_LIMIT);
+        QuerySnapshot snapshot = Tasks.await(firebase.get(ReportMetadata.INDEX_COLLECTION, query));
+
+        List<DocumentSnapshot> matches = new ArrayList<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            Object tokens = document.get(ReportMetadata.FIELD_SEARCH_TOKENS);
+            if (tokens instanceof List && ((List<?>) tokens).containsAll(words)
+                    && document.getString(ReportMetadata.FIELD_STORAGE_PATH) != null) {
+                matches.add(document);
+            }
+        }
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < Math.min(REPORTS_PER_CUSTOMER, matches.size()); i++) {
+            paths.add(matches.get(i).getString(ReportMetadata.FIELD_STORAGE_PATH));
+        }
+        return paths;
+    }
+}
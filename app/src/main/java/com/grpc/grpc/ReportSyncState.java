@@ -0,0 +1,198 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * ReportSyncState.java
+ *
+ * This class remembers which local files have reached Storage, with the size, modified time and
+ * content hash they had when they were uploaded. Rows are written by UploadQueueWorker once an
+ * upload succeeds (or the server already held the same bytes), never when a file is only queued,
+ * so a file whose upload was lost or gave up is picked up again by the next ReportSyncWorker scan.
+ * A file whose size and modified time are unchanged is not even re-hashed on the next scan, and a
+ * file that was only touched (same hash) is not queued again. The hash the server confirmed is
+ * kept too, so ReportArchiveWorker only archives uploaded reports.
+ *
+ * Features:
+ * - One row per local file, keyed by its absolute path
+ * - Stores the Base64 MD5 used to compare with the server copy
+ * - Stores the MD5 the server confirmed for the file, if any
+ * - Forgets files that were deleted locally
+ *
+ * Author: James Scott
+ */
+
+public class ReportSyncState extends SQLiteOpenHelper {
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_report_sync.db";
+    private static final int DATABASE_VERSION = 2;
+
+    // Synced Files Table
+    private static final String TABLE_SYNCED_FILES = "synced_files";
+    private static final String COLUMN_LOCAL_PATH = "local_path";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+    private static final String COLUMN_CONTENT_MD5 = "content_md5";
+    private static final String COLUMN_REMOTE_PATH = "remote_path";
+    private static final String COLUMN_QUEUED_AT = "queued_at";
+    private static final String COLUMN_UPLOADED_MD5 = "uploaded_md5";
+
+    private static ReportSyncState instance;
+
+    /**
+     * Returns the shared sync state.
+     */
+    public static synchronized ReportSyncState getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReportSyncState(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReportSyncState(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SYNCED_FILES + " (" +
+                COLUMN_LOCAL_PATH + " TEXT PRIMARY KEY, " +
+                COLUMN_SIZE + " INTEGER NOT NULL, " +
+                COLUMN_LAST_MODIFIED + " INTEGER NOT NULL, " +
+                COLUMN_CONTENT_MD5 + " TEXT NOT NULL, " +
+                COLUMN_REMOTE_PATH + " TEXT NOT NULL, " +
+                COLUMN_QUEUED_AT + " INTEGER NOT NULL, " +
+                COLUMN_UPLOADED_MD5 + " TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Keep the synced files across upgrades so nothing is hashed or queued again
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_SYNCED_FILES + " ADD COLUMN " + COLUMN_UPLOADED_MD5 + " TEXT");
+        }
+    }
+
+    /**
+     * Returns what was recorded for a local file, or null if it has never been synced.
+     * Must not be called on the UI thread.
+     */
+    SyncedFile get(String localPath) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNCED_FILES, null,
+                COLUMN_LOCAL_PATH + "=?", new String[]{localPath}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new SyncedFile(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_SIZE)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LAST_MODIFIED)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT_MD5)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_REMOTE_PATH)));
+        }
+    }
+
+    /**
+     * Updates the size and modified time of a file whose content is unchanged since it was uploaded.
+     */
+    void record(String localPath, long size, long lastModified, String contentMd5, String remotePath) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_LOCAL_PATH, localPath);
+        values.put(COLUMN_SIZE, size);
+        values.put(COLUMN_LAST_MODIFIED, lastModified);
+        values.put(COLUMN_CONTENT_MD5, contentMd5);
+        values.put(COLUMN_REMOTE_PATH, remotePath);
+        values.put(COLUMN_QUEUED_AT, System.currentTimeMillis());
+        // Update in place so the confirmed upload hash survives a re-queue
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.update(TABLE_SYNCED_FILES, values, COLUMN_LOCAL_PATH + "=?", new String[]{localPath}) == 0) {
+            db.insert(TABLE_SYNCED_FILES, null, values);
+        }
+    }
+
+    /**
+     * Records that the server now holds a local file with the given content hash.
+     *
+     * @param size         The file's size before it was read for the upload.
+     * @param lastModified The file's modified time before it was read for the upload.
+     */
+    void markUploaded(String localPath, long size, long lastModified, String contentMd5, String remotePath) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_LOCAL_PATH, localPath);
+        values.put(COLUMN_SIZE, size);
+        values.put(COLUMN_LAST_MODIFIED, lastModified);
+        values.put(COLUMN_CONTENT_MD5, contentMd5);
+        values.put(COLUMN_REMOTE_PATH, remotePath);
+        values.put(COLUMN_QUEUED_AT, System.currentTimeMillis());
+        values.put(COLUMN_UPLOADED_MD5, contentMd5);
+        getWritableDatabase().insertWithOnConflict(TABLE_SYNCED_FILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Returns the content hash the server confirmed for a local file, or null if it was never
+     * confirmed. Must not be called on the UI thread.
+     */
+    String getUploadedMd5(String localPath) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SYNCED_FILES, new String[]{COLUMN_UPLOADED_MD5},
+                COLUMN_LOCAL_PATH + "=?", new String[]{localPath}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    /**
+     * Hashes a local file and returns the hash if the server holds exactly these bytes, or null if
+     * it does not (never uploaded, or changed since). Must not be called on the UI thread.
+     */
+    String getConfirmedMd5(File file) {
+        String uploadedMd5 = getUploadedMd5(file.getAbsolutePath());
+        if (uploadedMd5 == null) {
+            return null;
+        }
+        try {
+            String contentMd5 = ContentHash.md5Base64(file);
+            return contentMd5.equals(uploadedMd5) ? contentMd5 : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops rows for files under the given folder that no longer exist.
+     */
+    void forgetMissing(String folderPath) {
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.query(TABLE_SYNCED_FILES, new String[]{COLUMN_LOCAL_PATH},
+                COLUMN_LOCAL_PATH + " LIKE ?", new String[]{folderPath + "/%"}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String localPath = cursor.getString(0);
+                if (!new File(localPath).exists()) {
+                    db.delete(TABLE_SYNCED_FILES, COLUMN_LOCAL_PATH + "=?", new String[]{localPath});
+                }
+            }
+        }
+    }
+
+    /**
+     * What a local file looked like when it was last queued.
+     */
+    static class SyncedFile {
+        final long size;
+        final long lastModified;
+        final String contentMd5;
+        final String remotePath;
+
+        SyncedFile(long size, long lastModified, String contentMd5, String remotePath) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentMd5 = contentMd5;
+            this.remotePath = remotePath;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReportSyncWorker.java
+ *
+ * This background job copies new and changed documents from the app's report folders to a
+ * configurable Firebase Storage folder, so reports reach Storage without anyone uploading them
+ * one by one. Each file keeps one place on the server (sync folder / local folder / file name).
+ * Files are hashed locally and handed to the UploadQueue with their hash; the queue compares it
+ * with the server copy and only sends the bytes of files that actually changed.
+ *
+ * Features:
+ * - Syncs GRPEST REPORTS, GRPEST_QUOTES, ServiceAgreements and EnvironmentalRiskAssessments
+ * - Off until the user switches it on in the upload queue screen
+ * - Only files created or changed after sync was switched on
+ * - Unchanged files are skipped without re-hashing (size and modified time are remembered)
+ * - Runs hourly and whenever the reports screen is opened
+ *
+ * Author: James Scott
+ */
+
+public class ReportSyncWorker extends Worker {
+
+    private static final String TAG = "ReportSyncWorker";
+    private static final String PERIODIC_WORK_NAME = "report_sync";
+    private static final String ONE_TIME_WORK_NAME = "report_sync_now";
+
+    static final String PREFS_NAME = "ReportSync";
+    static final String KEY_ENABLED = "enabled";
+    static final String KEY_ENABLED_SINCE = "enabled_since";
+    static final String KEY_REMOTE_FOLDER = "remote_folder";
+    static final String DEFAULT_REMOTE_FOLDER = "Synced Reports";
+
+    // Files modified more recently than this may still be being written; they go next run
+    private static final long SETTLE_TIME_MS = TimeUnit.SECONDS.toMillis(30);
+
+    public ReportSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the hourly sync (keeps an existing schedule). Runs do nothing until sync is switched on.
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(ReportSyncWorker.class, 1, TimeUnit.HOURS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Runs a sync as soon as possible, unless one is already waiting to run.
+     */
+    public static void syncNow(Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.KEEP,
+                new OneTimeWorkRequest.Builder(ReportSyncWorker.class).build());
+    }
+
+    /**
+     * Returns whether automatic sync is switched on; it is off until the user opts in.
+     */
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getBoolean(KEY_ENABLED, false);
+    }
+
+    /**
+     * Turns automatic sync on or off. Turning it on syncs files from this moment onwards.
+     */
+    public static void setEnabled(Context context, boolean enabled) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_ENABLED, enabled);
+        if (enabled) {
+            editor.putLong(KEY_ENABLED_SINCE, System.currentTimeMillis());
+        }
+        editor.apply();
+        if (enabled) {
+            syncNow(context);
+        }
+    }
+
+    /**
+     * Sets the Storage folder new reports are synced to.
+     */
+    public static void setRemoteFolder(Context context, String remoteFolder) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(KEY_REMOTE_FOLDER, remoteFolder)
+                .apply();
+        syncNow(context);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!isEnabled(context)) {
+            return Result.success();
+        }
+        long enabledSince = prefs.getLong(KEY_ENABLED_SINCE, System.currentTimeMillis());
+        String remoteFolder = prefs.getString(KEY_REMOTE_FOLDER, DEFAULT_REMOTE_FOLDER);
+
+        ReportSyncState state = ReportSyncState.getInstance(context);
+        long settledBefore = System.currentTimeMillis() - SETTLE_TIME_MS;
+
+        List<Uri> sources = new ArrayList<>();
+        List<String> storagePaths = new ArrayList<>();
+        List<String> contentMd5s = new ArrayList<>();
+
+        for (String folderName : ReportFolders.ALL) {
+            File folder = ReportFolders.get(context, folderName);
+            File[] files = folder.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            state.forgetMissing(folder.getAbsolutePath());
+
+            for (File file : files) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                long lastModified = file.lastModified();
+                if (file.getName().startsWith(".") || lastModified < enabledSince || lastModified > settledBefore) {
+                    continue;
+                }
+
+                String localPath = file.getAbsolutePath();
+                String remotePath = remoteFolder + "/" + folderName + "/" + file.getName();
+                ReportSyncState.SyncedFile known = state.get(localPath);
+                boolean sameDestination = known != null && known.remotePath.equals(remotePath);
+                if (sameDestination && known.size == file.length() && known.lastModified == lastModified) {
+                    continue;
+                }
+
+                String contentMd5;
+                try {
+                    contentMd5 = ContentHash.md5Base64(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not hash " + localPath, e);
+                    continue;
+                }
+
+                // Touched but not changed: remember the new timestamp, send nothing. Changed files
+                // are recorded by UploadQueueWorker once the server holds them.
+                if (sameDestination && contentMd5.equals(known.contentMd5)) {
+                    state.record(localPath, file.length(), lastModified, contentMd5, remotePath);
+                } else {
+                    sources.add(Uri.fromFile(file));
+                    storagePaths.add(remotePath);
+                    contentMd5s.add(contentMd5);
+                }
+            }
+        }
+
+        if (!sources.isEmpty()) {
+            UploadQueue.getInstance(context).enqueueAsync(sources, storagePaths, contentMd5s, null);
+        }
+        return Result.success();
+    }
+}
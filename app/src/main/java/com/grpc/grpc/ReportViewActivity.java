@@ -7,9 +7,9 @@
  * Features:
  * - Displays a list of stored PDF reports
  * - Supports searching reports by name using a search bar
- * - Allows users to view reports with a PDF viewer
+ * - Allows users to view reports in the embedded PDF viewer
  * - Enables sharing, renaming, and deleting reports
- * - Provides an option to upload reports to Firebase Storage
+ * - Queues one or several reports for upload to Firebase Storage; uploads survive the app closing
  * - Supports adding follow-up details to an existing PDF report
  * - Ensures user-friendly alerts for all interactions
  *
@@ -22,11 +22,11 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.OpenableColumns;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.layout.Document;
@@ -49,6 +49,8 @@ import android.text.TextWatcher;
 import android.widget.Button;
 import android.widget.EditText;
 
+import com.grpc.pdfviewer.PdfViewerActivity;
+
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
@@ -59,6 +61,11 @@ import com.itextpdf.kernel.pdf.PdfReader;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ReportViewActivity displays a list of saved PDF reports and allows users to interact with them.
@@ -69,6 +76,9 @@ public class ReportViewActivity extends AppCompatActivity {
     private RecyclerView recyclerView;
     private EditText searchBar;
     private Button returnButton;
+    private Button uploadMultipleButton;
+    private Button uploadQueueButton;
+    private Button exportZipButton;
 
     // Adapter and data structures for managing reports
     private ReportAdapter adapter;
@@ -76,6 +86,16 @@ public class ReportViewActivity extends AppCompatActivity {
     private List<File> allReportFiles;
 
     private String userName;
+    private MeteredFirebase firebase;
+    private StorageListingCache listingCache;
+
+    // ZIP export waiting for the user to pick a destination, and the export in progress
+    private static final int REQUEST_EXPORT_ZIP = 2;
+    private List<ReportZipExporter.SelectedReport> pendingExportFiles;
+    private ReportZipExporter.Export runningExport;
+
+    // Lists the report folders for the ZIP export dialog off the UI thread
+    private final ExecutorService selectExecutor = Executors.newSingleThreadExecutor();
 
     /**
      * Initializes the activity and sets up the RecyclerView, search bar, and return button.
@@ -86,6 +106,8 @@ public class ReportViewActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_report_viewer);
+        firebase = MeteredFirebase.forScreen(this);
+        listingCache = StorageListingCache.getInstance(this);
 
 
 
@@ -101,6 +123,9 @@ public class ReportViewActivity extends AppCompatActivity {
         recyclerView = findViewById(R.id.report_recycler_view);
         searchBar = findViewById(R.id.search_bar);
         returnButton = findViewById(R.id.buttonreturn);
+        uploadMultipleButton = findViewById(R.id.uploadMultipleButton);
+        uploadQueueButton = findViewById(R.id.uploadQueueButton);
+        exportZipButton = findViewById(R.id.exportZipButton);
 
         // Set up RecyclerView with a LinearLayoutManager
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
@@ -108,6 +133,9 @@ public class ReportViewActivity extends AppCompatActivity {
         // Load reports and display them in the RecyclerView
         loadReports();
 
+        // Pick up reports generated since the last sync
+        ReportSyncWorker.syncNow(this);
+
         // Filter reports based on search bar input
         searchBar.addTextChangedListener(new TextWatcher() {
             @Override
@@ -122,6 +150,10 @@ public class ReportViewActivity extends AppCompatActivity {
             public void afterTextChanged(Editable s) {}
         });
 
+        uploadMultipleButton.setOnClickListener(view -> showMultipleUploadDialog());
+        uploadQueueButton.setOnClickListener(view -> startActivity(new Intent(this, UploadQueueActivity.class)));
+        exportZipButton.setOnClickListener(view -> showExportZipDialog());
+
         // Return to the main activity when the return button is clicked
         returnButton.setOnClickListener(view -> navigateBackToMainActivity());
     }
@@ -182,6 +214,12 @@ public class ReportViewActivity extends AppCompatActivity {
                 String originalFileName = getFileNameFromUri(fileUri);
                 uploadFileToFirebase(fileUri, selectedFolderForUpload, originalFileName);
             }
+        } else if (requestCode == REQUEST_EXPORT_ZIP) {
+            List<ReportZipExporter.SelectedReport> files = pendingExportFiles;
+            pendingExportFiles = null;
+            if (resultCode == RESULT_OK && data != null && data.getData() != null && files != null) {
+                startZipExport(files, data.getData());
+            }
         }
     }
 
@@ -254,95 +292,321 @@ public class ReportViewActivity extends AppCompatActivity {
                     } else if (which == 2) {
                         renameReport(file);
                     } else if (which == 3) {
-                        showFolderSelectionDialog(file);
+                        showFolderSelectionDialog(Collections.singletonList(file));
                     }
                 })
                 .show();
     }
 
+    /**
+     * Lets the user tick several reports and upload them all to one folder.
+     */
+    private void showMultipleUploadDialog() {
+        if (allReportFiles.isEmpty()) {
+            Toast.makeText(this, "No reports to upload.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] names = new String[allReportFiles.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = allReportFiles.get(i).getName();
+        }
+        boolean[] checked = new boolean[names.length];
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Select Reports to Upload");
+        builder.setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> checked[which] = isChecked);
+        builder.setPositiveButton("Next", (dialog, which) -> {
+            List<File> selected = new ArrayList<>();
+            for (int i = 0; i < checked.length; i++) {
+                if (checked[i]) {
+                    selected.add(allReportFiles.get(i));
+                }
+            }
+            if (selected.isEmpty()) {
+                Toast.makeText(this, "No reports selected.", Toast.LENGTH_SHORT).show();
+            } else {
+                showFolderSelectionDialog(selected);
+            }
+        });
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
+        builder.show();
+    }
+
+    /**
+     * Lets the user choose reports by customer and/or date range, then where to save the ZIP.
+     */
+    private void showExportZipDialog() {
+        ReportZipExporter exporter = new ReportZipExporter(this);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+        long[] range = {0, 0};
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(50, 20, 50, 0);
+
+        EditText customerInput = new EditText(this);
+        customerInput.setHint("Customer or site (blank for all)");
+        layout.addView(customerInput);
+
+        Button fromButton = new Button(this);
+        fromButton.setText("From: any date");
+        layout.addView(fromButton);
+
+        Button toButton = new Button(this);
+        toButton.setText("To: any date");
+        layout.addView(toButton);
+
+        TextView matchCount = new TextView(this);
+        matchCount.setPadding(0, 20, 0, 0);
+        layout.addView(matchCount);
+
+        // Each change starts a new count; only the latest one is shown
+        AtomicInteger generation = new AtomicInteger();
+        Runnable updateCount = () -> {
+            int current = generation.incrementAndGet();
+            String customer = customerInput.getText().toString();
+            long from = range[0];
+            long to = range[1];
+            selectExecutor.execute(() -> {
+                if (current != generation.get()) {
+                    return;
+                }
+                int count = exporter.select(customer, from, to).size();
+                runOnUiThread(() -> {
+                    if (current == generation.get()) {
+                        matchCount.setText(count + " report(s) selected");
+                    }
+                });
+            });
+        };
+        matchCount.setText("Counting reports...");
+        updateCount.run();
+
+        customerInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                updateCount.run();
+            }
+
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {}
+        });
+
+        fromButton.setOnClickListener(view -> CalendarDays.pickDate(this, calendar -> {
+            range[0] = CalendarDays.startOfDay(calendar.getTimeInMillis());
+            fromButton.setText("From: " + dateFormat.format(calendar.getTime()));
+            updateCount.run();
+        }));
+        toButton.setOnClickListener(view -> CalendarDays.pickDate(this, calendar -> {
+            range[1] = CalendarDays.endOfDay(calendar.getTimeInMillis());
+            toButton.setText("To: " + dateFormat.format(calendar.getTime()));
+            updateCount.run();
+        }));
+
+        new AlertDialog.Builder(this)
+                .setTitle("Export Reports to ZIP")
+                .setView(layout)
+                .setPositiveButton("Choose Destination", (dialog, which) -> {
+                    generation.incrementAndGet(); // Drop any count still running
+                    String customer = customerInput.getText().toString().trim();
+                    long from = range[0];
+                    long to = range[1];
+                    selectExecutor.execute(() -> {
+                        List<ReportZipExporter.SelectedReport> files = exporter.select(customer, from, to);
+                        runOnUiThread(() -> {
+                            if (isDestroyed()) {
+                                return;
+                            }
+                            if (files.isEmpty()) {
+                                Toast.makeText(this, "No reports match.", Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            pendingExportFiles = files;
+
+                            String label = customer.isEmpty() ? "Reports" : customer.replaceAll("[^a-zA-Z0-9]", "_");
+                            String date = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault()).format(new Date());
+                            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                            intent.addCategory(Intent.CATEGORY_OPENABLE);
+                            intent.setType("application/zip");
+                            intent.putExtra(Intent.EXTRA_TITLE, label + "_" + date + ".zip");
+                            startActivityForResult(intent, REQUEST_EXPORT_ZIP);
+                        });
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Streams the selected reports into the chosen ZIP, showing progress with a Cancel button.
+     */
+    private void startZipExport(List<ReportZipExporter.SelectedReport> files, Uri destination) {
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(50, 20, 50, 0);
+
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(1000);
+        layout.addView(progressBar);
+
+        TextView status = new TextView(this);
+        status.setText("Starting export...");
+        layout.addView(status);
+
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Exporting " + files.size() + " report(s)")
+                .setView(layout)
+                .setCancelable(false)
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                    if (runningExport != null) {
+                        runningExport.cancel();
+                    }
+                })
+                .show();
+
+        runningExport = new ReportZipExporter(this).export(files, destination, new ReportZipExporter.ExportListener() {
+            @Override
+            public void onProgress(int filesDone, int fileCount, long bytesDone, long totalBytes, String currentFile) {
+                if (totalBytes > 0) {
+                    progressBar.setProgress((int) (bytesDone * 1000 / totalBytes));
+                }
+                status.setText(filesDone + " / " + fileCount + "\n" + currentFile);
+            }
+
+            @Override
+            public void onComplete(int fileCount, long totalBytes) {
+                runningExport = null;
+                if (isDestroyed()) {
+                    return;
+                }
+                progressDialog.dismiss();
+                Toast.makeText(ReportViewActivity.this, "Exported " + fileCount + " report(s).", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onCancelled() {
+                runningExport = null;
+                if (isDestroyed()) {
+                    return;
+                }
+                progressDialog.dismiss();
+                Toast.makeText(ReportViewActivity.this, "Export cancelled.", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                runningExport = null;
+                if (isDestroyed()) {
+                    return;
+                }
+                progressDialog.dismiss();
+                Toast.makeText(ReportViewActivity.this, "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (runningExport != null) {
+            runningExport.cancel();
+        }
+        selectExecutor.shutdown();
+    }
+
     /**
      * Displays a folder selection dialog before uploading to Firebase.
      *
-     * @param file The file to be uploaded.
+     * @param files The files to be uploaded.
      */
-    private void showFolderSelectionDialog(File file) {
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference storageRef = storage.getReference();
-
-        storageRef.listAll().addOnSuccessListener(listResult -> {
-            List<String> folderList = new ArrayList<>();
-            for (StorageReference prefix : listResult.getPrefixes()) {
-                String folderName = prefix.getName();
-                if (!folderName.equals("backup")) { // Exclude the backup folder
-                    folderList.add(folderName);
-                }
+    private void showFolderSelectionDialog(List<File> files) {
+        listingCache.loadFolders("", firebase, new StorageListingCache.FoldersCallback() {
+            @Override
+            public void onFolders(List<String> folders) {
+                showParentFolderChoices(files, folders);
             }
 
-            if (folderList.isEmpty()) {
-                Toast.makeText(this, "No available folders to select.", Toast.LENGTH_SHORT).show();
-                return;
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(ReportViewActivity.this, "Failed to load folders: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-            // Convert list to array for AlertDialog
-            String[] foldersArray = folderList.toArray(new String[0]);
+    private void showParentFolderChoices(List<File> files, List<String> folders) {
+        List<String> folderList = new ArrayList<>();
+        for (String folderName : folders) {
+            if (!folderName.equals("backup")) { // Exclude the backup folder
+                folderList.add(folderName);
+            }
+        }
 
-            AlertDialog.Builder builder = new AlertDialog.Builder(this);
-            builder.setTitle("Select a Parent Folder");
-            builder.setItems(foldersArray, (dialog, which) -> {
-                String selectedFolder = foldersArray[which];
-                showSubFolderSelectionDialog(file, selectedFolder);
-            });
+        if (folderList.isEmpty()) {
+            Toast.makeText(this, "No available folders to select.", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
-            builder.show();
+        // Convert list to array for AlertDialog
+        String[] foldersArray = folderList.toArray(new String[0]);
 
-        }).addOnFailureListener(e ->
-                Toast.makeText(this, "Failed to load folders: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Select a Parent Folder");
+        builder.setItems(foldersArray, (dialog, which) -> {
+            String selectedFolder = foldersArray[which];
+            showSubFolderSelectionDialog(files, selectedFolder);
+        });
+
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
+        builder.show();
     }
 
 
     /**
      * Displays a subfolder selection dialog after selecting a parent folder.
      *
-     * @param file The file to be uploaded.
+     * @param files The files to be uploaded.
      * @param parentFolder The selected parent folder.
      */
-    private void showSubFolderSelectionDialog(File file, String parentFolder) {
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference parentFolderRef = storage.getReference().child(parentFolder);
-
-        parentFolderRef.listAll().addOnSuccessListener(listResult -> {
-            List<String> subFolderList = new ArrayList<>();
-            for (StorageReference prefix : listResult.getPrefixes()) {
-                subFolderList.add(prefix.getName());
+    private void showSubFolderSelectionDialog(List<File> files, String parentFolder) {
+        listingCache.loadFolders(parentFolder, firebase, new StorageListingCache.FoldersCallback() {
+            @Override
+            public void onFolders(List<String> subFolderList) {
+                showSubFolderChoices(files, parentFolder, subFolderList);
             }
 
-            if (subFolderList.isEmpty()) {
-                Toast.makeText(this, "No subfolders found. Uploading directly to " + parentFolder, Toast.LENGTH_SHORT).show();
-                uploadFileToFirebase(Uri.fromFile(file), parentFolder, file.getName());
-                return;
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(ReportViewActivity.this, "Failed to load subfolders: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-            // Show subfolder selection dialog
-            AlertDialog.Builder builder = new AlertDialog.Builder(this);
-            builder.setTitle("Select a Subfolder");
-            builder.setItems(subFolderList.toArray(new String[0]), (dialog, which) -> {
-                String selectedSubFolder = subFolderList.get(which);
-                uploadFileToFirebase(Uri.fromFile(file), parentFolder + "/" + selectedSubFolder, file.getName());
-            });
+    private void showSubFolderChoices(List<File> files, String parentFolder, List<String> subFolderList) {
+        if (subFolderList.isEmpty()) {
+            Toast.makeText(this, "No subfolders found. Uploading directly to " + parentFolder, Toast.LENGTH_SHORT).show();
+            uploadFilesToFirebase(files, parentFolder);
+            return;
+        }
 
-            builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
-            builder.show();
+        // Show subfolder selection dialog
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Select a Subfolder");
+        builder.setItems(subFolderList.toArray(new String[0]), (dialog, which) -> {
+            String selectedSubFolder = subFolderList.get(which);
+            uploadFilesToFirebase(files, parentFolder + "/" + selectedSubFolder);
+        });
 
-        }).addOnFailureListener(e ->
-                Toast.makeText(this, "Failed to load subfolders: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
+        builder.show();
     }
 
 
     /**
-     * Uploads the selected file to Firebase Storage inside the selected folder while keeping the original name.
+     * Queues the selected file for upload to Firebase Storage inside the selected folder while keeping the original name.
      *
      * @param fileUri The URI of the file to be uploaded.
      * @param folderPath The path in Firebase Storage where the file should be saved.
@@ -353,19 +617,35 @@ public class ReportViewActivity extends AppCompatActivity {
             Toast.makeText(this, "Invalid file or folder selection.", Toast.LENGTH_SHORT).show();
             return;
         }
+        enqueueUploads(Collections.singletonList(fileUri),
+                Collections.singletonList(folderPath + "/" + originalFileName), folderPath);
+    }
 
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference storageReference = storage.getReference();
-
-        // Create a reference using the original file name
-        StorageReference fileRef = storageReference.child(folderPath + "/" + originalFileName);
+    /**
+     * Queues local reports for upload into one Firebase Storage folder. The upload queue carries on
+     * in the background, so the user can leave this screen straight away.
+     *
+     * @param files The reports to be uploaded.
+     * @param folderPath The path in Firebase Storage where the files should be saved.
+     */
+    private void uploadFilesToFirebase(List<File> files, String folderPath) {
+        List<Uri> sources = new ArrayList<>();
+        List<String> storagePaths = new ArrayList<>();
+        for (File file : files) {
+            sources.add(Uri.fromFile(file));
+            storagePaths.add(folderPath + "/" + file.getName());
+        }
+        enqueueUploads(sources, storagePaths, folderPath);
+    }
 
-        UploadTask uploadTask = fileRef.putFile(fileUri);
-        uploadTask.addOnSuccessListener(taskSnapshot ->
-                Toast.makeText(this, "File uploaded successfully to " + folderPath, Toast.LENGTH_SHORT).show()
-        ).addOnFailureListener(e ->
-                Toast.makeText(this, "Upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+    private void enqueueUploads(List<Uri> sources, List<String> storagePaths, String folderPath) {
+        UploadQueue.getInstance(this).enqueueAsync(sources, storagePaths, added -> runOnUiThread(() -> {
+            if (added == 0) {
+                Toast.makeText(this, "Already queued for upload.", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, added + (added == 1 ? " report" : " reports") + " queued for upload to " + folderPath, Toast.LENGTH_SHORT).show();
+            }
+        }));
     }
 
 
@@ -456,26 +736,12 @@ public class ReportViewActivity extends AppCompatActivity {
 
 
     /**
-     * Launches an intent to view the selected PDF file using a PDF viewer app.
+     * Opens the selected PDF file in the app's embedded PDF viewer.
      *
      * @param file The report file to be viewed.
      */
     private void viewPDF(File file) {
-        try {
-            Uri fileUri = FileProvider.getUriForFile(
-                    this,
-                    "com.grpc.grpc.fileprovider",
-                    file
-            );
-
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(fileUri, "application/pdf");
-            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-            startActivity(viewIntent);
-        } catch (Exception e) {
-            Toast.makeText(this, "No application found to view this PDF.", Toast.LENGTH_SHORT).show();
-        }
+        PdfViewerActivity.start(this, file);
     }
     /**
      * Renames the selected report and refreshes the report list.
@@ -0,0 +1,306 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ReportZipExporter.java
+ *
+ * This class selects reports from the local document folders and ReportArchive's monthly bundles
+ * by customer and/or date range and streams them into a single ZIP file at a destination the user
+ * picked (a Storage Access Framework Uri). Each PDF is read through one fixed-size buffer and
+ * written straight into the ZIP stream, so nothing is copied to a temporary file and memory use is
+ * the same for 5 reports or 500. Archived reports are read straight out of their bundle.
+ *
+ * Features:
+ * - Selection by customer/site name (matched against the file name) and modified date
+ * - Archived reports are selected alongside the live ones, without extracting them first
+ * - One sequential pass: each file is opened, streamed and closed before the next
+ * - Constant memory: a single 64 KB buffer for the whole export
+ * - Progress callbacks on the main thread, per file and per buffer
+ * - Cancellable; a cancelled or failed export deletes the partial ZIP
+ *
+ * Author: James Scott
+ */
+
+public class ReportZipExporter {
+
+    private static final String TAG = "ReportZipExporter";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives export progress on the main thread.
+     */
+    public interface ExportListener {
+        void onProgress(int filesDone, int fileCount, long bytesDone, long totalBytes, String currentFile);
+
+        void onComplete(int fileCount, long totalBytes);
+
+        void onCancelled();
+
+        void onError(Exception e);
+    }
+
+    /**
+     * A running export. Call cancel() to stop it after the current buffer.
+     */
+    public static class Export {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ReportZipExporter(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Lists the PDFs in every document folder, and in the archive, that match the customer text
+     * and date range. Blank customer text matches every customer; 0 leaves that end of the date
+     * range open. The result is ordered by folder, then by file name. Must not be called on the
+     * UI thread.
+     */
+    public List<SelectedReport> select(String customer, long fromMillis, long toMillis) {
+        String needle = normalise(customer);
+        Map<String, List<SelectedReport>> byFolder = new HashMap<>();
+        Set<String> liveNames = new HashSet<>();
+        for (String folderName : ReportFolders.ALL) {
+            List<SelectedReport> matches = new ArrayList<>();
+            byFolder.put(folderName, matches);
+            File[] files = ReportFolders.get(context, folderName).listFiles((dir, name) -> name.endsWith(".pdf"));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                liveNames.add(folderName + "/" + file.getName());
+                if (matches(file.getName(), file.lastModified(), needle, fromMillis, toMillis)) {
+                    matches.add(new SelectedReport(folderName, file.getName(), file.length(), file.lastModified(), file, null));
+                }
+            }
+        }
+
+        for (ReportArchive.ArchivedReport report : ReportArchive.getInstance(context).getAll()) {
+            List<SelectedReport> matches = byFolder.get(report.folderName);
+            // A live file under the same name is the newer copy
+            if (matches != null && !liveNames.contains(report.folderName + "/" + report.fileName)
+                    && report.fileName.endsWith(".pdf")
+                    && matches(report.fileName, report.lastModified, needle, fromMillis, toMillis)) {
+                matches.add(new SelectedReport(report.folderName, report.fileName, report.size,
+                        report.lastModified, null, report));
+            }
+        }
+
+        List<SelectedReport> selected = new ArrayList<>();
+        for (String folderName : ReportFolders.ALL) {
+            List<SelectedReport> matches = byFolder.get(folderName);
+            Collections.sort(matches, (a, b) -> a.fileName.compareToIgnoreCase(b.fileName));
+            selected.addAll(matches);
+        }
+        return selected;
+    }
+
+    private static boolean matches(String fileName, long modified, String needle, long fromMillis, long toMillis) {
+        if (fromMillis > 0 && modified < fromMillis) return false;
+        if (toMillis > 0 && modified > toMillis) return false;
+        return needle.isEmpty() || normalise(fileName).contains(needle);
+    }
+
+    /**
+     * Streams the reports into a ZIP at the destination Uri on a background thread. Entries are
+     * named "<folder>/<file name>" so reports, quotes and agreements stay apart in the archive.
+     */
+    public Export export(List<SelectedReport> reports, Uri destination, ExportListener listener) {
+        Export export = new Export();
+        List<SelectedReport> snapshot = new ArrayList<>(reports);
+        executor.execute(() -> run(snapshot, destination, export, listener));
+        return export;
+    }
+
+    private void run(List<SelectedReport> files, Uri destination, Export export, ExportListener listener) {
+        long totalBytes = 0;
+        for (SelectedReport file : files) {
+            totalBytes += file.size;
+        }
+        final long total = totalBytes;
+
+        long bytesDone = 0;
+        long lastProgressPost = 0;
+        boolean finished = false;
+        // Bundles stay open for the whole export; a month's reports are read from one ZipFile
+        Map<String, ZipFile> bundles = new HashMap<>();
+        try (OutputStream out = context.getContentResolver().openOutputStream(destination, "w")) {
+            if (out == null) {
+                throw new IOException("Could not open the export destination.");
+            }
+            ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            // PDFs are already compressed; fast deflate keeps the pass I/O-bound
+            zip.setLevel(Deflater.BEST_SPEED);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int i = 0; i < files.size() && !export.isCancelled(); i++) {
+                SelectedReport file = files.get(i);
+                InputStream source = open(file, bundles);
+                if (source == null) {
+                    continue; // Deleted (or archived) since it was selected
+                }
+                ZipEntry entry = new ZipEntry(file.folderName + "/" + file.fileName);
+                entry.setTime(file.lastModified);
+                zip.putNextEntry(entry);
+                try (InputStream in = source) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (export.isCancelled()) {
+                            break;
+                        }
+                        zip.write(buffer, 0, read);
+                        bytesDone += read;
+
+                        long now = System.currentTimeMillis();
+                        if (now - lastProgressPost >= 200) {
+                            lastProgressPost = now;
+                            postProgress(listener, i, files.size(), bytesDone, total, file.fileName);
+                        }
+                    }
+                }
+                zip.closeEntry();
+                postProgress(listener, i + 1, files.size(), bytesDone, total, file.fileName);
+            }
+            zip.finish();
+            zip.flush();
+            finished = !export.isCancelled();
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Export failed", e);
+            deletePartial(destination);
+            mainHandler.post(() -> listener.onError(e));
+            return;
+        } finally {
+            for (ZipFile bundle : bundles.values()) {
+                try {
+                    bundle.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not close " + bundle.getName(), e);
+                }
+            }
+        }
+
+        if (finished) {
+            int fileCount = files.size();
+            mainHandler.post(() -> listener.onComplete(fileCount, total));
+        } else {
+            deletePartial(destination);
+            mainHandler.post(listener::onCancelled);
+        }
+    }
+
+    /**
+     * Opens a selected report: the live file, or its entry in the archive bundle. Returns null if
+     * it is no longer where it was selected from.
+     */
+    private InputStream open(SelectedReport report, Map<String, ZipFile> bundles) throws IOException {
+        if (report.file != null) {
+            if (report.file.exists()) {
+                return new FileInputStream(report.file);
+            }
+            // Archived since it was selected; read it from its bundle instead
+            ReportArchive.ArchivedReport archived = ReportArchive.getInstance(context).find(report.folderName, report.fileName);
+            return archived != null ? openArchived(archived, bundles) : null;
+        }
+        return openArchived(report.archived, bundles);
+    }
+
+    private InputStream openArchived(ReportArchive.ArchivedReport report, Map<String, ZipFile> bundles) throws IOException {
+        String key = report.folderName + "/" + report.month;
+        ZipFile bundle = bundles.get(key);
+        if (bundle == null) {
+            File bundleFile = ReportArchive.getInstance(context).bundleFile(report.folderName, report.month);
+            if (!bundleFile.exists()) {
+                return null;
+            }
+            bundle = new ZipFile(bundleFile);
+            bundles.put(key, bundle);
+        }
+        ZipEntry entry = bundle.getEntry(report.fileName);
+        return entry != null ? bundle.getInputStream(entry) : null;
+    }
+
+    private void postProgress(ExportListener listener, int filesDone, int fileCount, long bytesDone, long totalBytes, String name) {
+        mainHandler.post(() -> listener.onProgress(filesDone, fileCount, bytesDone, totalBytes, name));
+    }
+
+    private void deletePartial(Uri destination) {
+        try {
+            DocumentsContract.deleteDocument(context.getContentResolver(), destination);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not delete partial export " + destination, e);
+        }
+    }
+
+    /**
+     * Lower-cases and strips everything but letters and digits, so "Site X" matches "Site_X_...".
+     */
+    private static String normalise(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    /**
+     * A report picked for export, either a live file or an entry in an archive bundle.
+     */
+    public static class SelectedReport {
+        public final String folderName;
+        public final String fileName;
+        public final long size;
+        public final long lastModified;
+        final File file;                            // null for an archived report
+        final ReportArchive.ArchivedReport archived; // null for a live file
+
+        SelectedReport(String folderName, String fileName, long size, long lastModified,
+                       File file, ReportArchive.ArchivedReport archived) {
+            this.folderName = folderName;
+            this.fileName = fileName;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.archived = archived;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.grpc.grpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RoutePlanner.java
+ *
+ * This class puts a day's stops into a short driving order. It builds a distance matrix from the
+ * stops' coordinates, starts from a nearest-neighbour route and then keeps improving it with 2-opt
+ * (reversing a stretch of the route) and Or-opt (moving one to three stops elsewhere) until no move
+ * helps or the time budget runs out. The route is open: it starts at the technician's start point,
+ * or at whichever stop suits best, and ends at the last stop. The finished order can be handed to
+ * Google Maps as one or more legs of up to ten stops.
+ *
+ * Features:
+ * - Great-circle distance matrix from latitude and longitude
+ * - Nearest-neighbour construction, then 2-opt and Or-opt improvement within a time budget
+ * - Optional fixed start point, otherwise the best start is chosen
+ * - Google Maps directions links in legs of MAX_STOPS_PER_LEG stops
+ * - A benchmark on random stops, to check planning time on the device
+ *
+ * Author: James Scott
+ */
+
+public final class RoutePlanner {
+
+    // Improvement stops after this long even if it could still find better routes
+    static final long DEFAULT_IMPROVE_BUDGET_MS = 250;
+
+    // Google Maps directions links take a destination and up to nine waypoints
+    static final int MAX_STOPS_PER_LEG = 10;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double EPSILON = 1e-9;
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+
+    private RoutePlanner() {
+    }
+
+    /**
+     * Returns the great-circle distance in km between every pair of points.
+     */
+    public static double[][] distanceMatrix(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        double[] latRadians = new double[n];
+        double[] lonRadians = new double[n];
+        double[] latCosines = new double[n];
+        for (int i = 0; i < n; i++) {
+            latRadians[i] = Math.toRadians(latitudes[i]);
+            lonRadians[i] = Math.toRadians(longitudes[i]);
+            latCosines[i] = Math.cos(latRadians[i]);
+        }
+
+        double[][] distances = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double sinLat = Math.sin((latRadians[j] - latRadians[i]) / 2);
+                double sinLon = Math.sin((lonRadians[j] - lonRadians[i]) / 2);
+                double a = sinLat * sinLat + latCosines[i] * latCosines[j] * sinLon * sinLon;
+                double km = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+                distances[i][j] = km;
+                distances[j][i] = km;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Plans an open route through every point of a symmetric distance matrix.
+     *
+     * @param start           Index of the fixed start point, or -1 to let the planner choose.
+     * @param improveBudgetMs How long the improvement phase may run.
+     * @return The plan; its order leaves out the start point.
+     */
+    public static Plan plan(double[][] distances, int start, long improveBudgetMs) {
+        long startedAt = System.nanoTime();
+        double[][] d = distances;
+        int first = start;
+        if (start < 0) {
+            // A virtual depot at no distance from every stop lets the route begin anywhere
+            d = withFreeStart(distances);
+            first = distances.length;
+        }
+
+        int[] route = nearestNeighbour(d, first);
+        double nearestNeighbourKm = pathLength(d, route);
+
+        long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(improveBudgetMs);
+        int passes = 0;
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            boolean reversed = twoOptPass(d, route, deadline);
+            boolean moved = orOptPass(d, route, deadline);
+            improved = reversed || moved;
+            passes++;
+        }
+
+        return new Plan(Arrays.copyOfRange(route, 1, route.length), pathLength(d, route), nearestNeighbourKm,
+                passes, !improved, System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Returns Google Maps directions links covering the stops in order, MAX_STOPS_PER_LEG at a
+     * time; each leg starts where the previous one ended.
+     *
+     * @param origin {latitude, longitude} of the first leg's start, or null for the current location.
+     * @param stops  {latitude, longitude} of each stop, in visiting order.
+     */
+    public static List<String> navigationLegs(double[] origin, List<double[]> stops) {
+        List<String> legs = new ArrayList<>();
+        for (int first = 0; first < stops.size(); first += MAX_STOPS_PER_LEG) {
+            int last = Math.min(first + MAX_STOPS_PER_LEG, stops.size()) - 1;
+            double[] legOrigin = first == 0 ? origin : stops.get(first - 1);
+
+            StringBuilder url = new StringBuilder("https://www.google.com/maps/dir/?api=1");
+            if (legOrigin != null) {
+                url.append("&origin=").append(formatPoint(legOrigin));
+            }
+            url.append("&destination=").append(formatPoint(stops.get(last)));
+            if (last > first) {
+                url.append("&waypoints=");
+                for (int i = first; i < last; i++) {
+                    if (i > first) {
+                        url.append("%7C");
+                    }
+                    url.append(formatPoint(stops.get(i)));
+                }
+            }
+            url.append("&travelmode=driving");
+            legs.add(url.toString());
+        }
+        return legs;
+    }
+
+    /**
+     * Plans routes through random stops spread over about 50 km and times the whole job, distance
+     * matrix included. The first round warms up and is not counted.
+     */
+    public static BenchmarkResult benchmark(int stops, int rounds, long seed) {
+        Random random = new Random(seed);
+        long[] roundNanos = new long[rounds];
+        double improvementPercent = 0;
+        int convergedRounds = 0;
+
+        for (int round = -1; round < rounds; round++) {
+            double[] latitudes = new double[stops];
+            double[] longitudes = new double[stops];
+            for (int i = 0; i < stops; i++) {
+                // Any area will do; only the spread of the stops matters
+                latitudes[i] = 53.0 + random.nextDouble() * 0.45;
+                longitudes[i] = -7.0 + random.nextDouble() * 0.75;
+            }
+
+            long startedAt = System.nanoTime();
+            Plan plan = plan(distanceMatrix(latitudes, longitudes), -1, DEFAULT_IMPROVE_BUDGET_MS);
+            long elapsed = System.nanoTime() - startedAt;
+
+            if (round >= 0) {
+                roundNanos[round] = elapsed;
+                improvementPercent += plan.getImprovementPercent();
+                if (plan.converged) {
+                    convergedRounds++;
+                }
+            }
+        }
+
+        long[] sorted = roundNanos.clone();
+        Arrays.sort(sorted);
+        return new BenchmarkResult(stops, rounds, sorted[rounds / 2] / 1_000_000.0, sorted[rounds - 1] / 1_000_000.0,
+                improvementPercent / rounds, convergedRounds);
+    }
+
+    private static double[][] withFreeStart(double[][] distances) {
+        int n = distances.length;
+        double[][] d = new double[n + 1][n + 1];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(distances[i], 0, d[i], 0, n);
+        }
+        return d;
+    }
+
+    private static int[] nearestNeighbour(double[][] d, int first) {
+        int m = d.length;
+        int[] route = new int[m];
+        boolean[] visited = new boolean[m];
+        route[0] = first;
+        visited[first] = true;
+        for (int k = 1; k < m; k++) {
+            int from = route[k - 1];
+            int nearest = -1;
+            for (int candidate = 0; candidate < m; candidate++) {
+                if (!visited[candidate] && (nearest < 0 || d[from][candidate] < d[from][nearest])) {
+                    nearest = candidate;
+                }
+            }
+            route[k] = nearest;
+            visited[nearest] = true;
+        }
+        return route;
+    }
+
+    /**
+     * Reverses any stretch of the route that makes it shorter. The start stays first and the end
+     * of the route is open.
+     */
+    private static boolean twoOptPass(double[][] d, int[] route, long deadline) {
+        int m = route.length;
+        boolean improved = false;
+        for (int i = 1; i < m - 1; i++) {
+            if (System.nanoTime() > deadline) {
+                return improved;
+            }
+            for (int j = i + 1; j < m; j++) {
+                int a = route[i - 1];
+                int b = route[i];
+                int c = route[j];
+                double before = d[a][b];
+                double after = d[a][c];
+                if (j + 1 < m) {
+                    int e = route[j + 1];
+                    before += d[c][e];
+                    after += d[b][e];
+                }
+                if (after < before - EPSILON) {
+                    reverse(route, i, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Moves runs of one to MAX_OR_OPT_SEGMENT stops, either way round, to wherever they shorten
+     * the route most.
+     */
+    private static boolean orOptPass(double[][] d, int[] route, long deadline) {
+        int m = route.length;
+        int[] scratch = new int[m];
+        boolean improved = false;
+        for (int length = 1; length <= MAX_OR_OPT_SEGMENT; length++) {
+            for (int i = 1; i + length <= m; i++) {
+                if (System.nanoTime() > deadline) {
+                    return improved;
+                }
+                int prev = route[i - 1];
+                int head = route[i];
+                int tail = route[i + length - 1];
+                int next = i + length < m ? route[i + length] : -1;
+                double removeGain = d[prev][head] + (next >= 0 ? d[tail][next] - d[prev][next] : 0);
+                if (removeGain <= EPSILON) {
+                    continue;
+                }
+
+                int bestAfter = -1;
+                boolean bestReversed = false;
+                double bestDelta = -EPSILON;
+                for (int p = 0; p < m; p++) {
+                    if (p >= i - 1 && p <= i + length - 1) {
+                        continue; // Edges touching the run itself
+                    }
+                    int x = route[p];
+                    int y = p + 1 < m ? route[p + 1] : -1;
+                    double opened = y >= 0 ? d[x][y] : 0;
+                    double forward = d[x][head] + (y >= 0 ? d[tail][y] : 0) - opened - removeGain;
+                    double backward = d[x][tail] + (y >= 0 ? d[head][y] : 0) - opened - removeGain;
+                    if (forward < bestDelta) {
+                        bestDelta = forward;
+                        bestAfter = p;
+                        bestReversed = false;
+                    }
+                    if (backward < bestDelta) {
+                        bestDelta = backward;
+                        bestAfter = p;
+                        bestReversed = true;
+                    }
+                }
+                if (bestAfter >= 0) {
+                    moveRun(route, scratch, i, length, bestAfter, bestReversed);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static void moveRun(int[] route, int[] scratch, int start, int length, int after, boolean reversed) {
+        int k = 0;
+        for (int index = 0; index < route.length; index++) {
+            if (index >= start && index < start + length) {
+                continue;
+            }
+            scratch[k++] = route[index];
+            if (index == after) {
+                for (int s = 0; s < length; s++) {
+                    scratch[k++] = route[reversed ? start + length - 1 - s : start + s];
+                }
+            }
+        }
+        System.arraycopy(scratch, 0, route, 0, route.length);
+    }
+
+    private static void reverse(int[] route, int from, int to) {
+        while (from < to) {
+            int swap = route[from];
+            route[from++] = route[to];
+            route[to--] = swap;
+        }
+    }
+
+    private static double pathLength(double[][] d, int[] route) {
+        double length = 0;
+        for (int i = 1; i < route.length; i++) {
+            length += d[route[i - 1]][route[i]];
+        }
+        return length;
+    }
+
+    private static String formatPoint(double[] point) {
+        return String.format(Locale.US, "%.6f,%.6f", point[0], point[1]);
+    }
+
+    /**
+     * A planned visiting order.
+     */
+    public static class Plan {
+        public final int[] order;
+        public final double distanceKm;
+        public final double nearestNeighbourKm;
+        public final int passes;
+        public final boolean converged; // false if the time budget ended the improvement
+        public final long elapsedNanos;
+
+        Plan(int[] order, double distanceKm, double nearestNeighbourKm, int passes, boolean converged, long elapsedNanos) {
+            this.order = order;
+            this.distanceKm = distanceKm;
+            this.nearestNeighbourKm = nearestNeighbourKm;
+            this.passes = passes;
+            this.converged = converged;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns how much shorter the improved route is than the nearest-neighbour one.
+         */
+        public double getImprovementPercent() {
+            return nearestNeighbourKm <= 0 ? 0 : (nearestNeighbourKm - distanceKm) * 100 / nearestNeighbourKm;
+        }
+    }
+
+    /**
+     * Timings of a benchmark run.
+     */
+    public static class BenchmarkResult {
+        public final int stops;
+        public final int rounds;
+        public final double medianMs;
+        public final double maxMs;
+        public final double averageImprovementPercent;
+        public final int convergedRounds;
+
+        BenchmarkResult(int stops, int rounds, double medianMs, double maxMs, double averageImprovementPercent, int convergedRounds) {
+            this.stops = stops;
+            this.rounds = rounds;
+            this.medianMs = medianMs;
+            this.maxMs = maxMs;
+            this.averageImprovementPercent = averageImprovementPercent;
+            this.convergedRounds = convergedRounds;
+        }
+    }
+}
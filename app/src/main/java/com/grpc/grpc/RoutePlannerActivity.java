@@ -0,0 +1,362 @@
+package com.grpc.grpc;
+
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RoutePlannerActivity.java
+ *
+ * This activity plans the order to visit today's due and overdue contracts in. It takes the
+ * contracts from ContractScheduleCache, looks up each address through GeocodeCache, lets
+ * RoutePlanner find a short visiting order and lists the stops in that order. Navigate hands the
+ * whole route to Google Maps, split into legs when there are more stops than one link can carry.
+ *
+ * Features:
+ * - Plans the technician's own contracts, or everyone's for the admin user
+ * - Optional start address, remembered between days
+ * - Lists the stops in order with the distance from the previous stop, overdue stops in red
+ * - Lists the addresses that could not be located, with the option to look them up again
+ * - Opens the route in Google Maps, one leg at a time
+ * - Debug builds can time the planner on 300 random stops
+ *
+ * Author: James Scott
+ */
+
+public class RoutePlannerActivity extends AppCompatActivity {
+
+    static final String PREFS_NAME = "RoutePlanner";
+    static final String KEY_START_ADDRESS = "start_address";
+
+    private static final int BENCHMARK_STOPS = 300;
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    private TextView routeSummary;
+    private LinearLayout routeContainer;
+    private Button navigateButton;
+    private SharedPreferences prefs;
+    private String userName;
+
+    private double[] plannedStart;
+    private final List<double[]> plannedPoints = new ArrayList<>();
+    private boolean planning;
+
+    private final ExecutorService planExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_route_planner);
+
+        userName = getIntent().getStringExtra("USER_NAME");
+        if (userName == null) {
+            userName = "Unknown";
+        }
+        prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+
+        routeSummary = findViewById(R.id.routeSummary);
+        routeContainer = findViewById(R.id.routeContainer);
+        navigateButton = findViewById(R.id.navigateButton);
+        Button startFromButton = findViewById(R.id.startFromButton);
+        Button planRouteButton = findViewById(R.id.planRouteButton);
+        Button benchmarkButton = findViewById(R.id.benchmarkButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        startFromButton.setOnClickListener(view -> showStartAddressDialog());
+        planRouteButton.setOnClickListener(view -> planRoute());
+        navigateButton.setOnClickListener(view -> navigate());
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            benchmarkButton.setVisibility(View.VISIBLE);
+            benchmarkButton.setOnClickListener(view -> runBenchmark());
+        }
+        backButton.setOnClickListener(view -> finish());
+
+        planRoute();
+    }
+
+    /**
+     * Lets the user set the address the route starts from, or clear it to start at the best stop.
+     */
+    private void showStartAddressDialog() {
+        EditText input = new EditText(this);
+        input.setHint("Start address");
+        input.setText(prefs.getString(KEY_START_ADDRESS, ""));
+
+        new AlertDialog.Builder(this)
+                .setTitle("Start From")
+                .setView(input)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    prefs.edit().putString(KEY_START_ADDRESS, input.getText().toString().trim()).apply();
+                    planRoute();
+                })
+                .setNeutralButton("First Stop", (dialog, which) -> {
+                    prefs.edit().remove(KEY_START_ADDRESS).apply();
+                    planRoute();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Loads today's due and overdue contracts, locates them and plans the route in the background.
+     */
+    private void planRoute() {
+        if (planning || planExecutor.isShutdown()) {
+            return;
+        }
+        planning = true;
+        navigateButton.setEnabled(false);
+        routeSummary.setText("Loading today's contracts...");
+        String technician = "user".equalsIgnoreCase(userName) ? null : userName;
+        String startAddress = prefs.getString(KEY_START_ADDRESS, "");
+
+        planExecutor.execute(() -> {
+            List<ContractScheduleCache.ScheduledVisit> visits = new ArrayList<>();
+            for (ContractScheduleCache.ScheduledVisit visit : ContractScheduleCache.getInstance(this).getVisitsDueBy(CalendarDays.startOfDayFromToday(1))) {
+                if (technician == null || technician.equalsIgnoreCase(visit.owner)) {
+                    visits.add(visit);
+                }
+            }
+
+            GeocodeCache geocodes = GeocodeCache.getInstance(this);
+            double[] start = startAddress.isEmpty() ? null : geocodes.locate(startAddress);
+            List<ContractScheduleCache.ScheduledVisit> located = new ArrayList<>();
+            List<ContractScheduleCache.ScheduledVisit> unlocated = new ArrayList<>();
+            List<double[]> points = new ArrayList<>();
+            for (int i = 0; i < visits.size(); i++) {
+                String progress = String.format(Locale.getDefault(), "Locating address %d of %d...", i + 1, visits.size());
+                runOnUiThread(() -> routeSummary.setText(progress));
+                double[] point = geocodes.locate(visits.get(i).address);
+                if (point != null) {
+                    located.add(visits.get(i));
+                    points.add(point);
+                } else {
+                    unlocated.add(visits.get(i));
+                }
+            }
+
+            RoutePlanner.Plan plan = null;
+            double[] legKm = new double[located.size()];
+            long planStartedAt = System.nanoTime();
+            if (!located.isEmpty()) {
+                try (PipelineTrace.Section ignored = PipelineTrace.begin("Route plan", located.size() + " stops")) {
+                    int n = located.size();
+                    int size = start != null ? n + 1 : n;
+                    double[] latitudes = new double[size];
+                    double[] longitudes = new double[size];
+                    for (int i = 0; i < n; i++) {
+                        latitudes[i] = points.get(i)[0];
+                        longitudes[i] = points.get(i)[1];
+                    }
+                    if (start != null) {
+                        latitudes[n] = start[0];
+                        longitudes[n] = start[1];
+                    }
+                    double[][] distances = RoutePlanner.distanceMatrix(latitudes, longitudes);
+                    plan = RoutePlanner.plan(distances, start != null ? n : -1, RoutePlanner.DEFAULT_IMPROVE_BUDGET_MS);
+
+                    int previous = start != null ? n : -1;
+                    for (int i = 0; i < plan.order.length; i++) {
+                        legKm[i] = previous >= 0 ? distances[previous][plan.order[i]] : 0;
+                        previous = plan.order[i];
+                    }
+                }
+            }
+            long planMs = (System.nanoTime() - planStartedAt) / 1_000_000;
+
+            RoutePlanner.Plan finalPlan = plan;
+            runOnUiThread(() -> {
+                planning = false;
+                if (!isDestroyed()) {
+                    showRoute(visits.isEmpty(), located, points, unlocated, finalPlan, legKm, planMs,
+                            start, !startAddress.isEmpty());
+                }
+            });
+        });
+    }
+
+    private void showRoute(boolean noVisits, List<ContractScheduleCache.ScheduledVisit> located, List<double[]> points,
+                           List<ContractScheduleCache.ScheduledVisit> unlocated, RoutePlanner.Plan plan,
+                           double[] legKm, long planMs, double[] start, boolean startRequested) {
+        routeContainer.removeAllViews();
+        plannedPoints.clear();
+        plannedStart = start;
+
+        if (noVisits) {
+            routeSummary.setText("No contracts due today or behind.\nOpen View Contracts to refresh the list.");
+            return;
+        }
+
+        StringBuilder summary = new StringBuilder();
+        if (plan != null) {
+            summary.append(String.format(Locale.getDefault(), "%d stops, %.1f km (%.1f km before improving)\nPlanned in %d ms",
+                    plan.order.length, plan.distanceKm, plan.nearestNeighbourKm, planMs));
+            if (startRequested && start == null) {
+                summary.append("\nStart address could not be located; starting at the first stop.");
+            }
+            long today = CalendarDays.startOfDayFromToday(0);
+            for (int i = 0; i < plan.order.length; i++) {
+                ContractScheduleCache.ScheduledVisit visit = located.get(plan.order[i]);
+                plannedPoints.add(points.get(plan.order[i]));
+                addStopToView(i + 1, visit, legKm[i], visit.nextVisitAt < today, i > 0 || start != null);
+            }
+        } else {
+            summary.append("None of today's addresses could be located.");
+        }
+        if (!unlocated.isEmpty()) {
+            summary.append(String.format(Locale.getDefault(), "\n%d could not be located", unlocated.size()));
+            addUnlocatedToView(unlocated);
+        }
+        routeSummary.setText(summary.toString());
+        navigateButton.setEnabled(!plannedPoints.isEmpty());
+    }
+
+    private void addStopToView(int number, ContractScheduleCache.ScheduledVisit visit, double legKm,
+                               boolean overdue, boolean showLeg) {
+        LinearLayout stopBox = new LinearLayout(this);
+        stopBox.setOrientation(LinearLayout.VERTICAL);
+        stopBox.setPadding(16, 16, 16, 16);
+        stopBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        TextView title = new TextView(this);
+        title.setText(number + ". " + visit.name + (overdue ? "  [Overdue]" : ""));
+        title.setTextSize(16);
+        title.setTypeface(null, android.graphics.Typeface.BOLD);
+        if (overdue) {
+            title.setTextColor(Color.RED);
+        }
+        stopBox.addView(title);
+
+        TextView details = new TextView(this);
+        details.setText("📍 " + visit.address +
+                (showLeg ? String.format(Locale.getDefault(), "\n%.1f km from previous stop", legKm) : "") +
+                ("user".equalsIgnoreCase(userName) ? "\n👤 " + visit.owner : ""));
+        stopBox.addView(details);
+
+        stopBox.setOnClickListener(view -> openInMaps(visit.address));
+        routeContainer.addView(stopBox);
+    }
+
+    private void addUnlocatedToView(List<ContractScheduleCache.ScheduledVisit> unlocated) {
+        TextView header = new TextView(this);
+        header.setText("Could not locate");
+        header.setTextSize(16);
+        header.setTypeface(null, android.graphics.Typeface.BOLD);
+        header.setPadding(0, 24, 0, 8);
+        routeContainer.addView(header);
+
+        for (ContractScheduleCache.ScheduledVisit visit : unlocated) {
+            TextView item = new TextView(this);
+            item.setText("🔹 " + visit.name + " - 📍 " + visit.address);
+            item.setTextColor(Color.GRAY);
+            item.setPadding(16, 8, 16, 8);
+            item.setOnClickListener(view -> new AlertDialog.Builder(this)
+                    .setTitle(visit.name)
+                    .setMessage("Look up \"" + visit.address + "\" again? Check the address on the contract first if it keeps failing.")
+                    .setPositiveButton("Look Up", (dialog, which) -> {
+                        planExecutor.execute(() -> GeocodeCache.getInstance(this).forget(visit.address));
+                        planRoute();
+                    })
+                    .setNegativeButton("Cancel", null)
+                    .show());
+            routeContainer.addView(item);
+        }
+    }
+
+    /**
+     * Opens the planned route in Google Maps, asking which leg when it needs more than one link.
+     */
+    private void navigate() {
+        List<String> legs = RoutePlanner.navigationLegs(plannedStart, plannedPoints);
+        if (legs.isEmpty()) {
+            Toast.makeText(this, "No route planned yet.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (legs.size() == 1) {
+            openDirections(legs.get(0));
+            return;
+        }
+
+        String[] labels = new String[legs.size()];
+        for (int i = 0; i < legs.size(); i++) {
+            int first = i * RoutePlanner.MAX_STOPS_PER_LEG + 1;
+            int last = Math.min(first + RoutePlanner.MAX_STOPS_PER_LEG - 1, plannedPoints.size());
+            labels[i] = String.format(Locale.getDefault(), "Stops %d - %d", first, last);
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Navigate")
+                .setItems(labels, (dialog, which) -> openDirections(legs.get(which)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void openDirections(String url) {
+        Intent mapIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
+        mapIntent.setPackage("com.google.android.apps.maps");
+        try {
+            startActivity(mapIntent);
+        } catch (ActivityNotFoundException e) {
+            // No Maps app; the link also works in a browser
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(url)));
+        }
+    }
+
+    private void openInMaps(String address) {
+        Uri gmmIntentUri = Uri.parse("geo:0,0?q=" + Uri.encode(address));
+        Intent mapIntent = new Intent(Intent.ACTION_VIEW, gmmIntentUri);
+        mapIntent.setPackage("com.google.android.apps.maps");
+        startActivity(mapIntent);
+    }
+
+    /**
+     * Times the planner on random stops and shows the result.
+     */
+    private void runBenchmark() {
+        if (planExecutor.isShutdown()) {
+            return;
+        }
+        Toast.makeText(this, "Benchmarking...", Toast.LENGTH_SHORT).show();
+        planExecutor.execute(() -> {
+            RoutePlanner.BenchmarkResult result = RoutePlanner.benchmark(BENCHMARK_STOPS, BENCHMARK_ROUNDS, System.nanoTime());
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("Route Planner Benchmark")
+                        .setMessage(String.format(Locale.getDefault(),
+                                "%d stops, %d rounds\nMedian: %.0f ms\nSlowest: %.0f ms\n" +
+                                        "%.1f%% shorter than nearest-neighbour\nFinished improving in %d of %d rounds",
+                                result.stops, result.rounds, result.medianMs, result.maxMs,
+                                result.averageImprovementPercent, result.convergedRounds, result.rounds))
+                        .setPositiveButton("OK", null)
+                        .show();
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        planExecutor.shutdown();
+    }
+}
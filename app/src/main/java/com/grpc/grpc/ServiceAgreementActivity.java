@@ -81,7 +81,7 @@ public class ServiceAgreementActivity extends AppCompatActivity {
         btnAgreement8.setOnClickListener(v -> selectVisitsPerYear(8));
         btnAgreement12.setOnClickListener(v -> selectVisitsPerYear(12));
 
-        btnGeneratePdf.setOnClickListener(v -> generatePdf());
+        btnGeneratePdf.setOnClickListener(v -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePdf));
     }
 
     private void selectVisitsPerYear(int visits) {
@@ -11,6 +11,8 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import com.grpc.pdfviewer.PdfViewerActivity;
+
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
@@ -31,7 +33,7 @@ import java.util.List;
  * Features:
  * - Displays a list of stored service agreement PDFs
  * - Allows searching agreements by name using a search bar
- * - Supports viewing agreements using a PDF viewer
+ * - Supports viewing agreements in the embedded PDF viewer
  * - Enables sharing, renaming, and deleting agreements
  * - Ensures user-friendly alerts and UI interaction
  *
@@ -201,26 +203,12 @@ public class ServiceAgreementViewActivity extends AppCompatActivity {
     }
 
     /**
-     * Launches an intent to view the selected PDF file using a PDF viewer app.
+     * Opens the selected PDF file in the app's embedded PDF viewer.
      *
      * @param file The service agreement file to be viewed.
      */
     private void viewPDF(File file) {
-        try {
-            Uri fileUri = FileProvider.getUriForFile(
-                    this,
-                    "com.grpc.grpc.fileprovider",
-                    file
-            );
-
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(fileUri, "application/pdf");
-            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-            startActivity(viewIntent);
-        } catch (Exception e) {
-            Toast.makeText(this, "No application found to view this PDF.", Toast.LENGTH_SHORT).show();
-        }
+        PdfViewerActivity.start(this, file);
     }
 
     /**
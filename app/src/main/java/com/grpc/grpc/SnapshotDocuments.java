@@ -0,0 +1,38 @@
+package com.grpc.grpc;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SnapshotDocuments.java
+ *
+ * This class holds the snapshot helpers shared by the Firestore listeners that keep a local copy
+ * of a collection (the search index and the commission rollup). On a listener's first server
+ * snapshot each local copy drops the documents that were deleted while the app was closed, and
+ * that pass needs the ids of every document still on the server.
+ *
+ * Features:
+ * - Every document id in a query snapshot
+ *
+ * Author: James Scott
+ */
+
+public final class SnapshotDocuments {
+
+    private SnapshotDocuments() {
+    }
+
+    /**
+     * Returns every document id in a snapshot, for the reconcile pass of a listener's first server snapshot.
+     */
+    public static Set<String> documentIds(QuerySnapshot snapshot) {
+        Set<String> ids = new HashSet<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+}
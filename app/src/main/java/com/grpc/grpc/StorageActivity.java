@@ -0,0 +1,165 @@
+package com.grpc.grpc;
+
+import android.os.Bundle;
+import android.text.InputType;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * StorageActivity.java
+ *
+ * This screen breaks down the space the app uses on the device by StorageBudget category, shows
+ * each category against its budget and lets the user change the budgets or apply them straight
+ * away. Measuring walks the folders, so it runs in the background.
+ *
+ * Features:
+ * - Free space on the device and total space used by the app's documents and caches
+ * - Size, file count and a budget bar per category
+ * - Tap a category to set its budget in MB (0 for none)
+ * - "Apply Budgets Now" evicts over-budget caches and uploaded documents
+ *
+ * Author: James Scott
+ */
+
+public class StorageActivity extends AppCompatActivity {
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    private LinearLayout storageContainer;
+    private TextView storageTotals;
+
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_storage);
+
+        storageContainer = findViewById(R.id.storageContainer);
+        storageTotals = findViewById(R.id.storageTotals);
+        Button enforceBudgetsButton = findViewById(R.id.enforceBudgetsButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        enforceBudgetsButton.setOnClickListener(view -> enforceBudgets());
+        backButton.setOnClickListener(view -> finish());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadUsage();
+    }
+
+    private void loadUsage() {
+        if (loadExecutor.isShutdown()) {
+            return;
+        }
+        loadExecutor.execute(() -> {
+            List<StorageBudget.Usage> usages = StorageBudget.measure(this);
+            long usable = StorageBudget.getUsableBytes(this);
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    showUsage(usages, usable);
+                }
+            });
+        });
+    }
+
+    private void showUsage(List<StorageBudget.Usage> usages, long usable) {
+        long used = 0;
+        storageContainer.removeAllViews();
+        for (StorageBudget.Usage usage : usages) {
+            used += usage.bytes;
+            addCategoryToView(usage);
+        }
+        storageTotals.setText(String.format(Locale.getDefault(), "Used by the app: %.1f MB\nFree on device: %.1f MB",
+                used / MB, usable / MB));
+    }
+
+    private void addCategoryToView(StorageBudget.Usage usage) {
+        LinearLayout categoryBox = new LinearLayout(this);
+        categoryBox.setOrientation(LinearLayout.VERTICAL);
+        categoryBox.setPadding(16, 16, 16, 16);
+        categoryBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        TextView label = new TextView(this);
+        label.setText(usage.label);
+        label.setTextSize(16);
+        label.setTypeface(null, android.graphics.Typeface.BOLD);
+        categoryBox.addView(label);
+
+        if (usage.budgetBytes > 0) {
+            ProgressBar budgetBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+            budgetBar.setMax(100);
+            budgetBar.setProgress((int) Math.min(100, usage.bytes * 100 / usage.budgetBytes));
+            categoryBox.addView(budgetBar);
+        }
+
+        TextView details = new TextView(this);
+        String files = usage.fileCount >= 0 ? usage.fileCount + " files, " : "";
+        String budget = !usage.evictable ? "Kept (not evicted)"
+                : usage.budgetBytes > 0 ? String.format(Locale.getDefault(), "Budget %.0f MB", usage.budgetBytes / MB)
+                : "No budget";
+        details.setText(String.format(Locale.getDefault(), "%s%.1f MB - %s", files, usage.bytes / MB, budget));
+        categoryBox.addView(details);
+
+        if (usage.evictable) {
+            categoryBox.setOnClickListener(view -> showBudgetDialog(usage));
+        }
+        storageContainer.addView(categoryBox);
+    }
+
+    /**
+     * Lets the user set a category's budget in MB.
+     */
+    private void showBudgetDialog(StorageBudget.Usage usage) {
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setText(String.valueOf(Math.round(usage.budgetBytes / MB)));
+
+        new AlertDialog.Builder(this)
+                .setTitle(usage.label + " Budget (MB, 0 for none)")
+                .setView(input)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    try {
+                        StorageBudget.setBudgetMb(this, usage.categoryId, Long.parseLong(input.getText().toString().trim()));
+                        loadUsage();
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter a number of MB.", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void enforceBudgets() {
+        loadExecutor.execute(() -> {
+            long freed = StorageBudget.enforce(this);
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    Toast.makeText(this, String.format(Locale.getDefault(), "Freed %.1f MB.", freed / MB),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+            loadUsage();
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,447 @@
+package com.grpc.grpc;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * StorageBudget.java
+ *
+ * This class measures how much space the app uses in each storage category - the four document
+ * folders, the report archive, the download cache, extracted archive copies and diagnostics
+ * exports - and holds each category to a budget the user can change. Caches are trimmed least
+ * recently used first; documents are only ever evicted once the server holds exactly the same
+ * bytes, oldest first. Document folders have no budget unless the user sets one. Before a document
+ * is generated it checks there is room for it and empties the caches if there is not; uploaded
+ * documents are only removed to make room if the user agrees.
+ *
+ * Features:
+ * - Per-category usage and file counts for the Storage screen
+ * - Configurable budget per category in MB (0 means no budget, the default for documents)
+ * - Cache eviction by last use; document eviction limited to confirmed uploads
+ * - Pre-generation space check with an estimate that includes attached images
+ * - Asks before removing uploaded documents to make room for a new one
+ * - Never evicts the archive bundles or files prefetched for an upcoming visit
+ *
+ * Author: James Scott
+ */
+
+public final class StorageBudget {
+
+    static final String PREFS_NAME = "StorageBudget";
+    private static final String KEY_BUDGET_PREFIX = "budget_mb_";
+
+    public static final String CATEGORY_REPORTS = "reports";
+    public static final String CATEGORY_QUOTES = "quotes";
+    public static final String CATEGORY_AGREEMENTS = "agreements";
+    public static final String CATEGORY_ASSESSMENTS = "assessments";
+    public static final String CATEGORY_ARCHIVE = "archive";
+    public static final String CATEGORY_DOWNLOADS = "downloads";
+    public static final String CATEGORY_EXTRACTS = "extracts";
+    public static final String CATEGORY_DIAGNOSTICS = "diagnostics";
+
+    // How a category gives space back
+    private static final int KIND_DOCUMENTS = 0; // Oldest files the server confirmed, nothing else
+    private static final int KIND_CACHE = 1;     // Any file, least recently used first
+    private static final int KIND_DOWNLOADS = 2; // Trimmed by ReportDownloadCache, which tracks its own use
+    private static final int KIND_TRACKED = 3;   // Measured only
+
+    private static final long MB = 1024L * 1024;
+
+    // Room kept free on top of a document's estimate so a PDF write never hits a full disk
+    private static final long RESERVE_BYTES = 100 * MB;
+    private static final long BASE_DOCUMENT_BYTES = 5 * MB;
+    private static final long UNKNOWN_IMAGE_BYTES = 5 * MB;
+
+    private static final Category[] CATEGORIES = {
+            // Documents are the user's own files; they are only held to a budget the user sets
+            new Category(CATEGORY_REPORTS, "Reports", KIND_DOCUMENTS, 0),
+            new Category(CATEGORY_QUOTES, "Quotes", KIND_DOCUMENTS, 0),
+            new Category(CATEGORY_AGREEMENTS, "Service Agreements", KIND_DOCUMENTS, 0),
+            new Category(CATEGORY_ASSESSMENTS, "Risk Assessments", KIND_DOCUMENTS, 0),
+            new Category(CATEGORY_ARCHIVE, "Report Archive", KIND_TRACKED, 0),
+            new Category(CATEGORY_DOWNLOADS, "Downloaded Reports", KIND_DOWNLOADS, ReportDownloadCache.MAX_CACHE_BYTES / MB),
+            new Category(CATEGORY_EXTRACTS, "Opened Archive Copies", KIND_CACHE, 100),
+            new Category(CATEGORY_DIAGNOSTICS, "Diagnostics Exports", KIND_CACHE, 20),
+    };
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private StorageBudget() {
+    }
+
+    /**
+     * Returns a category's budget in bytes, or 0 when it has none.
+     */
+    public static long getBudgetBytes(Context context, String categoryId) {
+        Category category = find(categoryId);
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getLong(KEY_BUDGET_PREFIX + categoryId, category != null ? category.defaultBudgetMb : 0) * MB;
+    }
+
+    /**
+     * Sets a category's budget in MB; 0 removes the budget.
+     */
+    public static void setBudgetMb(Context context, String categoryId, long budgetMb) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putLong(KEY_BUDGET_PREFIX + categoryId, Math.max(0, budgetMb))
+                .apply();
+    }
+
+    /**
+     * Returns the space left on the volume the documents are written to.
+     */
+    public static long getUsableBytes(Context context) {
+        File root = context.getExternalFilesDir(null);
+        return root != null ? root.getUsableSpace() : 0;
+    }
+
+    /**
+     * Measures every category. Must not be called on the UI thread.
+     */
+    public static List<Usage> measure(Context context) {
+        List<Usage> usages = new ArrayList<>();
+        for (Category category : CATEGORIES) {
+            long bytes;
+            int fileCount;
+            if (category.kind == KIND_DOWNLOADS) {
+                bytes = ReportDownloadCache.getInstance(context).getCachedBytes();
+                fileCount = -1;
+            } else {
+                List<File> files = listFiles(folderFor(context, category));
+                bytes = totalBytes(files);
+                fileCount = files.size();
+            }
+            usages.add(new Usage(category.id, category.label, bytes, fileCount,
+                    getBudgetBytes(context, category.id), category.kind != KIND_TRACKED));
+        }
+        return usages;
+    }
+
+    /**
+     * Trims every category that is over its budget. Must not be called on the UI thread.
+     *
+     * @return The number of bytes freed.
+     */
+    public static long enforce(Context context) {
+        long freed = 0;
+        boolean documentsEvicted = false;
+        for (Category category : CATEGORIES) {
+            long budget = getBudgetBytes(context, category.id);
+            if (budget > 0) {
+                long categoryFreed = trim(context, category, budget);
+                freed += categoryFreed;
+                documentsEvicted |= category.kind == KIND_DOCUMENTS && categoryFreed > 0;
+            }
+        }
+        if (documentsEvicted) {
+            LocalSearchIndex.getInstance(context).refreshReportCatalogAsync();
+        }
+        return freed;
+    }
+
+    /**
+     * Empties caches until at least bytesNeeded are usable, or every cache is empty. Documents are
+     * never touched. Must not be called on the UI thread.
+     *
+     * @return The number of bytes freed.
+     */
+    public static long freeCacheSpace(Context context, long bytesNeeded) {
+        long freed = 0;
+        for (Category category : CATEGORIES) {
+            if (getUsableBytes(context) >= bytesNeeded) {
+                break;
+            }
+            if (category.kind == KIND_CACHE || category.kind == KIND_DOWNLOADS) {
+                freed += trim(context, category, 0);
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Picks the oldest documents, across every folder, that the server holds exactly and that
+     * together make up at least bytesWanted (or all of them if they fall short).
+     * Must not be called on the UI thread.
+     */
+    private static List<File> findUploadedDocuments(Context context, long bytesWanted) {
+        List<File> documents = new ArrayList<>();
+        for (Category category : CATEGORIES) {
+            if (category.kind == KIND_DOCUMENTS) {
+                documents.addAll(listFiles(folderFor(context, category)));
+            }
+        }
+        Collections.sort(documents, Comparator.comparingLong(File::lastModified));
+        ReportSyncState syncState = ReportSyncState.getInstance(context);
+        List<File> uploaded = new ArrayList<>();
+        long bytes = 0;
+        for (File file : documents) {
+            if (bytes >= bytesWanted) {
+                break;
+            }
+            if (syncState.getConfirmedMd5(file) != null) {
+                uploaded.add(file);
+                bytes += file.length();
+            }
+        }
+        return uploaded;
+    }
+
+    /**
+     * Deletes documents picked by findUploadedDocuments, skipping any that changed since.
+     * Must not be called on the UI thread.
+     *
+     * @return The number of bytes freed.
+     */
+    private static long evictDocuments(Context context, List<File> documents) {
+        ReportSyncState syncState = ReportSyncState.getInstance(context);
+        long freed = 0;
+        for (File file : documents) {
+            long size = file.length();
+            if (syncState.getConfirmedMd5(file) != null && file.delete()) {
+                freed += size;
+            }
+        }
+        if (freed > 0) {
+            LocalSearchIndex.getInstance(context).refreshReportCatalogAsync();
+        }
+        return freed;
+    }
+
+    /**
+     * Checks there is room to generate a document before running it. When space is short the
+     * caches are emptied first; if that is still not enough the user is asked whether to remove
+     * the oldest uploaded documents, generate anyway, or cancel. With nothing uploaded to remove,
+     * the user can generate anyway, open the Storage screen or cancel.
+     *
+     * @param imageUris Images that will be embedded in the document, or null.
+     * @param generate  Runs the generation, on the UI thread.
+     */
+    public static void confirmSpaceForDocument(Activity activity, List<Uri> imageUris, Runnable generate) {
+        Context context = activity.getApplicationContext();
+        List<Uri> images = imageUris != null ? new ArrayList<>(imageUris) : new ArrayList<>();
+        executor.execute(() -> {
+            long needed = estimateDocumentBytes(context, images);
+            long freed = 0;
+            if (getUsableBytes(context) < needed + RESERVE_BYTES) {
+                freed = freeCacheSpace(context, needed + RESERVE_BYTES);
+            }
+            long usable = getUsableBytes(context);
+            long freedBytes = freed;
+            List<File> uploaded = usable < needed + RESERVE_BYTES
+                    ? findUploadedDocuments(context, needed + RESERVE_BYTES - usable) : new ArrayList<>();
+            long uploadedBytes = totalBytes(uploaded);
+
+            activity.runOnUiThread(() -> {
+                if (activity.isFinishing() || activity.isDestroyed()) {
+                    return;
+                }
+                if (usable >= needed + RESERVE_BYTES) {
+                    if (freedBytes > 0) {
+                        Toast.makeText(activity, String.format(Locale.getDefault(),
+                                "Freed %.1f MB of cached files.", freedBytes / (double) MB), Toast.LENGTH_SHORT).show();
+                    }
+                    generate.run();
+                    return;
+                }
+                if (!uploaded.isEmpty()) {
+                    new AlertDialog.Builder(activity)
+                            .setTitle("Storage Almost Full")
+                            .setMessage(String.format(Locale.getDefault(),
+                                    "Only %.1f MB is free and this document needs about %.1f MB. " +
+                                            "Remove the local copies of the %d oldest documents (%.1f MB)? " +
+                                            "They are already uploaded and can be downloaded again.",
+                                    usable / (double) MB, needed / (double) MB, uploaded.size(), uploadedBytes / (double) MB))
+                            .setPositiveButton("Remove And Generate", (dialog, which) -> executor.execute(() -> {
+                                long evicted = evictDocuments(context, uploaded);
+                                activity.runOnUiThread(() -> {
+                                    if (activity.isFinishing() || activity.isDestroyed()) {
+                                        return;
+                                    }
+                                    Toast.makeText(activity, String.format(Locale.getDefault(),
+                                            "Removed %.1f MB of uploaded documents.", evicted / (double) MB), Toast.LENGTH_SHORT).show();
+                                    generate.run();
+                                });
+                            }))
+                            .setNeutralButton("Generate Anyway", (dialog, which) -> generate.run())
+                            .setNegativeButton("Cancel", null)
+                            .show();
+                    return;
+                }
+                new AlertDialog.Builder(activity)
+                        .setTitle("Storage Almost Full")
+                        .setMessage(String.format(Locale.getDefault(),
+                                "Only %.1f MB is free and this document needs about %.1f MB. " +
+                                        "Generating it now may fail part way through.",
+                                usable / (double) MB, needed / (double) MB))
+                        .setPositiveButton("Generate Anyway", (dialog, which) -> generate.run())
+                        .setNeutralButton("Storage", (dialog, which) ->
+                                activity.startActivity(new Intent(activity, StorageActivity.class)))
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+        });
+    }
+
+    /**
+     * Estimates a document's size: the PDF itself plus every image, which iText embeds as it is.
+     */
+    private static long estimateDocumentBytes(Context context, List<Uri> imageUris) {
+        long bytes = BASE_DOCUMENT_BYTES;
+        for (Uri uri : imageUris) {
+            long size = -1;
+            try (Cursor cursor = context.getContentResolver().query(uri, new String[]{OpenableColumns.SIZE},
+                    null, null, null)) {
+                if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                    size = cursor.getLong(0);
+                }
+            } catch (Exception e) {
+                // Unknown size; fall back to the estimate below
+            }
+            bytes += size > 0 ? size : UNKNOWN_IMAGE_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Trims one category down to maxBytes. Must not be called on the UI thread.
+     *
+     * @return The number of bytes freed.
+     */
+    private static long trim(Context context, Category category, long maxBytes) {
+        if (category.kind == KIND_TRACKED) {
+            return 0;
+        }
+        if (category.kind == KIND_DOWNLOADS) {
+            return ReportDownloadCache.getInstance(context).trimTo(maxBytes);
+        }
+
+        List<File> files = listFiles(folderFor(context, category));
+        long total = totalBytes(files);
+        if (total <= maxBytes) {
+            return 0;
+        }
+        // Last modified is the last use for caches (extracted copies are touched when reopened)
+        // and the last write for documents
+        Collections.sort(files, Comparator.comparingLong(File::lastModified));
+        ReportSyncState syncState = ReportSyncState.getInstance(context);
+        long freed = 0;
+        for (File file : files) {
+            if (total - freed <= maxBytes) {
+                break;
+            }
+            if (category.kind == KIND_DOCUMENTS && syncState.getConfirmedMd5(file) == null) {
+                continue;
+            }
+            long size = file.length();
+            if (file.delete()) {
+                freed += size;
+            }
+        }
+        return freed;
+    }
+
+    private static File folderFor(Context context, Category category) {
+        switch (category.id) {
+            case CATEGORY_REPORTS:
+                return ReportFolders.get(context, ReportFolders.REPORTS);
+            case CATEGORY_QUOTES:
+                return ReportFolders.get(context, ReportFolders.QUOTES);
+            case CATEGORY_AGREEMENTS:
+                return ReportFolders.get(context, ReportFolders.SERVICE_AGREEMENTS);
+            case CATEGORY_ASSESSMENTS:
+                return ReportFolders.get(context, ReportFolders.RISK_ASSESSMENTS);
+            case CATEGORY_ARCHIVE:
+                return ReportArchive.getInstance(context).getArchiveFolder();
+            case CATEGORY_EXTRACTS:
+                return ReportArchive.getInstance(context).getExtractFolder();
+            default:
+                return DiagnosticsExport.getFolder(context);
+        }
+    }
+
+    /**
+     * Lists every file under a folder, including sub-folders.
+     */
+    private static List<File> listFiles(File folder) {
+        List<File> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    files.addAll(listFiles(child));
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static long totalBytes(List<File> files) {
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private static Category find(String categoryId) {
+        for (Category category : CATEGORIES) {
+            if (category.id.equals(categoryId)) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * How much one category uses against its budget.
+     */
+    public static class Usage {
+        public final String categoryId;
+        public final String label;
+        public final long bytes;
+        public final int fileCount; // -1 when not counted
+        public final long budgetBytes; // 0 when there is no budget
+        public final boolean evictable;
+
+        Usage(String categoryId, String label, long bytes, int fileCount, long budgetBytes, boolean evictable) {
+            this.categoryId = categoryId;
+            this.label = label;
+            this.bytes = bytes;
+            this.fileCount = fileCount;
+            this.budgetBytes = budgetBytes;
+            this.evictable = evictable;
+        }
+    }
+
+    private static class Category {
+        final String id;
+        final String label;
+        final int kind;
+        final long defaultBudgetMb;
+
+        Category(String id, String label, int kind, long defaultBudgetMb) {
+            this.id = id;
+            this.label = label;
+            this.kind = kind;
+            this.defaultBudgetMb = defaultBudgetMb;
+        }
+    }
+}
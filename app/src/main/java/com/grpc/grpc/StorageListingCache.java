@@ -0,0 +1,443 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.storage.ListResult;
+import com.google.firebase.storage.StorageReference;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StorageListingCache.java
+ *
+ * This class pages through Firebase Storage folders with list(pageSize, pageToken) instead of
+ * listAll(), and keeps every page it has seen in a local SQLite cache. Screens get the cached page
+ * straight away; pages older than the TTL are refreshed in the background so the next visit is
+ * current. The folder tree (the sub-folders of a folder) is assembled from the cached pages.
+ *
+ * Features:
+ * - Fixed page size, so the first page of a folder with thousands of PDFs arrives quickly
+ * - Stale-while-revalidate caching with a TTL per page
+ * - Prefetching of the likely next folder or page
+ * - Merges duplicate requests for the same page while one is in flight
+ * - Delivers every callback on the UI thread
+ *
+ * Author: James Scott
+ */
+
+public class StorageListingCache extends SQLiteOpenHelper {
+
+    private static final String TAG = "StorageListingCache";
+
+    static final int PAGE_SIZE = 100;
+    static final long TTL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_storage_listing.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Pages Table
+    private static final String TABLE_PAGES = "storage_pages";
+    private static final String COLUMN_FOLDER_PATH = "folder_path";
+    private static final String COLUMN_PAGE_INDEX = "page_index";
+    private static final String COLUMN_PAGE_TOKEN = "page_token";
+    private static final String COLUMN_NEXT_PAGE_TOKEN = "next_page_token";
+    private static final String COLUMN_FOLDERS = "folders";
+    private static final String COLUMN_FILES = "files";
+    private static final String COLUMN_FETCHED_AT = "fetched_at";
+
+    private static StorageListingCache instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Requests waiting on a page that is already being fetched; only touched on the UI thread
+    private final Map<String, List<PageCallback>> inFlight = new HashMap<>();
+
+    /**
+     * Receives one page of a folder listing.
+     */
+    public interface PageCallback {
+        void onPage(FolderPage page);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Receives the complete list of sub-folders of a folder.
+     */
+    public interface FoldersCallback {
+        void onFolders(List<String> folders);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Returns the shared listing cache.
+     */
+    public static synchronized StorageListingCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new StorageListingCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private StorageListingCache(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        executor.execute(() -> getWritableDatabase().delete(TABLE_PAGES, COLUMN_FETCHED_AT + " < ?",
+                new String[]{String.valueOf(System.currentTimeMillis() - MAX_AGE_MS)}));
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PAGES + " (" +
+                COLUMN_FOLDER_PATH + " TEXT NOT NULL, " +
+                COLUMN_PAGE_INDEX + " INTEGER NOT NULL, " +
+                COLUMN_PAGE_TOKEN + " TEXT, " +
+                COLUMN_NEXT_PAGE_TOKEN + " TEXT, " +
+                COLUMN_FOLDERS + " TEXT NOT NULL, " +
+                COLUMN_FILES + " TEXT NOT NULL, " +
+                COLUMN_FETCHED_AT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COLUMN_FOLDER_PATH + ", " + COLUMN_PAGE_INDEX + "))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PAGES);
+        onCreate(db);
+    }
+
+    /**
+     * Loads one page of a folder ("" is the bucket root). Cached pages are returned immediately and
+     * refreshed in the background once they are older than the TTL. Page N can only be fetched
+     * after page N - 1, because Storage pages are chained by page tokens.
+     */
+    public void loadPage(String folderPath, int pageIndex, MeteredFirebase firebase, PageCallback callback) {
+        String folder = normalize(folderPath);
+        executor.execute(() -> {
+            FolderPage cached = readPage(folder, pageIndex);
+            String previousToken = pageIndex > 0 ? readNextPageToken(folder, pageIndex - 1) : null;
+            mainHandler.post(() -> {
+                if (cached != null) {
+                    callback.onPage(cached);
+                    if (cached.isStale()) {
+                        fetchPage(folder, pageIndex, cached.pageToken, firebase, null);
+                    }
+                } else if (pageIndex > 0 && previousToken == null) {
+                    callback.onError(new IllegalStateException("Page " + pageIndex + " of " + folder + " has no page token"));
+                } else {
+                    fetchPage(folder, pageIndex, previousToken, firebase, callback);
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads every sub-folder of a folder. Served from the cached pages when the whole folder has
+     * been listed before, otherwise pages through it once and caches the result.
+     */
+    public void loadFolders(String folderPath, MeteredFirebase firebase, FoldersCallback callback) {
+        String folder = normalize(folderPath);
+        executor.execute(() -> {
+            List<FolderPage> pages = readAllPages(folder);
+            boolean complete = isCompleteChain(pages);
+            List<String> folders = complete ? collectFolders(pages) : null;
+            boolean stale = complete && pages.get(0).isStale();
+            mainHandler.post(() -> {
+                if (complete) {
+                    callback.onFolders(folders);
+                    if (stale) {
+                        fetchRemainingPages(folder, 0, null, firebase, null);
+                    }
+                } else {
+                    fetchRemainingPages(folder, 0, null, firebase, callback);
+                }
+            });
+        });
+    }
+
+    /**
+     * Warms the cache with the first page of a folder the user is likely to open next.
+     * Does nothing if a fresh copy is already cached.
+     */
+    public void prefetch(String folderPath, MeteredFirebase firebase) {
+        prefetchPage(folderPath, 0, firebase);
+    }
+
+    /**
+     * Warms the cache with a page of a folder (for example the page after the one on screen).
+     */
+    public void prefetchPage(String folderPath, int pageIndex, MeteredFirebase firebase) {
+        String folder = normalize(folderPath);
+        executor.execute(() -> {
+            FolderPage cached = readPage(folder, pageIndex);
+            if (cached != null && !cached.isStale()) {
+                return;
+            }
+            String token = cached != null ? cached.pageToken
+                    : pageIndex > 0 ? readNextPageToken(folder, pageIndex - 1) : null;
+            if (pageIndex > 0 && token == null) {
+                return;
+            }
+            mainHandler.post(() -> fetchPage(folder, pageIndex, token, firebase, null));
+        });
+    }
+
+    /**
+     * Marks a folder's cached pages as stale (for example after uploading into it), so they are
+     * still shown but refreshed on the next visit.
+     */
+    public void invalidate(String folderPath) {
+        String folder = normalize(folderPath);
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_FETCHED_AT, 0);
+            getWritableDatabase().update(TABLE_PAGES, values, COLUMN_FOLDER_PATH + "=?", new String[]{folder});
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Network (UI thread)
+    // ---------------------------------------------------------------------------------------
+
+    private void fetchPage(String folder, int pageIndex, String pageToken, MeteredFirebase firebase, PageCallback callback) {
+        String key = folder + "#" + pageIndex;
+        List<PageCallback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            if (callback != null) {
+                waiting.add(callback);
+            }
+            return;
+        }
+        waiting = new ArrayList<>();
+        if (callback != null) {
+            waiting.add(callback);
+        }
+        inFlight.put(key, waiting);
+
+        StorageReference reference = firebase.storageReference(folder);
+        firebase.list(reference, PAGE_SIZE, pageToken)
+                .addOnSuccessListener(result -> executor.execute(() -> {
+                    FolderPage page = writePage(folder, pageIndex, pageToken, result);
+                    mainHandler.post(() -> {
+                        for (PageCallback waitingCallback : removeInFlight(key)) {
+                            waitingCallback.onPage(page);
+                        }
+                    });
+                }))
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Failed to list " + key, e);
+                    for (PageCallback waitingCallback : removeInFlight(key)) {
+                        waitingCallback.onError(e);
+                    }
+                });
+    }
+
+    private List<PageCallback> removeInFlight(String key) {
+        List<PageCallback> waiting = inFlight.remove(key);
+        return waiting != null ? waiting : Collections.emptyList();
+    }
+
+    /**
+     * Fetches pages one after another until the last page, then reports the folders of all pages.
+     */
+    private void fetchRemainingPages(String folder, int pageIndex, String pageToken, MeteredFirebase firebase,
+                                     FoldersCallback callback) {
+        fetchPage(folder, pageIndex, pageToken, firebase, new PageCallback() {
+            @Override
+            public void onPage(FolderPage page) {
+                if (page.hasMore()) {
+                    fetchRemainingPages(folder, pageIndex + 1, page.nextPageToken, firebase, callback);
+                } else if (callback != null) {
+                    executor.execute(() -> {
+                        List<String> folders = collectFolders(readAllPages(folder));
+                        mainHandler.post(() -> callback.onFolders(folders));
+                    });
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (callback != null) {
+                    callback.onError(e);
+                }
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Database (executor thread)
+    // ---------------------------------------------------------------------------------------
+
+    private FolderPage writePage(String folder, int pageIndex, String pageToken, ListResult result) {
+        List<String> folders = new ArrayList<>();
+        for (StorageReference prefix : result.getPrefixes()) {
+            folders.add(prefix.getName());
+        }
+        List<String> files = new ArrayList<>();
+        for (StorageReference item : result.getItems()) {
+            files.add(item.getName());
+        }
+        long now = System.currentTimeMillis();
+        String nextPageToken = result.getPageToken();
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // Later pages were chained from the old token; drop them if the chain changed
+            String previousNextToken = readNextPageToken(folder, pageIndex);
+            if (previousNextToken == null ? nextPageToken != null : !previousNextToken.equals(nextPageToken)) {
+                db.delete(TABLE_PAGES, COLUMN_FOLDER_PATH + "=? AND " + COLUMN_PAGE_INDEX + ">?",
+                        new String[]{folder, String.valueOf(pageIndex)});
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_FOLDER_PATH, folder);
+            values.put(COLUMN_PAGE_INDEX, pageIndex);
+            values.put(COLUMN_PAGE_TOKEN, pageToken);
+            values.put(COLUMN_NEXT_PAGE_TOKEN, nextPageToken);
+            values.put(COLUMN_FOLDERS, new JSONArray(folders).toString());
+            values.put(COLUMN_FILES, new JSONArray(files).toString());
+            values.put(COLUMN_FETCHED_AT, now);
+            db.insertWithOnConflict(TABLE_PAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return new FolderPage(folder, pageIndex, pageToken, nextPageToken, folders, files, now);
+    }
+
+    private FolderPage readPage(String folder, int pageIndex) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PAGES, null,
+                COLUMN_FOLDER_PATH + "=? AND " + COLUMN_PAGE_INDEX + "=?",
+                new String[]{folder, String.valueOf(pageIndex)}, null, null, null)) {
+            return cursor.moveToFirst() ? pageFromCursor(cursor) : null;
+        }
+    }
+
+    private List<FolderPage> readAllPages(String folder) {
+        List<FolderPage> pages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PAGES, null,
+                COLUMN_FOLDER_PATH + "=?", new String[]{folder}, null, null, COLUMN_PAGE_INDEX + " ASC")) {
+            while (cursor.moveToNext()) {
+                pages.add(pageFromCursor(cursor));
+            }
+        }
+        return pages;
+    }
+
+    private String readNextPageToken(String folder, int pageIndex) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PAGES, new String[]{COLUMN_NEXT_PAGE_TOKEN},
+                COLUMN_FOLDER_PATH + "=? AND " + COLUMN_PAGE_INDEX + "=?",
+                new String[]{folder, String.valueOf(pageIndex)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    private FolderPage pageFromCursor(Cursor cursor) {
+        return new FolderPage(
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FOLDER_PATH)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_PAGE_INDEX)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAGE_TOKEN)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NEXT_PAGE_TOKEN)),
+                parseNames(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FOLDERS))),
+                parseNames(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FILES))),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FETCHED_AT)));
+    }
+
+    private static List<String> parseNames(String json) {
+        List<String> names = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                names.add(array.getString(i));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Corrupt cached listing", e);
+        }
+        return names;
+    }
+
+    private static boolean isCompleteChain(List<FolderPage> pages) {
+        if (pages.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).pageIndex != i) {
+                return false;
+            }
+        }
+        return !pages.get(pages.size() - 1).hasMore();
+    }
+
+    private static List<String> collectFolders(List<FolderPage> pages) {
+        Set<String> folders = new LinkedHashSet<>();
+        for (FolderPage page : pages) {
+            folders.addAll(page.folders);
+        }
+        return new ArrayList<>(folders);
+    }
+
+    private static String normalize(String folderPath) {
+        if (folderPath == null) {
+            return "";
+        }
+        String folder = folderPath.trim();
+        while (folder.endsWith("/")) {
+            folder = folder.substring(0, folder.length() - 1);
+        }
+        return folder;
+    }
+
+    /**
+     * One page of a folder listing: its sub-folder names and file names.
+     */
+    public static class FolderPage {
+        public final String folderPath;
+        public final int pageIndex;
+        public final List<String> folders;
+        public final List<String> files;
+        public final long fetchedAt;
+        final String pageToken;
+        final String nextPageToken;
+
+        FolderPage(String folderPath, int pageIndex, String pageToken, String nextPageToken,
+                   List<String> folders, List<String> files, long fetchedAt) {
+            this.folderPath = folderPath;
+            this.pageIndex = pageIndex;
+            this.pageToken = pageToken;
+            this.nextPageToken = nextPageToken;
+            this.folders = folders;
+            this.files = files;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public boolean hasMore() {
+            return nextPageToken != null;
+        }
+
+        public boolean isStale() {
+            return System.currentTimeMillis() - fetchedAt > TTL_MS;
+        }
+    }
+}
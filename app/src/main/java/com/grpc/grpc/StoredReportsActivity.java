@@ -1,8 +1,12 @@
 package com.grpc.grpc;
 
-import android.content.Intent;
 import android.os.Bundle;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
@@ -10,11 +14,16 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.grpc.pdfviewer.PdfViewerActivity;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * StoredReportsActivity.java
@@ -26,9 +35,12 @@ import java.util.List;
  * - Loads parent folders from Firebase Storage
  * - Supports navigation into subfolders for organized report access
  * - Displays files stored in a selected folder
- * - Allows users to open and view reports in PDF format
+ * - Allows users to open and view reports in the embedded PDF viewer
  * - Excludes backup folders from the listing
  * - Provides user-friendly dialogs for file selection
+ * - Pages through large folders and caches the folder tree locally, prefetching likely next folders
+ * - Keeps opened reports on the device and reuses them while the server copy is unchanged
+ * - Searches the report index by customer, address, report type, technician and visit date
  *
  * Author: James Scott
  */
@@ -40,12 +52,25 @@ public class StoredReportsActivity extends AppCompatActivity {
     private FolderAdapter adapter;
     private List<String> folderList = new ArrayList<>();
     private Button buttonBack;
+    private Button buttonSearchReports;
     private String selectedParentFolder = null; // Keeps track of the currently selected parent folder
+    private MeteredFirebase firebase;
+    private StorageListingCache listingCache;
+    private ReportDownloadCache downloadCache;
+
+    // How many folders of a listing are prefetched ahead of being opened
+    private static final int PREFETCH_FOLDER_COUNT = 3;
+
+    // Most index documents one search reads
+    private static final int SEARCH_RESULT_LIMIT = 200;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_stored_reports);
+        firebase = MeteredFirebase.forScreen(this);
+        listingCache = StorageListingCache.getInstance(this);
+        downloadCache = ReportDownloadCache.getInstance(this);
 
         folderRecyclerView = findViewById(R.id.folderRecyclerView);
         folderRecyclerView.setLayoutManager(new LinearLayoutManager(this));
@@ -53,36 +78,43 @@ public class StoredReportsActivity extends AppCompatActivity {
         buttonBack = findViewById(R.id.buttonBack);
         buttonBack.setOnClickListener(v -> finish());
 
+        buttonSearchReports = findViewById(R.id.buttonSearchReports);
+        buttonSearchReports.setOnClickListener(v -> showSearchDialog());
+
         // Load root folders from Firebase Storage
         loadParentFolders();
     }
 
     /**
-     * Loads the parent folders (e.g., "ReportsXX/") from Firebase Storage.
+     * Loads the parent folders (e.g., "ReportsXX/") from the cached folder tree.
      */
     private void loadParentFolders() {
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference storageRef = storage.getReference();
-
-        storageRef.listAll().addOnSuccessListener(listResult -> {
-            folderList.clear();
-            for (StorageReference prefix : listResult.getPrefixes()) {
-                String folderName = prefix.getName();
-                if (!folderName.equals("backup")) { // Exclude "backup" folder
-                    folderList.add(folderName);
+        listingCache.loadFolders("", firebase, new StorageListingCache.FoldersCallback() {
+            @Override
+            public void onFolders(List<String> folders) {
+                folderList.clear();
+                for (String folderName : folders) {
+                    if (!folderName.equals("backup")) { // Exclude "backup" folder
+                        folderList.add(folderName);
+                    }
                 }
-            }
 
-            if (adapter == null) {
-                adapter = new FolderAdapter(folderList, this::loadSubFolders);
-                folderRecyclerView.setAdapter(adapter);
-            } else {
-                adapter.notifyDataSetChanged();
+                if (adapter == null) {
+                    adapter = new FolderAdapter(folderList, StoredReportsActivity.this::loadSubFolders);
+                    folderRecyclerView.setAdapter(adapter);
+                } else {
+                    adapter.notifyDataSetChanged();
+                }
+
+                // Warm the first few folders so opening one is instant
+                prefetchFolders("", folderList);
             }
 
-        }).addOnFailureListener(e ->
-                Toast.makeText(StoredReportsActivity.this, "Failed to load folders: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(StoredReportsActivity.this, "Failed to load folders: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -90,84 +122,306 @@ public class StoredReportsActivity extends AppCompatActivity {
      */
     private void loadSubFolders(String parentFolder) {
         selectedParentFolder = parentFolder; // Track the current parent folder
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference parentFolderRef = storage.getReference().child(parentFolder);
 
-        parentFolderRef.listAll().addOnSuccessListener(listResult -> {
-            List<String> subFolderList = new ArrayList<>();
-            for (StorageReference prefix : listResult.getPrefixes()) {
-                subFolderList.add(prefix.getName());
+        listingCache.loadPage(parentFolder, 0, firebase, new StorageListingCache.PageCallback() {
+            @Override
+            public void onPage(StorageListingCache.FolderPage page) {
+                if (page.folders.isEmpty()) {
+                    // If no subfolders exist, display the files instead
+                    loadFilesFromFolder(parentFolder);
+                } else {
+                    showSubFolderDialog(parentFolder, page.folders);
+                }
             }
 
-            if (subFolderList.isEmpty()) {
-                // If no subfolders exist, display the files instead
-                loadFilesFromFolder(parentFolder);
-            } else {
-                // Show subfolder selection dialog
-                AlertDialog.Builder builder = new AlertDialog.Builder(this);
-                builder.setTitle("Select Subfolder");
-
-                builder.setItems(subFolderList.toArray(new String[0]), (dialog, which) -> {
-                    String selectedSubFolder = subFolderList.get(which);
-                    loadFilesFromFolder(parentFolder + "/" + selectedSubFolder);
-                });
-
-                builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
-                builder.show();
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(StoredReportsActivity.this, "Failed to load subfolders: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-        }).addOnFailureListener(e ->
-                Toast.makeText(this, "Failed to load subfolders: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+    private void showSubFolderDialog(String parentFolder, List<String> subFolderList) {
+        if (isFinishing()) {
+            return;
+        }
+        prefetchFolders(parentFolder, subFolderList);
+
+        // Show subfolder selection dialog
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Select Subfolder");
+
+        builder.setItems(subFolderList.toArray(new String[0]), (dialog, which) -> {
+            String selectedSubFolder = subFolderList.get(which);
+            loadFilesFromFolder(parentFolder + "/" + selectedSubFolder);
+        });
+
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
+        builder.show();
     }
 
     /**
-     * Loads files from the selected subfolder.
+     * Shows the files of the selected folder one page at a time; the next page is loaded
+     * (and the one after it prefetched) as the list is scrolled to the bottom.
      */
     private void loadFilesFromFolder(String folderPath) {
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference folderRef = storage.getReference().child(folderPath);
+        List<String> fileList = new ArrayList<>();
+        ArrayAdapter<String> fileAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, fileList);
+        ListView fileListView = new ListView(this);
+        fileListView.setAdapter(fileAdapter);
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Files in " + folderPath)
+                .setView(fileListView)
+                .setPositiveButton("Close", (d, which) -> d.dismiss())
+                .create();
 
-        folderRef.listAll().addOnSuccessListener(listResult -> {
-            List<String> fileList = new ArrayList<>();
-            for (StorageReference item : listResult.getItems()) {
-                fileList.add(item.getName());
+        fileListView.setOnItemClickListener((parent, view, position, id) -> viewFile(folderPath, fileList.get(position)));
+
+        int[] nextPage = {0};
+        boolean[] loading = {false};
+        boolean[] hasMore = {true};
+
+        Runnable loadNextPage = new Runnable() {
+            @Override
+            public void run() {
+                if (loading[0] || !hasMore[0]) {
+                    return;
+                }
+                loading[0] = true;
+                int pageIndex = nextPage[0];
+                listingCache.loadPage(folderPath, pageIndex, firebase, new StorageListingCache.PageCallback() {
+                    @Override
+                    public void onPage(StorageListingCache.FolderPage page) {
+                        loading[0] = false;
+                        nextPage[0] = pageIndex + 1;
+                        hasMore[0] = page.hasMore();
+                        fileList.addAll(page.files);
+                        fileAdapter.notifyDataSetChanged();
+
+                        if (pageIndex == 0 && fileList.isEmpty() && !hasMore[0]) {
+                            dialog.setTitle("No files found in " + folderPath);
+                        }
+                        if (hasMore[0]) {
+                            listingCache.prefetchPage(folderPath, pageIndex + 1, firebase);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        loading[0] = false;
+                        Toast.makeText(StoredReportsActivity.this, "Failed to load files: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
+        };
 
-            runOnUiThread(() -> {
-                AlertDialog.Builder builder = new AlertDialog.Builder(this);
-                builder.setTitle("Files in " + folderPath);
+        fileListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
 
-                if (fileList.isEmpty()) {
-                    builder.setMessage("No files found in this folder.")
-                            .setPositiveButton("OK", (dialog, which) -> dialog.dismiss());
-                } else {
-                    builder.setItems(fileList.toArray(new String[0]), (dialog, which) -> {
-                        String selectedFile = fileList.get(which);
-                        viewFile(folderPath, selectedFile);
-                    });
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - 10) {
+                    loadNextPage.run();
                 }
-                builder.show();
-            });
-        }).addOnFailureListener(e ->
-                runOnUiThread(() -> Toast.makeText(this, "Failed to load files: " + e.getMessage(), Toast.LENGTH_SHORT).show())
-        );
+            }
+        });
+
+        dialog.show();
+        loadNextPage.run();
+    }
+
+    /**
+     * Prefetches the first page of the first few folders, the ones most likely to be opened next.
+     */
+    private void prefetchFolders(String parentFolder, List<String> folders) {
+        for (int i = 0; i < Math.min(PREFETCH_FOLDER_COUNT, folders.size()); i++) {
+            String path = parentFolder.isEmpty() ? folders.get(i) : parentFolder + "/" + folders.get(i);
+            listingCache.prefetch(path, firebase);
+        }
+    }
+
+    /**
+     * Asks for search text and filters, then runs the search.
+     */
+    private void showSearchDialog() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
+        long[] range = {0, 0};
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.setPadding(50, 20, 50, 0);
+
+        EditText textInput = new EditText(this);
+        textInput.setHint("Customer or address");
+        layout.addView(textInput);
+
+        EditText typeInput = new EditText(this);
+        typeInput.setHint("Report type (optional)");
+        layout.addView(typeInput);
+
+        EditText technicianInput = new EditText(this);
+        technicianInput.setHint("Technician (optional)");
+        layout.addView(technicianInput);
+
+        Button fromButton = new Button(this);
+        fromButton.setText("From: any date");
+        fromButton.setOnClickListener(v -> CalendarDays.pickDate(this, calendar -> {
+            range[0] = CalendarDays.startOfDay(calendar.getTimeInMillis());
+            fromButton.setText("From: " + dateFormat.format(calendar.getTime()));
+        }));
+        layout.addView(fromButton);
+
+        Button toButton = new Button(this);
+        toButton.setText("To: any date");
+        toButton.setOnClickListener(v -> CalendarDays.pickDate(this, calendar -> {
+            range[1] = CalendarDays.endOfDay(calendar.getTimeInMillis());
+            toButton.setText("To: " + dateFormat.format(calendar.getTime()));
+        }));
+        layout.addView(toButton);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Search Reports")
+                .setView(layout)
+                .setPositiveButton("Search", (dialog, which) -> searchReports(textInput.getText().toString(),
+                        typeInput.getText().toString(), technicianInput.getText().toString(), range[0], range[1]))
+                .setNegativeButton("Cancel", null)
+                .show();
     }
 
     /**
-     * Opens a selected file from Firebase Storage.
+     * Searches the report index with one query. Firestore applies the longest search word, the
+     * date range and the newest-first order by visit date (the searchTokens + visitDateMillis
+     * composite index in firestore.indexes.json), so the limit keeps the newest matches. With no
+     * word and no dates the newest uploads are listed. The other words and the type and
+     * technician filters are applied to the results.
+     */
+    private void searchReports(String text, String type, String technician, long fromMillis, long toMillis) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        Query query = firebase.collection(ReportMetadata.INDEX_COLLECTION);
+        if (!words.isEmpty()) {
+            // The longest word narrows the results the most
+            String longest = Collections.max(words, (a, b) -> a.length() - b.length());
+            query = query.whereArrayContains(ReportMetadata.FIELD_SEARCH_TOKENS, longest);
+        }
+        if (fromMillis > 0) {
+            query = query.whereGreaterThanOrEqualTo(ReportMetadata.FIELD_VISIT_DATE_MILLIS, fromMillis);
+        }
+        if (toMillis > 0) {
+            query = query.whereLessThanOrEqualTo(ReportMetadata.FIELD_VISIT_DATE_MILLIS, toMillis);
+        }
+        if (!words.isEmpty() || fromMillis > 0 || toMillis > 0) {
+            query = query.orderBy(ReportMetadata.FIELD_VISIT_DATE_MILLIS, Query.Direction.DESCENDING);
+        } else {
+            query = query.orderBy(ReportMetadata.FIELD_UPLOADED_AT, Query.Direction.DESCENDING);
+        }
+        query = query.limit(SEARCH_RESULT_LIMIT);
+
+        String typeFilter = type.trim().toLowerCase(Locale.ROOT);
+        String technicianFilter = technician.trim().toLowerCase(Locale.ROOT);
+
+        firebase.get(ReportMetadata.INDEX_COLLECTION, query)
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentSnapshot> matches = new ArrayList<>();
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        if (matchesFilters(document, words, typeFilter, technicianFilter, fromMillis, toMillis)) {
+                            matches.add(document);
+                        }
+                    }
+                    Collections.sort(matches, (a, b) -> Long.compare(visitDateMillis(b), visitDateMillis(a)));
+                    showSearchResults(matches);
+                })
+                .addOnFailureListener(e ->
+                        Toast.makeText(this, "Search failed: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    private static boolean matchesFilters(DocumentSnapshot document, List<String> words, String type,
+                                          String technician, long fromMillis, long toMillis) {
+        Object tokens = document.get(ReportMetadata.FIELD_SEARCH_TOKENS);
+        for (String word : words) {
+            if (!(tokens instanceof List) || !((List<?>) tokens).contains(word)) {
+                return false;
+            }
+        }
+        ReportMetadata metadata = ReportMetadata.fromIndexDocument(document);
+        if (!type.isEmpty() && !metadata.reportType.toLowerCase(Locale.ROOT).contains(type)) {
+            return false;
+        }
+        if (!technician.isEmpty() && !metadata.technician.toLowerCase(Locale.ROOT).contains(technician)) {
+            return false;
+        }
+        if (fromMillis > 0 && metadata.visitDateMillis < fromMillis) {
+            return false;
+        }
+        return toMillis <= 0 || metadata.visitDateMillis <= toMillis;
+    }
+
+    private static long visitDateMillis(DocumentSnapshot document) {
+        Long millis = document.getLong(ReportMetadata.FIELD_VISIT_DATE_MILLIS);
+        return millis != null ? millis : 0;
+    }
+
+    /**
+     * Lists the matching reports; tapping one downloads and opens it directly.
+     */
+    private void showSearchResults(List<DocumentSnapshot> results) {
+        if (isFinishing()) {
+            return;
+        }
+        if (results.isEmpty()) {
+            Toast.makeText(this, "No reports found.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] rows = new String[results.size()];
+        for (int i = 0; i < rows.length; i++) {
+            ReportMetadata metadata = ReportMetadata.fromIndexDocument(results.get(i));
+            StringBuilder row = new StringBuilder(metadata.customer.isEmpty()
+                    ? results.get(i).getString(ReportMetadata.FIELD_FILE_NAME) : metadata.customer);
+            if (!metadata.reportType.isEmpty()) row.append(" - ").append(metadata.reportType);
+            if (!metadata.visitDate.isEmpty()) row.append(" - ").append(metadata.visitDate);
+            if (!metadata.address.isEmpty()) row.append("\n").append(metadata.address);
+            if (!metadata.technician.isEmpty()) row.append("\nTech: ").append(metadata.technician);
+            rows[i] = row.toString();
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(results.size() + " report(s) found")
+                .setItems(rows, (dialog, which) ->
+                        openStoredFile(results.get(which).getString(ReportMetadata.FIELD_STORAGE_PATH)))
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    /**
+     * Opens a selected file from Firebase Storage, from the on-device copy when the server copy is unchanged.
      */
     private void viewFile(String folder, String fileName) {
-        FirebaseStorage storage = FirebaseStorage.getInstance();
-        StorageReference fileRef = storage.getReference().child(folder + "/" + fileName);
-
-        fileRef.getDownloadUrl().addOnSuccessListener(uri -> {
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            intent.setDataAndType(uri, "application/pdf");
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            startActivity(intent);
-        }).addOnFailureListener(e ->
-                Toast.makeText(this, "Failed to open file: " + e.getMessage(), Toast.LENGTH_SHORT).show()
-        );
+        openStoredFile(folder + "/" + fileName);
+    }
+
+    private void openStoredFile(String storagePath) {
+        if (storagePath == null) {
+            return;
+        }
+        downloadCache.open(storagePath, firebase, new ReportDownloadCache.FileCallback() {
+            @Override
+            public void onFile(File file, boolean fromCache) {
+                PdfViewerActivity.start(StoredReportsActivity.this, file);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(StoredReportsActivity.this, "Failed to open file: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
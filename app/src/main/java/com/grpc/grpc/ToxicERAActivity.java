@@ -52,7 +52,7 @@ public class ToxicERAActivity extends AppCompatActivity {
 
 
         // Generate PDF
-        btnGeneratePDF.setOnClickListener(view -> generatePDF());
+        btnGeneratePDF.setOnClickListener(view -> StorageBudget.confirmSpaceForDocument(this, null, this::generatePDF));
     }
 
 
@@ -0,0 +1,405 @@
+package com.grpc.grpc;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UploadQueue.java
+ *
+ * This class is the durable queue behind report uploads. Each upload is stored in SQLite with its
+ * source file, its Storage destination and, once the upload has started, its Storage session URI
+ * and the number of bytes already sent. UploadQueueWorker drains the queue in the background, so
+ * an upload survives the screen closing, the app being killed or the signal dropping, and resumes
+ * from the last byte Storage acknowledged instead of starting again. Uploads whose content hash
+ * already matches the object on the server are skipped without sending any bytes.
+ *
+ * Features:
+ * - Persists pending uploads, session URIs and progress
+ * - Skips uploads already queued for the same file and destination
+ * - Exponential backoff between attempts, giving up after MAX_ATTEMPTS
+ * - Retry and clean-up operations for the upload queue screen
+ *
+ * Author: James Scott
+ */
+
+public class UploadQueue extends SQLiteOpenHelper {
+
+    static final String STATUS_PENDING = "PENDING";
+    static final String STATUS_UPLOADING = "UPLOADING";
+    static final String STATUS_DONE = "DONE";
+    static final String STATUS_FAILED = "FAILED";
+    static final String STATUS_SKIPPED = "SKIPPED";
+
+    static final int MAX_ATTEMPTS = 8;
+    private static final long INITIAL_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(30);
+
+    // Database Configuration
+    private static final String DATABASE_NAME = "grpest_upload_queue.db";
+    private static final int DATABASE_VERSION = 2;
+
+    // Uploads Table
+    private static final String TABLE_UPLOADS = "uploads";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_SOURCE_URI = "source_uri";
+    private static final String COLUMN_STORAGE_PATH = "storage_path";
+    private static final String COLUMN_STATUS = "status";
+    private static final String COLUMN_SESSION_URI = "session_uri";
+    private static final String COLUMN_BYTES_SENT = "bytes_sent";
+    private static final String COLUMN_TOTAL_BYTES = "total_bytes";
+    private static final String COLUMN_ATTEMPTS = "attempts";
+    private static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String COLUMN_LAST_ERROR = "last_error";
+    private static final String COLUMN_CREATED_AT = "created_at";
+    private static final String COLUMN_CONTENT_MD5 = "content_md5";
+
+    private static UploadQueue instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the shared upload queue.
+     */
+    public static synchronized UploadQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new UploadQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private UploadQueue(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_UPLOADS + " (" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_SOURCE_URI + " TEXT NOT NULL, " +
+                COLUMN_STORAGE_PATH + " TEXT NOT NULL, " +
+                COLUMN_STATUS + " TEXT NOT NULL, " +
+                COLUMN_SESSION_URI + " TEXT, " +
+                COLUMN_BYTES_SENT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_TOTAL_BYTES + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_LAST_ERROR + " TEXT, " +
+                COLUMN_CREATED_AT + " INTEGER NOT NULL, " +
+                COLUMN_CONTENT_MD5 + " TEXT)");
+        db.execSQL("CREATE INDEX idx_uploads_status ON " + TABLE_UPLOADS +
+                " (" + COLUMN_STATUS + ", " + COLUMN_NEXT_ATTEMPT_AT + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Keep queued uploads across upgrades
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_UPLOADS + " ADD COLUMN " + COLUMN_CONTENT_MD5 + " TEXT");
+        }
+    }
+
+    /**
+     * Queues uploads and makes sure the upload worker is scheduled.
+     *
+     * @param onQueued Called on the queue's background thread with the number of uploads added.
+     */
+    public void enqueueAsync(List<Uri> sources, List<String> storagePaths, OnQueuedListener onQueued) {
+        enqueueAsync(sources, storagePaths, null, onQueued);
+    }
+
+    /**
+     * Queues uploads whose content hash is already known, so the worker does not have to hash them.
+     *
+     * @param contentMd5s Base64 MD5 of each source (see ContentHash), or null to let the worker hash them.
+     * @param onQueued Called on the queue's background thread with the number of uploads added.
+     */
+    public void enqueueAsync(List<Uri> sources, List<String> storagePaths, List<String> contentMd5s,
+                             OnQueuedListener onQueued) {
+        executor.execute(() -> {
+            int added = 0;
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < sources.size(); i++) {
+                    String source = sources.get(i).toString();
+                    String storagePath = storagePaths.get(i);
+                    if (isActive(db, source, storagePath)) {
+                        if (contentMd5s != null) {
+                            refreshPendingMd5(db, source, storagePath, contentMd5s.get(i));
+                        }
+                        continue;
+                    }
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_SOURCE_URI, source);
+                    values.put(COLUMN_STORAGE_PATH, storagePath);
+                    values.put(COLUMN_STATUS, STATUS_PENDING);
+                    values.put(COLUMN_CREATED_AT, now);
+                    values.put(COLUMN_CONTENT_MD5, contentMd5s != null ? contentMd5s.get(i) : null);
+                    db.insert(TABLE_UPLOADS, null, values);
+                    added++;
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            UploadQueueWorker.schedule(context, 0, false);
+            if (onQueued != null) {
+                onQueued.onQueued(added);
+            }
+        });
+    }
+
+    private boolean isActive(SQLiteDatabase db, String source, String storagePath) {
+        try (Cursor cursor = db.query(TABLE_UPLOADS, new String[]{COLUMN_ID},
+                COLUMN_SOURCE_URI + "=? AND " + COLUMN_STORAGE_PATH + "=? AND " + COLUMN_STATUS + " IN (?, ?)",
+                new String[]{source, storagePath, STATUS_PENDING, STATUS_UPLOADING}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * The file changed again before its queued upload started; compare the new content with the server.
+     */
+    private void refreshPendingMd5(SQLiteDatabase db, String source, String storagePath, String contentMd5) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CONTENT_MD5, contentMd5);
+        db.update(TABLE_UPLOADS, values,
+                COLUMN_SOURCE_URI + "=? AND " + COLUMN_STORAGE_PATH + "=? AND " + COLUMN_STATUS + "=?",
+                new String[]{source, storagePath, STATUS_PENDING});
+    }
+
+    /**
+     * Claims the next upload that is due, marking it as uploading. Returns null if none are due.
+     * Only called from the upload worker.
+     */
+    synchronized QueuedUpload claimNext() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            QueuedUpload upload = null;
+            try (Cursor cursor = db.query(TABLE_UPLOADS, null,
+                    COLUMN_STATUS + "=? AND " + COLUMN_NEXT_ATTEMPT_AT + "<=?",
+                    new String[]{STATUS_PENDING, String.valueOf(System.currentTimeMillis())},
+                    null, null, COLUMN_ID + " ASC", "1")) {
+                if (cursor.moveToFirst()) {
+                    upload = fromCursor(cursor);
+                }
+            }
+            if (upload != null) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_STATUS, STATUS_UPLOADING);
+                db.update(TABLE_UPLOADS, values, COLUMN_ID + "=?", new String[]{String.valueOf(upload.id)});
+            }
+            db.setTransactionSuccessful();
+            return upload;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns uploads left "uploading" by a worker or process that died to the pending state.
+     */
+    void resetInterrupted() {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATUS, STATUS_PENDING);
+        getWritableDatabase().update(TABLE_UPLOADS, values, COLUMN_STATUS + "=?", new String[]{STATUS_UPLOADING});
+    }
+
+    void saveSessionUri(long id, Uri sessionUri) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SESSION_URI, sessionUri != null ? sessionUri.toString() : null);
+        update(id, values);
+    }
+
+    void saveProgress(long id, long bytesSent, long totalBytes) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_BYTES_SENT, bytesSent);
+        values.put(COLUMN_TOTAL_BYTES, totalBytes);
+        update(id, values);
+    }
+
+    void markDone(long id, long totalBytes) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATUS, STATUS_DONE);
+        values.put(COLUMN_BYTES_SENT, totalBytes);
+        values.put(COLUMN_TOTAL_BYTES, totalBytes);
+        values.putNull(COLUMN_SESSION_URI);
+        values.putNull(COLUMN_LAST_ERROR);
+        update(id, values);
+    }
+
+    /**
+     * Marks an upload as not needed because the server already holds the same content.
+     */
+    void markSkipped(long id, long totalBytes) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATUS, STATUS_SKIPPED);
+        values.put(COLUMN_BYTES_SENT, 0);
+        values.put(COLUMN_TOTAL_BYTES, totalBytes);
+        values.putNull(COLUMN_SESSION_URI);
+        values.putNull(COLUMN_LAST_ERROR);
+        update(id, values);
+    }
+
+    void saveContentMd5(long id, String contentMd5) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CONTENT_MD5, contentMd5);
+        update(id, values);
+    }
+
+    /**
+     * Puts an upload back in the queue without counting an attempt (the worker was stopped, or a
+     * saved session could not be resumed).
+     */
+    void markInterrupted(long id) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATUS, STATUS_PENDING);
+        update(id, values);
+    }
+
+    /**
+     * Records a failed attempt and schedules the next one with exponential backoff,
+     * or fails the upload for good if it cannot succeed or has used all its attempts.
+     */
+    void markFailed(QueuedUpload upload, String error, boolean retryable) {
+        int attempts = upload.attempts + 1;
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ATTEMPTS, attempts);
+        values.put(COLUMN_LAST_ERROR, error);
+        if (retryable && attempts < MAX_ATTEMPTS) {
+            long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << (attempts - 1));
+            values.put(COLUMN_STATUS, STATUS_PENDING);
+            values.put(COLUMN_NEXT_ATTEMPT_AT, System.currentTimeMillis() + backoff);
+        } else {
+            values.put(COLUMN_STATUS, STATUS_FAILED);
+        }
+        update(upload.id, values);
+    }
+
+    /**
+     * Returns the time of the earliest pending retry, or -1 if nothing is pending.
+     */
+    long getNextAttemptAt() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT MIN(" + COLUMN_NEXT_ATTEMPT_AT + ") FROM " +
+                TABLE_UPLOADS + " WHERE " + COLUMN_STATUS + "=?", new String[]{STATUS_PENDING})) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        }
+    }
+
+    /**
+     * Returns every upload, newest first. Must not be called on the UI thread.
+     */
+    public List<QueuedUpload> getAll() {
+        List<QueuedUpload> uploads = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_UPLOADS, null, null, null, null, null,
+                COLUMN_ID + " DESC")) {
+            while (cursor.moveToNext()) {
+                uploads.add(fromCursor(cursor));
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * Gives failed uploads a fresh set of attempts.
+     */
+    public void retryFailedAsync() {
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_STATUS, STATUS_PENDING);
+            values.put(COLUMN_ATTEMPTS, 0);
+            values.put(COLUMN_NEXT_ATTEMPT_AT, 0);
+            getWritableDatabase().update(TABLE_UPLOADS, values, COLUMN_STATUS + "=?", new String[]{STATUS_FAILED});
+            UploadQueueWorker.schedule(context, 0, false);
+        });
+    }
+
+    public void clearCompletedAsync() {
+        executor.execute(() -> getWritableDatabase().delete(TABLE_UPLOADS, COLUMN_STATUS + " IN (?, ?)",
+                new String[]{STATUS_DONE, STATUS_SKIPPED}));
+    }
+
+    private void update(long id, ContentValues values) {
+        getWritableDatabase().update(TABLE_UPLOADS, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+    }
+
+    private QueuedUpload fromCursor(Cursor cursor) {
+        return new QueuedUpload(
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SOURCE_URI)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_STORAGE_PATH)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_STATUS)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SESSION_URI)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_BYTES_SENT)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TOTAL_BYTES)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ATTEMPTS)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_NEXT_ATTEMPT_AT)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LAST_ERROR)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CONTENT_MD5)));
+    }
+
+    /**
+     * Receives the number of uploads that were added to the queue.
+     */
+    public interface OnQueuedListener {
+        void onQueued(int added);
+    }
+
+    /**
+     * One upload in the queue.
+     */
+    public static class QueuedUpload {
+        public final long id;
+        public final String sourceUri;
+        public final String storagePath;
+        public final String status;
+        public final String sessionUri;
+        public final long bytesSent;
+        public final long totalBytes;
+        public final int attempts;
+        public final long nextAttemptAt;
+        public final String lastError;
+        public final String contentMd5;
+
+        QueuedUpload(long id, String sourceUri, String storagePath, String status, String sessionUri,
+                     long bytesSent, long totalBytes, int attempts, long nextAttemptAt, String lastError,
+                     String contentMd5) {
+            this.id = id;
+            this.sourceUri = sourceUri;
+            this.storagePath = storagePath;
+            this.status = status;
+            this.sessionUri = sessionUri;
+            this.bytesSent = bytesSent;
+            this.totalBytes = totalBytes;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+            this.lastError = lastError;
+            this.contentMd5 = contentMd5;
+        }
+
+        public String getFileName() {
+            int slash = storagePath.lastIndexOf('/');
+            return slash >= 0 ? storagePath.substring(slash + 1) : storagePath;
+        }
+
+        public String getFolderPath() {
+            int slash = storagePath.lastIndexOf('/');
+            return slash >= 0 ? storagePath.substring(0, slash) : "";
+        }
+    }
+}
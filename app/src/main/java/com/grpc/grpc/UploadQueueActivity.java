@@ -0,0 +1,321 @@
+package com.grpc.grpc;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.InputType;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * UploadQueueActivity.java
+ *
+ * This screen shows the reports waiting in the UploadQueue, the ones uploading right now with
+ * their progress, and the ones that failed. Uploads carry on in the background whether or not
+ * this screen is open; it only reads the queue.
+ *
+ * Features:
+ * - Progress bar and status per upload, refreshed every second
+ * - Shows the last error and the next retry time for failed attempts
+ * - Restricts uploads to unmetered networks
+ * - Turns automatic report sync on or off and sets the folder it syncs to
+ * - Retries failed uploads and clears completed ones
+ * - Opens the Backups and Storage screens
+ * - Sets the age at which uploaded reports are archived, shows the archive totals and archives now
+ *
+ * Author: James Scott
+ */
+
+public class UploadQueueActivity extends AppCompatActivity {
+
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private LinearLayout queueContainer;
+    private TextView queueTotals;
+    private Button syncFolderButton;
+    private Button archiveButton;
+
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            loadQueue();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_upload_queue);
+
+        queueContainer = findViewById(R.id.queueContainer);
+        queueTotals = findViewById(R.id.queueTotals);
+
+        CheckBox unmeteredOnlyCheckBox = findViewById(R.id.unmeteredOnlyCheckBox);
+        Button retryFailedButton = findViewById(R.id.retryFailedButton);
+        Button clearCompletedButton = findViewById(R.id.clearCompletedButton);
+        Button backButton = findViewById(R.id.backButton);
+
+        unmeteredOnlyCheckBox.setChecked(getSharedPreferences(UploadQueueWorker.PREFS_NAME, MODE_PRIVATE)
+                .getBoolean(UploadQueueWorker.KEY_UNMETERED_ONLY, false));
+        unmeteredOnlyCheckBox.setOnCheckedChangeListener((button, isChecked) ->
+                UploadQueueWorker.setUnmeteredOnly(this, isChecked));
+
+        CheckBox syncEnabledCheckBox = findViewById(R.id.syncEnabledCheckBox);
+        syncFolderButton = findViewById(R.id.syncFolderButton);
+        Button syncNowButton = findViewById(R.id.syncNowButton);
+
+        syncEnabledCheckBox.setChecked(ReportSyncWorker.isEnabled(this));
+        syncEnabledCheckBox.setOnCheckedChangeListener((button, isChecked) ->
+                ReportSyncWorker.setEnabled(this, isChecked));
+        updateSyncFolderButton();
+        syncFolderButton.setOnClickListener(view -> showSyncFolderDialog());
+        syncNowButton.setOnClickListener(view -> ReportSyncWorker.syncNow(this));
+
+        Button backupsButton = findViewById(R.id.backupsButton);
+        backupsButton.setOnClickListener(view -> startActivity(new Intent(this, BackupActivity.class)));
+        Button storageButton = findViewById(R.id.storageButton);
+        storageButton.setOnClickListener(view -> startActivity(new Intent(this, StorageActivity.class)));
+
+        archiveButton = findViewById(R.id.archiveButton);
+        updateArchiveButton();
+        archiveButton.setOnClickListener(view -> showArchiveDialog());
+
+        UploadQueue queue = UploadQueue.getInstance(this);
+        retryFailedButton.setOnClickListener(view -> queue.retryFailedAsync());
+        clearCompletedButton.setOnClickListener(view -> queue.clearCompletedAsync());
+        backButton.setOnClickListener(view -> finish());
+    }
+
+    private String getSyncFolder() {
+        return getSharedPreferences(ReportSyncWorker.PREFS_NAME, MODE_PRIVATE)
+                .getString(ReportSyncWorker.KEY_REMOTE_FOLDER, ReportSyncWorker.DEFAULT_REMOTE_FOLDER);
+    }
+
+    private void updateSyncFolderButton() {
+        syncFolderButton.setText("Sync Folder: " + getSyncFolder());
+    }
+
+    /**
+     * Lets the user choose the Storage folder new reports are synced to.
+     */
+    private void showSyncFolderDialog() {
+        final EditText input = new EditText(this);
+        input.setText(getSyncFolder());
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Sync Folder");
+        builder.setView(input);
+        builder.setPositiveButton("Save", (dialog, which) -> {
+            String folder = input.getText().toString().trim().replaceAll("^/+|/+$", "");
+            if (folder.isEmpty() || folder.equals("backup")) {
+                Toast.makeText(this, "Please enter a valid folder name.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            ReportSyncWorker.setRemoteFolder(this, folder);
+            updateSyncFolderButton();
+        });
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
+        builder.show();
+    }
+
+    private int getArchiveAfterDays() {
+        return getSharedPreferences(ReportArchiveWorker.PREFS_NAME, MODE_PRIVATE)
+                .getInt(ReportArchiveWorker.KEY_ARCHIVE_AFTER_DAYS, ReportArchiveWorker.DEFAULT_ARCHIVE_AFTER_DAYS);
+    }
+
+    private void updateArchiveButton() {
+        int days = getArchiveAfterDays();
+        archiveButton.setText(days > 0 ? "Archive: uploaded reports older than " + days + " days" : "Archive: off");
+    }
+
+    /**
+     * Shows the archive totals and lets the user change the archive age or archive straight away.
+     */
+    private void showArchiveDialog() {
+        loadExecutor.execute(() -> {
+            long[] totals = ReportArchive.getInstance(this).getTotals();
+            String lastResult = getSharedPreferences(ReportArchiveWorker.PREFS_NAME, MODE_PRIVATE)
+                    .getString(ReportArchiveWorker.KEY_LAST_RESULT, "Never run");
+            String message = String.format(Locale.getDefault(),
+                    "%d reports archived (%.1f MB, %.1f MB in bundles)\nLast run: %s\n\nArchive reports older than (days, 0 for off):",
+                    totals[0], totals[1] / 1048576.0, totals[2] / 1048576.0, lastResult);
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                final EditText input = new EditText(this);
+                input.setInputType(InputType.TYPE_CLASS_NUMBER);
+                input.setText(String.valueOf(getArchiveAfterDays()));
+
+                new AlertDialog.Builder(this)
+                        .setTitle("Report Archive")
+                        .setMessage(message)
+                        .setView(input)
+                        .setPositiveButton("Save", (dialog, which) -> saveArchiveAfterDays(input))
+                        .setNeutralButton("Archive Now", (dialog, which) -> {
+                            if (saveArchiveAfterDays(input)) {
+                                ReportArchiveWorker.archiveNow(this);
+                            }
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+        });
+    }
+
+    private boolean saveArchiveAfterDays(EditText input) {
+        int days;
+        try {
+            days = Integer.parseInt(input.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, "Please enter a number of days.", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        ReportArchiveWorker.setArchiveAfterDays(this, days);
+        updateArchiveButton();
+        return true;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresh);
+    }
+
+    private void loadQueue() {
+        loadExecutor.execute(() -> {
+            List<UploadQueue.QueuedUpload> uploads = UploadQueue.getInstance(this).getAll();
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    displayQueue(uploads);
+                }
+            });
+        });
+    }
+
+    private void displayQueue(List<UploadQueue.QueuedUpload> uploads) {
+        queueContainer.removeAllViews();
+
+        int pending = 0, uploading = 0, done = 0, failed = 0;
+        for (UploadQueue.QueuedUpload upload : uploads) {
+            switch (upload.status) {
+                case UploadQueue.STATUS_UPLOADING:
+                    uploading++;
+                    break;
+                case UploadQueue.STATUS_DONE:
+                case UploadQueue.STATUS_SKIPPED:
+                    done++;
+                    break;
+                case UploadQueue.STATUS_FAILED:
+                    failed++;
+                    break;
+                default:
+                    pending++;
+                    break;
+            }
+        }
+        queueTotals.setText("Uploading: " + uploading + "   Waiting: " + pending + "\n" +
+                "Completed: " + done + "   Failed: " + failed);
+
+        if (uploads.isEmpty()) {
+            TextView emptyView = new TextView(this);
+            emptyView.setText("No uploads queued.");
+            queueContainer.addView(emptyView);
+            return;
+        }
+
+        for (UploadQueue.QueuedUpload upload : uploads) {
+            addUploadToView(upload);
+        }
+    }
+
+    private void addUploadToView(UploadQueue.QueuedUpload upload) {
+        LinearLayout uploadBox = new LinearLayout(this);
+        uploadBox.setOrientation(LinearLayout.VERTICAL);
+        uploadBox.setPadding(16, 16, 16, 16);
+        uploadBox.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
+
+        TextView fileName = new TextView(this);
+        fileName.setText(upload.getFileName());
+        fileName.setTextSize(16);
+        fileName.setTypeface(null, android.graphics.Typeface.BOLD);
+        uploadBox.addView(fileName);
+
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(100);
+        if (UploadQueue.STATUS_SKIPPED.equals(upload.status)) {
+            progressBar.setProgress(100);
+        } else {
+            progressBar.setProgress(upload.totalBytes > 0 ? (int) (upload.bytesSent * 100 / upload.totalBytes) : 0);
+        }
+        uploadBox.addView(progressBar);
+
+        TextView details = new TextView(this);
+        details.setText("To: " + upload.getFolderPath() + "\n" + describeStatus(upload));
+        uploadBox.addView(details);
+
+        queueContainer.addView(uploadBox);
+    }
+
+    private String describeStatus(UploadQueue.QueuedUpload upload) {
+        String transferred = formatBytes(upload.bytesSent) +
+                (upload.totalBytes > 0 ? " of " + formatBytes(upload.totalBytes) : "");
+        switch (upload.status) {
+            case UploadQueue.STATUS_UPLOADING:
+                return "Uploading - " + transferred;
+            case UploadQueue.STATUS_DONE:
+                return "Uploaded - " + formatBytes(upload.totalBytes);
+            case UploadQueue.STATUS_SKIPPED:
+                return "Already on the server - nothing sent";
+            case UploadQueue.STATUS_FAILED:
+                return "Failed after " + upload.attempts + " attempts: " + upload.lastError;
+            default:
+                if (upload.attempts > 0 && upload.nextAttemptAt > System.currentTimeMillis()) {
+                    String retryAt = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date(upload.nextAttemptAt));
+                    return "Retrying at " + retryAt + " (" + upload.lastError + ")";
+                }
+                return upload.bytesSent > 0 ? "Waiting to resume - " + transferred : "Waiting for network";
+        }
+    }
+
+    private String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.getDefault(), "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.getDefault(), "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadExecutor.shutdown();
+    }
+}
@@ -0,0 +1,353 @@
+package com.grpc.grpc;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UploadQueueWorker.java
+ *
+ * This background job drains the UploadQueue. It uploads a limited number of reports at a time,
+ * saves each upload's Storage session URI as soon as Storage hands it out, and resumes from that
+ * session on the next run if the upload was interrupted. When WorkManager stops the worker (the
+ * network it needs went away) the uploads are paused, never cancelled, because cancelling an
+ * UploadTask also ends its session on the server. Failed uploads are retried by the queue's
+ * backoff schedule; the worker re-schedules itself for the earliest retry. Before a fresh upload
+ * the local content hash is compared with the server copy's MD5, and unchanged files are skipped.
+ * Every uploaded report carries its ReportMetadata as custom metadata and is recorded in the
+ * report_index collection so it can be searched.
+ *
+ * Features:
+ * - At most MAX_CONCURRENT_UPLOADS uploads in flight
+ * - Resumes partial uploads after the app or the worker is stopped
+ * - Never re-sends a file the server already holds byte for byte
+ * - Runs only on unmetered networks when the user prefers it
+ * - Marks the destination folder stale in the listing cache once a file lands
+ * - Indexes each uploaded (or already identical) report in Firestore
+ * - Marks each upload and its server check as a PipelineTrace section
+ *
+ * Author: James Scott
+ */
+
+public class UploadQueueWorker extends Worker {
+
+    private static final String TAG = "UploadQueueWorker";
+    private static final String UNIQUE_WORK_NAME = "report_upload_queue";
+
+    static final int MAX_CONCURRENT_UPLOADS = 2;
+
+    static final String PREFS_NAME = "UploadQueue";
+    static final String KEY_UNMETERED_ONLY = "unmetered_only";
+
+    // Progress is written to the queue at most this often per upload
+    private static final long PROGRESS_SAVE_INTERVAL_MS = 500;
+
+    private final Set<UploadTask> activeUploads = ConcurrentHashMap.newKeySet();
+
+    // Upload threads, interrupted when the worker is stopped so they stop waiting on paused tasks
+    private volatile ExecutorService pool;
+
+    public UploadQueueWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the worker to drain the queue.
+     *
+     * @param delayMs How long to wait before starting (used for backoff).
+     * @param replace True to restart the worker, for example after the network preference changed.
+     */
+    public static void schedule(Context context, long delayMs, boolean replace) {
+        boolean unmeteredOnly = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(KEY_UNMETERED_ONLY, false);
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(unmeteredOnly ? NetworkType.UNMETERED : NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadQueueWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME,
+                replace ? ExistingWorkPolicy.REPLACE : ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Saves the unmetered-network preference and restarts the worker with the new constraint.
+     */
+    public static void setUnmeteredOnly(Context context, boolean unmeteredOnly) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_UNMETERED_ONLY, unmeteredOnly)
+                .apply();
+        schedule(context, 0, true);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        UploadQueue queue = UploadQueue.getInstance(getApplicationContext());
+        MeteredFirebase firebase = MeteredFirebase.forScreen(TAG);
+
+        // Only one worker runs at a time, so anything still "uploading" was interrupted
+        queue.resetInterrupted();
+
+        pool = Executors.newFixedThreadPool(MAX_CONCURRENT_UPLOADS);
+        CompletionService<Void> completions = new ExecutorCompletionService<>(pool);
+        int running = 0;
+        try {
+            while (!isStopped()) {
+                while (running < MAX_CONCURRENT_UPLOADS && !isStopped()) {
+                    UploadQueue.QueuedUpload next = queue.claimNext();
+                    if (next == null) {
+                        break;
+                    }
+                    try {
+                        completions.submit(() -> {
+                            try (PipelineTrace.Section section = PipelineTrace.begin("Report upload", next.storagePath)) {
+                                upload(queue, firebase, next);
+                            }
+                            return null;
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // Stopped between the claim and the submit
+                        queue.markInterrupted(next.id);
+                        break;
+                    }
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+                completions.take();
+                running--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (isStopped()) {
+            return Result.retry();
+        }
+
+        // Come back for uploads that are waiting out their backoff
+        long nextAttemptAt = queue.getNextAttemptAt();
+        if (nextAttemptAt >= 0) {
+            schedule(getApplicationContext(), Math.max(0, nextAttemptAt - System.currentTimeMillis()), false);
+        }
+        return Result.success();
+    }
+
+    private void upload(UploadQueue queue, MeteredFirebase firebase, UploadQueue.QueuedUpload upload) {
+        Uri source = Uri.parse(upload.sourceUri);
+        File localFile = "file".equals(source.getScheme()) ? new File(source.getPath()) : null;
+        if (localFile != null && !localFile.exists()) {
+            queue.markFailed(upload, "File no longer exists", false);
+            return;
+        }
+        // Taken before the file is read, so a change made during the upload is synced next scan
+        long localSize = localFile != null ? localFile.length() : 0;
+        long localModified = localFile != null ? localFile.lastModified() : 0;
+
+        // Read once; used for the Storage metadata and the index document on every path below
+        ReportMetadata reportMetadata = readMetadata(source, upload);
+
+        StorageReference reference = firebase.storageReference(upload.storagePath);
+        Uri sessionUri = upload.sessionUri != null ? Uri.parse(upload.sessionUri) : null;
+
+        // A resumed session was already checked against the server when it started
+        if (sessionUri == null) {
+            String localMd5 = upload.contentMd5;
+            try (PipelineTrace.Section section = PipelineTrace.begin("Report upload check", upload.storagePath)) {
+                if (localMd5 == null) {
+                    localMd5 = hashSource(source);
+                    queue.saveContentMd5(upload.id, localMd5);
+                }
+                if (localMd5.equals(getRemoteMd5(firebase, reference))) {
+                    queue.markSkipped(upload.id, upload.totalBytes);
+                    recordUploaded(localFile, localSize, localModified, upload, localMd5);
+                    writeIndex(firebase, upload, reportMetadata, upload.totalBytes, localMd5);
+                    return;
+                }
+            } catch (IOException e) {
+                queue.markFailed(upload, "Could not read file: " + e.getMessage(), false);
+                return;
+            } catch (InterruptedException e) {
+                queue.markInterrupted(upload.id);
+                return;
+            } catch (ExecutionException e) {
+                // Could not compare with the server; the upload below will surface any real problem
+                Log.w(TAG, "Metadata check for " + upload.storagePath + " failed", e.getCause());
+            }
+        }
+
+        StorageMetadata metadata = reportMetadata.applyTo(new StorageMetadata.Builder()
+                .setContentType(upload.storagePath.toLowerCase().endsWith(".pdf") ? "application/pdf" : null))
+                .build();
+
+        UploadTask task = firebase.putFile(reference, source, metadata, sessionUri);
+        activeUploads.add(task);
+
+        long[] lastSavedAt = {0};
+        boolean[] sessionSaved = {sessionUri != null};
+        ExecutorService progressExecutor = Executors.newSingleThreadExecutor();
+        task.addOnProgressListener(progressExecutor, snapshot -> {
+            if (!sessionSaved[0] && snapshot.getUploadSessionUri() != null) {
+                queue.saveSessionUri(upload.id, snapshot.getUploadSessionUri());
+                sessionSaved[0] = true;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastSavedAt[0] >= PROGRESS_SAVE_INTERVAL_MS) {
+                lastSavedAt[0] = now;
+                queue.saveProgress(upload.id, snapshot.getBytesTransferred(), snapshot.getTotalByteCount());
+            }
+        });
+
+        try {
+            UploadTask.TaskSnapshot result = Tasks.await(task);
+            queue.markDone(upload.id, result.getTotalByteCount());
+            StorageListingCache.getInstance(getApplicationContext()).invalidate(upload.getFolderPath());
+            StorageMetadata uploaded = result.getMetadata();
+            String uploadedMd5 = uploaded != null ? uploaded.getMd5Hash() : upload.contentMd5;
+            recordUploaded(localFile, localSize, localModified, upload, uploadedMd5);
+            writeIndex(firebase, upload, reportMetadata, result.getTotalByteCount(), uploadedMd5);
+        } catch (CancellationException | InterruptedException e) {
+            // Stopped by WorkManager; the task was paused, so its saved session lets the next run resume
+            queue.markInterrupted(upload.id);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (task.isCanceled() || isStopped()) {
+                queue.markInterrupted(upload.id);
+            } else if (sessionUri != null) {
+                // The saved session could not be resumed; start this file again from byte zero,
+                // which is not the file's fault, so no attempt is counted
+                Log.w(TAG, "Resuming " + upload.storagePath + " failed, starting again", cause);
+                queue.saveSessionUri(upload.id, null);
+                queue.markInterrupted(upload.id);
+            } else {
+                Log.w(TAG, "Upload of " + upload.storagePath + " failed", cause);
+                queue.markFailed(upload, cause != null ? cause.getMessage() : "Upload failed", isRetryable(cause));
+            }
+        } finally {
+            activeUploads.remove(task);
+            progressExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Remembers that the server holds this local file, so ReportSyncWorker does not send it again
+     * and it may later be archived on the device.
+     */
+    private void recordUploaded(File localFile, long size, long lastModified, UploadQueue.QueuedUpload upload, String md5) {
+        if (md5 != null && localFile != null) {
+            ReportSyncState.getInstance(getApplicationContext())
+                    .markUploaded(localFile.getAbsolutePath(), size, lastModified, md5, upload.storagePath);
+        }
+    }
+
+    private ReportMetadata readMetadata(Uri source, UploadQueue.QueuedUpload upload) {
+        String folderName = "file".equals(source.getScheme()) ? new File(source.getPath()).getParentFile().getName() : null;
+        return ReportMetadata.read(getApplicationContext(), source, upload.getFileName(), folderName);
+    }
+
+    /**
+     * Records the uploaded object in the report_index collection. A failed index write is logged
+     * but does not fail the upload; the next upload of the file writes it again.
+     */
+    private static void writeIndex(MeteredFirebase firebase, UploadQueue.QueuedUpload upload,
+                                   ReportMetadata metadata, long sizeBytes, String md5) {
+        try {
+            Tasks.await(firebase.set(firebase.collection(ReportMetadata.INDEX_COLLECTION)
+                            .document(ReportMetadata.indexDocumentId(upload.storagePath)),
+                    metadata.toIndexDocument(upload.storagePath, sizeBytes, md5)));
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Indexing " + upload.storagePath + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String hashSource(Uri source) throws IOException {
+        if ("file".equals(source.getScheme())) {
+            return ContentHash.md5Base64(new File(source.getPath()));
+        }
+        try (InputStream inputStream = getApplicationContext().getContentResolver().openInputStream(source)) {
+            if (inputStream == null) {
+                throw new IOException("Cannot open " + source);
+            }
+            return ContentHash.md5Base64(inputStream);
+        }
+    }
+
+    /**
+     * Returns the MD5 Storage holds for the object, or null if there is no object at that path yet.
+     */
+    private static String getRemoteMd5(MeteredFirebase firebase, StorageReference reference)
+            throws ExecutionException, InterruptedException {
+        try {
+            return Tasks.await(firebase.getMetadata(reference)).getMd5Hash();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageException
+                    && ((StorageException) e.getCause()).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isRetryable(Throwable cause) {
+        if (!(cause instanceof StorageException)) {
+            return true;
+        }
+        int errorCode = ((StorageException) cause).getErrorCode();
+        return errorCode != StorageException.ERROR_NOT_AUTHORIZED
+                && errorCode != StorageException.ERROR_QUOTA_EXCEEDED;
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        // Pause rather than cancel: cancelling would also end the sessions on the server, and the
+        // next run resumes from them. Interrupting the threads lets each mark its upload interrupted.
+        for (UploadTask task : activeUploads) {
+            task.pause();
+        }
+        ExecutorService uploads = pool;
+        if (uploads != null) {
+            uploads.shutdownNow();
+        }
+    }
+}
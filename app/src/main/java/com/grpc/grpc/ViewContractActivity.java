@@ -17,7 +17,6 @@ import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.text.SimpleDateFormat;
@@ -29,7 +28,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import android.content.SharedPreferences;
 
 
 /**
@@ -48,6 +46,8 @@ import android.content.SharedPreferences;
  * - Enables navigation to contract locations using Google Maps
  * - Allows administrators to edit, transfer, or delete contracts
  * - Generates routine, callout, and initial setup reports based on contract status
+ * - Caches each technician's visit schedule for the background overdue digest
+ * - Triggers the offline prefetch of reports for today's due and behind customers
  *
  * Author: James Scott
  */
@@ -58,7 +58,7 @@ public class ViewContractActivity extends AppCompatActivity {
     private EditText searchBar;
     private LinearLayout contractsContainer;
     private Button backButton;
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
 
@@ -67,7 +67,7 @@ public class ViewContractActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_view_contract);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
         userName = getIntent().getStringExtra("USER_NAME");
 
         if (userName == null || userName.isEmpty()) {
@@ -104,6 +104,7 @@ public class ViewContractActivity extends AppCompatActivity {
     }
 
         private void loadContracts() {
+        FrameMetricsTracker.setState(this, "loading contracts");
         if ("user".equalsIgnoreCase(userName)) {
             // Load both user contracts in parallel
             String[] contractCollections = {"user Contracts", "user Contracts"};
@@ -113,7 +114,7 @@ public class ViewContractActivity extends AppCompatActivity {
             int[] loadedCount = {0}; // To track when all async calls return
 
             for (String collectionName : contractCollections) {
-                db.collection(collectionName).get().addOnCompleteListener(task -> {
+                db.get(db.collection(collectionName)).addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         List<Map<String, Object>> techContracts = new ArrayList<>();
                         for (QueryDocumentSnapshot document : task.getResult()) {
@@ -124,7 +125,7 @@ public class ViewContractActivity extends AppCompatActivity {
                             techContracts.add(contract);
                         }
 
-                        // Save for WhatsApp grouping
+                        // Save for the schedule cache
                         String techName = collectionName.replace(" Contracts", "");
                         groupedContracts.put(techName, techContracts);
 
@@ -135,12 +136,15 @@ public class ViewContractActivity extends AppCompatActivity {
                     // When both collections return, proceed
                     loadedCount[0]++;
                     if (loadedCount[0] == contractCollections.length) {
+                        FrameMetricsTracker.markState(this, "rendering contracts");
                         handleContractsData(allContracts);
 
-                        // 🟢 Send WhatsApp summary for each tech
+                        // 🟢 Cache each tech's schedule for the background overdue digest and the global search
                         for (String tech : groupedContracts.keySet()) {
-                            sendDailyBehindSummaryIfNeeded(tech, groupedContracts.get(tech));
+                            ContractScheduleCache.getInstance(this).replaceContractsAsync(tech, groupedContracts.get(tech));
+                            LocalSearchIndex.getInstance(this).replaceContractsAsync(tech, groupedContracts.get(tech));
                         }
+                        ReportPrefetchWorker.prefetchNow(this);
                     }
                 });
             }
@@ -149,7 +153,7 @@ public class ViewContractActivity extends AppCompatActivity {
             // Default load for user
             String tableName = userName + " Contracts";
 
-            db.collection(tableName).get().addOnCompleteListener(task -> {
+            db.get(db.collection(tableName)).addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
                     List<Map<String, Object>> contractsList = new ArrayList<>();
                     for (QueryDocumentSnapshot document : task.getResult()) {
@@ -158,9 +162,13 @@ public class ViewContractActivity extends AppCompatActivity {
                         contract.put("owner", userName);
                         contractsList.add(contract);
                     }
+                    FrameMetricsTracker.markState(this, "rendering contracts");
                     handleContractsData(contractsList);
-                    sendDailyBehindSummaryIfNeeded(userName, contractsList);
+                    ContractScheduleCache.getInstance(this).replaceContractsAsync(userName, contractsList);
+                    LocalSearchIndex.getInstance(this).replaceContractsAsync(userName, contractsList);
+                    ReportPrefetchWorker.prefetchNow(this);
                 } else {
+                    FrameMetricsTracker.clearState(this);
                     Toast.makeText(this, "Failed to load contracts: " + task.getException().getMessage(), Toast.LENGTH_SHORT).show();
                 }
             });
@@ -168,50 +176,6 @@ public class ViewContractActivity extends AppCompatActivity {
     }
 
 
-    private void sendDailyBehindSummaryIfNeeded(String technician, List<Map<String, Object>> contracts) {
-        SharedPreferences prefs = getSharedPreferences("ContractReminders", MODE_PRIVATE);
-        String key = "sent_" + technician.toLowerCase();
-        String lastSentDate = prefs.getString(key, "");
-
-        String today = new SimpleDateFormat("yyyyMMdd", Locale.getDefault()).format(new Date());
-        if (today.equals(lastSentDate)) return; // Already sent today ❌
-
-        // Filter overdue contracts
-        List<String> overdueSummaries = new ArrayList<>();
-        for (Map<String, Object> contract : contracts) {
-            String nextVisit = calculateNextVisit(contract);
-            if (isPastDue(nextVisit)) {
-                String name = contract.get("name") != null ? contract.get("name").toString() : "N/A";
-                String address = contract.get("address") != null ? contract.get("address").toString() : "N/A";
-                overdueSummaries.add("🔹 " + name + "\n📍 " + address + "\n📅 Next Visit: " + nextVisit);
-            }
-        }
-
-        if (!overdueSummaries.isEmpty()) {
-            String message = "🛑 Overdue Contracts for " + technician + ":\n\n" + String.join("\n\n", overdueSummaries);
-            String number = "mobile";
-            launchWhatsAppMessage(number, message);
-
-            // Store date as sent
-            prefs.edit().putString(key, today).apply();
-        }
-    }
-
-    private void launchWhatsAppMessage(String phoneNumber, String message) {
-        try {
-            String formatted = phoneNumber.replaceFirst("^0", "353"); // Irish number formatting
-            String url = "https://wa.me/" + formatted + "?text=" + Uri.encode(message);
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            intent.setData(Uri.parse(url));
-            intent.setPackage("com.whatsapp");
-            startActivity(intent);
-        } catch (Exception e) {
-            Toast.makeText(this, "Could not launch WhatsApp", Toast.LENGTH_SHORT).show();
-        }
-    }
-
-
-
     private void handleContractsData(List<Map<String, Object>> contractsList) {
         int totalContracts = contractsList.size();
         int behindContracts = 0;
@@ -290,6 +254,7 @@ public class ViewContractActivity extends AppCompatActivity {
 
 
     private void filterContracts(String query) {
+        FrameMetricsTracker.markState(this, "filtering");
         query = query.toLowerCase();
         contractsContainer.removeAllViews();
 
@@ -301,7 +266,7 @@ public class ViewContractActivity extends AppCompatActivity {
             String[] contractCollections = {"user Contracts"}; // Add all relevant collections
             for (String collectionName : contractCollections) {
                 String finalQuery = query;
-                db.collection(collectionName).get().addOnCompleteListener(task -> {
+                db.get(db.collection(collectionName)).addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         for (QueryDocumentSnapshot document : task.getResult()) {
                             Map<String, Object> contract = document.getData();
@@ -323,7 +288,7 @@ public class ViewContractActivity extends AppCompatActivity {
             // Default behavior for specific user's contracts
             String tableName = userName + " Contracts";
             String finalQuery1 = query;
-            db.collection(tableName).get().addOnCompleteListener(task -> {
+            db.get(db.collection(tableName)).addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
                     for (QueryDocumentSnapshot document : task.getResult()) {
                         Map<String, Object> contract = document.getData();
@@ -344,6 +309,7 @@ public class ViewContractActivity extends AppCompatActivity {
     }
 
     private void displayContracts(List<Map<String, Object>> contracts) {
+        FrameMetricsTracker.markState(this, "filtering");
         contractsContainer.removeAllViews();
         for (Map<String, Object> contract : contracts) {
             String documentId = contract.get("documentId").toString();
@@ -540,7 +506,7 @@ public class ViewContractActivity extends AppCompatActivity {
         String newCollection = newOwner + " Contracts";
 
         // Remove the contract from the current owner's collection
-        db.collection(currentCollection).document(documentId).delete().addOnSuccessListener(aVoid -> {
+        db.delete(db.collection(currentCollection).document(documentId)).addOnSuccessListener(aVoid -> {
             // Add the contract to the new owner's collection
             Map<String, Object> newContract = new HashMap<>();
             newContract.put("name", name);
@@ -550,7 +516,7 @@ public class ViewContractActivity extends AppCompatActivity {
             newContract.put("visits", visits);
             newContract.put("owner", newOwner);
 
-            db.collection(newCollection).add(newContract).addOnSuccessListener(documentReference -> {
+            db.add(db.collection(newCollection), newContract).addOnSuccessListener(documentReference -> {
                 Toast.makeText(this, "Contract transferred to " + newOwner + ".", Toast.LENGTH_SHORT).show();
                 loadContracts(); // Refresh contracts list
             }).addOnFailureListener(e -> {
@@ -661,43 +627,7 @@ public class ViewContractActivity extends AppCompatActivity {
 
 
     private String calculateNextVisit(Map<String, Object> contract) {
-        // Use dd/MM/yy for two-digit years
-        SimpleDateFormat shortYearFormat = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-
-        String lastVisit = contract.get("lastVisit") != null ? contract.get("lastVisit").toString() : "N/A";
-        int visits = contract.get("visits") != null ? Integer.parseInt(contract.get("visits").toString()) : 0;
-
-        if ("N/A".equals(lastVisit) || visits == 0) {
-            return "N/A";
-        }
-
-        Calendar calendar = Calendar.getInstance();
-        try {
-            calendar.setTime(dateFormat.parse(lastVisit)); // Parse using full date format
-        } catch (Exception e) {
-            return "Invalid Date";
-        }
-
-        // Adjust the next visit date based on the number of visits
-        switch (visits) {
-            case 8:
-                calendar.add(Calendar.WEEK_OF_YEAR, 6);
-                break;
-            case 12:
-                calendar.add(Calendar.WEEK_OF_YEAR, 4);
-                break;
-            case 6:
-                calendar.add(Calendar.WEEK_OF_YEAR, 8);
-                break;
-            case 4:
-                calendar.add(Calendar.WEEK_OF_YEAR, 12);
-                break;
-            default:
-                return "N/A";
-        }
-
-        // Return the next visit date in the short year format (dd/MM/yy)
-        return shortYearFormat.format(calendar.getTime());
+        return ContractScheduleCache.calculateNextVisit(contract);
     }
 
     private void showRoutineDialog(String documentId, Map<String, Object> contract) {
@@ -811,7 +741,7 @@ public class ViewContractActivity extends AppCompatActivity {
         updates.put("lastVisit", lastVisit);
         updates.put("nextVisit", calculateNextVisit(Map.of("lastVisit", lastVisit, "visits", 8))); // Example with 8 visits
 
-        db.collection(tableName).document(documentId).update(updates).addOnSuccessListener(aVoid -> {
+        db.update(db.collection(tableName).document(documentId), updates).addOnSuccessListener(aVoid -> {
             Toast.makeText(this, "Visit updated successfully.", Toast.LENGTH_SHORT).show();
             loadContracts();
         }).addOnFailureListener(e -> {
@@ -855,8 +785,7 @@ public class ViewContractActivity extends AppCompatActivity {
         Map<String, Object> updates = new HashMap<>();
         updates.put(field, newValue);
 
-        db.collection(tableName).document(documentId)
-                .update(updates)
+        db.update(db.collection(tableName).document(documentId), updates)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Contract updated successfully.", Toast.LENGTH_SHORT).show();
                     loadContracts(); // Reload contracts after updating
@@ -868,8 +797,7 @@ public class ViewContractActivity extends AppCompatActivity {
 
     private void deleteContract(String documentId) {
         String tableName = userName + " Contracts";
-        db.collection(tableName).document(documentId)
-                .delete()
+        db.delete(db.collection(tableName).document(documentId))
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Contract deleted successfully.", Toast.LENGTH_SHORT).show();
                     loadContracts();
@@ -36,6 +36,7 @@ import java.util.concurrent.TimeUnit;
  * - Enables adding customer details such as email and payment method
  * - Integrates Google Maps for job location navigation
  * - Supports WhatsApp notifications for technician job assignment
+ * - Hands job changes to FollowUpReminderScheduler so follow-up reminders fire in the background
  * - Generates routine pest control reports based on job details
  * - Provides an intuitive UI with click and long-press options for job management
  *
@@ -50,16 +51,18 @@ public class ViewJobActivity extends AppCompatActivity {
     private Button backButton;
     private TextView totalJobs, completedJobs, pendingJobs;
     private List<Map<String, Object>> allJobs = new ArrayList<>();
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName;
     private int total = 0, completed = 0, pending = 0;
+    private ListenerRegistration jobsListener;
+    private boolean searchIndexReconciled = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_view_jobs);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
         userName = getIntent().getStringExtra("USER_NAME");
 
         if (userName == null || userName.isEmpty()) {
@@ -98,107 +101,76 @@ public class ViewJobActivity extends AppCompatActivity {
     }
 
     private void loadAllJobs() {
-        db.collection("JobWork").addSnapshotListener((snapshots, error) -> {
+        if (jobsListener != null) {
+            return; // The snapshot listener already keeps the board current
+        }
+        FrameMetricsTracker.setState(this, "loading jobs");
+
+        jobsListener = db.listen(db.collection("JobWork"), (snapshots, error) -> {
             if (error != null) {
+                FrameMetricsTracker.clearState(this);
                 Toast.makeText(this, "Error loading jobs: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                 return;
             }
 
+            // Keep the global search index current with just the changed jobs
+            if (snapshots != null) {
+                Set<String> liveDocumentIds = null;
+                if (!searchIndexReconciled && !snapshots.getMetadata().isFromCache()) {
+                    liveDocumentIds = SnapshotDocuments.documentIds(snapshots);
+                    searchIndexReconciled = true;
+                }
+                LocalSearchIndex.getInstance(this)
+                        .applyChangesAsync(LocalSearchIndex.TYPE_JOB, snapshots.getDocumentChanges(), liveDocumentIds);
+            }
+
             if (snapshots == null || snapshots.isEmpty()) {
+                FrameMetricsTracker.clearState(this);
                 Toast.makeText(this, "No jobs found.", Toast.LENGTH_SHORT).show();
                 return;
             }
 
+            // ✅ Reminders are scheduled in the background from the changed jobs only
+            FollowUpReminderScheduler.getInstance(this).onJobChanges(snapshots.getDocumentChanges());
+
             allJobs.clear();
             total = completed = pending = 0;
 
-            for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                QueryDocumentSnapshot document = dc.getDocument();
+            for (QueryDocumentSnapshot document : snapshots) {
                 Map<String, Object> job = document.getData();
                 job.put("documentId", document.getId());
                 allJobs.add(job);
 
                 // Update counters
+                total++;
                 String status = (String) job.get("Status");
                 if ("Completed".equalsIgnoreCase(status)) {
                     completed++;
                 } else {
                     pending++;
                 }
-
-                // ✅ Check if reminder needed
-                String techName = getOrDefault(job, "AssignedTech");
-                String followUpDate = getOrDefault(job, "FollowUpDate");
-
-                if (shouldNotifyTechnician(followUpDate)) {
-                    if (techName.equalsIgnoreCase("user")) {
-                        sendWhatsAppReminder("mobile", job);
-                    } else if (techName.equalsIgnoreCase("user")) {
-                        sendWhatsAppReminder("mobile", job);
-                    }
-                }
             }
 
+            FrameMetricsTracker.markState(this, "rendering jobs");
             displayJobs(allJobs);
             updateStatistics(total, completed, pending);
         });
 
     }
 
-
-    private boolean shouldNotifyTechnician(String followUpDateStr) {
-        if (followUpDateStr == null || followUpDateStr.equalsIgnoreCase("N/A")) return false;
-
-        List<String> formats = Arrays.asList("dd/MM/yyyy HH:mm", "dd/MM/yy HH:mm", "dd/MM/yyyy", "dd/MM/yy");
-
-        for (String format : formats) {
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat(format, Locale.getDefault());
-                Date followUp = sdf.parse(followUpDateStr);
-                Date now = new Date();
-
-                long diffMillis = followUp.getTime() - now.getTime();
-                long hours = TimeUnit.MILLISECONDS.toHours(diffMillis);
-
-                return hours <= 24 && hours > 0; // Between now and 24h ahead
-
-            } catch (Exception ignored) {}
-        }
-        return false;
-    }
-
-    private void sendWhatsAppReminder(String phoneNumber, Map<String, Object> job) {
-        String customer = getOrDefault(job, "CustomerName");
-        String contact = getOrDefault(job, "CustomerContact");
-        String email = getOrDefault(job, "CustomerEmail");
-        String issue = getOrDefault(job, "IssueDetails");
-        String address = getOrDefault(job, "Address");
-        String followUp = getOrDefault(job, "FollowUpDate");
-
-        String message = "📢 Follow-Up Reminder\n\n" +
-                "🧑 Customer: " + customer + "\n" +
-                "📞 Contact: " + contact + "\n" +
-                "📧 Email: " + email + "\n" +
-                "🏠 Address: " + address + "\n" +
-                "📝 Issue: " + issue + "\n" +
-                "📅 Follow-Up: " + followUp + "\n\n" +
-                "⚠️ This visit is due in 24 hours.";
-
-        try {
-            String formatted = formatIrishMobile(phoneNumber);
-            String url = "https://wa.me/" + formatted + "?text=" + Uri.encode(message);
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            intent.setData(Uri.parse(url));
-            intent.setPackage("com.whatsapp");
-            startActivity(intent);
-        } catch (Exception e) {
-            Toast.makeText(this, "Could not launch WhatsApp", Toast.LENGTH_SHORT).show();
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (jobsListener != null) {
+            jobsListener.remove();
+            jobsListener = null;
         }
     }
 
 
 
     private void filterJobs(String query) {
+        FrameMetricsTracker.markState(this, "filtering");
         query = query.toLowerCase();
         List<Map<String, Object>> filteredJobs = new ArrayList<>();
 
@@ -286,39 +258,19 @@ public class ViewJobActivity extends AppCompatActivity {
         if (followUpDateStr.equalsIgnoreCase("N/A")) return Color.WHITE;
         if (followUpDateStr.trim().isEmpty()) return Color.RED;
 
-        followUpDateStr = followUpDateStr.trim();
-
-        List<String> acceptedFormats = Arrays.asList(
-                "dd/MM/yyyy HH:mm",
-                "dd/MM/yy HH:mm",
-                "dd/MM/yyyy",
-                "dd/MM/yy"
-        );
-
-        for (String format : acceptedFormats) {
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat(format, Locale.getDefault());
-                sdf.setLenient(false);
-
-                Date followUpDate = sdf.parse(followUpDateStr);
-                Date now = new Date();
-
-                long diffMillis = followUpDate.getTime() - now.getTime();
-                long diffHours = TimeUnit.MILLISECONDS.toHours(diffMillis);
-
-                Log.d("FollowUpCheck", "Parsed with format " + format + ": " + followUpDateStr + " → " + diffHours + "h");
-
-                if (followUpDate.before(now)) return Color.RED;
-                if (diffHours < 72) return Color.YELLOW;
+        Long followUpMillis = FollowUpDates.parseMillis(followUpDateStr);
+        if (followUpMillis == null) {
+            Log.e("FollowUpParse", "Failed to parse " + followUpDateStr);
+            return Color.RED; // default if all formats fail
+        }
 
-                return Color.WHITE;
+        long diffMillis = followUpMillis - System.currentTimeMillis();
+        long diffHours = TimeUnit.MILLISECONDS.toHours(diffMillis);
 
-            } catch (Exception e) {
-                Log.e("FollowUpParse", "Failed to parse " + followUpDateStr + " with format " + format);
-            }
-        }
+        if (diffMillis < 0) return Color.RED;
+        if (diffHours < 72) return Color.YELLOW;
 
-        return Color.RED; // default if all formats fail
+        return Color.WHITE;
     }
 
 
@@ -340,7 +292,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void showAcceptOrDeleteDialog(String documentId) {
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(documentSnapshot -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(documentSnapshot -> {
             if (documentSnapshot.exists() && Boolean.TRUE.equals(documentSnapshot.getBoolean("Accepted"))) {
                 showMapAndReportOptions(documentId); // Switch to Maps & Report after acceptance
                 return;
@@ -365,8 +317,7 @@ public class ViewJobActivity extends AppCompatActivity {
                 .setPositiveButton("Save", (dialog, which) -> {
                     String address = addressInput.getText().toString().trim();
                     if (!address.isEmpty()) {
-                        db.collection("JobWork").document(documentId)
-                                .update("Address", address, "Status", "Completed", "Accepted", true)
+                        db.update(db.collection("JobWork").document(documentId), "Address", address, "Status", "Completed", "Accepted", true)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Job Accepted & Marked as Completed", Toast.LENGTH_SHORT).show();
                                     loadAllJobs(); // Refresh to show Maps & Report instead of Accept/Delete
@@ -395,7 +346,7 @@ public class ViewJobActivity extends AppCompatActivity {
     }
 
     private void openMaps(String documentId) {
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(document -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(document -> {
             if (document.exists() && document.contains("Address")) {
                 String address = document.getString("Address");
                 if (address != null && !address.isEmpty()) {
@@ -411,9 +362,7 @@ public class ViewJobActivity extends AppCompatActivity {
     }
 
     private void createReport(String documentId) {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(document -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(document -> {
             if (document.exists()) {
                 // Retrieve Customer Name and Address from Firestore
                 String customerName = document.getString("CustomerName"); // Use CustomerName as CompanyName
@@ -442,7 +391,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void showJobOptions(String documentId) {
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(documentSnapshot -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(documentSnapshot -> {
             boolean initialSetupDone = documentSnapshot.contains("SetupDate");
             boolean paymentDone = documentSnapshot.contains("PaymentAmount") && documentSnapshot.getDouble("PaymentAmount") != null;
 
@@ -539,8 +488,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void saveFollowUpDate(String documentId, String dateTime) {
-        db.collection("JobWork").document(documentId)
-                .update("FollowUpDate", dateTime)
+        db.update(db.collection("JobWork").document(documentId), "FollowUpDate", dateTime)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Follow-up saved", Toast.LENGTH_SHORT).show();
                     loadAllJobs();
@@ -578,8 +526,7 @@ public class ViewJobActivity extends AppCompatActivity {
                     String priceGiven = priceInput.getText().toString().trim();
 
                     if (!newTech.isEmpty()) {
-                        db.collection("JobWork").document(documentId)
-                                .update("AssignedTech", newTech, "TechnicianMobile", newMobile)
+                        db.update(db.collection("JobWork").document(documentId), "AssignedTech", newTech, "TechnicianMobile", newMobile)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Technician Updated", Toast.LENGTH_SHORT).show();
                                     if (!newMobile.isEmpty() && !priceGiven.isEmpty()) {
@@ -596,7 +543,7 @@ public class ViewJobActivity extends AppCompatActivity {
     /**
      * Formats Irish mobile numbers to international format (+353).
      */
-    private String formatIrishMobile(String number) {
+    static String formatIrishMobile(String number) {
         if (number.startsWith("087") || number.startsWith("086") || number.startsWith("085") ||
                 number.startsWith("089") || number.startsWith("083") || number.startsWith("088")) {
             return "+353" + number.substring(1);
@@ -608,7 +555,7 @@ public class ViewJobActivity extends AppCompatActivity {
      * Opens WhatsApp with a pre-filled job message.
      */
     private void sendWhatsAppMessage(String mobile, String newTech, String price, String documentId) {
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(document -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(document -> {
             if (document.exists()) {
                 String customerName = document.getString("CustomerName");
                 String customerContact = document.getString("CustomerContact");
@@ -634,7 +581,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void showAddEmailDialog(String documentId) {
-        db.collection("JobWork").document(documentId).get().addOnSuccessListener(documentSnapshot -> {
+        db.get(db.collection("JobWork").document(documentId)).addOnSuccessListener(documentSnapshot -> {
             String currentEmail = documentSnapshot.contains("CustomerEmail") ? documentSnapshot.getString("CustomerEmail") : "";
 
             EditText emailInput = new EditText(this);
@@ -647,8 +594,7 @@ public class ViewJobActivity extends AppCompatActivity {
                     .setPositiveButton("Save", (dialog, which) -> {
                         String email = emailInput.getText().toString().trim();
                         if (!email.isEmpty()) {
-                            db.collection("JobWork").document(documentId)
-                                    .update("CustomerEmail", email)
+                            db.update(db.collection("JobWork").document(documentId), "CustomerEmail", email)
                                     .addOnSuccessListener(aVoid -> Toast.makeText(this, "Email Updated Successfully", Toast.LENGTH_SHORT).show())
                                     .addOnFailureListener(e -> Toast.makeText(this, "Failed to Update Email", Toast.LENGTH_SHORT).show());
                         }
@@ -670,8 +616,7 @@ public class ViewJobActivity extends AppCompatActivity {
                 .setPositiveButton("Save", (dialog, which) -> {
                     String userInput = input.getText().toString().trim();
                     if (isValidDateFormat(userInput)) {
-                        db.collection("JobWork").document(documentId)
-                                .update("SetupDate", userInput)
+                        db.update(db.collection("JobWork").document(documentId), "SetupDate", userInput)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Setup date saved", Toast.LENGTH_SHORT).show();
                                     loadAllJobs();
@@ -766,8 +711,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void savePaymentToDatabase(double price, String method, String documentId) {
-        db.collection("JobWork").document(documentId)
-                .update("PaymentAmount", price, "PaymentMethod", method)
+        db.update(db.collection("JobWork").document(documentId), "PaymentAmount", price, "PaymentMethod", method)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Payment Saved", Toast.LENGTH_SHORT).show();
                     loadAllJobs();
@@ -777,7 +721,7 @@ public class ViewJobActivity extends AppCompatActivity {
 
 
     private void deleteJob(String documentId) {
-        db.collection("JobWork").document(documentId).delete();
+        db.delete(db.collection("JobWork").document(documentId));
         loadAllJobs();
     }
 
@@ -13,7 +13,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.text.SimpleDateFormat;
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * ViewLeadsActivity.java
@@ -38,6 +39,7 @@ import java.util.Map;
  * - Allows marking invoices as paid with an automatic timestamp
  * - Supports editing materials cost and recalculating commission for jobs
  * - Enables lead deletion for admin users (user)
+ * - Keeps the local commission rollups current from Leads snapshot changes
  * - Provides an intuitive UI with click and long-press options for lead management
  *
  * Author: James Scott
@@ -51,9 +53,11 @@ public class ViewLeadsActivity extends AppCompatActivity {
     private Button backButton;
     private TextView totalLeads, paidLeads, unpaidLeads;
     private List<Map<String, Object>> allLeads = new ArrayList<>();
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
 
     private String userName; // Dynamically retrieved username
+    private ListenerRegistration leadsListener;
+    private boolean rollupsReconciled = false;
     private int total = 0, paid = 0, unpaid = 0;
 
     @Override
@@ -61,7 +65,7 @@ public class ViewLeadsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_view_leads);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
 
         // Get username from intent
         userName = getIntent().getStringExtra("USER_NAME");
@@ -101,6 +105,7 @@ public class ViewLeadsActivity extends AppCompatActivity {
     }
 
     private void filterLeads(String query) {
+        FrameMetricsTracker.markState(this, "filtering");
         query = query.toLowerCase(); // Convert query to lowercase for case-insensitive search
         leadsContainer.removeAllViews(); // Clear the current view
 
@@ -124,44 +129,73 @@ public class ViewLeadsActivity extends AppCompatActivity {
 
 
     private void loadAllLeads() {
-        // Clear existing data
-        allLeads.clear();
-        total = 0;
-        paid = 0;
-        unpaid = 0;
-
-        // Fetch leads from the global "Leads" collection
-        db.collection("Leads")
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            Map<String, Object> lead = document.getData();
-                            lead.put("documentId", document.getId());
-
-                            // Check if the current user can view the lead
-                            String addedBy = (String) lead.get("Added By");
-                            if (userName.equalsIgnoreCase("user") ||
-                                    (addedBy != null && addedBy.equalsIgnoreCase(userName))) {
-                                allLeads.add(lead);
-
-                                // Update counts
-                                total++;
-                                String invoiceStatus = (String) lead.get("Invoice Status");
-                                if ("Paid".equalsIgnoreCase(invoiceStatus)) {
-                                    paid++;
-                                } else {
-                                    unpaid++;
-                                }
-                            }
-                        }
-
-                        // Display the leads
-                        displayLeads(allLeads);
+        if (leadsListener != null) {
+            return; // The snapshot listener already keeps the list current
+        }
+        FrameMetricsTracker.setState(this, "loading leads");
+
+        // Listen to the global "Leads" collection so edits arrive as deltas
+        leadsListener = db.listen(db.collection("Leads"), (snapshots, error) -> {
+            if (error != null) {
+                FrameMetricsTracker.clearState(this);
+                Toast.makeText(this, "Failed to load leads: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (snapshots == null) {
+                return;
+            }
+
+            // Fold only the changed leads into the local commission rollups
+            Set<String> liveDocumentIds = null;
+            if (!rollupsReconciled && !snapshots.getMetadata().isFromCache()) {
+                liveDocumentIds = SnapshotDocuments.documentIds(snapshots);
+                rollupsReconciled = true;
+            }
+            CommissionRollupDatabase.getInstance(this)
+                    .applyLeadChangesAsync(snapshots.getDocumentChanges(), liveDocumentIds, null);
+            LocalSearchIndex.getInstance(this)
+                    .applyChangesAsync(LocalSearchIndex.TYPE_LEAD, snapshots.getDocumentChanges(), liveDocumentIds);
+
+            // Clear existing data
+            allLeads.clear();
+            total = 0;
+            paid = 0;
+            unpaid = 0;
+
+            for (QueryDocumentSnapshot document : snapshots) {
+                Map<String, Object> lead = document.getData();
+                lead.put("documentId", document.getId());
+
+                // Check if the current user can view the lead
+                String addedBy = (String) lead.get("Added By");
+                if (userName.equalsIgnoreCase("user") ||
+                        (addedBy != null && addedBy.equalsIgnoreCase(userName))) {
+                    allLeads.add(lead);
+
+                    // Update counts
+                    total++;
+                    String invoiceStatus = (String) lead.get("Invoice Status");
+                    if ("Paid".equalsIgnoreCase(invoiceStatus)) {
+                        paid++;
                     } else {
-                        Toast.makeText(this, "Failed to load leads: " + task.getException().getMessage(), Toast.LENGTH_SHORT).show();
+                        unpaid++;
                     }
-                });
+                }
+            }
+
+            // Display the leads
+            FrameMetricsTracker.markState(this, "rendering leads");
+            displayLeads(allLeads);
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (leadsListener != null) {
+            leadsListener.remove();
+            leadsListener = null;
+        }
     }
 
     private void displayLeads(List<Map<String, Object>> leadsList) {
@@ -263,10 +297,9 @@ public class ViewLeadsActivity extends AppCompatActivity {
                         .setMessage("Are you sure you want to delete this lead?")
                         .setPositiveButton("Yes", (dialog, which) -> {
                             DocumentReference docRef = db.collection("Leads").document(documentId);
-                            docRef.delete()
+                            db.delete(docRef)
                                     .addOnSuccessListener(aVoid -> {
                                         Toast.makeText(this, "Lead deleted successfully!", Toast.LENGTH_SHORT).show();
-                                        loadAllLeads(); // Reload leads after deletion
                                     })
                                     .addOnFailureListener(e -> Toast.makeText(this, "Failed to delete lead: " + e.getMessage(), Toast.LENGTH_SHORT).show());
                         })
@@ -282,11 +315,10 @@ public class ViewLeadsActivity extends AppCompatActivity {
 
     private void markAsPaid(String documentId) {
         String currentDate = new SimpleDateFormat("dd-MM-yyyy", Locale.getDefault()).format(new Date());
-        db.collection("Leads").document(documentId)
-                .update("Invoice Status", "Paid", "Payment Date", currentDate)
+        db.update(db.collection("Leads").document(documentId),
+                        "Invoice Status", "Paid", "Payment Date", currentDate)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Invoice marked as paid!", Toast.LENGTH_SHORT).show();
-                    loadAllLeads(); // Reload leads to reflect changes
                 })
                 .addOnFailureListener(e -> Toast.makeText(this, "Failed to update invoice: " + e.getMessage(), Toast.LENGTH_SHORT).show());
     }
@@ -318,18 +350,16 @@ public class ViewLeadsActivity extends AppCompatActivity {
 
             double materialsCost = Double.parseDouble(materialsCostStr);
             double priceQuoted = (double) lead.get("Price Quoted");
-            double newCommission = (priceQuoted - materialsCost) * 0.10;
-            if (newCommission < 0) newCommission = 0; // Prevent negative commission
+            double newCommission = CommissionCalculator.forJob(priceQuoted, materialsCost); // Never negative
 
             // Update Firestore
             Map<String, Object> updates = new HashMap<>();
             updates.put("Materials Cost", materialsCost);
             updates.put("Commission", newCommission);
 
-            db.collection("Leads").document(documentId).update(updates)
+            db.update(db.collection("Leads").document(documentId), updates)
                     .addOnSuccessListener(aVoid -> {
                         Toast.makeText(this, "Materials cost updated successfully!", Toast.LENGTH_SHORT).show();
-                        loadAllLeads(); // Reload leads
                     })
                     .addOnFailureListener(e -> Toast.makeText(this, "Failed to update materials cost: " + e.getMessage(), Toast.LENGTH_SHORT).show());
         });
@@ -51,8 +51,9 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
     private Button backButton;
     private TextView totalJobs, completedJobs, pendingJobs;
     private List<Map<String, Object>> allJobs = new ArrayList<>();
-    private FirebaseFirestore db;
+    private MeteredFirebase db;
     private String userName;
+    private boolean searchIndexReconciled = false;
     private int total = 0, completed = 0, pending = 0;
 
     @SuppressLint("MissingInflatedId")
@@ -61,7 +62,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_view_managment_jobs);
 
-        db = FirebaseFirestore.getInstance();
+        db = MeteredFirebase.forScreen(this);
         userName = getIntent().getStringExtra("USER_NAME");
 
         if (userName == null || userName.isEmpty()) {
@@ -100,13 +101,27 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
     }
 
     private void loadAllJobs() {
-        db.collection("ManagmentJobs").addSnapshotListener((snapshots, error) -> {
+        FrameMetricsTracker.setState(this, "loading jobs");
+        db.listen(db.collection("ManagmentJobs"), (snapshots, error) -> {
             if (error != null) {
+                FrameMetricsTracker.clearState(this);
                 Toast.makeText(this, "Error loading jobs: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                 return;
             }
 
+            // Keep the global search index current with just the changed jobs
+            if (snapshots != null) {
+                Set<String> liveDocumentIds = null;
+                if (!searchIndexReconciled && !snapshots.getMetadata().isFromCache()) {
+                    liveDocumentIds = SnapshotDocuments.documentIds(snapshots);
+                    searchIndexReconciled = true;
+                }
+                LocalSearchIndex.getInstance(this)
+                        .applyChangesAsync(LocalSearchIndex.TYPE_MANAGEMENT_JOB, snapshots.getDocumentChanges(), liveDocumentIds);
+            }
+
             if (snapshots == null || snapshots.isEmpty()) {
+                FrameMetricsTracker.clearState(this);
                 Toast.makeText(this, "No jobs found.", Toast.LENGTH_SHORT).show();
                 return;
             }
@@ -130,6 +145,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
             }
 
+            FrameMetricsTracker.markState(this, "rendering jobs");
             displayJobs(allJobs);
             updateStatistics(total, completed, pending);
         });
@@ -139,6 +155,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
     private void filterJobs(String query) {
+        FrameMetricsTracker.markState(this, "filtering");
         query = query.toLowerCase();
         List<Map<String, Object>> filteredJobs = new ArrayList<>();
 
@@ -279,7 +296,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
     private void showAcceptOrDeleteDialog(String documentId) {
-        db.collection("ManagmentJobs").document(documentId).get().addOnSuccessListener(documentSnapshot -> {
+        db.get(db.collection("ManagmentJobs").document(documentId)).addOnSuccessListener(documentSnapshot -> {
             if (documentSnapshot.exists() && Boolean.TRUE.equals(documentSnapshot.getBoolean("Accepted"))) {
                 showMapAndReportOptions(documentId); // Switch to Maps & Report after acceptance
                 return;
@@ -304,8 +321,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
                 .setPositiveButton("Save", (dialog, which) -> {
                     String address = addressInput.getText().toString().trim();
                     if (!address.isEmpty()) {
-                        db.collection("ManagmentJobs").document(documentId)
-                                .update("Address", address, "Status", "Completed", "Accepted", true)
+                        db.update(db.collection("ManagmentJobs").document(documentId), "Address", address, "Status", "Completed", "Accepted", true)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Job Accepted & Marked as Completed", Toast.LENGTH_SHORT).show();
                                     loadAllJobs(); // Refresh to show Maps & Report instead of Accept/Delete
@@ -334,7 +350,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
     }
 
     private void openMaps(String documentId) {
-        db.collection("ManagmentJobs").document(documentId).get().addOnSuccessListener(document -> {
+        db.get(db.collection("ManagmentJobs").document(documentId)).addOnSuccessListener(document -> {
             if (document.exists() && document.contains("Address")) {
                 String address = document.getString("Address");
                 if (address != null && !address.isEmpty()) {
@@ -350,9 +366,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
     }
 
     private void createReport(String documentId) {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-
-        db.collection("ManagmentJobs").document(documentId).get().addOnSuccessListener(document -> {
+        db.get(db.collection("ManagmentJobs").document(documentId)).addOnSuccessListener(document -> {
             if (document.exists()) {
                 // Retrieve Customer Name and Address from Firestore
                 String customerName = document.getString("CustomerName"); // Use CustomerName as CompanyName
@@ -381,7 +395,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
     private void showJobOptions(String documentId) {
-        db.collection("ManagmentJobs").document(documentId).get().addOnSuccessListener(documentSnapshot -> {
+        db.get(db.collection("ManagmentJobs").document(documentId)).addOnSuccessListener(documentSnapshot -> {
             boolean initialSetupDone = documentSnapshot.contains("SetupDate");
 
 
@@ -473,8 +487,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
     private void saveFollowUpDate(String documentId, String dateTime) {
-        db.collection("ManagmentJobs").document(documentId)
-                .update("FollowUpDate", dateTime)
+        db.update(db.collection("ManagmentJobs").document(documentId), "FollowUpDate", dateTime)
                 .addOnSuccessListener(aVoid -> {
                     Toast.makeText(this, "Follow-up saved", Toast.LENGTH_SHORT).show();
                     loadAllJobs();
@@ -504,8 +517,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
                     if (!newTech.isEmpty()) {
-                        db.collection("ManagmentJobs").document(documentId)
-                                .update("AssignedTech", newTech, "TechnicianMobile", newMobile)
+                        db.update(db.collection("ManagmentJobs").document(documentId), "AssignedTech", newTech, "TechnicianMobile", newMobile)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Technician Updated", Toast.LENGTH_SHORT).show();
 
@@ -538,8 +550,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
                 .setPositiveButton("Save", (dialog, which) -> {
                     String userInput = input.getText().toString().trim();
                     if (isValidDateFormat(userInput)) {
-                        db.collection("ManagmentJobs").document(documentId)
-                                .update("SetupDate", userInput)
+                        db.update(db.collection("ManagmentJobs").document(documentId), "SetupDate", userInput)
                                 .addOnSuccessListener(aVoid -> {
                                     Toast.makeText(this, "Setup date saved", Toast.LENGTH_SHORT).show();
                                     loadAllJobs();
@@ -573,7 +584,7 @@ public class ViewManagmentJobActivity extends AppCompatActivity {
 
 
     private void deleteJob(String documentId) {
-        db.collection("ManagmentJobs").document(documentId).delete();
+        db.delete(db.collection("ManagmentJobs").document(documentId));
         loadAllJobs();
     }
 
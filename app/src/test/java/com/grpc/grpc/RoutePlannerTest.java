@@ -0,0 +1,98 @@
+package com.grpc.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks RoutePlanner on random stops: it must finish well within a second for a large day, and
+ * the route it returns must visit every stop once and be no longer than the nearest-neighbour route.
+ */
+public class RoutePlannerTest {
+
+    private static final int STOPS = 300;
+    private static final long MAX_PLAN_MS = 1000;
+
+    @Test
+    public void plansThreeHundredStopsWellUnderASecond() {
+        // One untimed run so the JIT has compiled the planner before it is timed
+        RoutePlanner.plan(randomStops(STOPS, 1), -1, RoutePlanner.DEFAULT_IMPROVE_BUDGET_MS);
+
+        double[][] distances = randomStops(STOPS, 2);
+        long startedAt = System.nanoTime();
+        RoutePlanner.Plan plan = RoutePlanner.plan(distances, -1, RoutePlanner.DEFAULT_IMPROVE_BUDGET_MS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertTrue("Planning took " + elapsedMs + " ms", elapsedMs < MAX_PLAN_MS);
+        assertPermutation(plan.order, 0, STOPS);
+        assertTrue(plan.distanceKm <= plan.nearestNeighbourKm + 1e-9);
+        assertEquals(routeKm(distances, -1, plan.order), plan.distanceKm, 1e-6);
+    }
+
+    @Test
+    public void freeStartVisitsEveryStopOnce() {
+        for (long seed = 10; seed < 20; seed++) {
+            double[][] distances = randomStops(40, seed);
+            RoutePlanner.Plan plan = RoutePlanner.plan(distances, -1, RoutePlanner.DEFAULT_IMPROVE_BUDGET_MS);
+
+            assertPermutation(plan.order, 0, distances.length);
+            assertTrue(plan.distanceKm <= plan.nearestNeighbourKm + 1e-9);
+            assertEquals(routeKm(distances, -1, plan.order), plan.distanceKm, 1e-6);
+        }
+    }
+
+    @Test
+    public void fixedStartIsLeftOutOfTheOrder() {
+        double[][] distances = randomStops(60, 3);
+        RoutePlanner.Plan plan = RoutePlanner.plan(distances, 0, RoutePlanner.DEFAULT_IMPROVE_BUDGET_MS);
+
+        assertPermutation(plan.order, 1, distances.length);
+        assertTrue(plan.distanceKm <= plan.nearestNeighbourKm + 1e-9);
+        assertEquals(routeKm(distances, 0, plan.order), plan.distanceKm, 1e-6);
+    }
+
+    /**
+     * Distance matrix for stops spread over about 50 km, like RoutePlanner.benchmark uses.
+     */
+    private static double[][] randomStops(int stops, long seed) {
+        Random random = new Random(seed);
+        double[] latitudes = new double[stops];
+        double[] longitudes = new double[stops];
+        for (int i = 0; i < stops; i++) {
+            latitudes[i] = 53.0 + random.nextDouble() * 0.45;
+            longitudes[i] = -7.0 + random.nextDouble() * 0.75;
+        }
+        return RoutePlanner.distanceMatrix(latitudes, longitudes);
+    }
+
+    /**
+     * Asserts order holds every index from first (inclusive) to end (exclusive) exactly once.
+     */
+    private static void assertPermutation(int[] order, int first, int end) {
+        assertEquals(end - first, order.length);
+        boolean[] seen = new boolean[end];
+        for (int stop : order) {
+            assertTrue("Stop " + stop + " is out of range", stop >= first && stop < end);
+            assertFalse("Stop " + stop + " is visited twice", seen[stop]);
+            seen[stop] = true;
+        }
+    }
+
+    /**
+     * Length of an open route through order, starting from start (or from the first stop if -1).
+     */
+    private static double routeKm(double[][] distances, int start, int[] order) {
+        double km = 0;
+        int from = start >= 0 ? start : order[0];
+        for (int stop : order) {
+            km += distances[from][stop];
+            from = stop;
+        }
+        return km;
+    }
+}
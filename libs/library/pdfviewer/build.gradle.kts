@@ -0,0 +1,26 @@
+plugins {
+    id("com.android.library")
+}
+
+android {
+    namespace = "com.grpc.pdfviewer"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 27
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_17
+        targetCompatibility = JavaVersion.VERSION_17
+    }
+    buildToolsVersion = "34.0.0"
+}
+
+dependencies {
+
+    implementation(libs.androidx.appcompat)
+
+    // recyclerview
+    implementation("androidx.recyclerview:recyclerview:1.2.1")
+}
@@ -0,0 +1,109 @@
+package com.grpc.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * BitmapPool.java
+ *
+ * This class keeps bitmaps that are no longer on screen so the next page or tile of the same size
+ * can be drawn into them, instead of allocating (and later garbage collecting) a new multi-megabyte
+ * bitmap every time a page scrolls into view. The pool is bounded in bytes; the bitmaps released
+ * longest ago are recycled first when it is full.
+ *
+ * Features:
+ * - Bitmaps are grouped by exact width and height
+ * - Byte-bounded, oldest released bitmaps are recycled first
+ * - Reused bitmaps are cleared to white, ready for PdfRenderer
+ * - Safe to use from the render thread and the UI thread
+ *
+ * Author: James Scott
+ */
+
+public class BitmapPool {
+
+    private final long maxBytes;
+    private long pooledBytes;
+
+    private final Map<Long, Deque<Bitmap>> bySize = new HashMap<>();
+    // Release order across all sizes, oldest first
+    private final LinkedList<Bitmap> releaseOrder = new LinkedList<>();
+
+    /**
+     * @param maxBytes Upper bound on the bytes held by bitmaps waiting in the pool.
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a white ARGB_8888 bitmap of the given size, reused from the pool when possible.
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        Deque<Bitmap> bitmaps = bySize.get(key(width, height));
+        Bitmap bitmap = bitmaps != null ? bitmaps.pollLast() : null;
+        if (bitmap != null) {
+            releaseOrder.remove(bitmap);
+            pooledBytes -= bitmap.getAllocationByteCount();
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.eraseColor(Color.WHITE);
+        return bitmap;
+    }
+
+    /**
+     * Hands a bitmap back to the pool. The caller must not draw or display it afterwards.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        long bytes = bitmap.getAllocationByteCount();
+        if (bytes > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        bySize.computeIfAbsent(key(bitmap.getWidth(), bitmap.getHeight()), k -> new ArrayDeque<>()).addLast(bitmap);
+        releaseOrder.addLast(bitmap);
+        pooledBytes += bytes;
+        trimTo(maxBytes);
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    private void trimTo(long limit) {
+        Iterator<Bitmap> oldest = releaseOrder.iterator();
+        while (pooledBytes > limit && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+            Deque<Bitmap> bitmaps = bySize.get(key(bitmap.getWidth(), bitmap.getHeight()));
+            if (bitmaps != null) {
+                bitmaps.remove(bitmap);
+            }
+            pooledBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+        }
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
@@ -0,0 +1,294 @@
+package com.grpc.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PdfPageRenderer.java
+ *
+ * This class renders PDF pages and page tiles with the platform PdfRenderer on one background
+ * thread (PdfRenderer can only have one page open at a time). Screens queue requests; the thread
+ * always renders the request closest to the page being looked at, so page 1 of a freshly opened
+ * document comes first and pages scrolled past are skipped once their request is cancelled.
+ *
+ * Features:
+ * - Opens the document and reads every page size off the UI thread
+ * - Whole-page renders at a given width and tile renders at any zoom
+ * - Requests nearest the focus page are rendered first; cancelled ones are never rendered
+ * - Bitmaps come from a shared BitmapPool and are returned to it if nobody wants them
+ * - Delivers results on the UI thread
+ *
+ * Author: James Scott
+ */
+
+public class PdfPageRenderer {
+
+    private static final String TAG = "PdfPageRenderer";
+
+    /**
+     * Receives the outcome of opening the document, on the UI thread.
+     */
+    public interface OpenListener {
+        void onOpened(PdfPageRenderer renderer);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Receives a rendered bitmap on the UI thread. The receiver owns the bitmap and should hand it
+     * back to the BitmapPool when it stops drawing it.
+     */
+    public interface RenderCallback {
+        void onRendered(Bitmap bitmap);
+    }
+
+    private final File file;
+    private final BitmapPool bitmapPool;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by "pending"
+    private final List<RenderRequest> pending = new ArrayList<>();
+    private int focusPage;
+    private boolean closed;
+
+    // Written once by the render thread before onOpened, read-only afterwards
+    private volatile int[] pageWidths = new int[0];
+    private volatile int[] pageHeights = new int[0];
+
+    private PdfPageRenderer(File file, BitmapPool bitmapPool) {
+        this.file = file;
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Opens a PDF on a new render thread and reports back once the page sizes are known.
+     */
+    public static PdfPageRenderer open(File file, BitmapPool bitmapPool, OpenListener listener) {
+        PdfPageRenderer renderer = new PdfPageRenderer(file, bitmapPool);
+        Thread thread = new Thread(() -> renderer.run(listener), "PdfPageRenderer");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+        return renderer;
+    }
+
+    public int getPageCount() {
+        return pageWidths.length;
+    }
+
+    /**
+     * Page width in PDF points (1/72 inch).
+     */
+    public int getPageWidth(int page) {
+        return pageWidths[page];
+    }
+
+    /**
+     * Page height in PDF points (1/72 inch).
+     */
+    public int getPageHeight(int page) {
+        return pageHeights[page];
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Tells the renderer which page the user is looking at, so nearby requests go first.
+     */
+    public void setFocusPage(int page) {
+        synchronized (pending) {
+            focusPage = page;
+        }
+    }
+
+    /**
+     * Renders a whole page scaled to the given bitmap width.
+     */
+    public RenderRequest renderPage(int page, int width, RenderCallback callback) {
+        float scale = width / (float) pageWidths[page];
+        int height = Math.max(1, Math.round(pageHeights[page] * scale));
+        Matrix transform = new Matrix();
+        transform.setScale(scale, scale);
+        return enqueue(new RenderRequest(page, width, height, transform, false, callback));
+    }
+
+    /**
+     * Renders one tile of a page drawn at the given scale (pixels per PDF point).
+     *
+     * @param tile The tile's bounds in pixels of the scaled page.
+     */
+    public RenderRequest renderTile(int page, float scale, Rect tile, RenderCallback callback) {
+        Matrix transform = new Matrix();
+        transform.setScale(scale, scale);
+        transform.postTranslate(-tile.left, -tile.top);
+        return enqueue(new RenderRequest(page, tile.width(), tile.height(), transform, true, callback));
+    }
+
+    /**
+     * Stops the render thread and closes the document. Pending requests are dropped.
+     */
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+            pending.clear();
+            pending.notifyAll();
+        }
+    }
+
+    private RenderRequest enqueue(RenderRequest request) {
+        synchronized (pending) {
+            if (!closed) {
+                pending.add(request);
+                pending.notifyAll();
+            }
+        }
+        return request;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Render thread
+    // ---------------------------------------------------------------------------------------
+
+    private void run(OpenListener listener) {
+        ParcelFileDescriptor descriptor = null;
+        PdfRenderer renderer = null;
+        PdfRenderer.Page openPage = null;
+        try {
+            descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            renderer = new PdfRenderer(descriptor);
+
+            // Opening a page without rendering it is cheap; all sizes are needed to lay the document out
+            int count = renderer.getPageCount();
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            for (int i = 0; i < count; i++) {
+                try (PdfRenderer.Page page = renderer.openPage(i)) {
+                    widths[i] = page.getWidth();
+                    heights[i] = page.getHeight();
+                }
+            }
+            pageWidths = widths;
+            pageHeights = heights;
+            mainHandler.post(() -> listener.onOpened(this));
+
+            RenderRequest request;
+            while ((request = take()) != null) {
+                if (openPage == null || openPage.getIndex() != request.page) {
+                    if (openPage != null) {
+                        openPage.close();
+                    }
+                    openPage = renderer.openPage(request.page);
+                }
+                Bitmap bitmap = bitmapPool.acquire(request.width, request.height);
+                openPage.render(bitmap, null, request.transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                deliver(request, bitmap);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not render " + file, e);
+            mainHandler.post(() -> listener.onError(e));
+        } finally {
+            if (openPage != null) {
+                openPage.close();
+            }
+            if (renderer != null) {
+                renderer.close();
+            }
+            if (descriptor != null) {
+                try {
+                    descriptor.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the next request, choosing the one nearest the focus page (whole pages before
+     * tiles at the same distance). Returns null once the renderer is closed.
+     */
+    private RenderRequest take() throws IOException {
+        synchronized (pending) {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                pending.removeIf(RenderRequest::isCancelled);
+                if (!pending.isEmpty()) {
+                    RenderRequest best = null;
+                    int bestPriority = Integer.MAX_VALUE;
+                    for (RenderRequest request : pending) {
+                        int priority = Math.abs(request.page - focusPage) * 2 + (request.tile ? 1 : 0);
+                        if (priority < bestPriority) {
+                            best = request;
+                            bestPriority = priority;
+                        }
+                    }
+                    pending.remove(best);
+                    return best;
+                }
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Render thread interrupted", e);
+                }
+            }
+        }
+    }
+
+    private void deliver(RenderRequest request, Bitmap bitmap) {
+        mainHandler.post(() -> {
+            boolean stillWanted;
+            synchronized (pending) {
+                stillWanted = !closed && !request.isCancelled();
+            }
+            if (stillWanted) {
+                request.callback.onRendered(bitmap);
+            } else {
+                bitmapPool.release(bitmap);
+            }
+        });
+    }
+
+    /**
+     * A queued page or tile render. Cancel it when the result is no longer needed.
+     */
+    public static final class RenderRequest {
+        final int page;
+        final int width;
+        final int height;
+        final Matrix transform;
+        final boolean tile;
+        final RenderCallback callback;
+        private volatile boolean cancelled;
+
+        RenderRequest(int page, int width, int height, Matrix transform, boolean tile, RenderCallback callback) {
+            this.page = page;
+            this.width = width;
+            this.height = height;
+            this.transform = transform;
+            this.tile = tile;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.grpc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * PdfPageView.java
+ *
+ * This view shows one PDF page. The whole page is rendered once at the viewer's normal width (the
+ * base bitmap). When the page is zoomed, the base bitmap is stretched straight away and the visible
+ * part of the page is then re-rendered at full resolution in square tiles, so a zoomed page is sharp
+ * without ever rendering the whole page at the zoomed size. Bitmaps are handed back to the pool as
+ * soon as the page leaves the window or tiles scroll out of view.
+ *
+ * Features:
+ * - Lazy: nothing is rendered until the page is attached to the window
+ * - Sized from the page's aspect ratio before it is rendered
+ * - Full-resolution tiles for the visible area only when zoomed
+ * - Every bitmap comes from and goes back to the BitmapPool
+ *
+ * Author: James Scott
+ */
+
+public class PdfPageView extends View {
+
+    static final int TILE_SIZE = 512;
+
+    // Tiles are only rendered once the page is drawn this much larger than its base bitmap
+    private static final float TILE_THRESHOLD = 1.25f;
+
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint placeholderPaint = new Paint();
+    private final Rect pageBounds = new Rect();
+    private final Rect visible = new Rect();
+
+    private PdfPageRenderer renderer;
+    private int page = -1;
+    private int baseWidth;
+
+    private Bitmap baseBitmap;
+    private PdfPageRenderer.RenderRequest baseRequest;
+
+    // Keyed by column and row at the current tile scale
+    private final Map<Long, Tile> tiles = new HashMap<>();
+    private float tileScale;
+
+    public PdfPageView(Context context) {
+        super(context);
+        placeholderPaint.setColor(Color.WHITE);
+    }
+
+    /**
+     * Shows a page of the document. The base bitmap is rendered at baseWidth pixels wide.
+     */
+    public void bind(PdfPageRenderer renderer, int page, int baseWidth) {
+        if (this.renderer == renderer && this.page == page && this.baseWidth == baseWidth) {
+            return;
+        }
+        unbind();
+        this.renderer = renderer;
+        this.page = page;
+        this.baseWidth = baseWidth;
+        requestLayout();
+        if (isAttachedToWindow()) {
+            requestBase();
+        }
+        invalidate();
+    }
+
+    /**
+     * Cancels outstanding renders and returns every bitmap to the pool.
+     */
+    public void unbind() {
+        releaseBitmaps();
+        renderer = null;
+        page = -1;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Called by the viewer when it scrolls, so the tiles can follow the visible area.
+     */
+    void onViewportChanged() {
+        if (isZoomed()) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = width;
+        if (renderer != null && page >= 0) {
+            height = Math.round(width * renderer.getPageHeight(page) / (float) renderer.getPageWidth(page));
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        requestBase();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Only visible and adjacent pages are attached; everything else gives its memory back
+        releaseBitmaps();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        pageBounds.set(0, 0, getWidth(), getHeight());
+        if (baseBitmap != null) {
+            canvas.drawBitmap(baseBitmap, null, pageBounds, bitmapPaint);
+        } else {
+            canvas.drawRect(pageBounds, placeholderPaint);
+        }
+        drawTiles(canvas);
+    }
+
+    private boolean isZoomed() {
+        return renderer != null && getWidth() >= baseWidth * TILE_THRESHOLD;
+    }
+
+    private void requestBase() {
+        if (renderer == null || baseBitmap != null || baseRequest != null) {
+            return;
+        }
+        baseRequest = renderer.renderPage(page, baseWidth, bitmap -> {
+            baseRequest = null;
+            baseBitmap = bitmap;
+            invalidate();
+        });
+    }
+
+    /**
+     * Draws the tiles that cover the visible part of the page, requesting missing ones and
+     * releasing the ones that scrolled away.
+     */
+    private void drawTiles(Canvas canvas) {
+        if (!isZoomed() || !getLocalVisibleRect(visible)) {
+            releaseTiles();
+            return;
+        }
+
+        float scale = getWidth() / (float) renderer.getPageWidth(page);
+        if (scale != tileScale) {
+            releaseTiles();
+            tileScale = scale;
+        }
+
+        int firstColumn = Math.max(0, visible.left / TILE_SIZE);
+        int lastColumn = Math.min((getWidth() - 1) / TILE_SIZE, visible.right / TILE_SIZE);
+        int firstRow = Math.max(0, visible.top / TILE_SIZE);
+        int lastRow = Math.min((getHeight() - 1) / TILE_SIZE, visible.bottom / TILE_SIZE);
+
+        // Drop tiles that are no longer visible
+        Iterator<Map.Entry<Long, Tile>> iterator = tiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Tile tile = iterator.next().getValue();
+            if (tile.column < firstColumn || tile.column > lastColumn || tile.row < firstRow || tile.row > lastRow) {
+                tile.release(renderer.getBitmapPool());
+                iterator.remove();
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = ((long) column << 32) | row;
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    tile = requestTile(column, row, scale);
+                    tiles.put(key, tile);
+                }
+                if (tile.bitmap != null) {
+                    canvas.drawBitmap(tile.bitmap, tile.bounds.left, tile.bounds.top, null);
+                }
+            }
+        }
+    }
+
+    private Tile requestTile(int column, int row, float scale) {
+        Rect bounds = new Rect(column * TILE_SIZE, row * TILE_SIZE,
+                Math.min((column + 1) * TILE_SIZE, getWidth()),
+                Math.min((row + 1) * TILE_SIZE, getHeight()));
+        Tile tile = new Tile(column, row, bounds);
+        tile.request = renderer.renderTile(page, scale, bounds, bitmap -> {
+            tile.request = null;
+            tile.bitmap = bitmap;
+            invalidate(bounds);
+        });
+        return tile;
+    }
+
+    private void releaseTiles() {
+        if (renderer != null) {
+            for (Tile tile : tiles.values()) {
+                tile.release(renderer.getBitmapPool());
+            }
+        }
+        tiles.clear();
+    }
+
+    private void releaseBitmaps() {
+        releaseTiles();
+        if (baseRequest != null) {
+            baseRequest.cancel();
+            baseRequest = null;
+        }
+        if (baseBitmap != null && renderer != null) {
+            renderer.getBitmapPool().release(baseBitmap);
+        }
+        baseBitmap = null;
+    }
+
+    /**
+     * One square of a zoomed page.
+     */
+    private static class Tile {
+        final int column;
+        final int row;
+        final Rect bounds;
+        PdfPageRenderer.RenderRequest request;
+        Bitmap bitmap;
+
+        Tile(int column, int row, Rect bounds) {
+            this.column = column;
+            this.row = row;
+            this.bounds = bounds;
+        }
+
+        void release(BitmapPool pool) {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+            if (bitmap != null) {
+                pool.release(bitmap);
+                bitmap = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.grpc.pdfviewer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+
+/**
+ * PdfViewerActivity.java
+ *
+ * This activity shows a PDF stored on the device inside the app, using PdfViewerView, instead of
+ * handing the file to an external viewer app.
+ *
+ * Features:
+ * - Opens any local PDF passed by path
+ * - Shows the file name and the current page ("3 / 60")
+ * - Pinch or double-tap to zoom
+ *
+ * Author: James Scott
+ */
+
+public class PdfViewerActivity extends AppCompatActivity {
+
+    public static final String EXTRA_FILE_PATH = "com.grpc.pdfviewer.FILE_PATH";
+    public static final String EXTRA_TITLE = "com.grpc.pdfviewer.TITLE";
+
+    private PdfViewerView pdfViewer;
+    private TextView pageIndicator;
+    private int pageCount;
+
+    /**
+     * Opens a local PDF in the viewer.
+     */
+    public static void start(Context context, File file) {
+        Intent intent = new Intent(context, PdfViewerActivity.class);
+        intent.putExtra(EXTRA_FILE_PATH, file.getAbsolutePath());
+        intent.putExtra(EXTRA_TITLE, file.getName());
+        context.startActivity(intent);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.pdfviewer_activity);
+
+        String filePath = getIntent().getStringExtra(EXTRA_FILE_PATH);
+        if (filePath == null || !new File(filePath).exists()) {
+            Toast.makeText(this, "PDF not found.", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        TextView title = findViewById(R.id.pdfviewerTitle);
+        String titleText = getIntent().getStringExtra(EXTRA_TITLE);
+        title.setText(titleText != null ? titleText : new File(filePath).getName());
+
+        pageIndicator = findViewById(R.id.pdfviewerPageIndicator);
+        Button closeButton = findViewById(R.id.pdfviewerCloseButton);
+        closeButton.setOnClickListener(view -> finish());
+
+        pdfViewer = findViewById(R.id.pdfviewerPages);
+        pdfViewer.setListener(new PdfViewerView.Listener() {
+            @Override
+            public void onDocumentLoaded(int count) {
+                pageCount = count;
+                showPage(0);
+            }
+
+            @Override
+            public void onPageChanged(int page) {
+                showPage(page);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(PdfViewerActivity.this, "Could not open PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                finish();
+            }
+        });
+        pdfViewer.open(new File(filePath));
+    }
+
+    private void showPage(int page) {
+        pageIndicator.setText((page + 1) + " / " + pageCount);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (pdfViewer != null) {
+            pdfViewer.close();
+        }
+    }
+}
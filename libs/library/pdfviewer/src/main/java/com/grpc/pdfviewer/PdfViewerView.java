@@ -0,0 +1,348 @@
+package com.grpc.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.HorizontalScrollView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+
+/**
+ * PdfViewerView.java
+ *
+ * This view shows a whole PDF document as a vertical list of pages. Pages are laid out from their
+ * sizes straight away but only rendered once they come close to the screen, so the first page of a
+ * long report appears immediately and memory stays bounded by the pages on screen plus their
+ * neighbours. Pinch or double-tap to zoom; zoomed pages sharpen with full-resolution tiles.
+ *
+ * Features:
+ * - Lazy page rendering on a background thread (PdfPageRenderer)
+ * - Only visible and adjacent pages hold bitmaps; bitmaps are reused through a BitmapPool
+ * - Pinch zoom with a live preview, double-tap to toggle 2x zoom
+ * - Reports the page at the centre of the screen while scrolling
+ *
+ * Author: James Scott
+ */
+
+public class PdfViewerView extends FrameLayout {
+
+    static final float MIN_ZOOM = 1f;
+    static final float MAX_ZOOM = 4f;
+    private static final float DOUBLE_TAP_ZOOM = 2f;
+
+    // Base page bitmaps are never rendered wider than this, however wide the screen
+    private static final int MAX_BASE_WIDTH = 1440;
+    private static final int PAGE_GAP_DP = 8;
+
+    /**
+     * Receives document and scroll events on the UI thread.
+     */
+    public interface Listener {
+        void onDocumentLoaded(int pageCount);
+
+        void onPageChanged(int page);
+
+        void onError(Exception e);
+    }
+
+    private final HorizontalScrollView horizontalScroll;
+    private final RecyclerView pageList;
+    private final LinearLayoutManager layoutManager;
+    private final BitmapPool bitmapPool;
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final int pageGap;
+
+    private PdfPageRenderer renderer;
+    private Listener listener;
+    private float zoom = MIN_ZOOM;
+    private float pendingZoom = MIN_ZOOM;
+    private boolean scaling;
+    private int currentPage = -1;
+
+    public PdfViewerView(Context context) {
+        this(context, null);
+    }
+
+    public PdfViewerView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setBackgroundColor(Color.LTGRAY);
+        pageGap = Math.round(PAGE_GAP_DP * getResources().getDisplayMetrics().density);
+
+        // The pool holds a few pages' worth of bitmaps on top of the ones on screen
+        long maxPoolBytes = Math.min(Runtime.getRuntime().maxMemory() / 8, 32L * 1024 * 1024);
+        bitmapPool = new BitmapPool(maxPoolBytes);
+
+        horizontalScroll = new HorizontalScrollView(context);
+        horizontalScroll.setFillViewport(true);
+        horizontalScroll.setHorizontalScrollBarEnabled(true);
+        addView(horizontalScroll, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+
+        pageList = new RecyclerView(context);
+        layoutManager = new LinearLayoutManager(context) {
+            @Override
+            protected void calculateExtraLayoutSpace(@NonNull RecyclerView.State state, @NonNull int[] extraLayoutSpace) {
+                // Lay out (and so render) the pages just above and below the visible ones
+                extraLayoutSpace[0] = getHeight() / 2;
+                extraLayoutSpace[1] = getHeight() / 2;
+            }
+        };
+        pageList.setLayoutManager(layoutManager);
+        pageList.setItemViewCacheSize(0);
+        pageList.setItemAnimator(null);
+        pageList.setVerticalScrollBarEnabled(true);
+        horizontalScroll.addView(pageList, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+
+        pageList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                notifyViewportChanged();
+                updateCurrentPage();
+            }
+        });
+        horizontalScroll.setOnScrollChangeListener((view, scrollX, scrollY, oldScrollX, oldScrollY) ->
+                notifyViewportChanged());
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(@NonNull ScaleGestureDetector detector) {
+                pendingZoom = zoom;
+                return renderer != null;
+            }
+
+            @Override
+            public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                pendingZoom = clampZoom(pendingZoom * detector.getScaleFactor());
+                // Preview by scaling the list; pages are re-laid out when the gesture ends
+                float preview = pendingZoom / zoom;
+                pageList.setPivotX(horizontalScroll.getScrollX() + detector.getFocusX());
+                pageList.setPivotY(detector.getFocusY());
+                pageList.setScaleX(preview);
+                pageList.setScaleY(preview);
+                return true;
+            }
+
+            @Override
+            public void onScaleEnd(@NonNull ScaleGestureDetector detector) {
+                setZoom(pendingZoom, detector.getFocusX(), detector.getFocusY());
+            }
+        });
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDoubleTap(@NonNull MotionEvent e) {
+                if (renderer != null) {
+                    setZoom(zoom > MIN_ZOOM ? MIN_ZOOM : DOUBLE_TAP_ZOOM, e.getX(), e.getY());
+                }
+                return true;
+            }
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Opens a PDF file, closing any document already shown.
+     */
+    public void open(File file) {
+        close();
+        renderer = PdfPageRenderer.open(file, bitmapPool, new PdfPageRenderer.OpenListener() {
+            @Override
+            public void onOpened(PdfPageRenderer opened) {
+                if (opened != renderer) {
+                    return; // Closed or replaced while opening
+                }
+                pageList.setAdapter(new PageAdapter(opened));
+                if (listener != null) {
+                    listener.onDocumentLoaded(opened.getPageCount());
+                }
+                updateCurrentPage();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (listener != null) {
+                    listener.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the document and frees every bitmap.
+     */
+    public void close() {
+        pageList.setAdapter(null); // Detaches the pages, which return their bitmaps
+        if (renderer != null) {
+            renderer.close();
+            renderer = null;
+        }
+        bitmapPool.clear();
+        currentPage = -1;
+    }
+
+    public int getPageCount() {
+        return renderer != null ? renderer.getPageCount() : 0;
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+
+        if (scaleDetector.isInProgress()) {
+            if (!scaling) {
+                // Stop the lists scrolling under the pinch
+                scaling = true;
+                MotionEvent cancel = MotionEvent.obtain(event);
+                cancel.setAction(MotionEvent.ACTION_CANCEL);
+                super.dispatchTouchEvent(cancel);
+                cancel.recycle();
+            }
+            return true;
+        }
+        if (scaling) {
+            if (event.getActionMasked() == MotionEvent.ACTION_UP || event.getActionMasked() == MotionEvent.ACTION_CANCEL) {
+                scaling = false;
+            }
+            return true;
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    /**
+     * Applies a new zoom, keeping the content under the focus point where it is.
+     */
+    private void setZoom(float newZoom, float focusX, float focusY) {
+        newZoom = clampZoom(newZoom);
+        pageList.setScaleX(1f);
+        pageList.setScaleY(1f);
+        if (newZoom == zoom) {
+            return;
+        }
+        float ratio = newZoom / zoom;
+        zoom = newZoom;
+
+        // Anchor the vertical position on the page under the focus point
+        View anchor = pageList.findChildViewUnder(horizontalScroll.getScrollX() + focusX, focusY);
+        int anchorPosition = anchor != null ? pageList.getChildAdapterPosition(anchor) : RecyclerView.NO_POSITION;
+        int anchorOffset = anchor != null ? Math.round(focusY - (focusY - anchor.getTop()) * ratio) : 0;
+        int scrollX = Math.round((horizontalScroll.getScrollX() + focusX) * ratio - focusX);
+
+        ViewGroup.LayoutParams params = pageList.getLayoutParams();
+        params.width = zoom == MIN_ZOOM ? ViewGroup.LayoutParams.MATCH_PARENT : Math.round(horizontalScroll.getWidth() * zoom);
+        pageList.setLayoutParams(params);
+
+        if (anchorPosition != RecyclerView.NO_POSITION) {
+            layoutManager.scrollToPositionWithOffset(anchorPosition, anchorOffset);
+        }
+        horizontalScroll.post(() -> {
+            horizontalScroll.scrollTo(Math.max(0, scrollX), 0);
+            notifyViewportChanged();
+        });
+    }
+
+    private static float clampZoom(float value) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, value));
+    }
+
+    private void notifyViewportChanged() {
+        for (int i = 0; i < pageList.getChildCount(); i++) {
+            View child = pageList.getChildAt(i);
+            if (child instanceof PdfPageView) {
+                ((PdfPageView) child).onViewportChanged();
+            }
+        }
+    }
+
+    /**
+     * Finds the page at the centre of the screen and tells the renderer and the listener.
+     */
+    private void updateCurrentPage() {
+        if (renderer == null) {
+            return;
+        }
+        View centre = pageList.findChildViewUnder(horizontalScroll.getScrollX() + getWidth() / 2f, getHeight() / 2f);
+        int page = centre != null ? pageList.getChildAdapterPosition(centre) : layoutManager.findFirstVisibleItemPosition();
+        if (page == RecyclerView.NO_POSITION || page == currentPage) {
+            return;
+        }
+        currentPage = page;
+        renderer.setFocusPage(page);
+        if (listener != null) {
+            listener.onPageChanged(page);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        close();
+    }
+
+    /**
+     * Binds pages to PdfPageViews; the views render themselves while attached.
+     */
+    private class PageAdapter extends RecyclerView.Adapter<PageAdapter.PageHolder> {
+
+        private final PdfPageRenderer pageRenderer;
+
+        PageAdapter(PdfPageRenderer pageRenderer) {
+            this.pageRenderer = pageRenderer;
+        }
+
+        @NonNull
+        @Override
+        public PageHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            PdfPageView pageView = new PdfPageView(parent.getContext());
+            RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+            params.bottomMargin = pageGap;
+            pageView.setLayoutParams(params);
+            return new PageHolder(pageView);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull PageHolder holder, int position) {
+            // Base bitmaps are rendered at the unzoomed width; zoom is handled with tiles
+            int baseWidth = Math.min(MAX_BASE_WIDTH, Math.max(1, horizontalScroll.getWidth()));
+            holder.pageView.bind(pageRenderer, position, baseWidth);
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull PageHolder holder) {
+            holder.pageView.unbind();
+        }
+
+        @Override
+        public int getItemCount() {
+            return pageRenderer.getPageCount();
+        }
+
+        class PageHolder extends RecyclerView.ViewHolder {
+            final PdfPageView pageView;
+
+            PageHolder(PdfPageView pageView) {
+                super(pageView);
+                this.pageView = pageView;
+            }
+        }
+    }
+}
@@ -24,3 +24,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "grpc"
 include(":app")
+include(":pdfviewer")
+project(":pdfviewer").projectDir = file("libs/library/pdfviewer")